@@ -1,94 +1,74 @@
 import React, { useState, useEffect } from 'react';
-import { useWebSocket } from '../context/WebSocketContext';
+import { api } from '../services/api';
 import './Statistics.css';
 
-const Statistics = () => {
-  const { sensorData } = useWebSocket();
-  const [allDataPoints, setAllDataPoints] = useState([]);
-  const [stats, setStats] = useState({
-    avg: 0,
-    max: 0,
-    min: 0,
-    alertCount: 0
-  });
+const REFRESH_INTERVAL = 10000; // 10 seconds
 
-  const MAX_DATA_POINTS = 180; // 30 minutes * 6 updates/min
+const format = (value) => (value === null || value === undefined ? '--' : Math.round(value));
 
-  // Add all incoming data to statistics
-  useEffect(() => {
-    setAllDataPoints(prev => {
-      const newPoint = {
-        mq2: sensorData.mq2,
-        threshold: sensorData.threshold,
-        timestamp: Date.now()
-      };
-      
-      const updated = [...prev, newPoint];
-      
-      // Keep only last MAX_DATA_POINTS
-      if (updated.length > MAX_DATA_POINTS) {
-        updated.shift();
-      }
-      
-      return updated;
-    });
-  }, [sensorData.mq2, sensorData.threshold]);
+const Statistics = () => {
+  // Rolling statistics computed by the backend from every reading (EWMA, 15 min min/max and threshold count, percentiles)
+  const [stats, setStats] = useState({});
 
-  // Calculate statistics whenever data points change
   useEffect(() => {
-    if (allDataPoints.length === 0) {
-      setStats({
-        avg: sensorData.mq2 || 0,
-        max: sensorData.mq2 || 0,
-        min: sensorData.mq2 || 0,
-        alertCount: 0
-      });
-      return;
-    }
+    let cancelled = false;
 
-    const mq2Values = allDataPoints.map(point => point.mq2);
-    const sum = mq2Values.reduce((a, b) => a + b, 0);
-    const avg = Math.round(sum / mq2Values.length);
-    const max = Math.max(...mq2Values);
-    const min = Math.min(...mq2Values);
-    const alertCount = allDataPoints.filter(point => point.mq2 > point.threshold).length;
+    const loadStats = async () => {
+      try {
+        const response = await api.getStats();
+        if (!cancelled) {
+          setStats(response.data.stats.mq2 || {});
+        }
+      } catch (error) {
+        // Keep showing the last values; the next refresh retries
+      }
+    };
+
+    loadStats();
+    const interval = setInterval(loadStats, REFRESH_INTERVAL);
+    return () => {
+      cancelled = true;
+      clearInterval(interval);
+    };
+  }, []);
 
-    setStats({ avg, max, min, alertCount });
-  }, [allDataPoints, sensorData.mq2]);
+  const rate = stats.ratePerMin === undefined ? null : stats.ratePerMin;
+  const trend = rate === null ? '--' : `${rate > 0 ? '+' : ''}${format(rate)}`;
 
   return (
     <section className="stats-section">
-      <h2>📈 Thống kê (30 phút)</h2>
+      <h2>📈 Thống kê</h2>
       <div className="stats-grid">
         <div className="stat-box">
           <div className="stat-icon">📊</div>
           <div className="stat-info">
-            <div className="stat-label">Trung bình</div>
-            <div className="stat-value">{stats.avg}</div>
-            <div className="stat-unit">ppm</div>
+            {/* EWMA: recent readings weigh more, no fixed window */}
+            <div className="stat-label">Trung bình trượt (EWMA)</div>
+            <div className="stat-value">{format(stats.ewma)}</div>
+            <div className="stat-unit">ppm · {trend} ppm/phút</div>
           </div>
         </div>
         <div className="stat-box">
           <div className="stat-icon">⬆️</div>
           <div className="stat-info">
-            <div className="stat-label">Cao nhất</div>
-            <div className="stat-value">{stats.max}</div>
-            <div className="stat-unit">ppm</div>
+            <div className="stat-label">Cao nhất (15 phút)</div>
+            <div className="stat-value">{format(stats.max15m)}</div>
+            <div className="stat-unit">ppm · P90 {format(stats.p90)}</div>
           </div>
         </div>
         <div className="stat-box">
           <div className="stat-icon">⬇️</div>
           <div className="stat-info">
-            <div className="stat-label">Thấp nhất</div>
-            <div className="stat-value">{stats.min}</div>
+            <div className="stat-label">Thấp nhất (15 phút)</div>
+            <div className="stat-value">{format(stats.min15m)}</div>
             <div className="stat-unit">ppm</div>
           </div>
         </div>
         <div className="stat-box">
           <div className="stat-icon">⚠️</div>
           <div className="stat-info">
-            <div className="stat-label">Vượt ngưỡng</div>
-            <div className="stat-value">{stats.alertCount}</div>
+            <div className="stat-label">Vượt ngưỡng (15 phút)</div>
+            <div className="stat-value">{format(stats.over15m)}</div>
             <div className="stat-unit">lần</div>
           </div>
         </div>
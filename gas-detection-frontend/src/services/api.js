@@ -42,5 +42,7 @@ export const api = {
   
   setThreshold: (threshold) => apiRequest('/api/control/threshold', 'POST', { threshold }),
   
-  getNotifications: () => apiRequest('/api/notifications')
+  getNotifications: () => apiRequest('/api/notifications'),
+
+  getStats: () => apiRequest('/api/stats')
 };
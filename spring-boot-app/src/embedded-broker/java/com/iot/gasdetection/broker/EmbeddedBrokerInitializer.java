@@ -0,0 +1,96 @@
+package com.iot.gasdetection.broker;
+
+import com.hivemq.embedded.EmbeddedHiveMQ;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.core.env.Environment;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts an in-process HiveMQ CE broker (MQTT 3.1.1 and 5, shared subscriptions) before the MQTT client
+ * connects, when {@code mqtt.embedded-broker.enabled=true}. Only built with {@code -Pembedded-broker}; meant for
+ * running several replicas on one machine without installing a broker.
+ * <p>
+ * Only the first replica should enable it; the others point {@code mqtt.broker.url} at its port.
+ */
+@Slf4j
+public class EmbeddedBrokerInitializer implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+
+    @Override
+    public void initialize(ConfigurableApplicationContext context) {
+        Environment env = context.getEnvironment();
+        if (!env.getProperty("mqtt.embedded-broker.enabled", Boolean.class, false)) {
+            return;
+        }
+        int port = env.getProperty("mqtt.embedded-broker.port", Integer.class, 1883);
+        Path dataDir = Path.of(env.getProperty("mqtt.embedded-broker.data-dir", "data/broker")).toAbsolutePath();
+        // MQTT 5 clients may not have more unacknowledged QoS 1/2 publishes than the server's receive maximum
+        int receiveMaximum = Math.min(65_535, env.getProperty("mqtt.max-inflight", Integer.class, 1000));
+
+        EmbeddedHiveMQ broker = EmbeddedHiveMQ.builder()
+                .withConfigurationFolder(writeConfig(dataDir.resolve("conf"), port, receiveMaximum))
+                .withDataFolder(createDirectory(dataDir.resolve("data")))
+                .withExtensionsFolder(createDirectory(dataDir.resolve("extensions")))
+                .build();
+        try {
+            // HiveMQ leaves the future pending if startup fails on its own executor
+            broker.start().get(60, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new IllegalStateException("Embedded broker did not start on port " + port, e);
+        }
+        log.info("🛰️ Embedded HiveMQ CE broker listening on port {}", port);
+
+        context.addApplicationListener(event -> {
+            if (event instanceof ContextClosedEvent && ((ContextClosedEvent) event).getApplicationContext() == context) {
+                try {
+                    broker.close();
+                    log.info("🛰️ Embedded broker stopped");
+                } catch (Exception e) {
+                    log.error("Error stopping embedded broker", e);
+                }
+            }
+        });
+    }
+
+    private static Path writeConfig(Path confDir, int port, int receiveMaximum) {
+        String xml = "<?xml version=\"1.0\"?>\n"
+                + "<hivemq>\n"
+                + "    <listeners>\n"
+                + "        <tcp-listener>\n"
+                + "            <port>" + port + "</port>\n"
+                + "            <bind-address>0.0.0.0</bind-address>\n"
+                + "        </tcp-listener>\n"
+                + "    </listeners>\n"
+                + "    <mqtt>\n"
+                + "        <receive-maximum>\n"
+                + "            <server-receive-maximum>" + receiveMaximum + "</server-receive-maximum>\n"
+                + "        </receive-maximum>\n"
+                + "    </mqtt>\n"
+                + "    <anonymous-usage-statistics>\n"
+                + "        <enabled>false</enabled>\n"
+                + "    </anonymous-usage-statistics>\n"
+                + "</hivemq>\n";
+        try {
+            Files.writeString(createDirectory(confDir).resolve("config.xml"), xml, StandardCharsets.UTF_8);
+            return confDir;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write embedded broker config", e);
+        }
+    }
+
+    private static Path createDirectory(Path dir) {
+        try {
+            return Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create " + dir, e);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.iot.gasdetection;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares a JMH JSON result ({@code -rf json}) with a baseline from an accepted run and exits with 1 if
+ * any benchmark got slower, or allocates more per operation, than the tolerance allows:
+ * <pre>
+ * BenchmarkGate &lt;baseline.json&gt; &lt;result.json&gt; [tolerancePercent, default 10]
+ * </pre>
+ * Benchmarks are matched by name and parameters; ones missing from the baseline are listed but never fail.
+ * Allocation differences under {@value #ALLOC_SLACK_BYTES} bytes per operation are ignored as noise.
+ */
+public final class BenchmarkGate {
+
+    private static final String ALLOC_METRIC = "gc.alloc.rate.norm";
+    private static final double ALLOC_SLACK_BYTES = 16;
+
+    private BenchmarkGate() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkGate <baseline.json> <result.json> [tolerancePercent]");
+            System.exit(2);
+        }
+        if (!new File(args[0]).isFile()) {
+            System.err.println("No baseline at " + args[0] + "; copy the result of an accepted run there first");
+            System.exit(2);
+        }
+        double tolerance = (args.length > 2 ? Double.parseDouble(args[2]) : 10) / 100;
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, JsonNode> baseline = byKey(objectMapper.readTree(new File(args[0])));
+        Map<String, JsonNode> result = byKey(objectMapper.readTree(new File(args[1])));
+
+        int regressions = 0;
+        for (Map.Entry<String, JsonNode> entry : result.entrySet()) {
+            JsonNode current = entry.getValue();
+            JsonNode base = baseline.get(entry.getKey());
+            if (base == null) {
+                System.out.printf("NEW   %s: %s%n", entry.getKey(), score(current.get("primaryMetric")));
+                continue;
+            }
+
+            // Throughput: higher is better; average or sample time: lower is better
+            boolean higherIsBetter = "thrpt".equals(current.path("mode").asText());
+            double was = base.path("primaryMetric").path("score").asDouble();
+            double now = current.path("primaryMetric").path("score").asDouble();
+            double change = was == 0 ? 0 : (now - was) / was;
+            boolean slower = higherIsBetter ? change < -tolerance : change > tolerance;
+
+            double allocWas = allocation(base);
+            double allocNow = allocation(current);
+            boolean allocates = allocWas >= 0 && allocNow >= 0
+                    && allocNow - allocWas > Math.max(ALLOC_SLACK_BYTES, allocWas * tolerance);
+
+            String verdict = slower || allocates ? "FAIL" : "ok";
+            if (slower || allocates) {
+                regressions++;
+            }
+            System.out.printf("%-5s %s: %s -> %s (%+.1f%%)%s%n", verdict, entry.getKey(),
+                    score(base.get("primaryMetric")), score(current.get("primaryMetric")), change * 100,
+                    allocNow >= 0 ? String.format(", %.0f -> %.0f B/op", allocWas, allocNow) : "");
+        }
+
+        if (regressions > 0) {
+            System.out.printf("%d benchmark(s) regressed beyond %.0f%%%n", regressions, tolerance * 100);
+            System.exit(1);
+        }
+        System.out.println("No regressions");
+    }
+
+    /**
+     * Results keyed by benchmark name plus parameters, e.g. {@code ...broadcastUpdate{sessions=100}}.
+     */
+    private static Map<String, JsonNode> byKey(JsonNode results) {
+        Map<String, JsonNode> byKey = new LinkedHashMap<>();
+        for (JsonNode result : results) {
+            String key = result.path("benchmark").asText();
+            JsonNode params = result.get("params");
+            if (params != null && params.size() > 0) {
+                Map<String, String> sorted = new TreeMap<>();
+                params.fields().forEachRemaining(p -> sorted.put(p.getKey(), p.getValue().asText()));
+                key += sorted.toString();
+            }
+            byKey.put(key, result);
+        }
+        return byKey;
+    }
+
+    /**
+     * Bytes allocated per operation, or -1 if the run was not made with {@code -prof gc}.
+     */
+    private static double allocation(JsonNode result) {
+        Iterator<Map.Entry<String, JsonNode>> metrics = result.path("secondaryMetrics").fields();
+        while (metrics.hasNext()) {
+            Map.Entry<String, JsonNode> metric = metrics.next();
+            // Older JMH versions prefix profiler metrics with a middle dot
+            if (metric.getKey().replace("·", "").equals(ALLOC_METRIC)) {
+                return metric.getValue().path("score").asDouble();
+            }
+        }
+        return -1;
+    }
+
+    private static String score(JsonNode metric) {
+        return String.format("%.3f %s", metric.path("score").asDouble(), metric.path("scoreUnit").asText());
+    }
+}
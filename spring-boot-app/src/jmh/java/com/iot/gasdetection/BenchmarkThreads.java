@@ -0,0 +1,29 @@
+package com.iot.gasdetection;
+
+import com.iot.gasdetection.config.VirtualThreads;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.Map;
+
+/**
+ * The application's virtual-thread switch for a {@code threads} benchmark parameter of {@code platform} or
+ * {@code virtual}, with {@link ThreadFootprint} reporting the platform threads it took.
+ */
+public final class BenchmarkThreads {
+
+    private BenchmarkThreads() {
+    }
+
+    public static VirtualThreads of(String threads) {
+        boolean virtual = "virtual".equals(threads);
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("benchmark",
+                Map.of("spring.threads.virtual.enabled", String.valueOf(virtual))));
+        VirtualThreads virtualThreads = new VirtualThreads(environment);
+        if (virtual && !virtualThreads.isEnabled()) {
+            throw new IllegalStateException("Virtual threads need Java 21, run with -p threads=platform");
+        }
+        return virtualThreads;
+    }
+}
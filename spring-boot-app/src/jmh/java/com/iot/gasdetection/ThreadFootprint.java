@@ -0,0 +1,49 @@
+package com.iot.gasdetection;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.runner.IterationType;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Secondary result of the platform/virtual thread comparisons: {@code peakThreads}, the most platform threads
+ * alive at once during the iteration. Each one reserves a native stack outside the heap. Virtual threads are
+ * not counted; their stacks are heap objects and show up in {@code -prof gc} instead.
+ * <p>
+ * JMH adds event counts over the measurement iterations, so each iteration reports only how far it raised
+ * the peak.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class ThreadFootprint {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    public long peakThreads;
+
+    private boolean measuring;
+    private long reported;
+
+    @Setup(Level.Iteration)
+    public void reset(IterationParams iteration) {
+        peakThreads = 0;
+        if (!measuring && iteration.getType() == IterationType.MEASUREMENT) {
+            measuring = true;
+            THREADS.resetPeakThreadCount();
+        }
+    }
+
+    public void sample() {
+        long peak = THREADS.getPeakThreadCount();
+        if (measuring && peak > reported) {
+            peakThreads += peak - reported;
+            reported = peak;
+        }
+    }
+}
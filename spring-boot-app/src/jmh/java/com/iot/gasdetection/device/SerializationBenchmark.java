@@ -0,0 +1,106 @@
+package com.iot.gasdetection.device;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.gasdetection.config.StatsProperties;
+import com.iot.gasdetection.model.Notification;
+import com.iot.gasdetection.model.SensorData;
+import com.iot.gasdetection.model.SensorField;
+import com.iot.gasdetection.model.WebSocketMessage;
+import com.iot.gasdetection.stats.StatsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WebSocket frame encoding: {@link WebSocketMessage} through the application ObjectMapper (the path of
+ * notifications and replies), against the streaming {@link SnapshotEncoder} used for device data frames, and
+ * the CBOR frames of {@link CborFrameEncoder} for binary sessions. The device changes before every snapshot,
+ * so the encoder's per-version cache never hits.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private SnapshotEncoder snapshotEncoder;
+    private CborFrameEncoder cborFrameEncoder;
+    private DeviceState device;
+    private SensorData sensorData;
+    private Notification notification;
+    private int value;
+
+    @Setup
+    public void setUp() {
+        // As configured by spring.jackson.* in application.properties
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .timeZone(TimeZone.getTimeZone("Asia/Ho_Chi_Minh"))
+                .build();
+        StatsService statsService = new StatsService(new StatsProperties());
+        statsService.init();
+        snapshotEncoder = new SnapshotEncoder(objectMapper, statsService);
+        cborFrameEncoder = new CborFrameEncoder(statsService);
+
+        device = new DeviceState("esp-0001", List.of("building-a"));
+        long now = System.currentTimeMillis();
+        device.apply(SensorField.MQ2, 420, now);
+        device.apply(SensorField.FIRE, 1, now);
+        device.apply(SensorField.RELAY1, 1, now);
+        sensorData = device.toSensorData(true);
+        notification = new Notification("warning", "Gas level rising", now);
+        notification.setDeviceId("esp-0001");
+        notification.setSeq(42);
+    }
+
+    @Benchmark
+    public byte[] sensorDataMessage() throws Exception {
+        return objectMapper.writeValueAsBytes(new WebSocketMessage("data", sensorData));
+    }
+
+    @Benchmark
+    public byte[] notificationMessage() throws Exception {
+        return objectMapper.writeValueAsBytes(new WebSocketMessage("notification", notification));
+    }
+
+    @Benchmark
+    public byte[] snapshotFrame() {
+        device.apply(SensorField.MQ2, 400 + (value++ & 1), System.currentTimeMillis());
+        return snapshotEncoder.snapshot(device, true).getFrame();
+    }
+
+    @Benchmark
+    public byte[] deltaFrame() {
+        return snapshotEncoder.deltaFrame(device, SensorField.MQ2.getMask(), true);
+    }
+
+    @Benchmark
+    public byte[] cborSnapshotFrame() {
+        device.apply(SensorField.MQ2, 400 + (value++ & 1), System.currentTimeMillis());
+        return cborFrameEncoder.dataFrame(device, SensorField.ALL_MASK, true);
+    }
+
+    @Benchmark
+    public byte[] cborDeltaFrame() {
+        return cborFrameEncoder.dataFrame(device, SensorField.MQ2.getMask(), true);
+    }
+
+    @Benchmark
+    public byte[] cborNotificationMessage() {
+        return cborFrameEncoder.message(new WebSocketMessage("notification", notification));
+    }
+}
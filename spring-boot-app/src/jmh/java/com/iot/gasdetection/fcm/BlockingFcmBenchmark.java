@@ -0,0 +1,156 @@
+package com.iot.gasdetection.fcm;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.iot.gasdetection.BenchmarkThreads;
+import com.iot.gasdetection.ThreadFootprint;
+import com.iot.gasdetection.config.FcmProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thousands of FCM requests in flight at once through the real {@link FcmDispatcher}, one token each. Every
+ * request blocks its thread for {@link #LATENCY_MS}, as the Firebase SDK does with its HTTP call on the
+ * app's executor. {@code platform} runs them on a cached pool like the SDK's default thread manager,
+ * {@code virtual} on one virtual thread each as with the java21 profile (Java 21 only).
+ * <p>
+ * One operation is a multicast to {@code concurrency} tokens and lasts until every request has completed,
+ * so requests per second = concurrency / score.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockingFcmBenchmark {
+
+    private static final long LATENCY_MS = 20;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"1000", "5000"})
+    public int concurrency;
+
+    private final Semaphore completed = new Semaphore(0);
+
+    private ExecutorService pool;
+    private FcmDispatcher dispatcher;
+    private List<String> tokens;
+    private FcmMessage message;
+
+    @Setup
+    public void setUp() {
+        // The dispatcher logs every chunk at debug level, which would cost more than the sends
+        ((Logger) LoggerFactory.getLogger(FcmDispatcher.class)).setLevel(Level.INFO);
+        Executor executor;
+        if ("virtual".equals(threads)) {
+            executor = BenchmarkThreads.of(threads).executor("firebase-");
+        } else {
+            pool = Executors.newCachedThreadPool();
+            executor = pool;
+        }
+        FcmProperties properties = new FcmProperties();
+        properties.getDispatch().setBatchSize(1);
+        properties.getDispatch().setMaxInFlight(concurrency);
+        dispatcher = new FcmDispatcher(new BlockingClient(executor), properties, new SimpleMeterRegistry());
+        dispatcher.start();
+
+        tokens = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            tokens.add("token-" + i);
+        }
+        message = new FcmMessage("🔥 CẢNH BÁO CHÁY!", "benchmark", Collections.singletonMap("type", "fire_alert"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        dispatcher.stop();
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public void multicast(ThreadFootprint footprint) throws InterruptedException {
+        dispatcher.submitToTokens(tokens, message, null);
+        completed.acquire(concurrency);
+        footprint.sample();
+    }
+
+    /**
+     * Answers every token with success after blocking a thread of {@code executor} for the request latency.
+     */
+    private final class BlockingClient implements FcmClient {
+
+        private final Executor executor;
+
+        BlockingClient(Executor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public CompletableFuture<List<FcmResult>> sendMulticast(List<String> tokens, FcmMessage message) {
+            return CompletableFuture.supplyAsync(() -> {
+                park();
+                List<FcmResult> results = new ArrayList<>(tokens.size());
+                for (int i = 0; i < tokens.size(); i++) {
+                    results.add(FcmResult.success("bench"));
+                }
+                completed.release(tokens.size());
+                return results;
+            }, executor);
+        }
+
+        @Override
+        public CompletableFuture<FcmResult> sendToTopic(String topic, FcmMessage message) {
+            return CompletableFuture.supplyAsync(() -> {
+                park();
+                completed.release();
+                return FcmResult.success("bench");
+            }, executor);
+        }
+
+        @Override
+        public boolean subscribe(List<String> tokens, String topic) {
+            return true;
+        }
+
+        @Override
+        public boolean unsubscribe(List<String> tokens, String topic) {
+            return true;
+        }
+
+        private void park() {
+            try {
+                // Parks like the SDK waiting on its socket; a virtual thread leaves its carrier meanwhile
+                Thread.sleep(LATENCY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.iot.gasdetection.ingest;
+
+import com.iot.gasdetection.model.SensorField;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receive-stage routing plus payload parsing for a fleet of 1000 devices, against the previous
+ * split/concat/{@code Integer.parseInt} path. Run with {@code -prof gc}: {@code gc.alloc.rate.norm} is the
+ * per-message allocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopicRouterBenchmark {
+
+    private static final int DEVICES = 1000;
+
+    private static final Map<String, SensorField> TOPIC_FIELDS = Map.of(
+            "sensor/mq2", SensorField.MQ2,
+            "sensor/fire", SensorField.FIRE,
+            "status/relay1", SensorField.RELAY1,
+            "status/relay2", SensorField.RELAY2,
+            "status/window", SensorField.WINDOW,
+            "status/buzzer", SensorField.BUZZER,
+            "status/mode", SensorField.MODE,
+            "status/threshold", SensorField.THRESHOLD);
+
+    private static final SensorField[] FIELDS = SensorField.values();
+
+    private final TopicRouter router = new TopicRouter(TOPIC_FIELDS, "esp-default", 100_000);
+    private final TopicRouter.Match match = new TopicRouter.Match();
+
+    private String[] topics;
+    private byte[][] payloads;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        topics = new String[DEVICES * 2];
+        payloads = new byte[DEVICES * 2][];
+        for (int i = 0; i < DEVICES; i++) {
+            String deviceId = String.format("esp-%04d", i);
+            topics[2 * i] = "gas/" + deviceId + "/sensor/mq2";
+            payloads[2 * i] = Integer.toString(300 + i).getBytes(StandardCharsets.UTF_8);
+            topics[2 * i + 1] = "gas/" + deviceId + "/status/relay1";
+            payloads[2 * i + 1] = (i % 2 == 0 ? "1" : "0").getBytes(StandardCharsets.UTF_8);
+        }
+        // Warm the device ID cache as a running broker connection would
+        for (String topic : topics) {
+            router.route(topic, match);
+        }
+    }
+
+    @Benchmark
+    public int routeAndParse() {
+        int i = next;
+        next = i + 1 == topics.length ? 0 : i + 1;
+        byte[] payload = payloads[i];
+        if (!router.route(topics[i], match)) {
+            return -1;
+        }
+        SensorField field = FIELDS[match.getRoute()];
+        int value = field == SensorField.MQ2
+                ? Payloads.parseInt(payload, payload.length)
+                : Payloads.isOne(payload, payload.length) ? 1 : 0;
+        return value + match.getDeviceId().length();
+    }
+
+    @Benchmark
+    public int splitAndParseString() {
+        int i = next;
+        next = i + 1 == topics.length ? 0 : i + 1;
+        String value = new String(payloads[i]);
+        String[] parts = topics[i].split("/");
+        if (parts.length != 4) {
+            return -1;
+        }
+        String deviceId = parts[1];
+        SensorField field = TOPIC_FIELDS.get(parts[2] + "/" + parts[3]);
+        int parsed = field == SensorField.MQ2 ? Integer.parseInt(value.trim()) : "1".equals(value) ? 1 : 0;
+        return parsed + deviceId.length();
+    }
+}
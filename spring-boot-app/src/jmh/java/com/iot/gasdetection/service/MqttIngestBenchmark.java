@@ -0,0 +1,174 @@
+package com.iot.gasdetection.service;
+
+import com.iot.gasdetection.GasDetectionApplication;
+import com.iot.gasdetection.mqtt.MqttConnection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * One MQTT message through the whole backend, as delivered by the broker connection: routing, parsing,
+ * device state, history, rolling stats, rules and the WebSocket coalescer (sensor and status), or the
+ * notification history and its WebSocket broadcast (notification). Runs against the real application
+ * context with a stub broker connection; {@code ingest.enabled=false} processes each message on the
+ * calling thread, so the score is the full per-message cost instead of a queue hand-off.
+ * <p>
+ * Messages cycle through 1000 devices and alternate between two values, so every reading changes the
+ * device state. The alert log is off: its writer cannot keep up with an unthrottled loop.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MqttIngestBenchmark {
+
+    private static final int DEVICES = 1000;
+
+    @Param({"sensor", "status", "notification"})
+    public String topicType;
+
+    private Path dataDir;
+    private ConfigurableApplicationContext context;
+    private MqttConnection.Listener listener;
+
+    private String[] topics;
+    private byte[][] payloads;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        dataDir = Files.createTempDirectory("gas-bench");
+        // Command-line arguments, so they override application.properties
+        context = new SpringApplicationBuilder(GasDetectionApplication.class, StubBroker.class).run(
+                "--server.port=0",
+                "--fcm.client=fake",
+                "--ingest.enabled=false",
+                "--alert-log.enabled=false",
+                "--commands.durable=false",
+                "--timeseries.dir=" + dataDir.resolve("timeseries"),
+                "--commands.dir=" + dataDir.resolve("commands"),
+                "--logging.level.com.iot.gasdetection=WARN");
+        listener = context.getBean(StubConnection.class).listener;
+
+        topics = new String[DEVICES * 2];
+        payloads = new byte[DEVICES * 2][];
+        for (int i = 0; i < DEVICES * 2; i++) {
+            String deviceId = String.format("esp-%04d", i % DEVICES);
+            int round = i / DEVICES;
+            switch (topicType) {
+                case "sensor" -> {
+                    topics[i] = "gas/" + deviceId + "/sensor/mq2";
+                    payloads[i] = bytes(Integer.toString(400 + round));
+                }
+                case "status" -> {
+                    topics[i] = "gas/" + deviceId + "/status/relay1";
+                    payloads[i] = bytes(Integer.toString(round));
+                }
+                default -> {
+                    topics[i] = "gas/" + deviceId + "/notification";
+                    payloads[i] = bytes("{\"type\":\"warning\",\"message\":\"Gas level rising\",\"timestamp\":"
+                            + (1_700_000_000_000L + i) + "}");
+                }
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(dataDir);
+    }
+
+    @Benchmark
+    public void messageArrived() {
+        int i = next;
+        next = i + 1 == topics.length ? 0 : i + 1;
+        listener.messageArrived(topics[i], payloads[i]);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Takes the place of the Paho connection, which is created but never connected.
+     */
+    static class StubBroker {
+
+        @Bean
+        @Primary
+        StubConnection stubConnection() {
+            return new StubConnection();
+        }
+    }
+
+    /**
+     * Keeps the listener so the benchmark can deliver messages; publishes go nowhere.
+     */
+    static class StubConnection implements MqttConnection {
+
+        volatile Listener listener;
+
+        @Override
+        public boolean connect(String clientId, Listener listener) {
+            this.listener = listener;
+            return true;
+        }
+
+        @Override
+        public void subscribe(String filter, int qos, boolean noLocal) {
+        }
+
+        @Override
+        public void unsubscribe(String filter) {
+        }
+
+        @Override
+        public boolean publish(String topic, byte[] payload, int qos, boolean retained) {
+            return true;
+        }
+
+        @Override
+        public boolean publishAsync(String topic, byte[] payload, int qos, Consumer<Boolean> onComplete) {
+            onComplete.accept(true);
+            return true;
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public String getProtocol() {
+            return "benchmark";
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.iot.gasdetection.service;
+
+import com.iot.gasdetection.model.Notification;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Notification history: appending, the {@code /api/notifications} reads (latest page, and a
+ * {@code ?since=} cursor a few entries behind), and the same reads racing a writer as they do while
+ * alerts arrive. Sized like {@link MqttService}'s history.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotificationRingBenchmark {
+
+    private static final int CAPACITY = 1000;
+    private static final int PAGE = 50;
+
+    private NotificationRing ring;
+    private Notification[] notifications;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        ring = new NotificationRing(CAPACITY);
+        notifications = new Notification[CAPACITY];
+        for (int i = 0; i < CAPACITY; i++) {
+            notifications[i] = new Notification("warning", "Gas level rising", 1_700_000_000_000L + i);
+            notifications[i].setDeviceId(String.format("esp-%04d", i));
+            ring.add(notifications[i]);
+        }
+    }
+
+    @Benchmark
+    @Group("add")
+    public long add() {
+        int i = next;
+        next = i + 1 == notifications.length ? 0 : i + 1;
+        return ring.add(notifications[i]);
+    }
+
+    @Benchmark
+    @Group("latest")
+    public List<Notification> latest() {
+        return ring.latest(PAGE);
+    }
+
+    @Benchmark
+    @Group("since")
+    public List<Notification> since() {
+        return ring.since(ring.lastSeq() - 10, PAGE);
+    }
+
+    @Benchmark
+    @Group("concurrent")
+    @GroupThreads(1)
+    public long concurrentAdd() {
+        return add();
+    }
+
+    @Benchmark
+    @Group("concurrent")
+    @GroupThreads(3)
+    public List<Notification> concurrentLatest() {
+        return latest();
+    }
+}
@@ -0,0 +1,121 @@
+package com.iot.gasdetection.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.gasdetection.BenchmarkThreads;
+import com.iot.gasdetection.ThreadFootprint;
+import com.iot.gasdetection.cluster.ClusterInterest;
+import com.iot.gasdetection.config.ClusterProperties;
+import com.iot.gasdetection.config.DeviceProperties;
+import com.iot.gasdetection.config.StatsProperties;
+import com.iot.gasdetection.config.WebSocketProperties;
+import com.iot.gasdetection.device.CborFrameEncoder;
+import com.iot.gasdetection.device.DeviceRegistry;
+import com.iot.gasdetection.device.DeviceState;
+import com.iot.gasdetection.device.SnapshotEncoder;
+import com.iot.gasdetection.model.SensorField;
+import com.iot.gasdetection.stats.StatsService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.socket.CloseStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One device update fanned out to thousands of sessions whose sends block for {@link #SEND_MS} each, as they
+ * do for clients on a slow link once the socket buffer is full. {@code platform} drains the session queues on
+ * the fixed sender pool, raised to 200 threads like Tomcat's request pool (the default is one per core);
+ * {@code virtual} on one virtual thread per draining session, as with the java21 profile (Java 21 only).
+ * <p>
+ * One operation lasts until every session has its frame, so frames per second = sessions / score.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockingSendBenchmark {
+
+    private static final long SEND_MS = 5;
+    private static final int PLATFORM_SENDERS = 200;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"1000", "5000"})
+    public int sessions;
+
+    private final Semaphore delivered = new Semaphore(0);
+
+    private SensorWebSocketHandler handler;
+    private List<BroadcastFanoutBenchmark.StubSession> open;
+    private DeviceState device;
+    private int value;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        DeviceRegistry deviceRegistry = new DeviceRegistry(new DeviceProperties());
+        deviceRegistry.setBrokerConnected(true);
+        StatsService statsService = new StatsService(new StatsProperties());
+        statsService.init();
+        WebSocketProperties properties = new WebSocketProperties();
+        properties.getOutbound().setSenderThreads(PLATFORM_SENDERS);
+        properties.getOutbound().setPerSessionMetrics(false);
+        ClusterInterest clusterInterest = new ClusterInterest(new ClusterProperties(), null, null, deviceRegistry);
+        handler = new SensorWebSocketHandler(objectMapper, properties, deviceRegistry,
+                new SnapshotEncoder(objectMapper, statsService), new CborFrameEncoder(statsService), clusterInterest,
+                BenchmarkThreads.of(threads), new SimpleMeterRegistry());
+        handler.start();
+
+        open = new ArrayList<>(sessions);
+        for (int i = 0; i < sessions; i++) {
+            BroadcastFanoutBenchmark.StubSession session =
+                    new BroadcastFanoutBenchmark.StubSession("bench-" + i, this::slowSend);
+            handler.afterConnectionEstablished(session);
+            open.add(session);
+        }
+        device = deviceRegistry.getOrCreate("esp-0001");
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (BroadcastFanoutBenchmark.StubSession session : open) {
+            handler.afterConnectionClosed(session, CloseStatus.NORMAL);
+        }
+        handler.stop();
+    }
+
+    @Benchmark
+    public void broadcastUpdate(ThreadFootprint footprint) throws InterruptedException {
+        device.apply(SensorField.MQ2, 400 + (value++ & 1), System.currentTimeMillis());
+        handler.broadcastUpdate(device, SensorField.MQ2.getMask());
+        delivered.acquire(sessions);
+        footprint.sample();
+    }
+
+    private void slowSend() {
+        try {
+            // Parks like a blocking socket write; a virtual thread leaves its carrier meanwhile
+            Thread.sleep(SEND_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        delivered.release();
+    }
+}
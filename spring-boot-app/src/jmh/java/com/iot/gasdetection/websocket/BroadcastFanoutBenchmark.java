@@ -0,0 +1,216 @@
+package com.iot.gasdetection.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.gasdetection.cluster.ClusterInterest;
+import com.iot.gasdetection.config.ClusterProperties;
+import com.iot.gasdetection.config.DeviceProperties;
+import com.iot.gasdetection.config.StatsProperties;
+import com.iot.gasdetection.config.VirtualThreads;
+import com.iot.gasdetection.config.WebSocketProperties;
+import com.iot.gasdetection.device.CborFrameEncoder;
+import com.iot.gasdetection.device.DeviceRegistry;
+import com.iot.gasdetection.device.DeviceState;
+import com.iot.gasdetection.device.SnapshotEncoder;
+import com.iot.gasdetection.model.SensorField;
+import com.iot.gasdetection.model.WebSocketMessage;
+import com.iot.gasdetection.stats.StatsService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fan-out of one device update to every open session: the coalesced data path
+ * ({@link SensorWebSocketHandler#broadcastUpdate}, one shared snapshot frame) and a message serialized by
+ * the ObjectMapper ({@link SensorWebSocketHandler#broadcast}). The score is the broadcasting thread's cost;
+ * the stub sessions discard frames on the real sender pool, and queues that fall behind drop their oldest
+ * data frames as they would in production.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastFanoutBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int sessions;
+
+    private final AtomicLong framesSent = new AtomicLong();
+
+    private SensorWebSocketHandler handler;
+    private List<StubSession> open;
+    private DeviceState device;
+    private WebSocketMessage message;
+    private int value;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        DeviceRegistry deviceRegistry = new DeviceRegistry(new DeviceProperties());
+        deviceRegistry.setBrokerConnected(true);
+        StatsService statsService = new StatsService(new StatsProperties());
+        statsService.init();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        // Cluster off: the interest tracker never touches its bus or connection
+        ClusterInterest clusterInterest = new ClusterInterest(new ClusterProperties(), null, null, deviceRegistry);
+        handler = new SensorWebSocketHandler(objectMapper, new WebSocketProperties(), deviceRegistry,
+                new SnapshotEncoder(objectMapper, statsService), new CborFrameEncoder(statsService), clusterInterest,
+                new VirtualThreads(new StandardEnvironment()), meterRegistry);
+        handler.start();
+
+        open = new ArrayList<>(sessions);
+        for (int i = 0; i < sessions; i++) {
+            StubSession session = new StubSession("bench-" + i, framesSent::incrementAndGet);
+            handler.afterConnectionEstablished(session);
+            open.add(session);
+        }
+        device = deviceRegistry.getOrCreate("esp-0001");
+        device.apply(SensorField.MQ2, 400, System.currentTimeMillis());
+        message = new WebSocketMessage("data", device.toSensorData(true));
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (StubSession session : open) {
+            handler.afterConnectionClosed(session, CloseStatus.NORMAL);
+        }
+        handler.stop();
+    }
+
+    @Benchmark
+    public void broadcastUpdate() {
+        device.apply(SensorField.MQ2, 400 + (value++ & 1), System.currentTimeMillis());
+        handler.broadcastUpdate(device, SensorField.MQ2.getMask());
+    }
+
+    @Benchmark
+    public void broadcastMessage() {
+        handler.broadcast(message);
+    }
+
+    /**
+     * Open session without a socket: each frame is handed to {@code onSend} and dropped.
+     */
+    static final class StubSession implements WebSocketSession {
+
+        private final String id;
+        private final Runnable onSend;
+        private final Map<String, Object> attributes = new HashMap<>();
+        private volatile boolean open = true;
+
+        StubSession(String id, Runnable onSend) {
+            this.id = id;
+            this.onSend = onSend;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public URI getUri() {
+            return URI.create("ws://localhost/ws");
+        }
+
+        @Override
+        public HttpHeaders getHandshakeHeaders() {
+            return HttpHeaders.EMPTY;
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public Principal getPrincipal() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public String getAcceptedProtocol() {
+            return null;
+        }
+
+        @Override
+        public void setTextMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getTextMessageSizeLimit() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getBinaryMessageSizeLimit() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public List<WebSocketExtension> getExtensions() {
+            return List.of();
+        }
+
+        @Override
+        public void sendMessage(org.springframework.web.socket.WebSocketMessage<?> message) {
+            onSend.run();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+
+        @Override
+        public void close(CloseStatus status) {
+            open = false;
+        }
+    }
+}
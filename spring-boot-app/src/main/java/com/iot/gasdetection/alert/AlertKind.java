@@ -0,0 +1,22 @@
+package com.iot.gasdetection.alert;
+
+import com.iot.gasdetection.device.DeviceState;
+
+public enum AlertKind {
+
+    FIRE(DeviceState.ALARM_FIRE),
+    GAS(DeviceState.ALARM_GAS);
+
+    private final int alarmBit;
+
+    AlertKind(int alarmBit) {
+        this.alarmBit = alarmBit;
+    }
+
+    /**
+     * Bit of {@link DeviceState#getAlarm()} that reports this kind of alarm.
+     */
+    public int getAlarmBit() {
+        return alarmBit;
+    }
+}
@@ -0,0 +1,165 @@
+package com.iot.gasdetection.alert;
+
+import com.iot.gasdetection.config.AlertSuppressionProperties;
+import com.iot.gasdetection.device.DeviceRegistry;
+import com.iot.gasdetection.device.DeviceState;
+import com.iot.gasdetection.service.FcmService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides which alert notifications become pushes.
+ * <p>
+ * The first notification of a (device, kind) opens an alert and is pushed. Repeats are suppressed for
+ * {@code window-ms} unless the level rises or the gas reading grows by {@code value-margin} over the last
+ * pushed value. Every open alert has one timer on a {@link HashedTimingWheel}; when it fires after
+ * {@code quiet-ms} without notifications and the device no longer reports the alarm, the alert closes and
+ * an "all clear" is pushed. Timers are pushed back lazily on expiry rather than rescheduled per message.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AlertSuppressor {
+
+    private final AlertSuppressionProperties properties;
+    private final DeviceRegistry deviceRegistry;
+    private final FcmService fcmService;
+
+    private final ConcurrentHashMap<String, OpenAlert> open = new ConcurrentHashMap<>();
+    private HashedTimingWheel wheel;
+
+    @PostConstruct
+    public void start() {
+        wheel = new HashedTimingWheel("alert-wheel", properties.getTickMs(), properties.getWheelSize());
+    }
+
+    @PreDestroy
+    public void stop() {
+        wheel.stop();
+    }
+
+    /**
+     * @return true if the notification should be pushed
+     */
+    public boolean shouldSend(String deviceId, AlertKind kind, String level, Integer value) {
+        if (!properties.isEnabled()) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        int rank = levelRank(level);
+        String key = deviceId + '/' + kind;
+        OpenAlert alert = open.computeIfAbsent(key, k -> new OpenAlert(k, deviceId, kind));
+
+        synchronized (alert) {
+            if (alert.closed) {
+                // Lost a race with expiry; start over with a fresh alert
+                open.remove(key, alert);
+                return shouldSend(deviceId, kind, level, value);
+            }
+            alert.lastSeen = now;
+            boolean first = alert.sentAt == 0;
+            boolean escalated = rank > alert.sentRank
+                    || (value != null && alert.sentValue != null && value >= alert.sentValue + properties.getValueMargin());
+            boolean windowElapsed = now - alert.sentAt >= properties.getWindowMs();
+            if (!first && !escalated && !windowElapsed) {
+                alert.suppressed++;
+                log.debug("🔕 Suppressed {} alert for {} ({} so far)", kind, deviceId, alert.suppressed);
+                return false;
+            }
+            if (!first) {
+                log.info("📈 {} alert for {} re-sent ({}; {} suppressed since last push)", kind, deviceId,
+                        escalated ? "escalated" : "window elapsed", alert.suppressed);
+            }
+            alert.sentAt = now;
+            alert.sentRank = Math.max(alert.sentRank, rank);
+            if (value != null) {
+                alert.sentValue = value;
+            }
+            alert.suppressed = 0;
+            if (first) {
+                wheel.schedule(() -> check(alert), properties.getQuietMs(), TimeUnit.MILLISECONDS);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Drops the device's open alerts without an all-clear, when another node takes the device over.
+     */
+    public void release(String deviceId) {
+        for (AlertKind kind : AlertKind.values()) {
+            OpenAlert alert = open.remove(deviceId + '/' + kind);
+            if (alert != null) {
+                synchronized (alert) {
+                    alert.closed = true;
+                }
+            }
+        }
+    }
+
+    public int getOpenCount() {
+        return open.size();
+    }
+
+    private void check(OpenAlert alert) {
+        long now = System.currentTimeMillis();
+        synchronized (alert) {
+            if (alert.closed) {
+                return;
+            }
+            long quietFor = now - alert.lastSeen;
+            if (quietFor < properties.getQuietMs()) {
+                wheel.schedule(() -> check(alert), properties.getQuietMs() - quietFor, TimeUnit.MILLISECONDS);
+                return;
+            }
+            DeviceState device = deviceRegistry.get(alert.deviceId);
+            if (device != null && (device.getAlarm() & alert.kind.getAlarmBit()) != 0) {
+                // Readings still show the alarm even though the firmware went quiet
+                wheel.schedule(() -> check(alert), properties.getQuietMs(), TimeUnit.MILLISECONDS);
+                return;
+            }
+            alert.closed = true;
+            open.remove(alert.key, alert);
+        }
+        log.info("✅ {} alert for {} ended", alert.kind, alert.deviceId);
+        if (properties.isAllClear()) {
+            fcmService.sendAllClear(alert.deviceId, alert.kind == AlertKind.FIRE ? "fire" : "gas");
+        }
+    }
+
+    private static int levelRank(String level) {
+        if ("critical".equalsIgnoreCase(level)) {
+            return 2;
+        }
+        if ("warning".equalsIgnoreCase(level)) {
+            return 1;
+        }
+        return 0;
+    }
+
+    private static final class OpenAlert {
+
+        final String key;
+        final String deviceId;
+        final AlertKind kind;
+
+        long lastSeen;
+        long sentAt;
+        int sentRank = -1;
+        Integer sentValue;
+        int suppressed;
+        boolean closed;
+
+        OpenAlert(String key, String deviceId, AlertKind kind) {
+            this.key = key;
+            this.deviceId = deviceId;
+            this.kind = kind;
+        }
+    }
+}
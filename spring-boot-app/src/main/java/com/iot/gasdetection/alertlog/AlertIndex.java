@@ -0,0 +1,174 @@
+package com.iot.gasdetection.alertlog;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory secondary indexes over the alert log. Entries are addressed by position (append order);
+ * per position it keeps seq, file offset, record length and receivedAt, and it keeps a sorted position
+ * list per device, per level and per (device, level). Since seq and receivedAt only grow with position,
+ * every bound of a query becomes a binary search, and a page costs O(log n + page size).
+ * <p>
+ * Not thread-safe; {@link AlertLog} guards it with a read/write lock.
+ */
+final class AlertIndex {
+
+    private long[] seqs = new long[1024];
+    private long[] offsets = new long[1024];
+    private int[] lengths = new int[1024];
+    private long[] times = new long[1024];
+    private int size;
+
+    private final Map<String, IntList> byDevice = new HashMap<>();
+    private final Map<String, IntList> byLevel = new HashMap<>();
+    private final Map<String, IntList> byDeviceLevel = new HashMap<>();
+
+    void add(long seq, long offset, int length, long receivedAt, String deviceId, String level) {
+        if (size == seqs.length) {
+            int capacity = size * 2;
+            seqs = Arrays.copyOf(seqs, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            times = Arrays.copyOf(times, capacity);
+        }
+        seqs[size] = seq;
+        offsets[size] = offset;
+        lengths[size] = length;
+        // Keep times sorted even if the wall clock steps back
+        times[size] = size > 0 ? Math.max(times[size - 1], receivedAt) : receivedAt;
+
+        String device = deviceId != null ? deviceId : "";
+        String lvl = level != null ? level : "";
+        byDevice.computeIfAbsent(device, k -> new IntList()).add(size);
+        byLevel.computeIfAbsent(lvl, k -> new IntList()).add(size);
+        byDeviceLevel.computeIfAbsent(device + '\u0000' + lvl, k -> new IntList()).add(size);
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long lastSeq() {
+        return size == 0 ? 0 : seqs[size - 1];
+    }
+
+    long offset(int position) {
+        return offsets[position];
+    }
+
+    int length(int position) {
+        return lengths[position];
+    }
+
+    /**
+     * Positions matching the query, newest first.
+     */
+    int[] select(AlertQuery query) {
+        int lo = 0;
+        int hi = size - 1;
+        if (query.getSince() != null) {
+            lo = Math.max(lo, firstGreater(seqs, query.getSince()));
+        }
+        if (query.getFrom() != null) {
+            lo = Math.max(lo, firstGreater(times, query.getFrom() - 1));
+        }
+        if (query.getBefore() != null) {
+            hi = Math.min(hi, firstGreater(seqs, query.getBefore() - 1) - 1);
+        }
+        if (query.getTo() != null) {
+            hi = Math.min(hi, firstGreater(times, query.getTo()) - 1);
+        }
+        int limit = Math.max(0, query.getLimit());
+        if (lo > hi || limit == 0) {
+            return new int[0];
+        }
+
+        IntList postings = postings(query.getDeviceId(), query.getLevel());
+        if (postings == null) {
+            int count = Math.min(limit, hi - lo + 1);
+            int[] result = new int[count];
+            for (int i = 0; i < count; i++) {
+                result[i] = hi - i;
+            }
+            return result;
+        }
+        int[] result = new int[limit];
+        int count = 0;
+        for (int i = postings.lastAtOrBelow(hi); i >= 0 && count < limit; i--) {
+            int position = postings.get(i);
+            if (position < lo) {
+                break;
+            }
+            result[count++] = position;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private IntList postings(String deviceId, String level) {
+        if (deviceId != null && level != null) {
+            return byDeviceLevel.getOrDefault(deviceId + '\u0000' + level, IntList.EMPTY);
+        }
+        if (deviceId != null) {
+            return byDevice.getOrDefault(deviceId, IntList.EMPTY);
+        }
+        if (level != null) {
+            return byLevel.getOrDefault(level, IntList.EMPTY);
+        }
+        return null;
+    }
+
+    /**
+     * First position whose value is greater than {@code key}, or {@code size}.
+     */
+    private int firstGreater(long[] values, long key) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values[mid] <= key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static final class IntList {
+
+        static final IntList EMPTY = new IntList();
+
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        /**
+         * Index of the last element not greater than {@code max}, or -1.
+         */
+        int lastAtOrBelow(int max) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (values[mid] <= max) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo - 1;
+        }
+    }
+}
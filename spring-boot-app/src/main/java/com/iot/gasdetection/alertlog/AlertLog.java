@@ -0,0 +1,313 @@
+package com.iot.gasdetection.alertlog;
+
+import com.iot.gasdetection.config.AlertLogProperties;
+import com.iot.gasdetection.model.Notification;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Durable, append-only log of every notification, for incident review.
+ * <p>
+ * Callers only encode and enqueue. A single writer thread drains whatever has queued up, writes it with one
+ * positional write and one {@code fsync}, and only then makes the batch visible to readers, so a burst of
+ * alerts costs one sync per batch instead of one per message. The secondary indexes ({@link AlertIndex})
+ * live in memory and are rebuilt from the file at startup; a torn tail left by a crash is truncated.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AlertLog {
+
+    private static final String FILE_NAME = "alerts.log";
+    private static final byte[] MAGIC = "GALOG001".getBytes(StandardCharsets.US_ASCII);
+    private static final int READ_CHUNK = 1 << 20;
+
+    private final AlertLogProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    private final AlertIndex index = new AlertIndex();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private FileChannel channel;
+    private long end;
+    private BlockingQueue<Pending> queue;
+    private Thread writer;
+    private volatile boolean open;
+
+    @PostConstruct
+    public void open() {
+        if (!properties.isEnabled()) {
+            log.info("🗄️ Alert log disabled");
+            return;
+        }
+        try {
+            Path dir = Paths.get(properties.getDir());
+            Files.createDirectories(dir);
+            channel = FileChannel.open(dir.resolve(FILE_NAME),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (channel.size() == 0) {
+                channel.write(ByteBuffer.wrap(MAGIC), 0);
+                channel.force(true);
+            }
+            recover();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open alert log in " + properties.getDir(), e);
+        }
+
+        queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        Gauge.builder("gas.alertlog.queue.depth", queue, BlockingQueue::size)
+                .description("Alerts waiting for the alert log writer")
+                .register(meterRegistry);
+        open = true;
+        writer = new Thread(this::writeLoop, "alert-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("🗄️ Alert log open: {} alerts, last seq {}", index.size(), index.lastSeq());
+    }
+
+    @PreDestroy
+    public void close() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.warn("Error closing alert log", e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return open;
+    }
+
+    /**
+     * Sequence number of the newest stored alert, 0 when empty.
+     */
+    public long getLastSeq() {
+        if (!open) {
+            return 0;
+        }
+        lock.readLock().lock();
+        try {
+            return index.lastSeq();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Queues a notification for the next group commit. Its seq must be set and increasing.
+     */
+    public void append(Notification notification) {
+        if (!open) {
+            return;
+        }
+        long receivedAt = notification.getReceivedAt() != null
+                ? notification.getReceivedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : System.currentTimeMillis();
+        String level = notification.effectiveLevel();
+        byte[] record = AlertRecordCodec.encode(notification, receivedAt, level);
+        if (!queue.offer(new Pending(notification.getSeq(), receivedAt, notification.getDeviceId(), level, record))) {
+            log.error("❌ Alert log queue full, alert {} not persisted", notification.getSeq());
+        }
+    }
+
+    /**
+     * Newest stored alerts matching the query, at most {@code limit}.
+     */
+    public List<Notification> query(AlertQuery query) {
+        if (!open) {
+            return Collections.emptyList();
+        }
+        long[] offsets;
+        int[] lengths;
+        lock.readLock().lock();
+        try {
+            int[] positions = index.select(query);
+            offsets = new long[positions.length];
+            lengths = new int[positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                offsets[i] = index.offset(positions[i]);
+                lengths[i] = index.length(positions[i]);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Notification> result = new ArrayList<>(offsets.length);
+        for (int i = 0; i < offsets.length; i++) {
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate(lengths[i]);
+                readFully(buffer, offsets[i]);
+                buffer.flip();
+                Notification notification = AlertRecordCodec.decode(buffer);
+                if (notification != null) {
+                    result.add(notification);
+                }
+            } catch (IOException e) {
+                log.error("Error reading alert at offset {}", offsets[i], e);
+            }
+        }
+        return result;
+    }
+
+    public List<Notification> recent(int limit) {
+        AlertQuery query = new AlertQuery();
+        query.setLimit(limit);
+        return query(query);
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>(properties.getMaxBatch());
+        while (open || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Everything that queued up during the previous fsync is committed together
+                queue.drainTo(batch, properties.getMaxBatch() - 1);
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("❌ Failed to persist {} alerts", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<Pending> batch) throws IOException {
+        int total = 0;
+        for (Pending pending : batch) {
+            total += pending.record.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        for (Pending pending : batch) {
+            buffer.put(pending.record);
+        }
+        buffer.flip();
+        long start = end;
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, start + buffer.position());
+        }
+        channel.force(false);
+
+        lock.writeLock().lock();
+        try {
+            long offset = start;
+            for (Pending pending : batch) {
+                index.add(pending.seq, offset, pending.record.length, pending.receivedAt, pending.deviceId,
+                        pending.level);
+                offset += pending.record.length;
+            }
+            end = offset;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void recover() throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+        readFully(magic, 0);
+        if (!Arrays.equals(magic.array(), MAGIC)) {
+            throw new IOException("Not an alert log: " + properties.getDir() + "/" + FILE_NAME);
+        }
+
+        long size = channel.size();
+        long position = MAGIC.length;
+        ByteBuffer buffer = ByteBuffer.allocate(READ_CHUNK);
+        buffer.flip();
+        while (true) {
+            int start = buffer.position();
+            Notification notification = AlertRecordCodec.decode(buffer);
+            if (notification != null) {
+                int length = buffer.position() - start;
+                index.add(notification.getSeq(), position, length,
+                        toEpochMilli(notification.getReceivedAt()), notification.getDeviceId(), notification.getLevel());
+                position += length;
+                continue;
+            }
+            long unread = size - position - buffer.remaining();
+            if (unread <= 0) {
+                break;
+            }
+            // Record spans the chunk boundary: refill and retry
+            buffer.compact();
+            int read = channel.read(buffer, position + buffer.position());
+            buffer.flip();
+            if (read <= 0) {
+                break;
+            }
+        }
+
+        if (position < size) {
+            log.warn("⚠️ Alert log: truncating {} bytes of incomplete or corrupt data at offset {}",
+                    size - position, position);
+            channel.truncate(position);
+            channel.force(true);
+        }
+        end = position;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of alert log at " + position);
+            }
+        }
+    }
+
+    private static long toEpochMilli(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static final class Pending {
+
+        final long seq;
+        final long receivedAt;
+        final String deviceId;
+        final String level;
+        final byte[] record;
+
+        Pending(long seq, long receivedAt, String deviceId, String level, byte[] record) {
+            this.seq = seq;
+            this.receivedAt = receivedAt;
+            this.deviceId = deviceId;
+            this.level = level;
+            this.record = record;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.iot.gasdetection.alertlog;
+
+import lombok.Data;
+
+/**
+ * Filter and cursor of one alert page. Every bound is optional; results are newest first.
+ */
+@Data
+public class AlertQuery {
+
+    private String deviceId;
+    private String level;
+
+    // receivedAt range in epoch milliseconds, inclusive
+    private Long from;
+    private Long to;
+
+    // Cursor: only entries with seq < before (next page) or seq > since (new entries)
+    private Long before;
+    private Long since;
+
+    private int limit = 50;
+}
@@ -0,0 +1,122 @@
+package com.iot.gasdetection.alertlog;
+
+import com.iot.gasdetection.model.Notification;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.zip.CRC32;
+
+/**
+ * Binary layout of one alert record:
+ * {@code int bodyLength, int crc32(body), body}, where body is
+ * {@code long seq, long receivedAt (epoch ms), long timestamp, str deviceId, str type, str level, str message}
+ * and {@code str} is a short byte length ({@code -1} for null) followed by UTF-8 bytes.
+ */
+final class AlertRecordCodec {
+
+    static final int FRAME_HEADER = 8;
+    private static final int MAX_STRING_BYTES = Short.MAX_VALUE;
+
+    private AlertRecordCodec() {
+    }
+
+    static byte[] encode(Notification notification, long receivedAt, String level) {
+        byte[] deviceId = utf8(notification.getDeviceId());
+        byte[] type = utf8(notification.getType());
+        byte[] levelBytes = utf8(level);
+        byte[] message = utf8(notification.getMessage());
+        int bodyLength = 3 * 8 + 4 * 2 + length(deviceId) + length(type) + length(levelBytes) + length(message);
+
+        ByteBuffer buffer = ByteBuffer.allocate(FRAME_HEADER + bodyLength);
+        buffer.putInt(bodyLength);
+        buffer.putInt(0);
+        buffer.putLong(notification.getSeq());
+        buffer.putLong(receivedAt);
+        buffer.putLong(notification.getTimestamp());
+        putString(buffer, deviceId);
+        putString(buffer, type);
+        putString(buffer, levelBytes);
+        putString(buffer, message);
+
+        byte[] record = buffer.array();
+        buffer.putInt(4, crc(record, FRAME_HEADER, bodyLength));
+        return record;
+    }
+
+    /**
+     * Decodes the record at the buffer position, or returns null if it is truncated or fails its checksum.
+     */
+    static Notification decode(ByteBuffer buffer) {
+        if (buffer.remaining() < FRAME_HEADER) {
+            return null;
+        }
+        int start = buffer.position();
+        int bodyLength = buffer.getInt(start);
+        int crc = buffer.getInt(start + 4);
+        if (bodyLength < 0 || buffer.remaining() < FRAME_HEADER + bodyLength) {
+            return null;
+        }
+        byte[] body = new byte[bodyLength];
+        buffer.get(start + FRAME_HEADER, body);
+        if (crc(body, 0, bodyLength) != crc) {
+            return null;
+        }
+        buffer.position(start + FRAME_HEADER + bodyLength);
+
+        ByteBuffer in = ByteBuffer.wrap(body);
+        Notification notification = new Notification();
+        notification.setSeq(in.getLong());
+        notification.setReceivedAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(in.getLong()), ZoneId.systemDefault()));
+        notification.setTimestamp(in.getLong());
+        notification.setDeviceId(getString(in));
+        notification.setType(getString(in));
+        notification.setLevel(getString(in));
+        notification.setMessage(getString(in));
+        return notification;
+    }
+
+    private static byte[] utf8(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            byte[] truncated = new byte[MAX_STRING_BYTES];
+            System.arraycopy(bytes, 0, truncated, 0, MAX_STRING_BYTES);
+            return truncated;
+        }
+        return bytes;
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static int crc(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,294 @@
+package com.iot.gasdetection.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.gasdetection.config.ClusterProperties;
+import com.iot.gasdetection.config.MqttProperties;
+import com.iot.gasdetection.model.Notification;
+import com.iot.gasdetection.model.SensorField;
+import com.iot.gasdetection.mqtt.MqttConnection;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replica-to-replica bus over the MQTT broker.
+ * <p>
+ * With shared subscriptions each device message reaches one replica, which forwards the reading to the
+ * device's owner ({@link ClusterMembership}) on {@code <root>/reading/<owner>/<deviceId>} unless it owns the
+ * device itself. The owner processes it and publishes each state change, retained, on
+ * {@code <root>/state/<deviceId>/<field>}, and notifications on {@code <root>/notification/<deviceId>};
+ * other replicas apply them to their registry, so any node can serve {@code /api/data} and WebSocket clients.
+ * Retained state also lets a node that joins or starts watching a device get its current fields at once.
+ * Heartbeats go to {@code <root>/member}.
+ * <p>
+ * Payloads start with the sender's node ID ({@code [len:1][nodeId]}) so a replica can skip its own messages
+ * when the broker does not honour no-local. State and forwarded readings follow as
+ * {@code [field:1][value:4][timestamp:8]}, a notification as its JSON, a heartbeat as {@code [alive:1]}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ClusterBus {
+
+    private static final int STATE_BODY_BYTES = 1 + 4 + 8;
+
+    private final ClusterProperties clusterProperties;
+    private final MqttProperties mqttProperties;
+    private final MqttConnection connection;
+    private final ObjectMapper objectMapper;
+
+    private String nodeId;
+    private byte[] nodeIdBytes;
+    private String stateTopicPrefix;
+    private String notificationTopicPrefix;
+    private String readingTopicPrefix;
+    private String memberTopic;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong forwarded = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong publishFailures = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        String configured = clusterProperties.getNodeId();
+        nodeId = configured != null && !configured.isEmpty()
+                ? configured : UUID.randomUUID().toString().substring(0, 8);
+        nodeIdBytes = nodeId.getBytes(StandardCharsets.UTF_8);
+        if (nodeIdBytes.length > 255) {
+            throw new IllegalStateException("cluster.node-id must be at most 255 bytes");
+        }
+        stateTopicPrefix = clusterProperties.getTopicRoot() + "/state/";
+        notificationTopicPrefix = clusterProperties.getTopicRoot() + "/notification/";
+        readingTopicPrefix = clusterProperties.getTopicRoot() + "/reading/";
+        memberTopic = clusterProperties.getTopicRoot() + "/member";
+
+        if (clusterProperties.isEnabled()) {
+            log.info("🔗 Cluster bus enabled: node {} on {}/# (mirror {})", nodeId, clusterProperties.getTopicRoot(),
+                    clusterProperties.getMirror());
+            if (mqttProperties.getSharedGroup() == null || mqttProperties.getSharedGroup().isEmpty()) {
+                log.warn("⚠️ cluster.enabled without mqtt.shared-group: every replica still receives every device message");
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return clusterProperties.isEnabled();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public String getTopicRoot() {
+        return clusterProperties.getTopicRoot();
+    }
+
+    /**
+     * Subscribes to the bus: notifications, heartbeats, readings forwarded to this node, and with
+     * {@code mirror=ALL} the state of every device. Subscriptions survive reconnects.
+     */
+    public void subscribe() {
+        String root = clusterProperties.getTopicRoot();
+        connection.subscribe(notificationTopicPrefix + "+", 1, true);
+        connection.subscribe(memberTopic, 0, true);
+        connection.subscribe(readingTopicPrefix + nodeId + "/+", 1, true);
+        if (clusterProperties.getMirror() == ClusterProperties.Mirror.ALL) {
+            connection.subscribe(root + "/state/#", 0, true);
+        }
+    }
+
+    /**
+     * Filter for the state of one device, or of every device when {@code deviceId} is null.
+     */
+    public String stateFilter(String deviceId) {
+        return deviceId == null ? stateTopicPrefix + "#" : stateTopicPrefix + deviceId + "/+";
+    }
+
+    /**
+     * Publishes a state change made by the device's owner, retained per field. QoS 0: the next reading of the
+     * field supersedes it, and the ingestion worker calling this must not wait for broker acks.
+     */
+    public void publishState(String deviceId, SensorField field, int value, long timestamp) {
+        if (!clusterProperties.isEnabled()) {
+            return;
+        }
+        send(stateTopicPrefix + deviceId + '/' + field.getJsonName(), encodeReading(field, value, timestamp), 0, true);
+    }
+
+    /**
+     * Hands a reading received by this node to the device's owner. QoS 0, like {@code ingest.overflow=DROP}:
+     * the receiving worker never waits for the broker.
+     */
+    public void forwardReading(String owner, String deviceId, SensorField field, int value, long timestamp) {
+        if (send(readingTopicPrefix + owner + '/' + deviceId, encodeReading(field, value, timestamp), 0, false)) {
+            forwarded.incrementAndGet();
+        }
+    }
+
+    public void publishHeartbeat(boolean alive) {
+        byte[] payload = new byte[1 + nodeIdBytes.length + 1];
+        payload[writeHeader(payload)] = (byte) (alive ? 1 : 0);
+        send(memberTopic, payload, 0, false);
+    }
+
+    private byte[] encodeReading(SensorField field, int value, long timestamp) {
+        byte[] payload = new byte[1 + nodeIdBytes.length + STATE_BODY_BYTES];
+        int pos = writeHeader(payload);
+        payload[pos++] = (byte) field.ordinal();
+        pos = writeInt(payload, pos, value);
+        writeLong(payload, pos, timestamp);
+        return payload;
+    }
+
+    /**
+     * Publishes a notification stored by this replica (device notification or rule event). QoS 1.
+     */
+    public void publishNotification(Notification notification) {
+        if (!clusterProperties.isEnabled()) {
+            return;
+        }
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(notification);
+            byte[] payload = new byte[1 + nodeIdBytes.length + json.length];
+            int pos = writeHeader(payload);
+            System.arraycopy(json, 0, payload, pos, json.length);
+            send(notificationTopicPrefix + notification.getDeviceId(), payload, 1, false);
+        } catch (Exception e) {
+            publishFailures.incrementAndGet();
+            log.error("Error publishing notification to cluster", e);
+        }
+    }
+
+    private boolean send(String topic, byte[] payload, int qos, boolean retained) {
+        if (connection.publish(topic, payload, qos, retained)) {
+            sent.incrementAndGet();
+            return true;
+        }
+        publishFailures.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * @return true if the message was published by this replica, or is too short to carry a header
+     */
+    public boolean isOwnOrInvalid(byte[] payload, int length) {
+        if (length < 1 || length < 1 + (payload[0] & 0xff)) {
+            return true;
+        }
+        int senderLength = payload[0] & 0xff;
+        if (senderLength != nodeIdBytes.length) {
+            received.incrementAndGet();
+            return false;
+        }
+        for (int i = 0; i < senderLength; i++) {
+            if (payload[1 + i] != nodeIdBytes[i]) {
+                received.incrementAndGet();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Passes a remote state or forwarded reading payload to {@code consumer}; false if it is malformed.
+     */
+    public boolean decodeState(byte[] payload, int length, StateConsumer consumer) {
+        int pos = 1 + (payload[0] & 0xff);
+        if (length - pos != STATE_BODY_BYTES) {
+            return false;
+        }
+        int ordinal = payload[pos] & 0xff;
+        SensorField[] fields = SensorField.values();
+        if (ordinal >= fields.length) {
+            return false;
+        }
+        consumer.accept(fields[ordinal], readInt(payload, pos + 1), readLong(payload, pos + 5));
+        return true;
+    }
+
+    public Notification decodeNotification(byte[] payload, int length) throws IOException {
+        int pos = 1 + (payload[0] & 0xff);
+        return objectMapper.readValue(payload, pos, length - pos, Notification.class);
+    }
+
+    /**
+     * Node ID of a heartbeat's sender; null if malformed.
+     */
+    public String heartbeatSender(byte[] payload, int length) {
+        // An empty payload clears a retained heartbeat
+        if (length < 1) {
+            return null;
+        }
+        int senderLength = payload[0] & 0xff;
+        if (length != 1 + senderLength + 1) {
+            return null;
+        }
+        return new String(payload, 1, senderLength, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * False for the heartbeat a node sends when it shuts down.
+     */
+    public boolean heartbeatAlive(byte[] payload, int length) {
+        return payload[length - 1] != 0;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", clusterProperties.isEnabled());
+        stats.put("nodeId", nodeId);
+        stats.put("protocol", connection.getProtocol());
+        stats.put("sharedGroup", mqttProperties.getSharedGroup());
+        stats.put("mirror", clusterProperties.getMirror());
+        stats.put("sent", sent.get());
+        stats.put("forwarded", forwarded.get());
+        stats.put("received", received.get());
+        stats.put("publishFailures", publishFailures.get());
+        return stats;
+    }
+
+    private int writeHeader(byte[] payload) {
+        payload[0] = (byte) nodeIdBytes.length;
+        System.arraycopy(nodeIdBytes, 0, payload, 1, nodeIdBytes.length);
+        return 1 + nodeIdBytes.length;
+    }
+
+    private static int writeInt(byte[] b, int pos, int v) {
+        b[pos] = (byte) (v >>> 24);
+        b[pos + 1] = (byte) (v >>> 16);
+        b[pos + 2] = (byte) (v >>> 8);
+        b[pos + 3] = (byte) v;
+        return pos + 4;
+    }
+
+    private static void writeLong(byte[] b, int pos, long v) {
+        writeInt(b, pos, (int) (v >>> 32));
+        writeInt(b, pos + 4, (int) v);
+    }
+
+    private static int readInt(byte[] b, int pos) {
+        return (b[pos] & 0xff) << 24 | (b[pos + 1] & 0xff) << 16 | (b[pos + 2] & 0xff) << 8 | (b[pos + 3] & 0xff);
+    }
+
+    private static long readLong(byte[] b, int pos) {
+        return (long) readInt(b, pos) << 32 | (readInt(b, pos + 4) & 0xffffffffL);
+    }
+
+    /**
+     * Receives one decoded state change or reading.
+     */
+    @FunctionalInterface
+    public interface StateConsumer {
+
+        void accept(SensorField field, int value, long timestamp);
+    }
+}
@@ -0,0 +1,141 @@
+package com.iot.gasdetection.cluster;
+
+import com.iot.gasdetection.config.ClusterProperties;
+import com.iot.gasdetection.device.DeviceRegistry;
+import com.iot.gasdetection.mqtt.MqttConnection;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * With {@code cluster.mirror=WATCHED}, forwards the device subscriptions of this node's WebSocket sessions
+ * to the devices' owners: the node subscribes to {@code <root>/state/<deviceId>/+} while at least one session
+ * watches the device (directly or through a group), and to every device's state while a session watches all.
+ * The broker then delivers only those owners' updates, retained fields first. With {@code mirror=ALL} it does
+ * nothing, since every device's state is already subscribed.
+ * <p>
+ * Broker subscribe calls wait for acks, so they run on one background thread in the order sessions changed.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ClusterInterest {
+
+    private final ClusterProperties clusterProperties;
+    private final ClusterBus clusterBus;
+    private final MqttConnection connection;
+    private final DeviceRegistry deviceRegistry;
+
+    // state filter -> watching sessions (counted once per device a session watches)
+    private final Map<String, Integer> watchers = new HashMap<>();
+    private ExecutorService subscriber;
+
+    @PostConstruct
+    public void start() {
+        if (!isActive()) {
+            return;
+        }
+        subscriber = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "cluster-interest");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscriber != null) {
+            subscriber.shutdownNow();
+        }
+    }
+
+    private boolean isActive() {
+        return clusterProperties.isEnabled() && clusterProperties.getMirror() == ClusterProperties.Mirror.WATCHED;
+    }
+
+    /**
+     * A session started watching {@code devices} and {@code groups}; both empty means every device. Groups are
+     * resolved to their members now, so the caller keeps the returned watch and hands it to {@link #unwatch}.
+     */
+    public Watch watch(Collection<String> devices, Collection<String> groups) {
+        if (!isActive()) {
+            return Watch.NONE;
+        }
+        Watch watch = new Watch(filters(devices, groups));
+        update(watch.filters, 1);
+        return watch;
+    }
+
+    /**
+     * Releases exactly the filters {@code watch} subscribed, even if group membership changed since.
+     */
+    public void unwatch(Watch watch) {
+        if (watch != null && !watch.filters.isEmpty() && watch.released.compareAndSet(false, true)) {
+            update(watch.filters, -1);
+        }
+    }
+
+    private Set<String> filters(Collection<String> devices, Collection<String> groups) {
+        Set<String> filters = new LinkedHashSet<>();
+        if (devices.isEmpty() && groups.isEmpty()) {
+            filters.add(clusterBus.stateFilter(null));
+            return filters;
+        }
+        for (String id : devices) {
+            filters.add(clusterBus.stateFilter(id));
+        }
+        for (String group : groups) {
+            for (String id : deviceRegistry.getGroupMemberIds(group)) {
+                filters.add(clusterBus.stateFilter(id));
+            }
+        }
+        return filters;
+    }
+
+    private synchronized void update(Set<String> filters, int delta) {
+        for (String filter : filters) {
+            int before = watchers.getOrDefault(filter, 0);
+            int after = Math.max(0, before + delta);
+            if (after == 0) {
+                watchers.remove(filter);
+            } else {
+                watchers.put(filter, after);
+            }
+            if (before == 0 && after > 0) {
+                subscriber.execute(() -> connection.subscribe(filter, 0, true));
+            } else if (before > 0 && after == 0) {
+                subscriber.execute(() -> connection.unsubscribe(filter));
+            }
+        }
+    }
+
+    public synchronized int getWatchedCount() {
+        return watchers.size();
+    }
+
+    /**
+     * State filters one {@link #watch} call counted, to be released by {@link #unwatch}; later releases are ignored.
+     */
+    public static final class Watch {
+
+        static final Watch NONE = new Watch(Set.of());
+
+        private final Set<String> filters;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Watch(Set<String> filters) {
+            this.filters = filters;
+        }
+    }
+}
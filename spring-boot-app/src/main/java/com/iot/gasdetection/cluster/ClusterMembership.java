@@ -0,0 +1,157 @@
+package com.iot.gasdetection.cluster;
+
+import com.iot.gasdetection.config.ClusterProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Which node owns which device.
+ * <p>
+ * Nodes announce themselves with heartbeats on the cluster bus; a node that stops sending them for
+ * {@code member-timeout-ms}, or says goodbye on shutdown, leaves the {@link HashRing}. Every node builds the
+ * same ring from the same member set, so they agree on owners once heartbeats have propagated. The owner of a
+ * device runs its rules, statistics, history and alert suppression; other nodes forward its readings.
+ * Without {@code cluster.enabled} this node owns every device.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ClusterMembership {
+
+    private final ClusterProperties clusterProperties;
+    private final ClusterBus clusterBus;
+
+    // node ID -> last heartbeat time; this node is never expired
+    private final ConcurrentHashMap<String, Long> lastSeen = new ConcurrentHashMap<>();
+    private final AtomicLong rebalances = new AtomicLong();
+
+    private volatile HashRing ring;
+    private volatile Runnable rebalanceListener = () -> { };
+    private ScheduledExecutorService heartbeat;
+
+    @PostConstruct
+    public void init() {
+        ring = new HashRing(List.of(clusterBus.getNodeId()), clusterProperties.getVirtualNodes());
+    }
+
+    /**
+     * Starts sending heartbeats; call once the broker connection is up.
+     */
+    public void start() {
+        if (!clusterProperties.isEnabled() || heartbeat != null) {
+            return;
+        }
+        heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cluster-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat.scheduleAtFixedRate(this::tick, 0, clusterProperties.getHeartbeatMs(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops heartbeats and tells the other nodes to take over this node's devices now, instead of after
+     * {@code member-timeout-ms}.
+     */
+    @PreDestroy
+    public void leave() {
+        if (heartbeat == null) {
+            return;
+        }
+        heartbeat.shutdownNow();
+        heartbeat = null;
+        clusterBus.publishHeartbeat(false);
+    }
+
+    public void setRebalanceListener(Runnable rebalanceListener) {
+        this.rebalanceListener = rebalanceListener;
+    }
+
+    /**
+     * @return the owning node if it is another node, or null if this node owns the device
+     */
+    public String remoteOwnerOf(String deviceId) {
+        if (!clusterProperties.isEnabled()) {
+            return null;
+        }
+        String owner = ring.ownerOf(deviceId);
+        return clusterBus.getNodeId().equals(owner) ? null : owner;
+    }
+
+    public boolean isOwner(String deviceId) {
+        return remoteOwnerOf(deviceId) == null;
+    }
+
+    public String ownerOf(String deviceId) {
+        return ring.ownerOf(deviceId);
+    }
+
+    public List<String> getMembers() {
+        return ring.getMembers();
+    }
+
+    /**
+     * Heartbeat from another node, on the MQTT callback thread.
+     */
+    public void onHeartbeat(String nodeId, boolean alive) {
+        if (nodeId.equals(clusterBus.getNodeId())) {
+            return;
+        }
+        boolean changed;
+        if (alive) {
+            changed = lastSeen.put(nodeId, System.currentTimeMillis()) == null;
+        } else {
+            changed = lastSeen.remove(nodeId) != null;
+        }
+        if (changed) {
+            rebuild();
+        }
+    }
+
+    private void tick() {
+        try {
+            clusterBus.publishHeartbeat(true);
+            long expiredBefore = System.currentTimeMillis() - clusterProperties.getMemberTimeoutMs();
+            if (lastSeen.values().removeIf(seen -> seen < expiredBefore)) {
+                rebuild();
+            }
+        } catch (Exception e) {
+            log.error("Error in cluster heartbeat", e);
+        }
+    }
+
+    private synchronized void rebuild() {
+        List<String> members = new ArrayList<>(lastSeen.keySet());
+        members.add(clusterBus.getNodeId());
+        HashRing next = new HashRing(members, clusterProperties.getVirtualNodes());
+        if (next.getMembers().equals(ring.getMembers())) {
+            return;
+        }
+        log.info("🔄 Cluster membership changed: {} -> {}", ring.getMembers(), next.getMembers());
+        ring = next;
+        rebalances.incrementAndGet();
+        rebalanceListener.run();
+    }
+
+    public Map<String, Object> getStats() {
+        HashRing current = ring;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("members", current.getMembers());
+        stats.put("ringPoints", current.getPointCount());
+        stats.put("rebalances", rebalances.get());
+        return stats;
+    }
+}
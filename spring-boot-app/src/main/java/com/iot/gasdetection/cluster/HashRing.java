@@ -0,0 +1,91 @@
+package com.iot.gasdetection.cluster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable consistent-hash ring: every node owns {@code virtualNodes} points, and a device belongs to the
+ * node of the first point at or after the device's hash. When a node joins or leaves only the devices next to
+ * its points move, about 1/N of the fleet.
+ */
+final class HashRing {
+
+    private final List<String> members;
+    private final long[] points;
+    private final String[] owners;
+
+    HashRing(Collection<String> nodes, int virtualNodes) {
+        List<String> sorted = new ArrayList<>(nodes);
+        sorted.sort(null);
+        this.members = List.copyOf(sorted);
+
+        int size = sorted.size() * virtualNodes;
+        long[] hashes = new long[size];
+        int[] order = new int[size];
+        int n = 0;
+        for (int m = 0; m < sorted.size(); m++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                hashes[n] = hash(sorted.get(m) + '#' + v);
+                order[n] = m;
+                n++;
+            }
+        }
+        // Sort points by hash, carrying the member index; ties resolve by member order for determinism
+        Integer[] index = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            index[i] = i;
+        }
+        Arrays.sort(index, (a, b) -> {
+            int c = Long.compare(hashes[a], hashes[b]);
+            return c != 0 ? c : Integer.compare(order[a], order[b]);
+        });
+        this.points = new long[size];
+        this.owners = new String[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = hashes[index[i]];
+            owners[i] = sorted.get(order[index[i]]);
+        }
+    }
+
+    /**
+     * @return the owning node, or null if the ring is empty
+     */
+    String ownerOf(String deviceId) {
+        if (points.length == 0) {
+            return null;
+        }
+        int i = Arrays.binarySearch(points, hash(deviceId));
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return owners[i == points.length ? 0 : i];
+    }
+
+    List<String> getMembers() {
+        return members;
+    }
+
+    int getPointCount() {
+        return points.length;
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 chars, finished with the MurmurHash3 mixer so that similar IDs
+     * ({@code esp-0001}, {@code esp-0002}) land far apart.
+     */
+    static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
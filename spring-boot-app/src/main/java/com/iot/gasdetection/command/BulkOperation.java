@@ -0,0 +1,94 @@
+package com.iot.gasdetection.command;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One {@code POST /api/control/bulk} call: the commands it submitted and their status changes, in the order
+ * they happened, for the progress stream.
+ */
+public final class BulkOperation {
+
+    private final long id;
+    private final int deviceCount;
+    private final long startedAt = System.currentTimeMillis();
+    private final List<Command> commands = Collections.synchronizedList(new ArrayList<>());
+    private final BlockingQueue<Command> updates = new LinkedBlockingQueue<>();
+    private final AtomicInteger finished = new AtomicInteger();
+    private final AtomicInteger rejected = new AtomicInteger();
+
+    BulkOperation(long id, int deviceCount) {
+        this.id = id;
+        this.deviceCount = deviceCount;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public int getDeviceCount() {
+        return deviceCount;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public List<Command> getCommands() {
+        return commands;
+    }
+
+    public int getRejected() {
+        return rejected.get();
+    }
+
+    void add(Command command) {
+        commands.add(command);
+    }
+
+    void reject() {
+        rejected.incrementAndGet();
+    }
+
+    /**
+     * Status change of one of the commands, from the thread that made it.
+     */
+    void onUpdate(Command command) {
+        if (command.getStatus().isFinal()) {
+            finished.incrementAndGet();
+        }
+        updates.add(command);
+    }
+
+    /**
+     * Next status change, or null if none arrived within the timeout.
+     */
+    public Command nextUpdate(long timeout, TimeUnit unit) throws InterruptedException {
+        return updates.poll(timeout, unit);
+    }
+
+    /**
+     * Every accepted command has reached a final status and its update was taken.
+     */
+    public boolean isDone() {
+        return finished.get() >= commands.size() && updates.isEmpty();
+    }
+
+    /**
+     * Commands per status, indexed by {@link CommandStatus#ordinal()}.
+     */
+    public int[] countByStatus() {
+        int[] counts = new int[CommandStatus.values().length];
+        synchronized (commands) {
+            for (Command command : commands) {
+                counts[command.getStatus().ordinal()]++;
+            }
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,158 @@
+package com.iot.gasdetection.command;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.gasdetection.config.CommandProperties;
+import com.iot.gasdetection.config.VirtualThreads;
+import com.iot.gasdetection.model.WebSocketMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams the progress of a {@link BulkOperation} to the HTTP client, one event per line: {@code accepted},
+ * then {@code command} for every status change, {@code progress} counts every second and {@code done} once
+ * every command is final. Events are {@code {"type":..., "data":...}} objects, written as NDJSON or, for
+ * {@code text/event-stream}, as server-sent events named after the type.
+ * <p>
+ * Each stream is pumped by its own thread, so a slow client never blocks the threads reporting status
+ * changes. A client that goes away only stops its stream; the commands carry on.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BulkProgressStreamer {
+
+    private static final long PROGRESS_INTERVAL_MS = 1000;
+    // Status changes written per flush
+    private static final int MAX_EVENTS_PER_WRITE = 256;
+
+    private final CommandProperties properties;
+    private final ObjectMapper objectMapper;
+    private final VirtualThreads virtualThreads;
+
+    private final AtomicInteger threadCount = new AtomicInteger();
+    private Executor executor;
+
+    @PostConstruct
+    public void start() {
+        if (virtualThreads.isEnabled()) {
+            executor = virtualThreads.executor("bulk-progress-");
+            return;
+        }
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "bulk-progress-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor instanceof ExecutorService pool) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Emitter for the controller to return; it stays open at most until the commands would have expired.
+     */
+    public ResponseBodyEmitter stream(BulkOperation bulk, boolean serverSentEvents) {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(properties.getExpireMs()
+                + properties.getAckTimeoutMs() * properties.getMaxAttempts());
+        AtomicBoolean closed = new AtomicBoolean();
+        emitter.onCompletion(() -> closed.set(true));
+        emitter.onTimeout(() -> closed.set(true));
+        emitter.onError(e -> closed.set(true));
+        executor.execute(() -> pump(bulk, emitter, serverSentEvents, closed));
+        return emitter;
+    }
+
+    private void pump(BulkOperation bulk, ResponseBodyEmitter emitter, boolean sse, AtomicBoolean closed) {
+        StringBuilder out = new StringBuilder();
+        try {
+            Map<String, Object> accepted = new LinkedHashMap<>();
+            accepted.put("bulkId", bulk.getId());
+            accepted.put("devices", bulk.getDeviceCount());
+            accepted.put("commands", bulk.getCommands().size());
+            accepted.put("rejected", bulk.getRejected());
+            append(out, sse, "accepted", accepted);
+            emitter.send(out.toString());
+            out.setLength(0);
+
+            // A command is written as final once, even if its earlier update is only taken after it finished
+            Set<Long> finalWritten = new HashSet<>();
+            long nextProgress = System.currentTimeMillis() + PROGRESS_INTERVAL_MS;
+            while (!closed.get() && !bulk.isDone()) {
+                Command command = bulk.nextUpdate(100, TimeUnit.MILLISECONDS);
+                for (int events = 0; command != null; command = bulk.nextUpdate(0, TimeUnit.MILLISECONDS)) {
+                    // Snapshot first: the status may move on while the command is being serialized
+                    JsonNode snapshot = objectMapper.valueToTree(command);
+                    if (!CommandStatus.valueOf(snapshot.get("status").asText()).isFinal()
+                            || finalWritten.add(command.getId())) {
+                        append(out, sse, "command", snapshot);
+                    }
+                    if (++events == MAX_EVENTS_PER_WRITE) {
+                        break;
+                    }
+                }
+                long now = System.currentTimeMillis();
+                if (now >= nextProgress) {
+                    append(out, sse, "progress", counts(bulk));
+                    nextProgress = now + PROGRESS_INTERVAL_MS;
+                }
+                if (out.length() > 0) {
+                    emitter.send(out.toString());
+                    out.setLength(0);
+                }
+            }
+            if (!closed.get()) {
+                Map<String, Object> done = counts(bulk);
+                done.put("elapsedMs", System.currentTimeMillis() - bulk.getStartedAt());
+                append(out, sse, "done", done);
+                emitter.send(out.toString());
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Client disconnected or the emitter timed out
+            log.debug("Progress stream of bulk command {} closed: {}", bulk.getId(), e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            emitter.complete();
+        }
+    }
+
+    private void append(StringBuilder out, boolean sse, String type, Object data) throws IOException {
+        String json = objectMapper.writeValueAsString(new WebSocketMessage(type, data));
+        if (sse) {
+            out.append("event: ").append(type).append('\n').append("data: ").append(json).append("\n\n");
+        } else {
+            out.append(json).append('\n');
+        }
+    }
+
+    private static Map<String, Object> counts(BulkOperation bulk) {
+        int[] byStatus = bulk.countByStatus();
+        Map<String, Object> counts = new LinkedHashMap<>();
+        for (CommandStatus status : CommandStatus.values()) {
+            counts.put(status.name().toLowerCase(), byStatus[status.ordinal()]);
+        }
+        counts.put("rejected", bulk.getRejected());
+        return counts;
+    }
+}
@@ -0,0 +1,174 @@
+package com.iot.gasdetection.command;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.iot.gasdetection.alert.HashedTimingWheel;
+import com.iot.gasdetection.cluster.ClusterInterest;
+import com.iot.gasdetection.model.SensorField;
+
+/**
+ * One control command for one device field, as returned by {@code /api/commands/{id}} and pushed to
+ * WebSocket clients as {@code "command"} messages. The status only moves forward; the first final status wins.
+ */
+@JsonPropertyOrder({"id", "deviceId", "action", "value", "status", "attempts", "createdAt", "sentAt", "completedAt"})
+public final class Command {
+
+    private final long id;
+    private final String deviceId;
+    private final SensorField field;
+    private final int value;
+    private final long createdAt;
+    // Bulk call that submitted the command, or null
+    private final BulkOperation bulk;
+
+    private volatile CommandStatus status = CommandStatus.QUEUED;
+    private volatile int attempts;
+    private volatile long sentAt;
+    private volatile long completedAt;
+
+    // Handed to the broker at least once, so a matching status echo may be its effect
+    private volatile boolean published;
+
+    // Subscription to the owner's state through ClusterInterest while unfinished, or null
+    private volatile ClusterInterest.Watch watch;
+
+    // Guarded by this
+    private HashedTimingWheel.Timeout ackTimeout;
+    private HashedTimingWheel.Timeout expiry;
+
+    Command(long id, String deviceId, SensorField field, int value, long createdAt) {
+        this(id, deviceId, field, value, createdAt, null);
+    }
+
+    Command(long id, String deviceId, SensorField field, int value, long createdAt, BulkOperation bulk) {
+        this.id = id;
+        this.deviceId = deviceId;
+        this.field = field;
+        this.value = value;
+        this.createdAt = createdAt;
+        this.bulk = bulk;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    /**
+     * Controlled field, e.g. {@code relay2}.
+     */
+    public String getAction() {
+        return field.getJsonName();
+    }
+
+    @JsonIgnore
+    public SensorField getField() {
+        return field;
+    }
+
+    /**
+     * Commanded value: 1/0 for relays, window, buzzer and mode (1 = AUTO), the threshold otherwise.
+     */
+    public int getValue() {
+        return value;
+    }
+
+    public CommandStatus getStatus() {
+        return status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getSentAt() {
+        return sentAt;
+    }
+
+    public long getCompletedAt() {
+        return completedAt;
+    }
+
+    BulkOperation getBulk() {
+        return bulk;
+    }
+
+    boolean isPublished() {
+        return published;
+    }
+
+    void markPublished() {
+        published = true;
+    }
+
+    ClusterInterest.Watch getWatch() {
+        return watch;
+    }
+
+    void setWatch(ClusterInterest.Watch watch) {
+        this.watch = watch;
+    }
+
+    /**
+     * Broker acknowledged another attempt; false if the command already finished meanwhile.
+     */
+    synchronized boolean markSent(long now) {
+        if (status.isFinal()) {
+            return false;
+        }
+        attempts++;
+        if (status == CommandStatus.QUEUED) {
+            status = CommandStatus.SENT;
+            sentAt = now;
+        }
+        return true;
+    }
+
+    /**
+     * Moves to a final status and cancels the command's timers; false if it was already final.
+     */
+    synchronized boolean finish(CommandStatus finalStatus, long now) {
+        if (status.isFinal()) {
+            return false;
+        }
+        status = finalStatus;
+        completedAt = now;
+        if (ackTimeout != null) {
+            ackTimeout.cancel();
+        }
+        if (expiry != null) {
+            expiry.cancel();
+        }
+        return true;
+    }
+
+    synchronized void setAckTimeout(HashedTimingWheel.Timeout timeout) {
+        ackTimeout = timeout;
+        if (status.isFinal()) {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * Cancels the expiry of a command the queue turned down; it never reached a caller, so its status stays.
+     */
+    synchronized void abandon() {
+        if (expiry != null) {
+            expiry.cancel();
+        }
+    }
+
+    synchronized void setExpiry(HashedTimingWheel.Timeout timeout) {
+        expiry = timeout;
+        if (status.isFinal()) {
+            timeout.cancel();
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.iot.gasdetection.command;
+
+import com.iot.gasdetection.model.SensorField;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of accepted and finished commands, replayed at startup to find the commands that were
+ * never confirmed. Only the writer thread of {@link CommandService} touches it after {@link #open}.
+ * <p>
+ * Records are framed as {@code int bodyLength, int crc32(body), body}; the body starts with a type byte:
+ * {@code 'A'} accepted ({@code long id, long createdAt, byte field, int value, str deviceId}),
+ * {@code 'F'} finished ({@code long id, byte status}) or {@code 'S'} the last ID issued before a compaction
+ * ({@code long id}). A torn tail left by a crash is truncated.
+ */
+@Slf4j
+final class CommandJournal {
+
+    private static final String FILE_NAME = "commands.log";
+    private static final byte[] MAGIC = "GACMD001".getBytes(StandardCharsets.US_ASCII);
+    private static final int FRAME_HEADER = 8;
+
+    private static final byte ACCEPTED = 'A';
+    private static final byte FINISHED = 'F';
+    private static final byte LAST_ID = 'S';
+
+    private final Path dir;
+    private FileChannel channel;
+    private long end;
+
+    // Filled by open()
+    private final List<Command> unfinished = new ArrayList<>();
+    private long lastId;
+
+    CommandJournal(Path dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Opens or creates the journal and replays it; see {@link #getUnfinished()} and {@link #getLastId()}.
+     */
+    void open() throws IOException {
+        Files.createDirectories(dir);
+        channel = FileChannel.open(dir.resolve(FILE_NAME),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() == 0) {
+            channel.write(ByteBuffer.wrap(MAGIC), 0);
+            channel.force(true);
+        }
+        replay();
+    }
+
+    /**
+     * Accepted commands without a finished record, oldest first.
+     */
+    List<Command> getUnfinished() {
+        return unfinished;
+    }
+
+    long getLastId() {
+        return lastId;
+    }
+
+    long size() {
+        return end;
+    }
+
+    static byte[] accepted(Command command) {
+        byte[] deviceId = command.getDeviceId().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer body = frame(1 + 8 + 8 + 1 + 4 + 2 + deviceId.length);
+        body.put(ACCEPTED);
+        body.putLong(command.getId());
+        body.putLong(command.getCreatedAt());
+        body.put((byte) command.getField().ordinal());
+        body.putInt(command.getValue());
+        body.putShort((short) deviceId.length);
+        body.put(deviceId);
+        return seal(body);
+    }
+
+    static byte[] finished(Command command, CommandStatus status) {
+        ByteBuffer body = frame(1 + 8 + 1);
+        body.put(FINISHED);
+        body.putLong(command.getId());
+        body.put((byte) status.ordinal());
+        return seal(body);
+    }
+
+    private static byte[] lastIdRecord(long id) {
+        ByteBuffer body = frame(1 + 8);
+        body.put(LAST_ID);
+        body.putLong(id);
+        return seal(body);
+    }
+
+    /**
+     * Writes the records with one positional write and one {@code fsync}.
+     */
+    void append(List<byte[]> records) throws IOException {
+        int total = 0;
+        for (byte[] record : records) {
+            total += record.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        for (byte[] record : records) {
+            buffer.put(record);
+        }
+        buffer.flip();
+        long start = end;
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, start + buffer.position());
+        }
+        channel.force(false);
+        end = start + total;
+    }
+
+    /**
+     * Replaces the journal with the open commands and the last issued ID, through a synced temporary file.
+     */
+    void compact(Collection<Command> open, long issuedId) throws IOException {
+        List<byte[]> records = new ArrayList<>(open.size() + 1);
+        records.add(lastIdRecord(issuedId));
+        for (Command command : open) {
+            records.add(accepted(command));
+        }
+        Path tmp = dir.resolve(FILE_NAME + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(ByteBuffer.wrap(MAGIC));
+            for (byte[] record : records) {
+                out.write(ByteBuffer.wrap(record));
+            }
+            out.force(true);
+        }
+        channel.close();
+        Files.move(tmp, dir.resolve(FILE_NAME), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(dir.resolve(FILE_NAME), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        end = channel.size();
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    private void replay() throws IOException {
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        byte[] magic = new byte[MAGIC.length];
+        if (buffer.remaining() < MAGIC.length || !Arrays.equals(get(buffer, magic), MAGIC)) {
+            throw new IOException("Not a command journal: " + dir.resolve(FILE_NAME));
+        }
+
+        Map<Long, Command> open = new LinkedHashMap<>();
+        SensorField[] fields = SensorField.values();
+        CommandStatus[] statuses = CommandStatus.values();
+        long position = MAGIC.length;
+        while (buffer.remaining() >= FRAME_HEADER) {
+            int bodyLength = buffer.getInt(buffer.position());
+            int crc = buffer.getInt(buffer.position() + 4);
+            if (bodyLength < 1 || buffer.remaining() < FRAME_HEADER + bodyLength
+                    || crc(buffer.array(), buffer.position() + FRAME_HEADER, bodyLength) != crc) {
+                break;
+            }
+            buffer.position(buffer.position() + FRAME_HEADER);
+            ByteBuffer body = buffer.slice();
+            body.limit(bodyLength);
+            buffer.position(buffer.position() + bodyLength);
+
+            byte type = body.get();
+            long id = body.getLong();
+            lastId = Math.max(lastId, id);
+            if (type == ACCEPTED) {
+                long createdAt = body.getLong();
+                int field = body.get() & 0xff;
+                int value = body.getInt();
+                byte[] deviceId = get(body, new byte[body.getShort() & 0xffff]);
+                if (field < fields.length) {
+                    open.put(id, new Command(id, new String(deviceId, StandardCharsets.UTF_8), fields[field], value,
+                            createdAt));
+                }
+            } else if (type == FINISHED) {
+                int status = body.get() & 0xff;
+                if (status < statuses.length) {
+                    open.remove(id);
+                }
+            }
+            position += FRAME_HEADER + bodyLength;
+        }
+
+        if (position < size) {
+            log.warn("⚠️ Command journal: truncating {} bytes of incomplete or corrupt data at offset {}",
+                    size - position, position);
+            channel.truncate(position);
+            channel.force(true);
+        }
+        end = position;
+        unfinished.addAll(open.values());
+    }
+
+    private static ByteBuffer frame(int bodyLength) {
+        ByteBuffer buffer = ByteBuffer.allocate(FRAME_HEADER + bodyLength);
+        buffer.putInt(bodyLength);
+        buffer.putInt(0);
+        return buffer;
+    }
+
+    private static byte[] seal(ByteBuffer buffer) {
+        byte[] record = buffer.array();
+        buffer.putInt(4, crc(record, FRAME_HEADER, record.length - FRAME_HEADER));
+        return record;
+    }
+
+    private static byte[] get(ByteBuffer buffer, byte[] target) {
+        buffer.get(target);
+        return target;
+    }
+
+    private static int crc(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,558 @@
+package com.iot.gasdetection.command;
+
+import com.iot.gasdetection.alert.HashedTimingWheel;
+import com.iot.gasdetection.cluster.ClusterInterest;
+import com.iot.gasdetection.cluster.ClusterMembership;
+import com.iot.gasdetection.config.CommandProperties;
+import com.iot.gasdetection.config.MqttProperties;
+import com.iot.gasdetection.device.DeviceRegistry;
+import com.iot.gasdetection.device.DeviceState;
+import com.iot.gasdetection.model.SensorField;
+import com.iot.gasdetection.model.WebSocketMessage;
+import com.iot.gasdetection.mqtt.MqttConnection;
+import com.iot.gasdetection.service.WebSocketService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Device control with delivery tracking.
+ * <p>
+ * {@link #submit} returns a {@link Command} at once. The journal writer makes accepted commands durable in
+ * group commits (one {@code fsync} per batch) and hands them to the sender, which publishes them at
+ * {@code commands.qos} without waiting for each ack, keeping up to {@code max-in-flight} publishes
+ * outstanding, so a fleet-wide command costs a few syncs and broker round trips rather than one per device.
+ * A command is confirmed when the device reports the commanded value on its status topic
+ * ({@code gas/<deviceId>/status/relay1} ...); without an echo it is sent again after {@code ack-timeout-ms},
+ * up to {@code max-attempts} times. While the broker is unreachable commands stay queued until
+ * {@code expire-ms}. Status changes go to WebSocket clients watching the device as {@code "command"} messages.
+ * <p>
+ * A newer command for the same device and field supersedes the older one. After a restart the journal's
+ * unconfirmed commands are sent again; setting a relay twice is harmless.
+ * <p>
+ * {@link #submitBulk} fans one call out to many devices. Its commands wait in a separate lane that the sender
+ * only serves when no single command or retry is waiting, so a building-wide command does not hold up an
+ * operator's. All publishes share the {@code max-in-flight} window and the {@code rate-per-second} limit of
+ * this node's broker connection.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CommandService {
+
+    private static final SensorField[] FIELDS = SensorField.values();
+    // Longest wait for the journal queue to drain over one whole bulk submission
+    private static final long BULK_OFFER_MS = 1000;
+
+    private final CommandProperties properties;
+    private final MqttProperties mqttProperties;
+    private final MqttConnection connection;
+    private final DeviceRegistry deviceRegistry;
+    private final ClusterMembership clusterMembership;
+    private final ClusterInterest clusterInterest;
+    private final WebSocketService webSocketService;
+    private final MeterRegistry meterRegistry;
+
+    // Commands until retain-ms after they finished
+    private final ConcurrentHashMap<Long, Command> commands = new ConcurrentHashMap<>();
+    // Device -> unfinished command per SensorField ordinal, for echo correlation
+    private final ConcurrentHashMap<String, Command[]> awaiting = new ConcurrentHashMap<>();
+    private final AtomicLong lastId = new AtomicLong();
+
+    private final BlockingQueue<Command> sendQueue = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Command> bulkQueue = new LinkedBlockingQueue<>();
+    private final AtomicLong lastBulkId = new AtomicLong();
+    private BlockingQueue<JournalEntry> journalQueue;
+    private CommandJournal journal;
+    private HashedTimingWheel timer;
+    private Semaphore inFlight;
+    private TokenBucket rateLimit;
+    private Thread writer;
+    private Thread sender;
+    private volatile boolean running;
+
+    private String controlPrefix;
+
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong[] finished = new AtomicLong[CommandStatus.values().length];
+
+    @PostConstruct
+    public void start() {
+        for (int i = 0; i < finished.length; i++) {
+            finished[i] = new AtomicLong();
+        }
+        controlPrefix = mqttProperties.getTopics().getControl() + "/";
+        timer = new HashedTimingWheel("command-timer", 50, 1024);
+        inFlight = new Semaphore(properties.getMaxInFlight());
+        rateLimit = new TokenBucket(properties.getRatePerSecond(), properties.getRateBurst());
+        running = true;
+
+        List<Command> recovered = List.of();
+        if (properties.isDurable()) {
+            journal = new CommandJournal(Paths.get(properties.getDir()));
+            try {
+                journal.open();
+                lastId.set(journal.getLastId());
+                recovered = journal.getUnfinished();
+                journal.compact(recovered, lastId.get());
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot open command journal in " + properties.getDir(), e);
+            }
+            journalQueue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+            writer = new Thread(this::writeLoop, "command-journal");
+            writer.setDaemon(true);
+            writer.start();
+        }
+        long now = System.currentTimeMillis();
+        for (Command command : recovered) {
+            supersede(track(command));
+            if (now - command.getCreatedAt() > properties.getExpireMs()) {
+                finish(command, CommandStatus.EXPIRED);
+            } else {
+                sendQueue.add(command);
+            }
+        }
+
+        registerMeters();
+        sender = new Thread(this::sendLoop, "command-sender");
+        sender.setDaemon(true);
+        sender.start();
+        log.info("🎛️ Command queue ready: {} unconfirmed commands recovered, QoS {}, {} in flight, {}/s, journal {}",
+                recovered.size(), properties.getQos(), properties.getMaxInFlight(), properties.getRatePerSecond(),
+                properties.isDurable() ? properties.getDir() : "off");
+    }
+
+    private void registerMeters() {
+        Gauge.builder("gas.commands.queue.depth", this, CommandService::getQueueDepth)
+                .description("Commands waiting for the journal or the sender")
+                .register(meterRegistry);
+        Gauge.builder("gas.commands.inflight", inFlight,
+                        permits -> properties.getMaxInFlight() - permits.availablePermits())
+                .description("Command publishes awaiting a broker ack")
+                .register(meterRegistry);
+        for (CommandStatus status : CommandStatus.values()) {
+            if (status.isFinal()) {
+                FunctionCounter.builder("gas.commands.finished", finished[status.ordinal()], AtomicLong::get)
+                        .description("Commands by final status")
+                        .tag("status", status.name().toLowerCase())
+                        .register(meterRegistry);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        sender.interrupt();
+        timer.stop();
+        if (writer != null) {
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(5));
+                journal.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                log.warn("Error closing command journal", e);
+            }
+        }
+    }
+
+    /**
+     * Accepts a command for {@code field} of {@code deviceId}; null if the queue is full.
+     */
+    public Command submit(String deviceId, SensorField field, int value) {
+        Command command = new Command(lastId.incrementAndGet(), deviceId, field, value, System.currentTimeMillis());
+        return accept(command, 0) ? command : null;
+    }
+
+    /**
+     * Accepts {@code values[i]} for {@code fields[i]} of every device, device by device. Status changes of the
+     * commands are reported to the returned operation; commands the queue could not take are only counted.
+     */
+    public BulkOperation submitBulk(Collection<String> deviceIds, SensorField[] fields, int[] values) {
+        BulkOperation bulk = new BulkOperation(lastBulkId.incrementAndGet(), deviceIds.size());
+        // One deadline for the whole call: once the queue stayed full past it, the rest is rejected unqueued
+        long deadline = System.currentTimeMillis() + BULK_OFFER_MS;
+        boolean full = false;
+        for (String deviceId : deviceIds) {
+            for (int i = 0; i < fields.length; i++) {
+                if (full) {
+                    rejected.incrementAndGet();
+                    bulk.reject();
+                    continue;
+                }
+                long now = System.currentTimeMillis();
+                Command command = new Command(lastId.incrementAndGet(), deviceId, fields[i], values[i], now, bulk);
+                if (accept(command, Math.max(0, deadline - now))) {
+                    bulk.add(command);
+                } else {
+                    bulk.reject();
+                    full = System.currentTimeMillis() >= deadline;
+                }
+            }
+        }
+        log.info("📣 Bulk command {}: {} commands for {} devices accepted, {} rejected", bulk.getId(),
+                bulk.getCommands().size(), deviceIds.size(), bulk.getRejected());
+        return bulk;
+    }
+
+    private boolean accept(Command command, long waitMs) {
+        // Tracked before the writer or sender can see it, so an early echo or finish finds its slot
+        Command previous = track(command);
+        if (journal != null) {
+            boolean queued;
+            try {
+                queued = journalQueue.offer(new JournalEntry(command, null), waitMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queued = false;
+            }
+            if (!queued) {
+                untrack(command, previous);
+                rejected.incrementAndGet();
+                log.error("❌ Command queue full, rejecting {} {}={}", command.getDeviceId(), command.getAction(),
+                        command.getValue());
+                return false;
+            }
+        } else {
+            enqueue(command);
+        }
+        submitted.incrementAndGet();
+        supersede(previous);
+        return true;
+    }
+
+    public Command get(long id) {
+        return commands.get(id);
+    }
+
+    /**
+     * Status value reported by a device, on an ingestion worker: confirms the command that set it.
+     */
+    public void onStatus(String deviceId, SensorField field, int value) {
+        if (field == SensorField.MQ2 || field == SensorField.FIRE) {
+            return;
+        }
+        Command[] slots = awaiting.get(deviceId);
+        if (slots == null) {
+            return;
+        }
+        Command command;
+        synchronized (slots) {
+            command = slots[field.ordinal()];
+        }
+        if (command != null && command.getValue() == value && command.isPublished()) {
+            finish(command, CommandStatus.CONFIRMED);
+        }
+    }
+
+    /**
+     * Registers the command for echo correlation and expiry; returns the unfinished command it replaces in
+     * its device and field slot, for {@link #supersede} once the new one is accepted.
+     */
+    private Command track(Command command) {
+        commands.put(command.getId(), command);
+        open.incrementAndGet();
+        Command[] slots = awaiting.computeIfAbsent(command.getDeviceId(), id -> new Command[FIELDS.length]);
+        Command previous;
+        synchronized (slots) {
+            previous = slots[command.getField().ordinal()];
+            slots[command.getField().ordinal()] = command;
+        }
+        command.setExpiry(timer.schedule(() -> finish(command, CommandStatus.EXPIRED),
+                Math.max(0, command.getCreatedAt() + properties.getExpireMs() - System.currentTimeMillis()),
+                TimeUnit.MILLISECONDS));
+        // With cluster.mirror=WATCHED, status echoes of devices owned elsewhere arrive as the owner's state
+        if (clusterMembership.remoteOwnerOf(command.getDeviceId()) != null) {
+            command.setWatch(clusterInterest.watch(List.of(command.getDeviceId()), List.of()));
+        }
+        return previous;
+    }
+
+    private void supersede(Command previous) {
+        if (previous != null) {
+            finish(previous, CommandStatus.SUPERSEDED);
+        }
+    }
+
+    /**
+     * Undoes {@link #track} for a command the queue turned down; the command it would have replaced keeps its
+     * slot.
+     */
+    private void untrack(Command command, Command previous) {
+        command.abandon();
+        commands.remove(command.getId());
+        open.decrementAndGet();
+        Command[] slots = awaiting.get(command.getDeviceId());
+        synchronized (slots) {
+            if (slots[command.getField().ordinal()] == command) {
+                slots[command.getField().ordinal()] =
+                        previous != null && !previous.getStatus().isFinal() ? previous : null;
+            }
+        }
+        clusterInterest.unwatch(command.getWatch());
+    }
+
+    private void finish(Command command, CommandStatus status) {
+        if (!command.finish(status, System.currentTimeMillis())) {
+            return;
+        }
+        open.decrementAndGet();
+        finished[status.ordinal()].incrementAndGet();
+        Command[] slots = awaiting.get(command.getDeviceId());
+        synchronized (slots) {
+            if (slots[command.getField().ordinal()] == command) {
+                slots[command.getField().ordinal()] = null;
+            }
+        }
+        // A lost finished record only means the command is sent once more after a restart
+        if (journal != null && running && !journalQueue.offer(new JournalEntry(command, status))) {
+            log.warn("⚠️ Command queue full, outcome of command {} not journaled", command.getId());
+        }
+        clusterInterest.unwatch(command.getWatch());
+        if (status == CommandStatus.CONFIRMED) {
+            log.debug("✅ Command {} confirmed: {} {}={}", command.getId(), command.getDeviceId(),
+                    command.getAction(), command.getValue());
+        } else if (status != CommandStatus.SUPERSEDED) {
+            log.warn("⚠️ Command {} {}: {} {}={} after {} attempts", command.getId(), status, command.getDeviceId(),
+                    command.getAction(), command.getValue(), command.getAttempts());
+        }
+        notifyWatchers(command);
+        timer.schedule(() -> commands.remove(command.getId()), properties.getRetainMs(), TimeUnit.MILLISECONDS);
+    }
+
+    private void writeLoop() {
+        List<JournalEntry> batch = new ArrayList<>(properties.getMaxBatch());
+        List<byte[]> records = new ArrayList<>(properties.getMaxBatch());
+        while (running || !journalQueue.isEmpty()) {
+            try {
+                JournalEntry first = journalQueue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Everything that queued up during the previous fsync is committed together
+                journalQueue.drainTo(batch, properties.getMaxBatch() - 1);
+                for (JournalEntry entry : batch) {
+                    records.add(entry.status == null
+                            ? CommandJournal.accepted(entry.command)
+                            : CommandJournal.finished(entry.command, entry.status));
+                }
+                try {
+                    journal.append(records);
+                } catch (IOException e) {
+                    // Still deliver: an unjournaled command only loses its resend after a restart
+                    log.error("❌ Failed to journal {} commands", batch.size(), e);
+                }
+                for (JournalEntry entry : batch) {
+                    if (entry.status == null) {
+                        enqueue(entry.command);
+                    }
+                }
+                if (journal.size() > properties.getCompactBytes()) {
+                    compact();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("❌ Error in command journal writer", e);
+            } finally {
+                batch.clear();
+                records.clear();
+            }
+        }
+    }
+
+    private void compact() throws IOException {
+        List<Command> unfinished = new ArrayList<>(open.get());
+        for (Command command : commands.values()) {
+            if (!command.getStatus().isFinal()) {
+                unfinished.add(command);
+            }
+        }
+        unfinished.sort((a, b) -> Long.compare(a.getId(), b.getId()));
+        long before = journal.size();
+        journal.compact(unfinished, lastId.get());
+        log.info("🗜️ Command journal compacted: {} -> {} bytes, {} open commands", before, journal.size(),
+                unfinished.size());
+    }
+
+    private void sendLoop() {
+        while (running) {
+            try {
+                Command command = nextToSend();
+                if (command == null || command.getStatus().isFinal()) {
+                    continue;
+                }
+                if (!connection.isConnected()) {
+                    retryLater(command);
+                    continue;
+                }
+                rateLimit.acquire();
+                inFlight.acquire();
+                command.markPublished();
+                byte[] payload = Integer.toString(command.getValue()).getBytes(StandardCharsets.US_ASCII);
+                if (!connection.publishAsync(topicOf(command), payload, properties.getQos(),
+                        ok -> onPublished(command, ok))) {
+                    inFlight.release();
+                    retryLater(command);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("❌ Error sending command", e);
+            }
+        }
+    }
+
+    /**
+     * Single commands and retries first, then the bulk lane; null after a short idle wait.
+     */
+    private Command nextToSend() throws InterruptedException {
+        Command command = sendQueue.poll();
+        if (command == null) {
+            command = bulkQueue.poll();
+        }
+        if (command == null) {
+            command = sendQueue.poll(10, TimeUnit.MILLISECONDS);
+        }
+        return command;
+    }
+
+    private void enqueue(Command command) {
+        (command.getBulk() != null ? bulkQueue : sendQueue).add(command);
+    }
+
+    /**
+     * Broker ack (or failure) of one publish, on a Paho thread.
+     */
+    private void onPublished(Command command, boolean ok) {
+        inFlight.release();
+        if (!ok) {
+            retryLater(command);
+            return;
+        }
+        published.incrementAndGet();
+        boolean first = command.getStatus() == CommandStatus.QUEUED;
+        if (!command.markSent(System.currentTimeMillis())) {
+            return;
+        }
+        if (first) {
+            notifyWatchers(command);
+        }
+        if (isMirroredValue(command)) {
+            finish(command, CommandStatus.CONFIRMED);
+            return;
+        }
+        command.setAckTimeout(timer.schedule(() -> onAckTimeout(command), properties.getAckTimeoutMs(),
+                TimeUnit.MILLISECONDS));
+    }
+
+    private void onAckTimeout(Command command) {
+        if (command.getStatus().isFinal()) {
+            return;
+        }
+        if (command.getAttempts() >= properties.getMaxAttempts()) {
+            finish(command, CommandStatus.TIMED_OUT);
+            return;
+        }
+        retried.incrementAndGet();
+        enqueue(command);
+    }
+
+    /**
+     * Devices owned by another node are only seen through the owner's state, which is published on change:
+     * if the mirrored field already holds the commanded value, the device's echo would not show up here.
+     */
+    private boolean isMirroredValue(Command command) {
+        if (clusterMembership.isOwner(command.getDeviceId())) {
+            return false;
+        }
+        DeviceState device = deviceRegistry.get(command.getDeviceId());
+        return device != null && device.hasReceived(command.getField())
+                && device.get(command.getField()) == command.getValue();
+    }
+
+    private void retryLater(Command command) {
+        if (running) {
+            timer.schedule(() -> enqueue(command), properties.getRetryDelayMs(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private String topicOf(Command command) {
+        String deviceId = command.getDeviceId();
+        String prefix = deviceId.equals(deviceRegistry.getDefaultDeviceId())
+                ? controlPrefix
+                : mqttProperties.getTopics().getDeviceControl().replace("+", deviceId) + "/";
+        return prefix + command.getAction();
+    }
+
+    private void notifyWatchers(Command command) {
+        if (command.getBulk() != null) {
+            command.getBulk().onUpdate(command);
+        }
+        webSocketService.broadcastToDevice(deviceRegistry.getOrCreate(command.getDeviceId()),
+                new WebSocketMessage("command", command));
+    }
+
+    private int getQueueDepth() {
+        return sendQueue.size() + bulkQueue.size() + (journalQueue != null ? journalQueue.size() : 0);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("open", open.get());
+        stats.put("queued", getQueueDepth());
+        stats.put("inFlight", properties.getMaxInFlight() - inFlight.availablePermits());
+        stats.put("submitted", submitted.get());
+        stats.put("published", published.get());
+        stats.put("retried", retried.get());
+        stats.put("rejected", rejected.get());
+        for (CommandStatus status : CommandStatus.values()) {
+            if (status.isFinal()) {
+                stats.put(status.name().toLowerCase(), finished[status.ordinal()].get());
+            }
+        }
+        return stats;
+    }
+
+    private static final class JournalEntry {
+
+        final Command command;
+        // null: accepted, to be sent once durable
+        final CommandStatus status;
+
+        JournalEntry(Command command, CommandStatus status) {
+            this.command = command;
+            this.status = status;
+        }
+    }
+}
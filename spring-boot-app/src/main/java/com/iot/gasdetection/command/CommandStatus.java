@@ -0,0 +1,24 @@
+package com.iot.gasdetection.command;
+
+/**
+ * Lifecycle of a device command; every state after {@link #SENT} is final.
+ */
+public enum CommandStatus {
+
+    // Accepted, waiting for the journal, the broker connection or a free in-flight slot
+    QUEUED,
+    // Acknowledged by the broker, waiting for the device's status echo
+    SENT,
+    // The device reported the commanded value
+    CONFIRMED,
+    // A newer command for the same device and field was accepted first
+    SUPERSEDED,
+    // No matching echo after every attempt
+    TIMED_OUT,
+    // Could not be confirmed within commands.expire-ms, e.g. while the broker was unreachable
+    EXPIRED;
+
+    public boolean isFinal() {
+        return ordinal() > SENT.ordinal();
+    }
+}
@@ -0,0 +1,43 @@
+package com.iot.gasdetection.command;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket for the command sender: {@code ratePerSecond} publishes on average, bursts of up to
+ * {@code burst} after a quiet period. Used by one thread; a rate of 0 or less disables it.
+ */
+final class TokenBucket {
+
+    private final double tokensPerNano;
+    private final double capacity;
+    private double tokens;
+    private long refilledAt;
+
+    TokenBucket(double ratePerSecond, int burst) {
+        this.tokensPerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = Math.max(1, burst);
+        this.tokens = capacity;
+        this.refilledAt = System.nanoTime();
+    }
+
+    /**
+     * Takes one token, sleeping until it is available.
+     */
+    void acquire() throws InterruptedException {
+        if (tokensPerNano <= 0) {
+            return;
+        }
+        refill();
+        if (tokens < 1) {
+            TimeUnit.NANOSECONDS.sleep((long) Math.ceil((1 - tokens) / tokensPerNano));
+            refill();
+        }
+        tokens = Math.max(0, tokens - 1);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+    }
+}
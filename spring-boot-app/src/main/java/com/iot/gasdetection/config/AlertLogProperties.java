@@ -0,0 +1,21 @@
+package com.iot.gasdetection.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "alert-log")
+public class AlertLogProperties {
+
+    private boolean enabled = true;
+
+    private String dir = "data/alerts";
+
+    // Upper bound of notifications written and fsynced together
+    private int maxBatch = 512;
+
+    // Notifications waiting for the writer; further alerts are logged as lost
+    private int queueCapacity = 65_536;
+}
@@ -0,0 +1,28 @@
+package com.iot.gasdetection.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "alert-suppression")
+public class AlertSuppressionProperties {
+
+    private boolean enabled = true;
+
+    // Repeats of an open (device, type) alert are not pushed again within this window
+    private long windowMs = 300_000;
+
+    // ...unless the level rises or the gas reading grows by at least this much since the last push
+    private int valueMargin = 500;
+
+    // An alert is over once no notification arrived for this long and the device no longer reports the alarm
+    private long quietMs = 60_000;
+
+    // Send an "all clear" push when an alert ends
+    private boolean allClear = true;
+
+    private long tickMs = 100;
+    private int wheelSize = 512;
+}
@@ -0,0 +1,38 @@
+package com.iot.gasdetection.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "cluster")
+public class ClusterProperties {
+
+    // Replicate device state and notifications to the other backend replicas through the broker
+    private boolean enabled = false;
+
+    // Unique per replica; empty = random at startup. Also the suffix of the MQTT client ID
+    private String nodeId = "";
+
+    // Replica-to-replica topics: <topic-root>/state/<deviceId>/<field>, <topic-root>/notification/<deviceId>,
+    // <topic-root>/reading/<nodeId>/<deviceId>, <topic-root>/member
+    private String topicRoot = "gas-cluster";
+
+    // Points per node on the consistent-hash ring; more points spread devices more evenly
+    private int virtualNodes = 128;
+
+    private long heartbeatMs = 1000;
+
+    // A node that has not sent a heartbeat for this long leaves the ring
+    private long memberTimeoutMs = 5000;
+
+    private Mirror mirror = Mirror.ALL;
+
+    public enum Mirror {
+        // Every node mirrors the state of every device (any node serves /api/data for any device)
+        ALL,
+        // A node mirrors only devices watched by its WebSocket sessions, plus the devices it owns
+        WATCHED
+    }
+}
@@ -0,0 +1,54 @@
+package com.iot.gasdetection.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "commands")
+public class CommandProperties {
+
+    // Journal accepted commands so that unconfirmed ones are sent again after a restart
+    private boolean durable = true;
+
+    private String dir = "data/commands";
+
+    // 1 = at least once, 2 = exactly once to the broker; devices apply the same state twice harmlessly
+    private int qos = 1;
+
+    // Wait this long for the device's status echo before sending again
+    private long ackTimeoutMs = 5000;
+
+    // Sends per command, including the first one
+    private int maxAttempts = 3;
+
+    // Unconfirmed commands older than this are given up, e.g. after waiting for the broker
+    private long expireMs = 120_000;
+
+    // Delay before retrying a publish the broker did not take (disconnected, in-flight window full)
+    private long retryDelayMs = 1000;
+
+    // Publishes awaiting a broker ack; keep below mqtt.max-inflight to leave room for other traffic
+    private int maxInFlight = 800;
+
+    // Publishes per second over this node's broker connection (0 = unlimited), with bursts up to rate-burst
+    private double ratePerSecond = 2000;
+
+    private int rateBurst = 200;
+
+    // Devices one POST /api/control/bulk may address
+    private int maxBulkDevices = 20_000;
+
+    // Accepted commands waiting for the journal; further commands are rejected
+    private int queueCapacity = 65_536;
+
+    // Upper bound of commands written and fsynced together
+    private int maxBatch = 1024;
+
+    // Finished commands stay queryable by ID for this long
+    private long retainMs = 600_000;
+
+    // Rewrite the journal with only the open commands once it grows past this size
+    private long compactBytes = 16 * 1024 * 1024;
+}
@@ -0,0 +1,30 @@
+package com.iot.gasdetection.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "devices")
+public class DeviceProperties {
+
+    /**
+     * Device ID used for legacy topics without a device segment (gas/sensor/mq2, ...).
+     */
+    private String defaultId = "default";
+
+    /**
+     * Expected fleet size, used to pre-size the registry.
+     */
+    private int expectedCount = 20000;
+
+    /**
+     * Static device groups, e.g. devices.groups.building-a=esp-01,esp-02
+     */
+    private Map<String, List<String>> groups = new HashMap<>();
+}
@@ -0,0 +1,54 @@
+package com.iot.gasdetection.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "fcm")
+public class FcmProperties {
+
+    // "firebase" or "fake" (local throughput testing, no credentials needed)
+    private String client = "firebase";
+
+    // Where fire/gas alerts go: the fire_alerts topic or every registered token
+    private AlertTarget alertTarget = AlertTarget.TOPIC;
+
+    private Dispatch dispatch = new Dispatch();
+    private Fake fake = new Fake();
+
+    public enum AlertTarget {
+        TOPIC,
+        TOKENS
+    }
+
+    @Data
+    public static class Dispatch {
+
+        // Pending dispatch jobs (alerts and retries); new jobs are rejected when full
+        private int queueCapacity = 1024;
+
+        // Tokens per multicast request; FCM accepts at most 500
+        private int batchSize = 500;
+
+        // Multicast requests in flight at once
+        private int maxInFlight = 8;
+
+        // Attempts per token, including the first one
+        private int maxAttempts = 5;
+
+        private long initialBackoffMs = 500;
+        private long maxBackoffMs = 30_000;
+    }
+
+    @Data
+    public static class Fake {
+
+        private long latencyMs = 50;
+
+        // Fraction of tokens answered with UNREGISTERED / a transient error
+        private double unregisteredRate = 0.0;
+        private double transientErrorRate = 0.0;
+    }
+}
@@ -3,32 +3,48 @@ package com.iot.gasdetection.config;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
+import com.google.firebase.ThreadManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.core.task.support.ExecutorServiceAdapter;
 
 import jakarta.annotation.PostConstruct;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
 
 @Configuration
+@ConditionalOnProperty(prefix = "fcm", name = "client", havingValue = "firebase", matchIfMissing = true)
 public class FirebaseConfig {
 
     private static final Logger logger = LoggerFactory.getLogger(FirebaseConfig.class);
 
+    private final VirtualThreads virtualThreads;
+
+    public FirebaseConfig(VirtualThreads virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
     @PostConstruct
     public void initialize() {
         try {
             if (FirebaseApp.getApps().isEmpty()) {
                 InputStream serviceAccount = new ClassPathResource("firebase-credentials.json").getInputStream();
                 
-                FirebaseOptions options = FirebaseOptions.builder()
-                        .setCredentials(GoogleCredentials.fromStream(serviceAccount))
-                        .build();
+                FirebaseOptions.Builder options = FirebaseOptions.builder()
+                        .setCredentials(GoogleCredentials.fromStream(serviceAccount));
+                if (virtualThreads.isEnabled()) {
+                    // The SDK runs every send and topic call as a blocking HTTP request on this executor
+                    options.setThreadManager(new VirtualThreadManager(virtualThreads.executor("firebase-")));
+                }
                 
-                FirebaseApp.initializeApp(options);
+                FirebaseApp.initializeApp(options.build());
                 logger.info("✅ Firebase Admin SDK initialized successfully");
             } else {
                 logger.info("✅ Firebase App already initialized");
@@ -38,4 +54,31 @@ public class FirebaseConfig {
             throw new RuntimeException("Cannot initialize Firebase Admin SDK", e);
         }
     }
+
+    /**
+     * One virtual thread per Firebase request instead of the SDK's cached pool of platform threads.
+     */
+    private static final class VirtualThreadManager extends ThreadManager {
+
+        private final VirtualThreadTaskExecutor executor;
+
+        VirtualThreadManager(VirtualThreadTaskExecutor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        protected ExecutorService getExecutor(FirebaseApp app) {
+            return new ExecutorServiceAdapter(executor);
+        }
+
+        @Override
+        protected void releaseExecutor(FirebaseApp app, ExecutorService executorService) {
+            // Nothing pooled: running requests finish on their own threads
+        }
+
+        @Override
+        protected ThreadFactory getThreadFactory() {
+            return executor.getVirtualThreadFactory();
+        }
+    }
 }
@@ -0,0 +1,32 @@
+package com.iot.gasdetection.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "ingest")
+public class IngestProperties {
+
+    // false = process messages inline on the MQTT callback thread (previous behaviour)
+    private boolean enabled = true;
+
+    // Worker partitions; a device always maps to the same partition, so its readings stay ordered
+    private int partitions = Runtime.getRuntime().availableProcessors();
+
+    // Preallocated slots per partition, rounded up to a power of two
+    private int ringCapacity = 8192;
+
+    private Overflow overflow = Overflow.DROP;
+
+    // Device IDs interned by the topic router, so routing known devices creates no substrings
+    private int deviceIdCacheSize = 100_000;
+
+    public enum Overflow {
+        // Drop the reading and count it; the MQTT callback thread is never held up
+        DROP,
+        // Wait for a free slot; protects every reading but delays MQTT acks while workers are behind
+        BLOCK
+    }
+}
@@ -13,6 +13,22 @@ public class MqttProperties {
     private Client client = new Client();
     private Topics topics = new Topics();
 
+    // V3 = MQTT 3.1.1 (Paho mqttv3), V5 = MQTT 5 (Paho mqttv5, needed for shared subscriptions across replicas)
+    private Protocol protocol = Protocol.V3;
+
+    // Non-empty: subscribe to device topics as $share/<group>/<filter>, so replicas split the devices' messages
+    private String sharedGroup = "";
+
+    // Unacknowledged QoS 1/2 publishes per connection (MQTT 3.1.1; MQTT 5 brokers announce their own limit)
+    private int maxInflight = 1000;
+
+    private EmbeddedBroker embeddedBroker = new EmbeddedBroker();
+
+    public enum Protocol {
+        V3,
+        V5
+    }
+
     @Data
     public static class Broker {
 
@@ -27,11 +43,31 @@ public class MqttProperties {
         private String id;
     }
 
+    /**
+     * In-process HiveMQ CE broker for local cluster testing; only available when built with -Pembedded-broker.
+     */
+    @Data
+    public static class EmbeddedBroker {
+
+        private boolean enabled = false;
+        private int port = 1883;
+        private String dataDir = "data/broker";
+    }
+
     @Data
     public static class Topics {
 
         private String sensor;
         private String status;
         private String notification;
+
+        // Per-device topics: gas/<deviceId>/sensor/#, gas/<deviceId>/status/#, gas/<deviceId>/notification
+        private String deviceSensor;
+        private String deviceStatus;
+        private String deviceNotification;
+
+        // Command topics: <control>/<field> for the default device, <device-control>/<field> with + as the device ID
+        private String control = "gas/control";
+        private String deviceControl = "gas/+/control";
     }
 }
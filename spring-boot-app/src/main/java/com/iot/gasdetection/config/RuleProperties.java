@@ -0,0 +1,18 @@
+package com.iot.gasdetection.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "rules")
+public class RuleProperties {
+
+    private boolean enabled = true;
+
+    // External rule file, reloaded when it changes; the bundled rules.json is used while it does not exist
+    private String file = "config/rules.json";
+
+    private long reloadIntervalMs = 5_000;
+}
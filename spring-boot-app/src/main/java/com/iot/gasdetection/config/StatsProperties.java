@@ -0,0 +1,28 @@
+package com.iot.gasdetection.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "stats")
+public class StatsProperties {
+
+    private boolean enabled = true;
+
+    // Fields with rolling statistics (JSON names); each costs a fixed ~2 KB per device
+    private List<String> fields = List.of("mq2", "fire");
+
+    // Time constant of the EWMA and of the smoothed rate of change
+    private long ewmaTauMs = 60_000;
+
+    // DDSketch relative accuracy of the percentiles, and the largest value told apart (larger ones share the top bucket)
+    private double sketchAccuracy = 0.02;
+    private int sketchMaxValue = 10_000;
+
+    // Sketch counts are halved this often, so percentiles follow roughly the last few intervals
+    private long sketchDecayMs = 300_000;
+}
@@ -0,0 +1,45 @@
+package com.iot.gasdetection.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "timeseries")
+public class TimeSeriesProperties {
+
+    private boolean enabled = true;
+
+    // Root directory of the store, one sub-directory per tier
+    private String dir = "data/timeseries";
+
+    // Fields recorded for every device
+    private List<String> fields = new ArrayList<>(List.of("mq2", "fire"));
+
+    // Size of one memory-mapped segment file
+    private int segmentBytes = 8 * 1024 * 1024;
+
+    // Rows per compressed block
+    private int blockPoints = 256;
+
+    // Partial blocks are written once their oldest row is this old
+    private long maxBufferAgeMs = 60_000;
+
+    // Background flush / fsync period
+    private long flushIntervalMs = 10_000;
+
+    private Retention retention = new Retention();
+
+    @Data
+    public static class Retention {
+
+        private long rawHours = 24 * 7;
+        private long secondHours = 24 * 7;
+        private long minuteDays = 90;
+        private long hourDays = 365 * 5;
+    }
+}
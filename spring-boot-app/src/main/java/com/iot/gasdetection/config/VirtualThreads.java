@@ -0,0 +1,40 @@
+package com.iot.gasdetection.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Whether blocking work runs on virtual threads: {@code spring.threads.virtual.enabled} on Java 21 or later,
+ * the switch Spring Boot already applies to Tomcat's request threads. Components with their own executors
+ * (WebSocket senders, the Firebase SDK, bulk progress streams) ask here, so the whole stack changes together.
+ */
+@Slf4j
+@Component
+public class VirtualThreads {
+
+    private final boolean enabled;
+
+    public VirtualThreads(Environment environment) {
+        this.enabled = Threading.VIRTUAL.isActive(environment);
+        if (enabled) {
+            log.info("🧵 Virtual threads enabled for Tomcat requests, WebSocket sends and FCM dispatch");
+        } else if (environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false)) {
+            log.warn("⚠️ spring.threads.virtual.enabled needs Java 21, running on platform threads (Java {})",
+                    Runtime.version().feature());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts a new virtual thread per task, named {@code prefix} plus a counter. Only valid when enabled.
+     */
+    public VirtualThreadTaskExecutor executor(String prefix) {
+        return new VirtualThreadTaskExecutor(prefix);
+    }
+}
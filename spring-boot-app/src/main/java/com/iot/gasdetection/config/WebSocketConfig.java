@@ -1,22 +1,105 @@
 package com.iot.gasdetection.config;
 
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.HandshakeFailureException;
+import org.springframework.web.socket.server.RequestUpgradeStrategy;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
 import com.iot.gasdetection.websocket.SensorWebSocketHandler;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
 import lombok.RequiredArgsConstructor;
 
+import java.security.Principal;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+
 @Configuration
 @EnableWebSocket
 @RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketConfigurer {
 
+    private static final String EXTENSIONS_HEADER = "Sec-WebSocket-Extensions";
+
     private final SensorWebSocketHandler sensorWebSocketHandler;
+    private final WebSocketProperties webSocketProperties;
 
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
-        registry.addHandler(sensorWebSocketHandler, "/ws")
+        var registration = registry.addHandler(sensorWebSocketHandler, "/ws")
                 .setAllowedOrigins("*");
+        if (!webSocketProperties.getCompression().isEnabled()) {
+            // Wrap the container's own upgrade strategy, as picked by a default handshake handler
+            RequestUpgradeStrategy container = new DefaultHandshakeHandler().getRequestUpgradeStrategy();
+            registration.setHandshakeHandler(new DefaultHandshakeHandler(new WithoutCompression(container)));
+        }
+    }
+
+    /**
+     * Tomcat negotiates permessage-deflate, its only extension, from the request headers itself rather than from
+     * the extensions Spring selects, so with compression off the header is hidden from it.
+     */
+    private static final class WithoutCompression implements RequestUpgradeStrategy {
+
+        private final RequestUpgradeStrategy delegate;
+
+        WithoutCompression(RequestUpgradeStrategy delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String[] getSupportedVersions() {
+            return delegate.getSupportedVersions();
+        }
+
+        @Override
+        public List<WebSocketExtension> getSupportedExtensions(ServerHttpRequest request) {
+            return delegate.getSupportedExtensions(request).stream()
+                    .filter(extension -> !SensorWebSocketHandler.PERMESSAGE_DEFLATE.equals(extension.getName()))
+                    .toList();
+        }
+
+        @Override
+        public void upgrade(ServerHttpRequest request, ServerHttpResponse response, String selectedProtocol,
+                            List<WebSocketExtension> selectedExtensions, Principal user, WebSocketHandler wsHandler,
+                            Map<String, Object> attributes) throws HandshakeFailureException {
+            if (request instanceof ServletServerHttpRequest servletRequest) {
+                request = new ServletServerHttpRequest(new WithoutExtensions(servletRequest.getServletRequest()));
+            }
+            delegate.upgrade(request, response, selectedProtocol, selectedExtensions, user, wsHandler, attributes);
+        }
+    }
+
+    private static final class WithoutExtensions extends HttpServletRequestWrapper {
+
+        WithoutExtensions(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return EXTENSIONS_HEADER.equalsIgnoreCase(name) ? null : super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            return EXTENSIONS_HEADER.equalsIgnoreCase(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaderNames() {
+            return Collections.enumeration(Collections.list(super.getHeaderNames()).stream()
+                    .filter(name -> !EXTENSIONS_HEADER.equalsIgnoreCase(name))
+                    .toList());
+        }
     }
 }
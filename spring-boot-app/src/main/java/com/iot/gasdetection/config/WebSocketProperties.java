@@ -0,0 +1,85 @@
+package com.iot.gasdetection.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "websocket")
+public class WebSocketProperties {
+
+    private Coalesce coalesce = new Coalesce();
+    private Outbound outbound = new Outbound();
+    private Compression compression = new Compression();
+    private Batch batch = new Batch();
+
+    // Offer the gas.cbor subprotocol (binary frames) besides gas.json; clients without a subprotocol get JSON
+    private boolean binaryEnabled = true;
+
+    @Data
+    public static class Coalesce {
+
+        private boolean enabled = true;
+
+        // Maximum time a dirty device waits before it is flushed
+        private long windowMs = 250;
+
+        // Flush earlier once a device has been quiet for this long
+        private long quietMs = 50;
+
+        private CoalesceMode mode = CoalesceMode.SNAPSHOT;
+    }
+
+    @Data
+    public static class Outbound {
+
+        // Pending data frames per session before the overflow policy applies
+        private int queueCapacity = 256;
+
+        // Notifications are never dropped; a session this far behind is closed instead
+        private int notificationLimit = 1024;
+
+        // Shared pool draining the session queues, one drain task per session at a time; unused on virtual threads
+        private int senderThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+        private OverflowPolicy overflow = OverflowPolicy.DROP_OLDEST;
+
+        // gas.websocket.session.* meters tagged with the session ID, besides the totals over all sessions
+        private boolean perSessionMetrics = true;
+    }
+
+    @Data
+    public static class Compression {
+
+        // Accept permessage-deflate when the client offers it (browsers always do)
+        private boolean enabled = true;
+
+        // Estimate the ratio by deflating every Nth frame of a compressed session a second time; 0 turns it off
+        private int sampleEvery = 16;
+    }
+
+    @Data
+    public static class Batch {
+
+        // Sessions connecting with ?batch=true get their pending data frames packed into one batch frame
+        private boolean enabled = true;
+
+        // Most data frames per batch frame
+        private int maxFrames = 64;
+    }
+
+    public enum OverflowPolicy {
+        DROP_OLDEST,
+        DROP_NEWEST,
+        // Close sessions that cannot keep up
+        CLOSE
+    }
+
+    public enum CoalesceMode {
+        // Full SensorData for the device
+        SNAPSHOT,
+        // Only the fields changed since the previous frame
+        DELTA
+    }
+}
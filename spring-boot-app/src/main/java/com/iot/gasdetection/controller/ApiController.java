@@ -1,16 +1,44 @@
 package com.iot.gasdetection.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.gasdetection.alertlog.AlertLog;
+import com.iot.gasdetection.alertlog.AlertQuery;
+import com.iot.gasdetection.cluster.ClusterBus;
+import com.iot.gasdetection.cluster.ClusterMembership;
+import com.iot.gasdetection.command.BulkOperation;
+import com.iot.gasdetection.command.BulkProgressStreamer;
+import com.iot.gasdetection.command.Command;
+import com.iot.gasdetection.command.CommandService;
+import com.iot.gasdetection.config.CommandProperties;
+import com.iot.gasdetection.device.DeviceRegistry;
+import com.iot.gasdetection.device.DeviceState;
+import com.iot.gasdetection.device.EncodedSnapshot;
+import com.iot.gasdetection.device.SnapshotEncoder;
+import com.iot.gasdetection.ingest.IngestPipeline;
 import com.iot.gasdetection.model.*;
 import com.iot.gasdetection.service.MqttService;
 import com.iot.gasdetection.service.WebSocketService;
 import com.iot.gasdetection.service.FcmService;
+import com.iot.gasdetection.timeseries.HistoryService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Slf4j
 @RestController
@@ -22,34 +50,148 @@ public class ApiController {
     private final MqttService mqttService;
     private final WebSocketService webSocketService;
     private final FcmService fcmService;
+    private final DeviceRegistry deviceRegistry;
+    private final SnapshotEncoder snapshotEncoder;
+    private final ObjectMapper objectMapper;
+    private final HistoryService historyService;
+    private final AlertLog alertLog;
+    private final IngestPipeline ingestPipeline;
+    private final ClusterBus clusterBus;
+    private final ClusterMembership clusterMembership;
+    private final CommandService commandService;
+    private final CommandProperties commandProperties;
+    private final BulkProgressStreamer bulkProgressStreamer;
 
-    // Get current sensor data
-    @GetMapping("/data")
-    public ApiResponse<SensorData> getData() {
-        return ApiResponse.success(mqttService.getSensorData());
+    private static final int MAX_HISTORY_POINTS = 10_000;
+    private static final int MAX_NOTIFICATION_PAGE = 1_000;
+    private static final MediaType NDJSON = new MediaType("application", "x-ndjson", StandardCharsets.UTF_8);
+
+    // Get current sensor data (default device when no device is given), served from the encoded snapshot cache
+    @GetMapping(value = "/data", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getData(@RequestParam(required = false) String device) throws IOException {
+        String deviceId = device == null || device.isEmpty() ? deviceRegistry.getDefaultDeviceId() : device;
+        DeviceState state = deviceRegistry.get(deviceId);
+        byte[] body = state != null
+                ? snapshotEncoder.apiResponse(snapshotEncoder.snapshot(state, mqttService.isConnected()))
+                : objectMapper.writeValueAsBytes(ApiResponse.success(mqttService.getSensorData(deviceId)));
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    // Get current sensor data of a group, or of every known device when no group is given
+    @GetMapping(value = "/devices/data", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getDevicesData(@RequestParam(required = false) String group) {
+        Collection<DeviceState> devices = group == null || group.isEmpty()
+                ? deviceRegistry.getAll()
+                : deviceRegistry.getGroup(group);
+        boolean connected = mqttService.isConnected();
+        List<EncodedSnapshot> snapshots = new ArrayList<>(devices.size());
+        for (DeviceState state : devices) {
+            snapshots.add(snapshotEncoder.snapshot(state, connected));
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(snapshotEncoder.apiResponse(snapshots));
+    }
+
+    // List known devices and configured groups
+    @GetMapping("/devices")
+    public ApiResponse<Map<String, Object>> getDevices() {
+        List<String> ids = new ArrayList<>(deviceRegistry.size());
+        deviceRegistry.getAll().forEach(d -> ids.add(d.getDeviceId()));
+        Map<String, Object> response = new HashMap<>();
+        response.put("devices", ids);
+        response.put("groups", deviceRegistry.getGroupNames());
+        return ApiResponse.success(response);
+    }
+
+    // Rolling statistics (EWMA, rate of change, 1/5/15 min min/max, percentiles) of one device, default device when none is given
+    @GetMapping(value = "/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getStats(@RequestParam(required = false) String device) {
+        String deviceId = device == null || device.isEmpty() ? deviceRegistry.getDefaultDeviceId() : device;
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                .body(snapshotEncoder.statsResponse(List.of(deviceId), false));
+    }
+
+    // Rolling statistics of a group, or of every known device when no group is given
+    @GetMapping(value = "/devices/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getDevicesStats(@RequestParam(required = false) String group) {
+        Collection<DeviceState> devices = group == null || group.isEmpty()
+                ? deviceRegistry.getAll()
+                : deviceRegistry.getGroup(group);
+        List<String> ids = new ArrayList<>(devices.size());
+        devices.forEach(d -> ids.add(d.getDeviceId()));
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                .body(snapshotEncoder.statsResponse(ids, true));
+    }
+
+    // Sensor history for charts: at most maxPoints min/max/avg points, streamed from the best rollup tier
+    @GetMapping(value = "/history", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getHistory(
+            @RequestParam(required = false) String device,
+            @RequestParam(defaultValue = "mq2") String field,
+            @RequestParam(required = false) Long from,
+            @RequestParam(required = false) Long to,
+            @RequestParam(defaultValue = "1000") int maxPoints) throws IOException {
+        String deviceId = device == null || device.isEmpty() ? deviceRegistry.getDefaultDeviceId() : device;
+        SensorField sensorField = SensorField.fromJsonName(field);
+        long end = to != null ? to : System.currentTimeMillis();
+        long start = from != null ? from : end - 24 * 3600_000L;
+
+        String error = null;
+        if (sensorField == null || !historyService.isAvailable(sensorField)) {
+            error = "No history recorded for field " + field;
+        } else if (start >= end) {
+            error = "from must be before to";
+        } else if (maxPoints < 2 || maxPoints > MAX_HISTORY_POINTS) {
+            error = "maxPoints must be between 2 and " + MAX_HISTORY_POINTS;
+        }
+        if (error != null) {
+            byte[] body = objectMapper.writeValueAsBytes(ApiResponse.error(error));
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(out -> out.write(body));
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                .body(out -> historyService.write(deviceId, sensorField, start, end, maxPoints, out));
     }
 
-    // Get notifications history
+    // Get notifications history, newest first. Pages: pass the smallest seq of the previous page as 'before';
+    // pollers: pass the highest seq seen as 'since'. Filters and paging beyond the in-memory tail need the alert log.
     @GetMapping("/notifications")
     public ApiResponse<List<Notification>> getNotifications(
-            @RequestParam(defaultValue = "50") int limit) {
-        List<Notification> notifications = mqttService.getNotifications();
-        int endIndex = Math.min(limit, notifications.size());
-        return ApiResponse.success(notifications.subList(0, endIndex));
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(required = false) Long since,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) String device,
+            @RequestParam(required = false) String level,
+            @RequestParam(required = false) Long from,
+            @RequestParam(required = false) Long to) {
+        int max = Math.max(0, Math.min(limit, MAX_NOTIFICATION_PAGE));
+        if (alertLog.isEnabled()) {
+            AlertQuery query = new AlertQuery();
+            query.setSince(since);
+            query.setBefore(before);
+            query.setDeviceId(device);
+            query.setLevel(level);
+            query.setFrom(from);
+            query.setTo(to);
+            query.setLimit(max);
+            return ApiResponse.success(alertLog.query(query));
+        }
+        if (before != null || device != null || level != null || from != null || to != null) {
+            return ApiResponse.error("Filtering and paging require alert-log.enabled=true");
+        }
+        return ApiResponse.success(since != null
+                ? mqttService.getNotificationsSince(since, max)
+                : mqttService.getNotifications(max));
     }
 
     // Control Relay 1 (Quạt hút)
     @PostMapping("/control/relay1")
-    public ApiResponse<Map<String, Boolean>> controlRelay1(@RequestBody Map<String, Boolean> request) {
+    public ApiResponse<Map<String, Object>> controlRelay1(@RequestBody Map<String, Boolean> request,
+                                                          @RequestParam(required = false) String device) {
         try {
             Boolean state = request.get("state");
-            String value = state ? "1" : "0";
-            mqttService.publish("gas/control/relay1", value);
+            ApiResponse<Map<String, Object>> response = sendCommand(device, SensorField.RELAY1, state ? 1 : 0,
+                    "state", state);
             log.info("🎛️ Relay 1 set to {}", state ? "ON" : "OFF");
-
-            Map<String, Boolean> response = new HashMap<>();
-            response.put("state", state);
-            return ApiResponse.success(response);
+            return response;
         } catch (Exception e) {
             log.error("Error controlling relay1", e);
             return ApiResponse.error(e.getMessage());
@@ -58,16 +200,14 @@ public class ApiController {
 
     // Control Relay 2 (Máy bơm)
     @PostMapping("/control/relay2")
-    public ApiResponse<Map<String, Boolean>> controlRelay2(@RequestBody Map<String, Boolean> request) {
+    public ApiResponse<Map<String, Object>> controlRelay2(@RequestBody Map<String, Boolean> request,
+                                                          @RequestParam(required = false) String device) {
         try {
             Boolean state = request.get("state");
-            String value = state ? "1" : "0";
-            mqttService.publish("gas/control/rela                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                                 y2", value);
+            ApiResponse<Map<String, Object>> response = sendCommand(device, SensorField.RELAY2, state ? 1 : 0,
+                    "state", state);
             log.info("🎛️ Relay 2 set to {}", state ? "ON" : "OFF");
-
-            Map<String, Boolean> response = new HashMap<>();
-            response.put("state", state);
-            return ApiResponse.success(response);
+            return response;
         } catch (Exception e) {
             log.error("Error controlling relay2", e);
             return ApiResponse.error(e.getMessage());
@@ -76,16 +216,14 @@ public class ApiController {
 
     // Control Window (Cửa sổ)
     @PostMapping("/control/window")
-    public ApiResponse<Map<String, Boolean>> controlWindow(@RequestBody Map<String, Boolean> request) {
+    public ApiResponse<Map<String, Object>> controlWindow(@RequestBody Map<String, Boolean> request,
+                                                          @RequestParam(required = false) String device) {
         try {
             Boolean state = request.get("state");
-            String value = state ? "1" : "0";
-            mqttService.publish("gas/control/window", value);
+            ApiResponse<Map<String, Object>> response = sendCommand(device, SensorField.WINDOW, state ? 1 : 0,
+                    "state", state);
             log.info("🪟 Window set to {}", state ? "OPEN" : "CLOSED");
-
-            Map<String, Boolean> response = new HashMap<>();
-            response.put("state", state);
-            return ApiResponse.success(response);
+            return response;
         } catch (Exception e) {
             log.error("Error controlling window", e);
             return ApiResponse.error(e.getMessage());
@@ -94,16 +232,14 @@ public class ApiController {
 
     // Control Buzzer (Còi báo động)
     @PostMapping("/control/buzzer")
-    public ApiResponse<Map<String, Boolean>> controlBuzzer(@RequestBody Map<String, Boolean> request) {
+    public ApiResponse<Map<String, Object>> controlBuzzer(@RequestBody Map<String, Boolean> request,
+                                                          @RequestParam(required = false) String device) {
         try {
             Boolean state = request.get("state");
-            String value = state ? "1" : "0";
-            mqttService.publish("gas/control/buzzer", value);
+            ApiResponse<Map<String, Object>> response = sendCommand(device, SensorField.BUZZER, state ? 1 : 0,
+                    "state", state);
             log.info("🔊 Buzzer set to {}", state ? "ON" : "OFF");
-
-            Map<String, Boolean> response = new HashMap<>();
-            response.put("state", state);
-            return ApiResponse.success(response);
+            return response;
         } catch (Exception e) {
             log.error("Error controlling buzzer", e);
             return ApiResponse.error(e.getMessage());
@@ -112,16 +248,14 @@ public class ApiController {
 
     // Change Mode (AUTO/MANUAL)
     @PostMapping("/control/mode")
-    public ApiResponse<Map<String, String>> changeMode(@RequestBody Map<String, String> request) {
+    public ApiResponse<Map<String, Object>> changeMode(@RequestBody Map<String, String> request,
+                                                       @RequestParam(required = false) String device) {
         try {
             String mode = request.get("mode");
-            String value = "AUTO".equals(mode) ? "1" : "0";
-            mqttService.publish("gas/control/mode", value);
+            ApiResponse<Map<String, Object>> response = sendCommand(device, SensorField.MODE,
+                    "AUTO".equals(mode) ? 1 : 0, "mode", mode);
             log.info("🔧 Mode set to {}", mode);
-
-            Map<String, String> response = new HashMap<>();
-            response.put("mode", mode);
-            return ApiResponse.success(response);
+            return response;
         } catch (Exception e) {
             log.error("Error changing mode", e);
             return ApiResponse.error(e.getMessage());
@@ -130,7 +264,8 @@ public class ApiController {
 
     // Set Threshold
     @PostMapping("/control/threshold")
-    public ApiResponse<Map<String, Integer>> setThreshold(@RequestBody Map<String, Integer> request) {
+    public ApiResponse<Map<String, Object>> setThreshold(@RequestBody Map<String, Integer> request,
+                                                         @RequestParam(required = false) String device) {
         try {
             Integer threshold = request.get("threshold");
 
@@ -138,29 +273,165 @@ public class ApiController {
                 return ApiResponse.error("Threshold must be between 200 and 9999");
             }
 
-            mqttService.publish("gas/control/threshold", threshold.toString());
+            ApiResponse<Map<String, Object>> response = sendCommand(device, SensorField.THRESHOLD, threshold,
+                    "threshold", threshold);
             log.info("📊 Threshold set to {}", threshold);
-
-            Map<String, Integer> response = new HashMap<>();
-            response.put("threshold", threshold);
-            return ApiResponse.success(response);
+            return response;
         } catch (Exception e) {
             log.error("Error setting threshold", e);
             return ApiResponse.error(e.getMessage());
         }
     }
 
+    /**
+     * Điều khiển hàng loạt: chọn thiết bị theo ID, nhóm (devices.groups.*) hoặc tất cả, gửi danh sách lệnh
+     * rồi theo dõi tiến độ từng thiết bị trên cùng kết nối (NDJSON, hoặc SSE nếu Accept: text/event-stream).
+     * POST /api/control/bulk
+     * {"groups": ["building-a"], "actions": [{"action": "relay2", "value": true},
+     *                                       {"action": "window", "value": true}]}
+     */
+    @PostMapping("/control/bulk")
+    public ResponseEntity<ResponseBodyEmitter> controlBulk(@RequestBody BulkControlRequest request,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) throws IOException {
+        Set<String> deviceIds = new LinkedHashSet<>();
+        if (request.getDevices() != null) {
+            deviceIds.addAll(request.getDevices());
+        }
+        if (request.getGroups() != null) {
+            for (String group : request.getGroups()) {
+                if (!deviceRegistry.getGroupNames().contains(group)) {
+                    return bulkError("Unknown group " + group);
+                }
+                deviceIds.addAll(deviceRegistry.getGroupMemberIds(group));
+            }
+        }
+        if (request.isAll()) {
+            for (DeviceState device : deviceRegistry.getAll()) {
+                deviceIds.add(device.getDeviceId());
+            }
+            for (String group : deviceRegistry.getGroupNames()) {
+                deviceIds.addAll(deviceRegistry.getGroupMemberIds(group));
+            }
+        }
+        deviceIds.remove("");
+        if (deviceIds.isEmpty()) {
+            return bulkError("No devices selected");
+        }
+        if (deviceIds.size() > commandProperties.getMaxBulkDevices()) {
+            return bulkError("At most " + commandProperties.getMaxBulkDevices()
+                    + " devices per bulk command");
+        }
+
+        List<BulkControlRequest.Action> actions = request.getActions() != null ? request.getActions() : List.of();
+        if (actions.isEmpty()) {
+            return bulkError("No actions given");
+        }
+        SensorField[] fields = new SensorField[actions.size()];
+        int[] values = new int[actions.size()];
+        for (int i = 0; i < actions.size(); i++) {
+            BulkControlRequest.Action action = actions.get(i);
+            fields[i] = SensorField.fromJsonName(action.getAction());
+            Integer value = fields[i] != null ? commandValue(fields[i], action.getValue()) : null;
+            if (value == null) {
+                return bulkError("Invalid action " + action.getAction() + "="
+                        + action.getValue());
+            }
+            values[i] = value;
+        }
+
+        BulkOperation bulk = commandService.submitBulk(deviceIds, fields, values);
+        boolean sse = accept != null && accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE);
+        return ResponseEntity.ok()
+                .contentType(sse ? new MediaType(MediaType.TEXT_EVENT_STREAM, StandardCharsets.UTF_8) : NDJSON)
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                .body(bulkProgressStreamer.stream(bulk, sse));
+    }
+
+    private static ResponseEntity<ResponseBodyEmitter> bulkError(String error) throws IOException {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+        emitter.send(ApiResponse.error(error), MediaType.APPLICATION_JSON);
+        emitter.complete();
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(emitter);
+    }
+
+    // Giá trị lệnh như các endpoint /control/*; null nếu không hợp lệ
+    private static Integer commandValue(SensorField field, Object value) {
+        switch (field) {
+            case RELAY1:
+            case RELAY2:
+            case WINDOW:
+            case BUZZER:
+                return value instanceof Boolean ? ((Boolean) value ? 1 : 0) : null;
+            case MODE:
+                return "AUTO".equals(value) ? 1 : "MANUAL".equals(value) ? 0 : null;
+            case THRESHOLD:
+                return value instanceof Integer && (Integer) value >= 200 && (Integer) value <= 9999
+                        ? (Integer) value : null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Đưa lệnh vào hàng đợi và trả về commandId; kết quả lấy qua GET /api/commands/{id}
+     * hoặc tin nhắn WebSocket "command" của thiết bị.
+     */
+    private ApiResponse<Map<String, Object>> sendCommand(String device, SensorField field, int value,
+                                                         String key, Object requested) {
+        String deviceId = device == null || device.isEmpty() ? deviceRegistry.getDefaultDeviceId() : device;
+        Command command = commandService.submit(deviceId, field, value);
+        if (command == null) {
+            return ApiResponse.error("Command queue full");
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put(key, requested);
+        response.put("deviceId", deviceId);
+        response.put("commandId", command.getId());
+        response.put("status", command.getStatus());
+        return ApiResponse.success(response);
+    }
+
+    /**
+     * Trạng thái lệnh điều khiển (QUEUED, SENT, CONFIRMED, SUPERSEDED, TIMED_OUT, EXPIRED)
+     * GET /api/commands/42
+     */
+    @GetMapping("/commands/{id}")
+    public ApiResponse<Command> getCommand(@PathVariable long id) {
+        Command command = commandService.get(id);
+        return command != null ? ApiResponse.success(command) : ApiResponse.error("Unknown command " + id);
+    }
+
     // Health check
     @GetMapping("/health")
     public ApiResponse<Map<String, Object>> health() {
         Map<String, Object> health = new HashMap<>();
-        health.put("mqtt", mqttService.getSensorData().isConnected());
+        health.put("mqtt", mqttService.isConnected());
+        health.put("devices", deviceRegistry.size());
         health.put("websocket", webSocketService.getActiveConnections());
         health.put("uptime", java.lang.management.ManagementFactory.getRuntimeMXBean().getUptime() / 1000);
         health.put("fcm_registered_devices", fcmService.getRegisteredTokens().size());
+        health.put("ingest", ingestPipeline.getStats());
+        Map<String, Object> cluster = new LinkedHashMap<>(clusterBus.getStats());
+        cluster.putAll(clusterMembership.getStats());
+        health.put("cluster", cluster);
+        health.put("commands", commandService.getStats());
         return ApiResponse.success(health);
     }
 
+    /**
+     * Node sở hữu thiết bị (rule, thống kê, lịch sử chạy trên node này)
+     * GET /api/cluster/owner?device=esp-01
+     */
+    @GetMapping("/cluster/owner")
+    public ApiResponse<Map<String, Object>> clusterOwner(@RequestParam String device) {
+        Map<String, Object> owner = new LinkedHashMap<>();
+        owner.put("deviceId", device);
+        owner.put("owner", clusterMembership.ownerOf(device));
+        owner.put("node", clusterBus.getNodeId());
+        owner.put("members", clusterMembership.getMembers());
+        return ApiResponse.success(owner);
+    }
+
     // ==================== FCM Endpoints ====================
 
     /**
@@ -0,0 +1,246 @@
+package com.iot.gasdetection.device;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.iot.gasdetection.model.SensorField;
+import com.iot.gasdetection.model.WebSocketMessage;
+import com.iot.gasdetection.stats.StatsService;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Encodes WebSocket frames as CBOR for sessions that negotiated the binary subprotocol.
+ * <p>
+ * Every frame is a map with integer keys: {@link #FRAME_TYPE} holds the same type string as the JSON frame,
+ * the other frame tags replace its field names. Device state is a map keyed by {@link SensorField} ordinal
+ * with raw values (flags and mode 0/1), plus {@link #STATE_DEVICE_ID}, {@link #STATE_LAST_UPDATE} in epoch
+ * milliseconds and {@link #STATE_CONNECTED}. Tags below 24 take one byte each. Other messages (notifications,
+ * commands) keep their field names under {@link #FRAME_DATA}, with {@code LocalDateTime} as epoch milliseconds.
+ */
+@Component
+public class CborFrameEncoder {
+
+    public static final int FRAME_TYPE = 0;
+    public static final int FRAME_DATA = 1;
+    public static final int FRAME_DEVICE_ID = 2;
+    public static final int FRAME_VERSION = 3;
+    public static final int FRAME_BASE = 4;
+    public static final int FRAME_DEVICES = 5;
+    public static final int FRAME_STATS = 6;
+    public static final int FRAME_FRAMES = 7;
+
+    // Sensor fields use their ordinals, so these start after room for new fields
+    public static final int STATE_DEVICE_ID = 16;
+    public static final int STATE_LAST_UPDATE = 17;
+    public static final int STATE_CONNECTED = 18;
+
+    // Map of two entries, key 0 = text "batch", key 7; the array of frames follows
+    private static final byte[] BATCH_HEADER = {
+            (byte) 0xa2, FRAME_TYPE, 0x65, 'b', 'a', 't', 'c', 'h', FRAME_FRAMES};
+
+    private final ObjectMapper cborMapper;
+    private final StatsService statsService;
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    public CborFrameEncoder(StatsService statsService) {
+        this.cborMapper = Jackson2ObjectMapperBuilder.cbor()
+                .serializerByType(LocalDateTime.class, new EpochMillisSerializer())
+                .featuresToDisable(SerializationFeature.WRITE_DATE_TIMESTAMPS_AS_NANOSECONDS)
+                .build();
+        this.statsService = statsService;
+    }
+
+    /**
+     * Protocol v1 data frame holding the fields in {@code fieldMask}: {@code {0:"data",1:{16:id,..}}}.
+     */
+    public byte[] dataFrame(DeviceState device, int fieldMask, boolean connected) {
+        Scratch s = scratch.get();
+        device.readInto(s.view);
+        s.buffer.reset();
+        try (JsonGenerator gen = cborMapper.getFactory().createGenerator(s.buffer)) {
+            gen.writeStartObject();
+            writeType(gen, "data");
+            gen.writeFieldId(FRAME_DATA);
+            writeState(gen, device.getDeviceId(), s.view, fieldMask, connected);
+            gen.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return s.buffer.toByteArray();
+    }
+
+    /**
+     * Protocol v2 delta frame: {@code {0:"delta",2:id,3:version,4:base,1:{..}}}.
+     */
+    public byte[] deltaFrameV2(String deviceId, DeviceState.StateView view, int fieldMask, long base,
+                               boolean connected) {
+        ByteArrayBuilder buffer = scratch.get().buffer;
+        buffer.reset();
+        try (JsonGenerator gen = cborMapper.getFactory().createGenerator(buffer)) {
+            gen.writeStartObject();
+            writeType(gen, "delta");
+            gen.writeFieldId(FRAME_DEVICE_ID);
+            gen.writeString(deviceId);
+            gen.writeFieldId(FRAME_VERSION);
+            gen.writeNumber(view.getVersion());
+            gen.writeFieldId(FRAME_BASE);
+            gen.writeNumber(base);
+            gen.writeFieldId(FRAME_DATA);
+            writeState(gen, null, view, fieldMask, connected);
+            gen.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Protocol v2 snapshot frame: {@code {0:"snapshot",5:[{2:id,3:version,1:{..},6:{"mq2":{..}}}, ..]}}.
+     * Rolling statistics keep their field names.
+     */
+    public byte[] snapshotFrameV2(Collection<DeviceState> devices, int fieldMask, boolean connected) {
+        Scratch s = scratch.get();
+        s.buffer.reset();
+        long now = System.currentTimeMillis();
+        try (JsonGenerator gen = cborMapper.getFactory().createGenerator(s.buffer)) {
+            gen.writeStartObject();
+            writeType(gen, "snapshot");
+            gen.writeFieldId(FRAME_DEVICES);
+            gen.writeStartArray();
+            for (DeviceState device : devices) {
+                device.readInto(s.view);
+                gen.writeStartObject();
+                gen.writeFieldId(FRAME_DEVICE_ID);
+                gen.writeString(device.getDeviceId());
+                gen.writeFieldId(FRAME_VERSION);
+                gen.writeNumber(s.view.getVersion());
+                gen.writeFieldId(FRAME_DATA);
+                writeState(gen, null, s.view, fieldMask, connected);
+                if (statsService.isEnabled()) {
+                    gen.writeFieldId(FRAME_STATS);
+                    statsService.write(gen, device.getDeviceId(), now);
+                }
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return s.buffer.toByteArray();
+    }
+
+    /**
+     * Any other message: {@code {0:type,1:data}} with the data serialized field by field.
+     */
+    public byte[] message(WebSocketMessage message) {
+        ByteArrayBuilder buffer = scratch.get().buffer;
+        buffer.reset();
+        try (JsonGenerator gen = cborMapper.getFactory().createGenerator(buffer)) {
+            gen.writeStartObject();
+            writeType(gen, message.getType());
+            gen.writeFieldId(FRAME_DATA);
+            gen.writeObject(message.getData());
+            gen.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Packs encoded frames into one: {@code {0:"batch",7:[<frame>, ..]}}. CBOR items are self-delimiting, so
+     * the frames are copied as they are behind a hand-written header.
+     */
+    public static byte[] batchFrame(List<byte[]> frames) {
+        int size = frames.size();
+        int length = BATCH_HEADER.length + (size < 24 ? 1 : size < 0x100 ? 2 : size < 0x10000 ? 3 : 5);
+        for (byte[] frame : frames) {
+            length += frame.length;
+        }
+        byte[] out = new byte[length];
+        System.arraycopy(BATCH_HEADER, 0, out, 0, BATCH_HEADER.length);
+        int pos = writeArrayHeader(out, BATCH_HEADER.length, size);
+        for (byte[] frame : frames) {
+            System.arraycopy(frame, 0, out, pos, frame.length);
+            pos += frame.length;
+        }
+        return out;
+    }
+
+    private static int writeArrayHeader(byte[] out, int pos, int size) {
+        // Major type 4 (array) with the length inline below 24, else in the 1, 2 or 4 bytes that follow
+        if (size < 24) {
+            out[pos++] = (byte) (0x80 | size);
+        } else if (size < 0x100) {
+            out[pos++] = (byte) 0x98;
+            out[pos++] = (byte) size;
+        } else if (size < 0x10000) {
+            out[pos++] = (byte) 0x99;
+            out[pos++] = (byte) (size >> 8);
+            out[pos++] = (byte) size;
+        } else {
+            out[pos++] = (byte) 0x9a;
+            out[pos++] = (byte) (size >> 24);
+            out[pos++] = (byte) (size >> 16);
+            out[pos++] = (byte) (size >> 8);
+            out[pos++] = (byte) size;
+        }
+        return pos;
+    }
+
+    private static void writeType(JsonGenerator gen, String type) throws IOException {
+        gen.writeFieldId(FRAME_TYPE);
+        gen.writeString(type);
+    }
+
+    private static void writeState(JsonGenerator gen, String deviceId, DeviceState.StateView view, int fieldMask,
+                                   boolean connected) throws IOException {
+        gen.writeStartObject();
+        if (deviceId != null) {
+            gen.writeFieldId(STATE_DEVICE_ID);
+            gen.writeString(deviceId);
+        }
+        for (SensorField field : SensorField.values()) {
+            if ((fieldMask & field.getMask()) != 0) {
+                gen.writeFieldId(field.ordinal());
+                gen.writeNumber(view.get(field));
+            }
+        }
+        gen.writeFieldId(STATE_LAST_UPDATE);
+        gen.writeNumber(view.getLastUpdate());
+        gen.writeFieldId(STATE_CONNECTED);
+        gen.writeBoolean(connected);
+        gen.writeEndObject();
+    }
+
+    private static final class EpochMillisSerializer extends StdSerializer<LocalDateTime> {
+
+        EpochMillisSerializer() {
+            super(LocalDateTime.class);
+        }
+
+        @Override
+        public void serialize(LocalDateTime value, JsonGenerator gen, SerializerProvider provider)
+                throws IOException {
+            gen.writeNumber(value.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
+    }
+
+    private static final class Scratch {
+
+        private final ByteArrayBuilder buffer = new ByteArrayBuilder(256);
+        private final DeviceState.StateView view = new DeviceState.StateView();
+    }
+}
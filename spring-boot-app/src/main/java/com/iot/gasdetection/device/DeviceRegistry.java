@@ -0,0 +1,114 @@
+package com.iot.gasdetection.device;
+
+import com.iot.gasdetection.config.DeviceProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of per-device state, keyed by the device ID taken from the MQTT topic.
+ * <p>
+ * Group membership is static (from {@link DeviceProperties}) and indexed both ways, so addressing
+ * a device or a group never scans the whole fleet.
+ */
+@Slf4j
+@Component
+public class DeviceRegistry {
+
+    private final DeviceProperties deviceProperties;
+    private final ConcurrentHashMap<String, DeviceState> devices;
+    private final Map<String, List<String>> groupMembers;
+    private final Map<String, List<String>> deviceGroups;
+
+    // Broker connection flag, reported in every snapshot
+    private volatile boolean brokerConnected = false;
+
+    public DeviceRegistry(DeviceProperties deviceProperties) {
+        this.deviceProperties = deviceProperties;
+        this.devices = new ConcurrentHashMap<>(Math.max(16, deviceProperties.getExpectedCount() * 4 / 3 + 1));
+
+        Map<String, List<String>> members = new HashMap<>();
+        Map<String, List<String>> groupsOfDevice = new HashMap<>();
+        deviceProperties.getGroups().forEach((group, ids) -> {
+            members.put(group, List.copyOf(ids));
+            for (String id : ids) {
+                groupsOfDevice.computeIfAbsent(id, k -> new ArrayList<>()).add(group);
+            }
+        });
+        this.groupMembers = Map.copyOf(members);
+        Map<String, List<String>> frozen = new HashMap<>();
+        groupsOfDevice.forEach((id, groups) -> frozen.put(id, List.copyOf(groups)));
+        this.deviceGroups = Map.copyOf(frozen);
+
+        log.info("📟 Device registry ready (expected {} devices, {} groups)",
+                deviceProperties.getExpectedCount(), groupMembers.size());
+    }
+
+    public String getDefaultDeviceId() {
+        return deviceProperties.getDefaultId();
+    }
+
+    public boolean isBrokerConnected() {
+        return brokerConnected;
+    }
+
+    public void setBrokerConnected(boolean brokerConnected) {
+        this.brokerConnected = brokerConnected;
+    }
+
+    public DeviceState getOrCreate(String deviceId) {
+        DeviceState state = devices.get(deviceId);
+        if (state != null) {
+            return state;
+        }
+        return devices.computeIfAbsent(deviceId,
+                id -> new DeviceState(id, deviceGroups.getOrDefault(id, Collections.emptyList())));
+    }
+
+    public DeviceState get(String deviceId) {
+        return devices.get(deviceId);
+    }
+
+    public List<DeviceState> getGroup(String group) {
+        List<String> ids = groupMembers.getOrDefault(group, Collections.emptyList());
+        List<DeviceState> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            DeviceState state = devices.get(id);
+            if (state != null) {
+                result.add(state);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Configured members of a group, including devices that have not reported yet.
+     */
+    public List<String> getGroupMemberIds(String group) {
+        return groupMembers.getOrDefault(group, Collections.emptyList());
+    }
+
+    public List<String> getGroupsOf(String deviceId) {
+        return deviceGroups.getOrDefault(deviceId, Collections.emptyList());
+    }
+
+    public Set<String> getGroupNames() {
+        return groupMembers.keySet();
+    }
+
+    public Collection<DeviceState> getAll() {
+        return devices.values();
+    }
+
+    public int size() {
+        return devices.size();
+    }
+}
@@ -0,0 +1,307 @@
+package com.iot.gasdetection.device;
+
+import com.iot.gasdetection.model.SensorData;
+import com.iot.gasdetection.model.SensorField;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Latest known state of one device.
+ * <p>
+ * Values are kept in a primitive array indexed by {@link SensorField#ordinal()} (booleans as 0/1,
+ * mode as 1 = AUTO). Writes come from the MQTT ingestion path, reads from REST/WebSocket threads
+ * use optimistic {@link StampedLock} reads so they never block the writer.
+ */
+public final class DeviceState {
+
+    public static final int ALARM_NONE = 0;
+    public static final int ALARM_GAS = 1;
+    public static final int ALARM_FIRE = 2;
+
+    // Flame sensor is active-low (SENSOR_FIRE_ON in the firmware)
+    public static final int FIRE_ON = 0;
+
+    // Fields whose initial value is a real default (AUTO mode, threshold 4000) rather than "not reported yet"
+    public static final int DEFAULTED_MASK = SensorField.MODE.getMask() | SensorField.THRESHOLD.getMask();
+
+    private static final int FIELD_COUNT = SensorField.values().length;
+
+    private final String deviceId;
+    private final List<String> groups;
+    private final StampedLock lock = new StampedLock();
+
+    private final int[] values = new int[FIELD_COUNT];
+    private long lastUpdate;
+    private long version;
+    private int receivedMask;
+    private int changedMask;
+    private int alarm;
+
+    // Last encoded snapshot, owned by SnapshotEncoder
+    private volatile EncodedSnapshot encoded;
+
+    // Coalescing bookkeeping, owned by SensorUpdateCoalescer
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private volatile long dirtySince;
+    private volatile long lastTouched;
+
+    DeviceState(String deviceId, List<String> groups) {
+        this.deviceId = deviceId;
+        this.groups = groups;
+        this.values[SensorField.MODE.ordinal()] = 1;
+        this.values[SensorField.THRESHOLD.ordinal()] = 4000;
+        this.lastUpdate = System.currentTimeMillis();
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public List<String> getGroups() {
+        return groups;
+    }
+
+    /**
+     * Applies one field update. The version and lastUpdate only move when a value changes (or a field
+     * is reported for the first time), so unchanged retained republishes cost nothing downstream.
+     *
+     * @return true if the state changed
+     */
+    public boolean apply(SensorField field, int value, long now) {
+        long stamp = lock.writeLock();
+        try {
+            int mask = field.getMask();
+            boolean first = (receivedMask & mask) == 0;
+            receivedMask |= mask;
+            if (!first && values[field.ordinal()] == value) {
+                return false;
+            }
+            values[field.ordinal()] = value;
+            lastUpdate = now;
+            version++;
+            changedMask |= mask;
+            alarm = computeAlarm();
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Applies the update only if the field was never reported, e.g. a retained value from the device's
+     * previous owner that must not overwrite newer local readings.
+     *
+     * @return true if the state changed
+     */
+    public boolean applyIfAbsent(SensorField field, int value, long now) {
+        long stamp = lock.readLock();
+        try {
+            if ((receivedMask & field.getMask()) != 0) {
+                return false;
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        // Only the device's ingestion worker writes, so the field cannot be reported in between
+        return apply(field, value, now);
+    }
+
+    private int computeAlarm() {
+        int level = ALARM_NONE;
+        if ((receivedMask & SensorField.MQ2.getMask()) != 0
+                && values[SensorField.MQ2.ordinal()] > values[SensorField.THRESHOLD.ordinal()]) {
+            level |= ALARM_GAS;
+        }
+        if ((receivedMask & SensorField.FIRE.getMask()) != 0 && values[SensorField.FIRE.ordinal()] == FIRE_ON) {
+            level |= ALARM_FIRE;
+        }
+        return level;
+    }
+
+    /**
+     * Current alarm bits ({@link #ALARM_GAS}, {@link #ALARM_FIRE}) derived from the latest readings.
+     */
+    public int getAlarm() {
+        long stamp = lock.tryOptimisticRead();
+        int current = alarm;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                current = alarm;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Returns the fields changed since the previous call and resets the mask.
+     */
+    public int drainChangedMask() {
+        long stamp = lock.writeLock();
+        try {
+            int mask = changedMask;
+            changedMask = 0;
+            return mask;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Records an update for the coalescer.
+     *
+     * @return true if the device was clean and has just become dirty
+     */
+    public boolean markDirty(long now) {
+        lastTouched = now;
+        if (dirty.compareAndSet(false, true)) {
+            dirtySince = now;
+            return true;
+        }
+        return false;
+    }
+
+    public void clearDirty() {
+        dirty.set(false);
+    }
+
+    EncodedSnapshot getEncoded() {
+        return encoded;
+    }
+
+    void setEncoded(EncodedSnapshot encoded) {
+        this.encoded = encoded;
+    }
+
+    public long getDirtySince() {
+        return dirtySince;
+    }
+
+    public long getLastTouched() {
+        return lastTouched;
+    }
+
+    public int get(SensorField field) {
+        long stamp = lock.tryOptimisticRead();
+        int value = values[field.ordinal()];
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                value = values[field.ordinal()];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * False while the field still holds its default because the device never reported it.
+     */
+    public boolean hasReceived(SensorField field) {
+        long stamp = lock.tryOptimisticRead();
+        int mask = receivedMask;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                mask = receivedMask;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return (mask & field.getMask()) != 0;
+    }
+
+    public long getVersion() {
+        long stamp = lock.tryOptimisticRead();
+        long current = version;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                current = version;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Copies a consistent view of the state into {@code view} without blocking the writer.
+     */
+    public void readInto(StateView view) {
+        long stamp = lock.tryOptimisticRead();
+        copyTo(view);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                copyTo(view);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    private void copyTo(StateView view) {
+        System.arraycopy(values, 0, view.values, 0, FIELD_COUNT);
+        view.lastUpdate = lastUpdate;
+        view.version = version;
+        view.receivedMask = receivedMask;
+    }
+
+    public SensorData toSensorData(boolean connected) {
+        StateView view = new StateView();
+        readInto(view);
+
+        SensorData data = new SensorData();
+        data.setDeviceId(deviceId);
+        data.setMq2(view.get(SensorField.MQ2));
+        data.setFire(view.get(SensorField.FIRE));
+        data.setRelay1(view.get(SensorField.RELAY1) != 0);
+        data.setRelay2(view.get(SensorField.RELAY2) != 0);
+        data.setWindow(view.get(SensorField.WINDOW) != 0);
+        data.setBuzzer(view.get(SensorField.BUZZER) != 0);
+        data.setMode(view.get(SensorField.MODE) != 0 ? "AUTO" : "MANUAL");
+        data.setThreshold(view.get(SensorField.THRESHOLD));
+        data.setLastUpdate(LocalDateTime.ofInstant(Instant.ofEpochMilli(view.lastUpdate), ZoneId.systemDefault()));
+        data.setConnected(connected);
+        return data;
+    }
+
+    /**
+     * Reusable, mutable copy of a device state. Not thread-safe; keep one per thread.
+     */
+    public static final class StateView {
+
+        private final int[] values = new int[FIELD_COUNT];
+        private long lastUpdate;
+        private long version;
+        private int receivedMask;
+
+        public int get(SensorField field) {
+            return values[field.ordinal()];
+        }
+
+        /**
+         * Fields reported by the device at least once; the others still hold defaults.
+         */
+        public int getReceivedMask() {
+            return receivedMask;
+        }
+
+        public long getLastUpdate() {
+            return lastUpdate;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+    }
+}
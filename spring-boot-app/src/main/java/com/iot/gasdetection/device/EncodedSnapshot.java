@@ -0,0 +1,41 @@
+package com.iot.gasdetection.device;
+
+/**
+ * Immutable JSON encoding of one device state version, shared by every WebSocket session and REST reader.
+ */
+public final class EncodedSnapshot {
+
+    private final long version;
+    private final boolean connected;
+    private final byte[] json;
+    private final byte[] frame;
+
+    EncodedSnapshot(long version, boolean connected, byte[] json, byte[] frame) {
+        this.version = version;
+        this.connected = connected;
+        this.json = json;
+        this.frame = frame;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * The SensorData object alone. Callers must not modify the returned array.
+     */
+    public byte[] getJson() {
+        return json;
+    }
+
+    /**
+     * The WebSocket frame {@code {"type":"data","data":<json>}}. Callers must not modify the returned array.
+     */
+    public byte[] getFrame() {
+        return frame;
+    }
+}
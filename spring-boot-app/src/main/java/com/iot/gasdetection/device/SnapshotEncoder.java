@@ -0,0 +1,274 @@
+package com.iot.gasdetection.device;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.gasdetection.model.SensorField;
+import com.iot.gasdetection.stats.StatsService;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Encodes device state straight from {@link DeviceState} to UTF-8 JSON bytes with the Jackson streaming API.
+ * <p>
+ * Snapshots are cached on the device per (version, connected) pair, so an unchanged device is never
+ * re-encoded. Encoding goes through a per-thread reusable buffer; the output layout matches
+ * {@link com.iot.gasdetection.model.SensorData} as serialized by the application ObjectMapper.
+ * <p>
+ * Rolling statistics change with every reading and are therefore never cached; they are only written into
+ * v2 snapshot frames and {@code /api/stats} responses.
+ */
+@Component
+public class SnapshotEncoder {
+
+    private static final byte[] FRAME_PREFIX = bytes("{\"type\":\"data\",\"data\":");
+    private static final byte[] FRAME_SUFFIX = bytes("}");
+    private static final byte[] API_PREFIX = bytes("{\"success\":true,\"data\":");
+    private static final byte[] API_SUFFIX = bytes(",\"error\":null}");
+    private static final byte[] BATCH_PREFIX = bytes("{\"type\":\"batch\",\"frames\":[");
+    private static final byte[] BATCH_SUFFIX = bytes("]}");
+
+    private final JsonFactory jsonFactory;
+    private final StatsService statsService;
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    public SnapshotEncoder(ObjectMapper objectMapper, StatsService statsService) {
+        this.jsonFactory = objectMapper.getFactory();
+        this.statsService = statsService;
+    }
+
+    /**
+     * Returns the cached snapshot of the device, encoding it only if its version changed.
+     */
+    public EncodedSnapshot snapshot(DeviceState device, boolean connected) {
+        EncodedSnapshot cached = device.getEncoded();
+        if (cached != null && cached.getVersion() == device.getVersion() && cached.isConnected() == connected) {
+            return cached;
+        }
+
+        Scratch s = scratch.get();
+        device.readInto(s.view);
+        byte[] json = encode(device.getDeviceId(), s.view, SensorField.ALL_MASK, connected, s.buffer);
+        EncodedSnapshot encoded = new EncodedSnapshot(s.view.getVersion(), connected, json,
+                concat(FRAME_PREFIX, json, FRAME_SUFFIX));
+
+        // Concurrent encoders may race; never replace a newer version with an older one
+        EncodedSnapshot current = device.getEncoded();
+        if (current == null || current.getVersion() <= encoded.getVersion()) {
+            device.setEncoded(encoded);
+        }
+        return encoded;
+    }
+
+    /**
+     * Encodes a data frame holding only the fields in {@code fieldMask}.
+     */
+    public byte[] deltaFrame(DeviceState device, int fieldMask, boolean connected) {
+        Scratch s = scratch.get();
+        device.readInto(s.view);
+        return concat(FRAME_PREFIX, encode(device.getDeviceId(), s.view, fieldMask, connected, s.buffer), FRAME_SUFFIX);
+    }
+
+    /**
+     * Wraps an encoded snapshot in the REST {@code ApiResponse} envelope.
+     */
+    public byte[] apiResponse(EncodedSnapshot snapshot) {
+        return concat(API_PREFIX, snapshot.getJson(), API_SUFFIX);
+    }
+
+    /**
+     * Wraps several encoded snapshots as a JSON array in the REST {@code ApiResponse} envelope.
+     */
+    public byte[] apiResponse(List<EncodedSnapshot> snapshots) {
+        int length = API_PREFIX.length + API_SUFFIX.length + 2 + Math.max(0, snapshots.size() - 1);
+        for (EncodedSnapshot snapshot : snapshots) {
+            length += snapshot.getJson().length;
+        }
+        byte[] out = new byte[length];
+        int pos = put(out, 0, API_PREFIX);
+        out[pos++] = '[';
+        for (int i = 0; i < snapshots.size(); i++) {
+            if (i > 0) {
+                out[pos++] = ',';
+            }
+            pos = put(out, pos, snapshots.get(i).getJson());
+        }
+        out[pos++] = ']';
+        put(out, pos, API_SUFFIX);
+        return out;
+    }
+
+    /**
+     * Rolling statistics in the REST {@code ApiResponse} envelope: {@code {"deviceId":..,"stats":{"mq2":{..}}}}
+     * for one device, or an array of those when {@code array} is set.
+     */
+    public byte[] statsResponse(Collection<String> deviceIds, boolean array) {
+        Scratch s = scratch.get();
+        s.buffer.reset();
+        long now = System.currentTimeMillis();
+        try (JsonGenerator gen = jsonFactory.createGenerator(s.buffer)) {
+            gen.writeStartObject();
+            gen.writeBooleanField("success", true);
+            gen.writeFieldName("data");
+            if (array) {
+                gen.writeStartArray();
+            }
+            for (String deviceId : deviceIds) {
+                gen.writeStartObject();
+                gen.writeStringField("deviceId", deviceId);
+                gen.writeFieldName("stats");
+                statsService.write(gen, deviceId, now);
+                gen.writeEndObject();
+            }
+            if (array) {
+                gen.writeEndArray();
+            }
+            gen.writeNullField("error");
+            gen.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return s.buffer.toByteArray();
+    }
+
+    /**
+     * Protocol v2 delta frame: {@code {"type":"delta","deviceId":..,"version":..,"base":..,"data":{..}}}.
+     */
+    public byte[] deltaFrameV2(String deviceId, DeviceState.StateView view, int fieldMask, long base,
+                               boolean connected) {
+        ByteArrayBuilder buffer = scratch.get().buffer;
+        buffer.reset();
+        try (JsonGenerator gen = jsonFactory.createGenerator(buffer)) {
+            gen.writeStartObject();
+            gen.writeStringField("type", "delta");
+            gen.writeStringField("deviceId", deviceId);
+            gen.writeNumberField("version", view.getVersion());
+            gen.writeNumberField("base", base);
+            gen.writeFieldName("data");
+            writeState(gen, null, view, fieldMask, connected);
+            gen.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Protocol v2 snapshot frame for several devices:
+     * {@code {"type":"snapshot","devices":[{"deviceId":..,"version":..,"data":{..},"stats":{..}}, ..]}}.
+     */
+    public byte[] snapshotFrameV2(Collection<DeviceState> devices, int fieldMask, boolean connected) {
+        Scratch s = scratch.get();
+        s.buffer.reset();
+        long now = System.currentTimeMillis();
+        try (JsonGenerator gen = jsonFactory.createGenerator(s.buffer)) {
+            gen.writeStartObject();
+            gen.writeStringField("type", "snapshot");
+            gen.writeArrayFieldStart("devices");
+            for (DeviceState device : devices) {
+                device.readInto(s.view);
+                gen.writeStartObject();
+                gen.writeStringField("deviceId", device.getDeviceId());
+                gen.writeNumberField("version", s.view.getVersion());
+                gen.writeFieldName("data");
+                writeState(gen, null, s.view, fieldMask, connected);
+                if (statsService.isEnabled()) {
+                    gen.writeFieldName("stats");
+                    statsService.write(gen, device.getDeviceId(), now);
+                }
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return s.buffer.toByteArray();
+    }
+
+    /**
+     * Packs encoded frames into one: {@code {"type":"batch","frames":[<frame>, ..]}}.
+     */
+    public static byte[] batchFrame(List<byte[]> frames) {
+        int length = BATCH_PREFIX.length + BATCH_SUFFIX.length + Math.max(0, frames.size() - 1);
+        for (byte[] frame : frames) {
+            length += frame.length;
+        }
+        byte[] out = new byte[length];
+        int pos = put(out, 0, BATCH_PREFIX);
+        for (int i = 0; i < frames.size(); i++) {
+            if (i > 0) {
+                out[pos++] = ',';
+            }
+            pos = put(out, pos, frames.get(i));
+        }
+        put(out, pos, BATCH_SUFFIX);
+        return out;
+    }
+
+    private byte[] encode(String deviceId, DeviceState.StateView view, int fieldMask, boolean connected,
+                          ByteArrayBuilder buffer) {
+        buffer.reset();
+        try (JsonGenerator gen = jsonFactory.createGenerator(buffer)) {
+            writeState(gen, deviceId, view, fieldMask, connected);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static void writeState(JsonGenerator gen, String deviceId, DeviceState.StateView view, int fieldMask,
+                                   boolean connected) throws IOException {
+        gen.writeStartObject();
+        if (deviceId != null) {
+            gen.writeStringField("deviceId", deviceId);
+        }
+        for (SensorField field : SensorField.values()) {
+            if ((fieldMask & field.getMask()) == 0) {
+                continue;
+            }
+            int value = view.get(field);
+            switch (field) {
+                case MQ2, FIRE, THRESHOLD -> gen.writeNumberField(field.getJsonName(), value);
+                case MODE -> gen.writeStringField(field.getJsonName(), value != 0 ? "AUTO" : "MANUAL");
+                default -> gen.writeBooleanField(field.getJsonName(), value != 0);
+            }
+        }
+        gen.writeStringField("lastUpdate", LocalDateTime
+                .ofInstant(Instant.ofEpochMilli(view.getLastUpdate()), ZoneId.systemDefault())
+                .format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        gen.writeBooleanField("connected", connected);
+        gen.writeEndObject();
+    }
+
+    private static byte[] concat(byte[] prefix, byte[] body, byte[] suffix) {
+        byte[] out = new byte[prefix.length + body.length + suffix.length];
+        put(out, put(out, put(out, 0, prefix), body), suffix);
+        return out;
+    }
+
+    private static int put(byte[] target, int pos, byte[] source) {
+        System.arraycopy(source, 0, target, pos, source.length);
+        return pos + source.length;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static final class Scratch {
+
+        private final ByteArrayBuilder buffer = new ByteArrayBuilder(512);
+        private final DeviceState.StateView view = new DeviceState.StateView();
+    }
+}
@@ -0,0 +1,92 @@
+package com.iot.gasdetection.fcm;
+
+import com.iot.gasdetection.config.FcmProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for FCM, enabled with {@code fcm.client=fake}. Answers after a fixed latency and fails a
+ * configurable fraction of tokens, so the dispatch pipeline can be load-tested without Firebase.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "fcm", name = "client", havingValue = "fake")
+public class FakeFcmClient implements FcmClient {
+
+    private final FcmProperties.Fake settings;
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, r -> {
+        Thread thread = new Thread(r, "fcm-fake");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong messages = new AtomicLong();
+
+    public FakeFcmClient(FcmProperties properties) {
+        this.settings = properties.getFake();
+        log.warn("⚠️ Using fake FCM client; no push notifications will be delivered");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        log.info("📊 Fake FCM: {} requests, {} messages", requests.get(), messages.get());
+    }
+
+    @Override
+    public CompletableFuture<List<FcmResult>> sendMulticast(List<String> tokens, FcmMessage message) {
+        requests.incrementAndGet();
+        messages.addAndGet(tokens.size());
+        List<FcmResult> results = new ArrayList<>(tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            results.add(randomResult());
+        }
+        return delayed(results);
+    }
+
+    @Override
+    public CompletableFuture<FcmResult> sendToTopic(String topic, FcmMessage message) {
+        requests.incrementAndGet();
+        messages.incrementAndGet();
+        return delayed(FcmResult.success(UUID.randomUUID().toString()));
+    }
+
+    @Override
+    public boolean subscribe(List<String> tokens, String topic) {
+        return true;
+    }
+
+    @Override
+    public boolean unsubscribe(List<String> tokens, String topic) {
+        return true;
+    }
+
+    private FcmResult randomResult() {
+        double roll = ThreadLocalRandom.current().nextDouble();
+        if (roll < settings.getUnregisteredRate()) {
+            return FcmResult.of(FcmResult.Status.UNREGISTERED);
+        }
+        if (roll < settings.getUnregisteredRate() + settings.getTransientErrorRate()) {
+            return FcmResult.of(FcmResult.Status.RETRY);
+        }
+        return FcmResult.success(UUID.randomUUID().toString());
+    }
+
+    private <T> CompletableFuture<T> delayed(T value) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        scheduler.schedule(() -> future.complete(value), settings.getLatencyMs(), TimeUnit.MILLISECONDS);
+        return future;
+    }
+}
@@ -0,0 +1,34 @@
+package com.iot.gasdetection.fcm;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Push transport used by {@link FcmDispatcher} and {@link com.iot.gasdetection.service.FcmService}.
+ * Sends are asynchronous; a future that completes exceptionally means the whole request failed, and
+ * {@link #classify} decides whether it is worth retrying.
+ */
+public interface FcmClient {
+
+    /**
+     * Sends one message to up to 500 tokens; results are in token order.
+     */
+    CompletableFuture<List<FcmResult>> sendMulticast(List<String> tokens, FcmMessage message);
+
+    CompletableFuture<FcmResult> sendToTopic(String topic, FcmMessage message);
+
+    /**
+     * @return true when every token was subscribed
+     */
+    boolean subscribe(List<String> tokens, String topic);
+
+    boolean unsubscribe(List<String> tokens, String topic);
+
+    /**
+     * Status of every recipient of a request that failed as a whole: the future completed exceptionally or
+     * the send threw.
+     */
+    default FcmResult.Status classify(Throwable error) {
+        return FcmResult.Status.RETRY;
+    }
+}
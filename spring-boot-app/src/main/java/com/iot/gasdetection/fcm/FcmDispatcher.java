@@ -0,0 +1,299 @@
+package com.iot.gasdetection.fcm;
+
+import com.iot.gasdetection.config.FcmProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous push pipeline. Callers only enqueue; a dispatcher thread splits token lists into multicast
+ * chunks, keeps at most {@code max-in-flight} requests outstanding and retries transient failures with
+ * full-jitter exponential backoff. Tokens reported as UNREGISTERED are handed back to the caller for pruning.
+ * <p>
+ * Meters: {@code gas.fcm.send.duration} per FCM request by kind and result, {@code gas.fcm.recipients} by
+ * outcome, the queue depth, and {@code gas.alert.push.latency} from the reading behind an alert to FCM
+ * accepting the push.
+ */
+@Slf4j
+@Service
+public class FcmDispatcher {
+
+    private final FcmClient client;
+    private final FcmProperties.Dispatch settings;
+    private final MeterRegistry meterRegistry;
+
+    private BlockingQueue<Job> queue;
+    private Semaphore inFlight;
+    private ScheduledExecutorService retryScheduler;
+    private Thread worker;
+    private volatile boolean running;
+
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong pruned = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+
+    private Timer topicSent;
+    private Timer topicFailed;
+    private Timer multicastSent;
+    private Timer multicastFailed;
+    private Timer pushLatency;
+
+    public FcmDispatcher(FcmClient client, FcmProperties properties, MeterRegistry meterRegistry) {
+        this.client = client;
+        this.settings = properties.getDispatch();
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(settings.getQueueCapacity());
+        inFlight = new Semaphore(settings.getMaxInFlight());
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "fcm-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        registerMeters();
+        running = true;
+        worker = new Thread(this::dispatchLoop, "fcm-dispatcher");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        worker.interrupt();
+        retryScheduler.shutdownNow();
+        log.info("📊 FCM dispatcher stopped. Delivered: {}, Failed: {}, Pruned: {}, Retried: {}",
+                delivered.get(), failed.get(), pruned.get(), retried.get());
+    }
+
+    private void registerMeters() {
+        topicSent = sendTimer("topic", "success");
+        topicFailed = sendTimer("topic", "error");
+        multicastSent = sendTimer("multicast", "success");
+        multicastFailed = sendTimer("multicast", "error");
+        pushLatency = Timer.builder("gas.alert.push.latency")
+                .description("From receiving the reading behind an alert to FCM accepting the push")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofMinutes(1))
+                .register(meterRegistry);
+        recipientCounter("delivered", delivered);
+        recipientCounter("failed", failed);
+        recipientCounter("pruned", pruned);
+        recipientCounter("retried", retried);
+        Gauge.builder("gas.fcm.queue.depth", this, FcmDispatcher::getQueueDepth)
+                .description("Push jobs waiting for the FCM dispatcher")
+                .register(meterRegistry);
+    }
+
+    private Timer sendTimer(String kind, String result) {
+        return Timer.builder("gas.fcm.send.duration")
+                .description("Duration of one FCM request")
+                .tags("kind", kind, "result", result)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry);
+    }
+
+    private void recipientCounter(String result, AtomicLong count) {
+        FunctionCounter.builder("gas.fcm.recipients", count, AtomicLong::get)
+                .description("Push recipients by outcome")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues a topic message. Returns false if the queue is full.
+     */
+    public boolean submitToTopic(String topic, FcmMessage message) {
+        return enqueue(new Job(topic, null, message, null, 1));
+    }
+
+    /**
+     * Queues a message for every token; tokens FCM reports as unregistered are passed to {@code onUnregistered}.
+     */
+    public boolean submitToTokens(Collection<String> tokens, FcmMessage message, Consumer<String> onUnregistered) {
+        if (tokens.isEmpty()) {
+            return true;
+        }
+        return enqueue(new Job(null, new ArrayList<>(tokens), message, onUnregistered, 1));
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    private boolean enqueue(Job job) {
+        if (queue.offer(job)) {
+            return true;
+        }
+        int count = job.tokens != null ? job.tokens.size() : 1;
+        failed.addAndGet(count);
+        log.error("❌ FCM dispatch queue full, dropping message '{}' for {} recipients", job.message.getTitle(), count);
+        return false;
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            try {
+                Job job = queue.take();
+                if (job.topic != null) {
+                    inFlight.acquire();
+                    sendTopic(job);
+                    continue;
+                }
+                int batchSize = Math.min(500, settings.getBatchSize());
+                for (int from = 0; from < job.tokens.size(); from += batchSize) {
+                    List<String> chunk = job.tokens.subList(from, Math.min(job.tokens.size(), from + batchSize));
+                    inFlight.acquire();
+                    sendChunk(new Job(null, chunk, job.message, job.onUnregistered, job.attempt));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Error dispatching FCM message", e);
+            }
+        }
+    }
+
+    private void sendTopic(Job job) {
+        long start = System.nanoTime();
+        send(() -> client.sendToTopic(job.topic, job.message)).whenComplete((result, error) -> {
+            inFlight.release();
+            if (error != null) {
+                log.warn("⚠️ FCM topic '{}' send failed: {}", job.topic, error.getMessage());
+            }
+            FcmResult.Status status = error != null ? client.classify(error) : result.getStatus();
+            (status == FcmResult.Status.SUCCESS ? topicSent : topicFailed)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (status == FcmResult.Status.SUCCESS) {
+                delivered.incrementAndGet();
+                recordPushLatency(job.message);
+                log.info("🔔 FCM notification sent to topic '{}'. Response: {}", job.topic, result.getMessageId());
+            } else if (status == FcmResult.Status.RETRY) {
+                retryLater(job);
+            } else {
+                failed.incrementAndGet();
+            }
+        });
+    }
+
+    private void sendChunk(Job chunk) {
+        long start = System.nanoTime();
+        send(() -> client.sendMulticast(chunk.tokens, chunk.message)).whenComplete((results, error) -> {
+            inFlight.release();
+            (error == null ? multicastSent : multicastFailed).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (error != null) {
+                log.warn("⚠️ FCM multicast of {} tokens failed: {}", chunk.tokens.size(), error.getMessage());
+                if (client.classify(error) == FcmResult.Status.RETRY) {
+                    retryLater(chunk);
+                } else {
+                    failed.addAndGet(chunk.tokens.size());
+                }
+                return;
+            }
+            List<String> retry = new ArrayList<>();
+            int ok = 0;
+            for (int i = 0; i < chunk.tokens.size(); i++) {
+                String token = chunk.tokens.get(i);
+                FcmResult.Status status = i < results.size() ? results.get(i).getStatus() : FcmResult.Status.RETRY;
+                switch (status) {
+                    case SUCCESS -> ok++;
+                    case UNREGISTERED -> {
+                        pruned.incrementAndGet();
+                        if (chunk.onUnregistered != null) {
+                            chunk.onUnregistered.accept(token);
+                        }
+                    }
+                    case RETRY -> retry.add(token);
+                    default -> failed.incrementAndGet();
+                }
+            }
+            delivered.addAndGet(ok);
+            if (ok > 0) {
+                recordPushLatency(chunk.message);
+            }
+            log.debug("📊 FCM chunk: {} sent, {} to retry (attempt {})", ok, retry.size(), chunk.attempt);
+            if (!retry.isEmpty()) {
+                retryLater(new Job(null, retry, chunk.message, chunk.onUnregistered, chunk.attempt));
+            }
+        });
+    }
+
+    /**
+     * A client that throws instead of failing its future still releases the in-flight permit.
+     */
+    private static <T> CompletableFuture<T> send(Supplier<CompletableFuture<T>> request) {
+        try {
+            return request.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void recordPushLatency(FcmMessage message) {
+        if (message.getOriginAt() > 0) {
+            pushLatency.record(Math.max(0, System.currentTimeMillis() - message.getOriginAt()), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void retryLater(Job job) {
+        int count = job.tokens != null ? job.tokens.size() : 1;
+        if (job.attempt >= settings.getMaxAttempts() || !running) {
+            failed.addAndGet(count);
+            log.error("❌ FCM giving up on {} recipients after {} attempts", count, job.attempt);
+            return;
+        }
+        retried.addAndGet(count);
+        // Full jitter: uniform in [0, min(max, initial * 2^(attempt - 1))]
+        long ceiling = Math.min(settings.getMaxBackoffMs(),
+                settings.getInitialBackoffMs() << Math.min(job.attempt - 1, 20));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        Job next = new Job(job.topic, job.tokens, job.message, job.onUnregistered, job.attempt + 1);
+        retryScheduler.schedule(() -> enqueue(next), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private static final class Job {
+
+        final String topic;
+        final List<String> tokens;
+        final FcmMessage message;
+        final Consumer<String> onUnregistered;
+        final int attempt;
+
+        Job(String topic, List<String> tokens, FcmMessage message, Consumer<String> onUnregistered, int attempt) {
+            this.topic = topic;
+            this.tokens = tokens;
+            this.message = message;
+            this.onUnregistered = onUnregistered;
+            this.attempt = attempt;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.iot.gasdetection.fcm;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FcmMessage {
+
+    private String title;
+    private String body;
+    private Map<String, String> data;
+
+    // Receive time of the reading behind an alert, for the reading-to-push latency; 0 if none
+    private long originAt;
+
+    public FcmMessage(String title, String body, Map<String, String> data) {
+        this(title, body, data, 0);
+    }
+}
@@ -0,0 +1,41 @@
+package com.iot.gasdetection.fcm;
+
+/**
+ * Outcome of one message to one token or topic.
+ */
+public final class FcmResult {
+
+    public enum Status {
+        SUCCESS,
+        // Token is no longer valid and should be forgotten
+        UNREGISTERED,
+        // Transient failure (unavailable, internal, quota); worth retrying
+        RETRY,
+        // Permanent failure for this message
+        FAILED
+    }
+
+    private final Status status;
+    private final String messageId;
+
+    private FcmResult(Status status, String messageId) {
+        this.status = status;
+        this.messageId = messageId;
+    }
+
+    public static FcmResult success(String messageId) {
+        return new FcmResult(Status.SUCCESS, messageId);
+    }
+
+    public static FcmResult of(Status status) {
+        return new FcmResult(status, null);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+}
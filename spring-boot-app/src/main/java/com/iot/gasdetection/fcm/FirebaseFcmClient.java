@@ -0,0 +1,159 @@
+package com.iot.gasdetection.fcm;
+
+import com.google.api.core.ApiFuture;
+import com.google.firebase.ErrorCode;
+import com.google.firebase.messaging.*;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "fcm", name = "client", havingValue = "firebase", matchIfMissing = true)
+public class FirebaseFcmClient implements FcmClient {
+
+    @Override
+    public CompletableFuture<List<FcmResult>> sendMulticast(List<String> tokens, FcmMessage message) {
+        MulticastMessage multicast = MulticastMessage.builder()
+                .addAllTokens(tokens)
+                .setNotification(notification(message))
+                .putAllData(message.getData() != null ? message.getData() : new HashMap<>())
+                .setAndroidConfig(androidConfig())
+                .build();
+        return toCompletable(FirebaseMessaging.getInstance().sendEachForMulticastAsync(multicast))
+                .thenApply(batch -> {
+                    List<FcmResult> results = new ArrayList<>(batch.getResponses().size());
+                    for (SendResponse response : batch.getResponses()) {
+                        results.add(response.isSuccessful()
+                                ? FcmResult.success(response.getMessageId())
+                                : FcmResult.of(classify(response.getException())));
+                    }
+                    return results;
+                });
+    }
+
+    @Override
+    public CompletableFuture<FcmResult> sendToTopic(String topic, FcmMessage message) {
+        Message topicMessage = Message.builder()
+                .setTopic(topic)
+                .setNotification(notification(message))
+                .putAllData(message.getData() != null ? message.getData() : new HashMap<>())
+                .setAndroidConfig(androidConfig())
+                .build();
+        return toCompletable(FirebaseMessaging.getInstance().sendAsync(topicMessage))
+                .thenApply(FcmResult::success)
+                .exceptionally(e -> {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof FirebaseMessagingException fme) {
+                        log.warn("❌ FCM topic '{}' send failed: {}", topic, fme.getMessage());
+                        return FcmResult.of(classify(fme));
+                    }
+                    return FcmResult.of(FcmResult.Status.RETRY);
+                });
+    }
+
+    @Override
+    public boolean subscribe(List<String> tokens, String topic) {
+        try {
+            TopicManagementResponse response = FirebaseMessaging.getInstance().subscribeToTopic(tokens, topic);
+            log.info("✅ Subscribed to topic '{}'. Success: {}, Failure: {}",
+                    topic, response.getSuccessCount(), response.getFailureCount());
+            return response.getFailureCount() == 0;
+        } catch (FirebaseMessagingException e) {
+            log.error("❌ Failed to subscribe to topic: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public boolean unsubscribe(List<String> tokens, String topic) {
+        try {
+            TopicManagementResponse response = FirebaseMessaging.getInstance().unsubscribeFromTopic(tokens, topic);
+            log.info("✅ Unsubscribed from topic '{}'. Success: {}, Failure: {}",
+                    topic, response.getSuccessCount(), response.getFailureCount());
+            return response.getFailureCount() == 0;
+        } catch (FirebaseMessagingException e) {
+            log.error("❌ Failed to unsubscribe from topic: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * FCM error codes decide for messaging errors. An SDK that is not initialised or a message it rejects
+     * fails the same way every time; anything else (I/O, timeouts) may be transient.
+     */
+    @Override
+    public FcmResult.Status classify(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof FirebaseMessagingException fme) {
+            return classify(fme);
+        }
+        if (cause instanceof IllegalStateException || cause instanceof IllegalArgumentException) {
+            return FcmResult.Status.FAILED;
+        }
+        return FcmResult.Status.RETRY;
+    }
+
+    private static Notification notification(FcmMessage message) {
+        return Notification.builder()
+                .setTitle(message.getTitle())
+                .setBody(message.getBody())
+                .build();
+    }
+
+    private static AndroidConfig androidConfig() {
+        return AndroidConfig.builder()
+                .setPriority(AndroidConfig.Priority.HIGH)
+                .setNotification(AndroidNotification.builder()
+                        .setSound("default")
+                        .setChannelId("fire_alert_channel")
+                        .setPriority(AndroidNotification.Priority.MAX)
+                        .build())
+                .build();
+    }
+
+    static FcmResult.Status classify(FirebaseMessagingException e) {
+        if (e == null) {
+            return FcmResult.Status.FAILED;
+        }
+        MessagingErrorCode code = e.getMessagingErrorCode();
+        if (code == MessagingErrorCode.UNREGISTERED) {
+            return FcmResult.Status.UNREGISTERED;
+        }
+        if (code == MessagingErrorCode.UNAVAILABLE || code == MessagingErrorCode.INTERNAL
+                || code == MessagingErrorCode.QUOTA_EXCEEDED) {
+            return FcmResult.Status.RETRY;
+        }
+        ErrorCode platform = e.getErrorCode();
+        if (platform == ErrorCode.UNAVAILABLE || platform == ErrorCode.INTERNAL
+                || platform == ErrorCode.DEADLINE_EXCEEDED || platform == ErrorCode.RESOURCE_EXHAUSTED) {
+            return FcmResult.Status.RETRY;
+        }
+        return FcmResult.Status.FAILED;
+    }
+
+    private static <T> CompletableFuture<T> toCompletable(ApiFuture<T> future) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        future.addListener(() -> {
+            try {
+                result.complete(future.get());
+            } catch (ExecutionException e) {
+                result.completeExceptionally(e.getCause());
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        }, Runnable::run);
+        return result;
+    }
+}
@@ -0,0 +1,67 @@
+package com.iot.gasdetection.ingest;
+
+/**
+ * Interns device IDs straight from a region of an MQTT topic: a known device is found by comparing the
+ * region in place, so routing its messages creates no substring. Open addressing over a String table;
+ * once {@code maxSize} IDs are cached, new ones are still returned but no longer remembered.
+ * Not thread-safe; owned by the receive stage.
+ */
+final class DeviceIdCache {
+
+    private final int maxSize;
+    private String[] table = new String[64];
+    private int size;
+
+    DeviceIdCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    String get(String topic, int start, int end) {
+        int length = end - start;
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + topic.charAt(i);
+        }
+        int mask = table.length - 1;
+        int slot = spread(hash) & mask;
+        String candidate;
+        while ((candidate = table[slot]) != null) {
+            if (candidate.length() == length && topic.regionMatches(start, candidate, 0, length)) {
+                return candidate;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        String id = topic.substring(start, end);
+        if (size < maxSize) {
+            table[slot] = id;
+            if (++size * 2 > table.length) {
+                resize();
+            }
+        }
+        return id;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void resize() {
+        String[] old = table;
+        table = new String[old.length * 2];
+        int mask = table.length - 1;
+        for (String id : old) {
+            if (id != null) {
+                int slot = spread(id.hashCode()) & mask;
+                while (table[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = id;
+            }
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
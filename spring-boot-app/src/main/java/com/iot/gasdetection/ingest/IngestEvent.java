@@ -0,0 +1,27 @@
+package com.iot.gasdetection.ingest;
+
+/**
+ * Preallocated ring slot. The payload is copied into a per-slot buffer that only grows, so a warmed-up
+ * ring accepts messages without allocating.
+ */
+final class IngestEvent {
+
+    String deviceId;
+    int route;
+    byte[] payload = new byte[32];
+    int length;
+    long receivedAt;
+    // Overflow events only: ring sequence published before this event, handled first to keep device order
+    long after;
+
+    void set(String deviceId, int route, byte[] source, long receivedAt) {
+        this.deviceId = deviceId;
+        this.route = route;
+        if (payload.length < source.length) {
+            payload = new byte[Math.max(source.length, payload.length * 2)];
+        }
+        System.arraycopy(source, 0, payload, 0, source.length);
+        this.length = source.length;
+        this.receivedAt = receivedAt;
+    }
+}
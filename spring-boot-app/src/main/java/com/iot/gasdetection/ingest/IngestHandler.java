@@ -0,0 +1,12 @@
+package com.iot.gasdetection.ingest;
+
+/**
+ * Processes one routed MQTT message ({@code route} as resolved by {@link TopicRouter}) on an ingestion worker.
+ * Calls for the same device come from the same worker thread, in arrival order. {@code payload} is only valid
+ * for the duration of the call.
+ */
+@FunctionalInterface
+public interface IngestHandler {
+
+    void handle(String deviceId, int route, byte[] payload, int length, long receivedAt);
+}
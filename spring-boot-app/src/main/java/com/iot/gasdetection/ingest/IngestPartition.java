@@ -0,0 +1,224 @@
+package com.iot.gasdetection.ingest;
+
+import com.iot.gasdetection.config.IngestProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One ingestion partition: a single-producer/single-consumer ring of preallocated {@link IngestEvent} slots
+ * drained by one worker thread.
+ * <p>
+ * Disruptor-style: the producer (the MQTT callback thread) copies a message into the next free slot and
+ * publishes its sequence; the worker handles everything published so far as one batch and then releases the
+ * slots. Messages that must not be lost (notifications) go to an unbounded side queue when the ring is full;
+ * readings follow the configured {@link IngestProperties.Overflow} policy. A side-queued message remembers
+ * the ring sequence published before it and waits for the worker to get there, so every device's messages
+ * are still handled in arrival order.
+ */
+@Slf4j
+final class IngestPartition implements Runnable {
+
+    private static final int IDLE_SPINS = 200;
+    // Safety net only: the producer unparks a parked worker
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long BLOCK_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+    private static final int RELEASE_EVERY = 64;
+
+    private final int index;
+    private final IngestEvent[] slots;
+    private final int mask;
+    private final IngestHandler handler;
+    private final IngestProperties.Overflow overflow;
+
+    // Producer-owned
+    private long next;
+    private long cachedConsumed;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final Queue<IngestEvent> overflowQueue = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong overflowed = new AtomicLong();
+    private final AtomicLong blockedNanos = new AtomicLong();
+    private volatile long peakDepth;
+
+    private volatile boolean parked;
+    private volatile boolean running = true;
+    private Thread thread;
+
+    IngestPartition(int index, int capacity, IngestHandler handler, IngestProperties.Overflow overflow) {
+        this.index = index;
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new IngestEvent[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new IngestEvent();
+        }
+        this.mask = size - 1;
+        this.handler = handler;
+        this.overflow = overflow;
+    }
+
+    void start() {
+        thread = new Thread(this, "mqtt-ingest-" + index);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues a message. Only called from the single producer thread.
+     *
+     * @param reliable never drop, even when the ring is full
+     * @return false if the message was dropped
+     */
+    boolean publish(String deviceId, int route, byte[] payload, long receivedAt, boolean reliable) {
+        long sequence = next;
+        if (sequence - cachedConsumed >= slots.length) {
+            cachedConsumed = consumed.get();
+            if (sequence - cachedConsumed >= slots.length) {
+                if (reliable) {
+                    IngestEvent event = new IngestEvent();
+                    event.set(deviceId, route, payload, receivedAt);
+                    event.after = sequence;
+                    overflowQueue.add(event);
+                    overflowed.incrementAndGet();
+                    wake();
+                    return true;
+                }
+                if (overflow == IngestProperties.Overflow.DROP || !awaitSlot(sequence)) {
+                    dropped.incrementAndGet();
+                    return false;
+                }
+            }
+        }
+        slots[(int) sequence & mask].set(deviceId, route, payload, receivedAt);
+        next = sequence + 1;
+        published.set(next);
+
+        long depth = next - cachedConsumed;
+        if (depth > peakDepth) {
+            peakDepth = depth;
+        }
+        wake();
+        return true;
+    }
+
+    private boolean awaitSlot(long sequence) {
+        long start = System.nanoTime();
+        while (running && sequence - (cachedConsumed = consumed.get()) >= slots.length) {
+            wake();
+            LockSupport.parkNanos(BLOCK_WAIT_NANOS);
+        }
+        blockedNanos.addAndGet(System.nanoTime() - start);
+        return running;
+    }
+
+    private void wake() {
+        // Volatile write of 'published' then volatile read of 'parked': a worker going to sleep cannot miss it
+        if (parked) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    @Override
+    public void run() {
+        long sequence = consumed.get();
+        int idle = 0;
+        while (true) {
+            boolean worked = false;
+            long available = published.get();
+            // An overflow event was queued once everything before its 'after' was published, so this limit
+            // never stops short of a sequence that is not yet available
+            IngestEvent spilled = overflowQueue.peek();
+            long limit = spilled != null ? Math.min(available, spilled.after) : available;
+            if (sequence < limit) {
+                do {
+                    handle(slots[(int) sequence & mask]);
+                    sequence++;
+                    if ((sequence & (RELEASE_EVERY - 1)) == 0) {
+                        consumed.lazySet(sequence);
+                    }
+                } while (sequence < limit);
+                consumed.lazySet(sequence);
+                worked = true;
+            }
+
+            while ((spilled = overflowQueue.peek()) != null && spilled.after <= sequence) {
+                overflowQueue.poll();
+                handle(spilled);
+                worked = true;
+            }
+
+            if (worked) {
+                idle = 0;
+            } else if (!running) {
+                // 'published' was read before the stop flag; read it again so nothing queued before stop() is left
+                if (published.get() == sequence && overflowQueue.isEmpty()) {
+                    return;
+                }
+            } else if (++idle < IDLE_SPINS) {
+                Thread.onSpinWait();
+            } else {
+                parked = true;
+                if (published.get() == sequence && overflowQueue.isEmpty() && running) {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                parked = false;
+            }
+        }
+    }
+
+    private void handle(IngestEvent event) {
+        try {
+            handler.handle(event.deviceId, event.route, event.payload, event.length, event.receivedAt);
+        } catch (Exception e) {
+            log.error("Error handling MQTT message from {}", event.deviceId, e);
+        }
+    }
+
+    /**
+     * Stops after the worker has handled everything already queued.
+     */
+    void stop(long timeoutMs) throws InterruptedException {
+        running = false;
+        LockSupport.unpark(thread);
+        thread.join(timeoutMs);
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    long getDepth() {
+        return published.get() - consumed.get() + overflowQueue.size();
+    }
+
+    long getPeakDepth() {
+        return peakDepth;
+    }
+
+    long getProcessed() {
+        return consumed.get();
+    }
+
+    long getDropped() {
+        return dropped.get();
+    }
+
+    long getOverflowed() {
+        return overflowed.get();
+    }
+
+    long getBlockedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(blockedNanos.get());
+    }
+
+    int getCapacity() {
+        return slots.length;
+    }
+}
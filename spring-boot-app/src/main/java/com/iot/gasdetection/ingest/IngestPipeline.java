@@ -0,0 +1,122 @@
+package com.iot.gasdetection.ingest;
+
+import com.iot.gasdetection.config.IngestProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Staged MQTT ingestion. The receive stage runs on the MQTT callback thread and only copies the routed
+ * message into the ring of its device's partition; parsing, state updates, rules, persistence and fan-out
+ * run on the partition workers. A device always hashes to the same partition, so its messages are handled
+ * in order, while different devices are processed in parallel and slow consumers never hold up MQTT acks.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IngestPipeline {
+
+    private static final long STOP_TIMEOUT_MS = 5_000;
+
+    private final IngestProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    private volatile IngestPartition[] partitions = new IngestPartition[0];
+    private IngestHandler handler;
+
+    public synchronized void start(IngestHandler handler) {
+        this.handler = handler;
+        if (!properties.isEnabled() || partitions.length > 0) {
+            return;
+        }
+        IngestPartition[] created = new IngestPartition[Math.max(1, properties.getPartitions())];
+        for (int i = 0; i < created.length; i++) {
+            created[i] = new IngestPartition(i, properties.getRingCapacity(), handler, properties.getOverflow());
+            created[i].start();
+        }
+        partitions = created;
+        for (IngestPartition partition : created) {
+            String index = Integer.toString(partition.getIndex());
+            Gauge.builder("gas.ingest.queue.depth", partition, IngestPartition::getDepth)
+                    .description("Messages waiting for an ingestion worker")
+                    .tag("partition", index)
+                    .register(meterRegistry);
+            FunctionCounter.builder("gas.ingest.dropped", partition, IngestPartition::getDropped)
+                    .description("Readings dropped because the partition was full")
+                    .tag("partition", index)
+                    .register(meterRegistry);
+        }
+        log.info("🧵 MQTT ingestion: {} partitions x {} slots, overflow {}", created.length,
+                created[0].getCapacity(), properties.getOverflow());
+    }
+
+    /**
+     * Receive stage; must only be called from the MQTT callback thread.
+     *
+     * @param reliable never drop (notifications), even when the partition is full
+     */
+    public void publish(String deviceId, int route, byte[] payload, long receivedAt, boolean reliable) {
+        IngestPartition[] current = partitions;
+        if (current.length == 0) {
+            handler.handle(deviceId, route, payload, payload.length, receivedAt);
+            return;
+        }
+        IngestPartition partition = current[(deviceId.hashCode() & Integer.MAX_VALUE) % current.length];
+        if (!partition.publish(deviceId, route, payload, receivedAt, reliable)) {
+            log.debug("Ingest partition {} full, dropped reading of {}", partition.getIndex(), deviceId);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        IngestPartition[] current = partitions;
+        partitions = new IngestPartition[0];
+        for (IngestPartition partition : current) {
+            try {
+                partition.stop(STOP_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Backpressure metrics per partition: queue depth, peak depth, processed, dropped, overflowed, blocked time.
+     */
+    public Map<String, Object> getStats() {
+        IngestPartition[] current = partitions;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", current.length > 0);
+        long depth = 0;
+        long dropped = 0;
+        List<Map<String, Object>> perPartition = new ArrayList<>(current.length);
+        for (IngestPartition partition : current) {
+            Map<String, Object> p = new HashMap<>();
+            p.put("partition", partition.getIndex());
+            p.put("depth", partition.getDepth());
+            p.put("peakDepth", partition.getPeakDepth());
+            p.put("capacity", partition.getCapacity());
+            p.put("processed", partition.getProcessed());
+            p.put("dropped", partition.getDropped());
+            p.put("overflowed", partition.getOverflowed());
+            p.put("blockedMs", partition.getBlockedMillis());
+            perPartition.add(p);
+            depth += partition.getDepth();
+            dropped += partition.getDropped();
+        }
+        stats.put("depth", depth);
+        stats.put("dropped", dropped);
+        stats.put("partitions", perPartition);
+        return stats;
+    }
+}
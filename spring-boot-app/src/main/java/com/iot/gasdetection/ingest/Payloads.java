@@ -0,0 +1,66 @@
+package com.iot.gasdetection.ingest;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses MQTT payloads in place, without decoding them to a String first.
+ */
+public final class Payloads {
+
+    private Payloads() {
+    }
+
+    /**
+     * Parses a decimal int from the first {@code length} bytes, ignoring surrounding ASCII whitespace
+     * (same results as {@code Integer.parseInt(new String(..).trim())}).
+     *
+     * @throws NumberFormatException if the payload is not a number or does not fit an int
+     */
+    public static int parseInt(byte[] payload, int length) {
+        int start = 0;
+        int end = length;
+        while (start < end && (payload[start] & 0xff) <= ' ') {
+            start++;
+        }
+        while (end > start && (payload[end - 1] & 0xff) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            throw invalid(payload, length);
+        }
+
+        boolean negative = payload[start] == '-';
+        if (negative || payload[start] == '+') {
+            start++;
+            if (start == end) {
+                throw invalid(payload, length);
+            }
+        }
+        // Accumulate negatively so Integer.MIN_VALUE parses too
+        long limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = payload[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw invalid(payload, length);
+            }
+            value = value * 10 - digit;
+            if (value < limit) {
+                throw invalid(payload, length);
+            }
+        }
+        return (int) (negative ? value : -value);
+    }
+
+    /**
+     * True if the payload is exactly {@code "1"} (relay/window/buzzer ON, mode AUTO).
+     */
+    public static boolean isOne(byte[] payload, int length) {
+        return length == 1 && payload[0] == '1';
+    }
+
+    private static NumberFormatException invalid(byte[] payload, int length) {
+        return new NumberFormatException("For input string: \""
+                + new String(payload, 0, length, StandardCharsets.UTF_8) + "\"");
+    }
+}
@@ -0,0 +1,212 @@
+package com.iot.gasdetection.ingest;
+
+import com.iot.gasdetection.model.SensorField;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Resolves an MQTT topic to a device and a route (a {@link SensorField} ordinal or {@link #NOTIFICATION})
+ * without splitting the topic or allocating.
+ * <p>
+ * Supported layouts, where the first segment (e.g. {@code gas}) is not interpreted:
+ * {@code <root>/<deviceId>/<kind>/<name>}, {@code <root>/<deviceId>/notification}, and the legacy
+ * single-device {@code <root>/<kind>/<name>} and {@code <root>/notification}, which map to the default device.
+ * Device-relative suffixes are matched segment by segment in a trie compiled once from the topic table;
+ * device IDs come from a {@link DeviceIdCache}. Not thread-safe: use one router per receiving thread.
+ * <p>
+ * With a cluster root, messages from other replicas route to {@link #REMOTE_STATE}
+ * ({@code <clusterRoot>/state/<deviceId>/<field>}), {@link #REMOTE_NOTIFICATION}
+ * ({@code <clusterRoot>/notification/<deviceId>}), {@link #REMOTE_READING}
+ * ({@code <clusterRoot>/reading/<nodeId>/<deviceId>}) and {@link #REMOTE_MEMBER} ({@code <clusterRoot>/member},
+ * no device).
+ */
+public final class TopicRouter {
+
+    public static final int NOTIFICATION = -1;
+    public static final int UNKNOWN = -2;
+    public static final int REMOTE_STATE = -3;
+    public static final int REMOTE_NOTIFICATION = -4;
+    public static final int REMOTE_READING = -5;
+    public static final int REMOTE_MEMBER = -6;
+
+    private static final String NOTIFICATION_SUFFIX = "notification";
+    private static final String STATE_KIND = "state";
+    private static final String READING_KIND = "reading";
+    private static final String MEMBER_KIND = "member";
+
+    private final Node root = new Node();
+    private final String defaultDeviceId;
+    private final DeviceIdCache deviceIds;
+    private final String clusterRoot;
+
+    /**
+     * @param fields "<kind>/<name>" suffix of a device topic -> field
+     */
+    public TopicRouter(Map<String, SensorField> fields, String defaultDeviceId, int maxCachedDevices) {
+        this(fields, defaultDeviceId, maxCachedDevices, null);
+    }
+
+    /**
+     * @param clusterRoot first segment of replica-to-replica topics, or null when not clustered
+     */
+    public TopicRouter(Map<String, SensorField> fields, String defaultDeviceId, int maxCachedDevices,
+                       String clusterRoot) {
+        this.defaultDeviceId = defaultDeviceId;
+        this.deviceIds = new DeviceIdCache(maxCachedDevices);
+        this.clusterRoot = clusterRoot;
+        fields.forEach((suffix, field) -> insert(suffix, field.ordinal()));
+        insert(NOTIFICATION_SUFFIX, NOTIFICATION);
+    }
+
+    private void insert(String suffix, int route) {
+        Node node = root;
+        for (String segment : suffix.split("/")) {
+            node = node.childOrCreate(segment);
+        }
+        node.route = route;
+    }
+
+    /**
+     * Routes {@code topic} into {@code match}.
+     *
+     * @return false if the topic is not a known device topic
+     */
+    public boolean route(String topic, Match match) {
+        int s1 = topic.indexOf('/');
+        if (s1 < 0) {
+            return false;
+        }
+        if (clusterRoot != null && s1 == clusterRoot.length() && topic.startsWith(clusterRoot)) {
+            return routeRemote(topic, s1, match);
+        }
+        int s2 = topic.indexOf('/', s1 + 1);
+        if (s2 < 0) {
+            // <root>/notification
+            return resolve(match, null, 0, 0, root.match(topic, s1 + 1, topic.length()));
+        }
+        int s3 = topic.indexOf('/', s2 + 1);
+        if (s3 < 0) {
+            // <root>/<deviceId>/notification, or legacy <root>/<kind>/<name>
+            Node device = root.match(topic, s2 + 1, topic.length());
+            if (device != null && device.route == NOTIFICATION) {
+                return resolve(match, topic, s1 + 1, s2, device);
+            }
+            Node kind = root.match(topic, s1 + 1, s2);
+            return resolve(match, null, 0, 0, kind != null ? kind.match(topic, s2 + 1, topic.length()) : null);
+        }
+        if (topic.indexOf('/', s3 + 1) >= 0) {
+            return false;
+        }
+        // <root>/<deviceId>/<kind>/<name>
+        Node kind = root.match(topic, s2 + 1, s3);
+        return resolve(match, topic, s1 + 1, s2, kind != null ? kind.match(topic, s3 + 1, topic.length()) : null);
+    }
+
+    private boolean routeRemote(String topic, int s1, Match match) {
+        int s2 = topic.indexOf('/', s1 + 1);
+        if (s2 < 0) {
+            if (!segmentEquals(topic, s1 + 1, topic.length(), MEMBER_KIND)) {
+                return false;
+            }
+            match.route = REMOTE_MEMBER;
+            match.deviceId = null;
+            return true;
+        }
+        int s3 = topic.indexOf('/', s2 + 1);
+        if (s3 < 0) {
+            // notification/<deviceId>
+            if (!segmentEquals(topic, s1 + 1, s2, NOTIFICATION_SUFFIX)) {
+                return false;
+            }
+            return resolveRemote(match, REMOTE_NOTIFICATION, topic, s2 + 1, topic.length());
+        }
+        if (topic.indexOf('/', s3 + 1) >= 0) {
+            return false;
+        }
+        if (segmentEquals(topic, s1 + 1, s2, STATE_KIND)) {
+            // state/<deviceId>/<field>; the field is in the payload
+            return resolveRemote(match, REMOTE_STATE, topic, s2 + 1, s3);
+        }
+        if (segmentEquals(topic, s1 + 1, s2, READING_KIND)) {
+            // reading/<nodeId>/<deviceId>; only this node's readings are subscribed
+            return resolveRemote(match, REMOTE_READING, topic, s3 + 1, topic.length());
+        }
+        return false;
+    }
+
+    private static boolean segmentEquals(String topic, int start, int end, String label) {
+        return end - start == label.length() && topic.regionMatches(start, label, 0, label.length());
+    }
+
+    private boolean resolveRemote(Match match, int route, String topic, int deviceStart, int deviceEnd) {
+        if (deviceStart == deviceEnd) {
+            return false;
+        }
+        match.route = route;
+        match.deviceId = deviceIds.get(topic, deviceStart, deviceEnd);
+        return true;
+    }
+
+    private boolean resolve(Match match, String topic, int deviceStart, int deviceEnd, Node node) {
+        if (node == null || node.route == UNKNOWN || (topic != null && deviceStart == deviceEnd)) {
+            return false;
+        }
+        match.route = node.route;
+        match.deviceId = topic == null ? defaultDeviceId : deviceIds.get(topic, deviceStart, deviceEnd);
+        return true;
+    }
+
+    int getCachedDeviceCount() {
+        return deviceIds.size();
+    }
+
+    /**
+     * Reusable routing result. Not thread-safe; keep one per thread.
+     */
+    public static final class Match {
+
+        private String deviceId;
+        private int route = UNKNOWN;
+
+        public String getDeviceId() {
+            return deviceId;
+        }
+
+        /**
+         * {@link SensorField} ordinal, {@link #NOTIFICATION}, or one of the {@code REMOTE_*} cluster routes.
+         */
+        public int getRoute() {
+            return route;
+        }
+    }
+
+    private static final class Node {
+
+        private String[] labels = new String[0];
+        private Node[] children = new Node[0];
+        private int route = UNKNOWN;
+
+        Node match(String topic, int start, int end) {
+            int length = end - start;
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i].length() == length && topic.regionMatches(start, labels[i], 0, length)) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node childOrCreate(String label) {
+            Node child = match(label, 0, label.length());
+            if (child == null) {
+                child = new Node();
+                labels = Arrays.copyOf(labels, labels.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                labels[labels.length - 1] = label;
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.iot.gasdetection.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkControlRequest {
+    private List<String> devices = new ArrayList<>(); // Device IDs
+    private List<String> groups = new ArrayList<>(); // Tên nhóm trong devices.groups.*, vd: "building-a"
+    private boolean all; // Mọi thiết bị đã biết
+    private List<Action> actions = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Action {
+        private String action; // relay1, relay2, window, buzzer, mode, threshold
+        private Object value; // true/false, "AUTO"/"MANUAL" hoặc ngưỡng 200-9999
+    }
+}
@@ -12,7 +12,11 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class Notification {
 
+    // Position in the server-side history, usable as the ?since= cursor of /api/notifications
+    private long seq;
+    private String deviceId;
     private String type;
+    private String level;
     private String message;
     private long timestamp;
 
@@ -25,4 +29,11 @@ public class Notification {
         this.timestamp = timestamp;
         this.receivedAt = LocalDateTime.now();
     }
+
+    /**
+     * Alert level: explicit level if present, else the firmware "type" (e.g. "warning"), else "info".
+     */
+    public String effectiveLevel() {
+        return level != null ? level : type != null ? type : "info";
+    }
 }
@@ -11,6 +11,7 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class SensorData {
 
+    private String deviceId;
     private int mq2 = 0;
     private int fire = 0;
     private boolean relay1 = false;
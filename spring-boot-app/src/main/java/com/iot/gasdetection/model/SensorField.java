@@ -0,0 +1,49 @@
+package com.iot.gasdetection.model;
+
+/**
+ * Device state fields; each field owns one bit in a change mask.
+ */
+public enum SensorField {
+
+    MQ2("mq2"),
+    FIRE("fire"),
+    RELAY1("relay1"),
+    RELAY2("relay2"),
+    WINDOW("window"),
+    BUZZER("buzzer"),
+    MODE("mode"),
+    THRESHOLD("threshold");
+
+    public static final int ALL_MASK = (1 << values().length) - 1;
+
+    private static final SensorField[] VALUES = values();
+
+    private final String jsonName;
+    private final int mask;
+
+    SensorField(String jsonName) {
+        this.jsonName = jsonName;
+        this.mask = 1 << ordinal();
+    }
+
+    public String getJsonName() {
+        return jsonName;
+    }
+
+    public int getMask() {
+        return mask;
+    }
+
+    public static SensorField fromJsonName(String name) {
+        for (SensorField field : VALUES) {
+            if (field.jsonName.equals(name)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    public static SensorField ofOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
@@ -0,0 +1,61 @@
+package com.iot.gasdetection.mqtt;
+
+import java.util.function.Consumer;
+
+/**
+ * Broker connection used by the backend: Paho MQTT 3.1.1 or MQTT 5, selected by {@code mqtt.protocol}.
+ * <p>
+ * Implementations reconnect automatically and restore every subscription made through {@link #subscribe}
+ * after a reconnect. Paho exceptions are logged and reported through the return values, as before.
+ */
+public interface MqttConnection {
+
+    /**
+     * Receives messages on the client's single callback thread.
+     */
+    interface Listener {
+
+        void messageArrived(String topic, byte[] payload);
+
+        void connectionChanged(boolean connected);
+    }
+
+    /**
+     * @return false if the first connection attempt failed (automatic reconnect is not attempted then)
+     */
+    boolean connect(String clientId, Listener listener);
+
+    /**
+     * Subscribes now if connected, and again after every reconnect.
+     *
+     * @param noLocal do not receive this client's own publications (MQTT 5 only; ignored by 3.1.1)
+     */
+    void subscribe(String filter, int qos, boolean noLocal);
+
+    /**
+     * Unsubscribes and forgets a filter passed to {@link #subscribe}.
+     */
+    void unsubscribe(String filter);
+
+    /**
+     * @param retained keep as the topic's last value on the broker, delivered to later subscribers
+     * @return false if the client is not connected or the publish failed
+     */
+    boolean publish(String topic, byte[] payload, int qos, boolean retained);
+
+    /**
+     * Publishes without waiting for the broker, so many messages can be in flight at once (up to
+     * {@code mqtt.max-inflight}). {@code onComplete} runs on a Paho thread: true once a QoS 1/2 message is
+     * acknowledged (QoS 0: written), false if it was lost, e.g. with the connection.
+     *
+     * @return false if the client is not connected or its in-flight window is full; {@code onComplete} is
+     * not called then
+     */
+    boolean publishAsync(String topic, byte[] payload, int qos, Consumer<Boolean> onComplete);
+
+    boolean isConnected();
+
+    void disconnect();
+
+    String getProtocol();
+}
@@ -0,0 +1,189 @@
+package com.iot.gasdetection.mqtt;
+
+import com.iot.gasdetection.config.MqttProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * MQTT 3.1.1 connection (Paho mqttv3), the default. Uses the asynchronous client and waits on its tokens,
+ * except in {@link #publishAsync}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "mqtt.protocol", havingValue = "v3", matchIfMissing = true)
+@RequiredArgsConstructor
+public class PahoV3Connection implements MqttConnection {
+
+    private final MqttProperties mqttProperties;
+
+    // filter -> qos, restored after reconnects (clean session)
+    private final Map<String, Integer> subscriptions = new ConcurrentHashMap<>();
+    private volatile MqttAsyncClient client;
+
+    @Override
+    public boolean connect(String clientId, Listener listener) {
+        try {
+            // Clean sessions keep nothing across restarts, so in-flight state does not need files
+            client = new MqttAsyncClient(mqttProperties.getBroker().getUrl(), clientId, new MemoryPersistence());
+
+            MqttConnectOptions options = new MqttConnectOptions();
+            options.setAutomaticReconnect(true);
+            options.setCleanSession(true);
+            options.setConnectionTimeout(30);
+            options.setKeepAliveInterval(60);
+            options.setMaxInflight(mqttProperties.getMaxInflight());
+
+            MqttProperties.Broker broker = mqttProperties.getBroker();
+            if (broker.getUsername() != null && !broker.getUsername().isEmpty()) {
+                options.setUserName(broker.getUsername());
+                options.setPassword(broker.getPassword().toCharArray());
+            }
+
+            client.setCallback(new MqttCallbackExtended() {
+                @Override
+                public void connectComplete(boolean reconnect, String serverURI) {
+                    if (reconnect) {
+                        log.info("✅ Reconnected to MQTT Broker: {}", serverURI);
+                        subscriptions.forEach((filter, qos) -> subscribeNow(filter, qos));
+                    }
+                    listener.connectionChanged(true);
+                }
+
+                @Override
+                public void connectionLost(Throwable cause) {
+                    log.error("❌ MQTT Connection lost", cause);
+                    listener.connectionChanged(false);
+                }
+
+                @Override
+                public void messageArrived(String topic, MqttMessage message) {
+                    listener.messageArrived(topic, message.getPayload());
+                }
+
+                @Override
+                public void deliveryComplete(IMqttDeliveryToken token) {
+                    // Not used
+                }
+            });
+
+            client.connect(options).waitForCompletion();
+            log.info("✅ Connected to MQTT Broker: {} (MQTT 3.1.1)", broker.getUrl());
+            return true;
+        } catch (MqttException e) {
+            log.error("❌ Failed to connect to MQTT Broker", e);
+            return false;
+        }
+    }
+
+    @Override
+    public void subscribe(String filter, int qos, boolean noLocal) {
+        subscriptions.put(filter, qos);
+        if (isConnected()) {
+            subscribeNow(filter, qos);
+        }
+    }
+
+    private void subscribeNow(String filter, int qos) {
+        try {
+            client.subscribe(filter, qos).waitForCompletion();
+            log.info("📡 Subscribed to topic: {}", filter);
+        } catch (MqttException e) {
+            log.error("❌ Failed to subscribe to {}", filter, e);
+        }
+    }
+
+    @Override
+    public void unsubscribe(String filter) {
+        if (subscriptions.remove(filter) == null || !isConnected()) {
+            return;
+        }
+        try {
+            client.unsubscribe(filter).waitForCompletion();
+            log.info("📡 Unsubscribed from topic: {}", filter);
+        } catch (MqttException e) {
+            log.error("❌ Failed to unsubscribe from {}", filter, e);
+        }
+    }
+
+    @Override
+    public boolean publish(String topic, byte[] payload, int qos, boolean retained) {
+        MqttAsyncClient current = client;
+        if (current == null || !current.isConnected()) {
+            log.warn("⚠️ Cannot publish, MQTT client not connected");
+            return false;
+        }
+        try {
+            current.publish(topic, payload, qos, retained).waitForCompletion();
+            return true;
+        } catch (MqttException e) {
+            log.error("Error publishing MQTT message", e);
+            return false;
+        }
+    }
+
+    @Override
+    public boolean publishAsync(String topic, byte[] payload, int qos, Consumer<Boolean> onComplete) {
+        MqttAsyncClient current = client;
+        if (current == null || !current.isConnected()) {
+            return false;
+        }
+        try {
+            current.publish(topic, payload, qos, false, null, new IMqttActionListener() {
+                @Override
+                public void onSuccess(IMqttToken token) {
+                    onComplete.accept(true);
+                }
+
+                @Override
+                public void onFailure(IMqttToken token, Throwable exception) {
+                    onComplete.accept(false);
+                }
+            });
+            return true;
+        } catch (MqttException e) {
+            if (e.getReasonCode() != MqttException.REASON_CODE_MAX_INFLIGHT) {
+                log.error("Error publishing MQTT message", e);
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        MqttAsyncClient current = client;
+        return current != null && current.isConnected();
+    }
+
+    @Override
+    public void disconnect() {
+        try {
+            if (isConnected()) {
+                client.disconnect().waitForCompletion();
+                client.close();
+                log.info("🔌 Disconnected from MQTT Broker");
+            }
+        } catch (MqttException e) {
+            log.error("Error disconnecting MQTT client", e);
+        }
+    }
+
+    @Override
+    public String getProtocol() {
+        return "3.1.1";
+    }
+}
@@ -0,0 +1,204 @@
+package com.iot.gasdetection.mqtt;
+
+import com.iot.gasdetection.config.MqttProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.paho.mqttv5.client.IMqttToken;
+import org.eclipse.paho.mqttv5.client.MqttActionListener;
+import org.eclipse.paho.mqttv5.client.MqttAsyncClient;
+import org.eclipse.paho.mqttv5.client.MqttCallback;
+import org.eclipse.paho.mqttv5.client.MqttClientException;
+import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
+import org.eclipse.paho.mqttv5.client.MqttDisconnectResponse;
+import org.eclipse.paho.mqttv5.client.persist.MemoryPersistence;
+import org.eclipse.paho.mqttv5.common.MqttException;
+import org.eclipse.paho.mqttv5.common.MqttMessage;
+import org.eclipse.paho.mqttv5.common.MqttSubscription;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * MQTT 5 connection (Paho mqttv5), needed for {@code $share/<group>/...} subscriptions across replicas and
+ * for no-local subscriptions on the cluster bus. Uses the asynchronous client and waits on its tokens, except
+ * in {@link #publishAsync}; the broker's receive maximum bounds the publishes in flight.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "mqtt.protocol", havingValue = "v5")
+@RequiredArgsConstructor
+public class PahoV5Connection implements MqttConnection {
+
+    private final MqttProperties mqttProperties;
+
+    // filter -> subscription, restored after reconnects (clean start)
+    private final Map<String, MqttSubscription> subscriptions = new ConcurrentHashMap<>();
+    private volatile MqttAsyncClient client;
+
+    @Override
+    public boolean connect(String clientId, Listener listener) {
+        try {
+            // Clean sessions keep nothing across restarts, so in-flight state does not need files
+            client = new MqttAsyncClient(mqttProperties.getBroker().getUrl(), clientId, new MemoryPersistence());
+
+            MqttConnectionOptions options = new MqttConnectionOptions();
+            options.setAutomaticReconnect(true);
+            options.setCleanStart(true);
+            options.setConnectionTimeout(30);
+            options.setKeepAliveInterval(60);
+
+            MqttProperties.Broker broker = mqttProperties.getBroker();
+            if (broker.getUsername() != null && !broker.getUsername().isEmpty()) {
+                options.setUserName(broker.getUsername());
+                options.setPassword(broker.getPassword().getBytes(StandardCharsets.UTF_8));
+            }
+
+            client.setCallback(new MqttCallback() {
+                @Override
+                public void connectComplete(boolean reconnect, String serverURI) {
+                    if (reconnect) {
+                        log.info("✅ Reconnected to MQTT Broker: {}", serverURI);
+                        subscriptions.values().forEach(PahoV5Connection.this::subscribeNow);
+                    }
+                    listener.connectionChanged(true);
+                }
+
+                @Override
+                public void disconnected(MqttDisconnectResponse response) {
+                    log.error("❌ MQTT Connection lost: {}", response.getReasonString(), response.getException());
+                    listener.connectionChanged(false);
+                }
+
+                @Override
+                public void mqttErrorOccurred(MqttException exception) {
+                    log.error("❌ MQTT error", exception);
+                }
+
+                @Override
+                public void messageArrived(String topic, MqttMessage message) {
+                    listener.messageArrived(topic, message.getPayload());
+                }
+
+                @Override
+                public void deliveryComplete(IMqttToken token) {
+                    // Not used
+                }
+
+                @Override
+                public void authPacketArrived(int reasonCode, org.eclipse.paho.mqttv5.common.packet.MqttProperties properties) {
+                    // Not used
+                }
+            });
+
+            client.connect(options).waitForCompletion();
+            log.info("✅ Connected to MQTT Broker: {} (MQTT 5)", broker.getUrl());
+            return true;
+        } catch (MqttException e) {
+            log.error("❌ Failed to connect to MQTT Broker", e);
+            return false;
+        }
+    }
+
+    @Override
+    public void subscribe(String filter, int qos, boolean noLocal) {
+        MqttSubscription subscription = new MqttSubscription(filter, qos);
+        subscription.setNoLocal(noLocal);
+        subscriptions.put(filter, subscription);
+        if (isConnected()) {
+            subscribeNow(subscription);
+        }
+    }
+
+    private void subscribeNow(MqttSubscription subscription) {
+        try {
+            client.subscribe(new MqttSubscription[] {subscription}).waitForCompletion();
+            log.info("📡 Subscribed to topic: {}", subscription.getTopic());
+        } catch (MqttException e) {
+            log.error("❌ Failed to subscribe to {}", subscription.getTopic(), e);
+        }
+    }
+
+    @Override
+    public void unsubscribe(String filter) {
+        if (subscriptions.remove(filter) == null || !isConnected()) {
+            return;
+        }
+        try {
+            client.unsubscribe(filter).waitForCompletion();
+            log.info("📡 Unsubscribed from topic: {}", filter);
+        } catch (MqttException e) {
+            log.error("❌ Failed to unsubscribe from {}", filter, e);
+        }
+    }
+
+    @Override
+    public boolean publish(String topic, byte[] payload, int qos, boolean retained) {
+        MqttAsyncClient current = client;
+        if (current == null || !current.isConnected()) {
+            log.warn("⚠️ Cannot publish, MQTT client not connected");
+            return false;
+        }
+        try {
+            current.publish(topic, payload, qos, retained).waitForCompletion();
+            return true;
+        } catch (MqttException e) {
+            log.error("Error publishing MQTT message", e);
+            return false;
+        }
+    }
+
+    @Override
+    public boolean publishAsync(String topic, byte[] payload, int qos, Consumer<Boolean> onComplete) {
+        MqttAsyncClient current = client;
+        if (current == null || !current.isConnected()) {
+            return false;
+        }
+        try {
+            current.publish(topic, payload, qos, false, null, new MqttActionListener() {
+                @Override
+                public void onSuccess(IMqttToken token) {
+                    onComplete.accept(true);
+                }
+
+                @Override
+                public void onFailure(IMqttToken token, Throwable exception) {
+                    onComplete.accept(false);
+                }
+            });
+            return true;
+        } catch (MqttException e) {
+            if (e.getReasonCode() != MqttClientException.REASON_CODE_MAX_INFLIGHT) {
+                log.error("Error publishing MQTT message", e);
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        MqttAsyncClient current = client;
+        return current != null && current.isConnected();
+    }
+
+    @Override
+    public void disconnect() {
+        try {
+            if (isConnected()) {
+                client.disconnect().waitForCompletion();
+                client.close();
+                log.info("🔌 Disconnected from MQTT Broker");
+            }
+        } catch (MqttException e) {
+            log.error("Error disconnecting MQTT client", e);
+        }
+    }
+
+    @Override
+    public String getProtocol() {
+        return "5";
+    }
+}
@@ -0,0 +1,30 @@
+package com.iot.gasdetection.rules;
+
+import com.iot.gasdetection.alert.AlertKind;
+import com.iot.gasdetection.model.SensorField;
+
+final class CompiledRule {
+
+    final String name;
+    final AlertKind kind;
+    final String level;
+    final Node condition;
+    final long sustainMillis;
+    final String message;
+    // Bit set of the fields the condition reads
+    final int fieldMask;
+    // First field the condition reads; its value is attached to pushes
+    final SensorField primaryField;
+
+    CompiledRule(String name, AlertKind kind, String level, Node condition, long sustainMillis, String message,
+                 int fieldMask, SensorField primaryField) {
+        this.name = name;
+        this.kind = kind;
+        this.level = level;
+        this.condition = condition;
+        this.sustainMillis = sustainMillis;
+        this.message = message;
+        this.fieldMask = fieldMask;
+        this.primaryField = primaryField;
+    }
+}
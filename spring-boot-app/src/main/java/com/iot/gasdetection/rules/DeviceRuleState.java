@@ -0,0 +1,47 @@
+package com.iot.gasdetection.rules;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rule state of one device, sized for one {@link RuleSet}. Only touched by the thread ingesting that
+ * device's readings.
+ */
+final class DeviceRuleState {
+
+    final RuleSet ruleSet;
+    final boolean[] active;
+    // Since when the condition holds, 0 while it does not
+    final long[] trueSince;
+    final RiseTracker[] rises;
+
+    DeviceRuleState(RuleSet ruleSet) {
+        this.ruleSet = ruleSet;
+        this.active = new boolean[ruleSet.rules.length];
+        this.trueSince = new long[ruleSet.rules.length];
+        this.rises = new RiseTracker[ruleSet.rises.length];
+        for (int i = 0; i < rises.length; i++) {
+            rises[i] = new RiseTracker(ruleSet.rises[i].windowMillis);
+        }
+    }
+
+    /**
+     * State for a reloaded rule set; rules that kept their name keep their active state, so a reload does
+     * not re-fire alarms that are already open.
+     */
+    DeviceRuleState migrate(RuleSet next) {
+        DeviceRuleState migrated = new DeviceRuleState(next);
+        Map<String, Integer> previous = new HashMap<>();
+        for (int i = 0; i < ruleSet.rules.length; i++) {
+            previous.put(ruleSet.rules[i].name, i);
+        }
+        for (int i = 0; i < next.rules.length; i++) {
+            Integer old = previous.get(next.rules[i].name);
+            if (old != null) {
+                migrated.active[i] = active[old];
+                migrated.trueSince[i] = trueSince[old];
+            }
+        }
+        return migrated;
+    }
+}
@@ -0,0 +1,13 @@
+package com.iot.gasdetection.rules;
+
+import com.iot.gasdetection.device.DeviceState;
+
+/**
+ * Per-thread scratch passed through an evaluation; reused for every reading so evaluation allocates nothing.
+ */
+final class EvalContext {
+
+    final DeviceState.StateView view = new DeviceState.StateView();
+    DeviceRuleState state;
+    long now;
+}
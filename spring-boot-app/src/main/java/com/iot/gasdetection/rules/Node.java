@@ -0,0 +1,149 @@
+package com.iot.gasdetection.rules;
+
+import com.iot.gasdetection.model.SensorField;
+
+/**
+ * Compiled rule expression. Every node evaluates to a long; comparisons and logical operators yield 1 or 0.
+ */
+abstract class Node {
+
+    abstract long eval(EvalContext ctx);
+
+    static final class Const extends Node {
+
+        private final long value;
+
+        Const(long value) {
+            this.value = value;
+        }
+
+        @Override
+        long eval(EvalContext ctx) {
+            return value;
+        }
+    }
+
+    static final class Field extends Node {
+
+        final SensorField field;
+
+        Field(SensorField field) {
+            this.field = field;
+        }
+
+        @Override
+        long eval(EvalContext ctx) {
+            return ctx.view.get(field);
+        }
+    }
+
+    /**
+     * {@code rise(field, window)}: current value minus the lowest value seen within the window.
+     */
+    static final class Rise extends Node {
+
+        final SensorField field;
+        final long windowMillis;
+        final int slot;
+
+        Rise(SensorField field, long windowMillis, int slot) {
+            this.field = field;
+            this.windowMillis = windowMillis;
+            this.slot = slot;
+        }
+
+        @Override
+        long eval(EvalContext ctx) {
+            int current = ctx.view.get(field);
+            return current - ctx.state.rises[slot].min(ctx.now, current);
+        }
+    }
+
+    static final class Binary extends Node {
+
+        static final int ADD = 0;
+        static final int SUB = 1;
+        static final int MUL = 2;
+        static final int DIV = 3;
+        static final int LT = 4;
+        static final int LE = 5;
+        static final int GT = 6;
+        static final int GE = 7;
+        static final int EQ = 8;
+        static final int NE = 9;
+
+        private final int op;
+        private final Node left;
+        private final Node right;
+
+        Binary(int op, Node left, Node right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        long eval(EvalContext ctx) {
+            long l = left.eval(ctx);
+            long r = right.eval(ctx);
+            switch (op) {
+                case ADD: return l + r;
+                case SUB: return l - r;
+                case MUL: return l * r;
+                case DIV: return r == 0 ? 0 : l / r;
+                case LT: return l < r ? 1 : 0;
+                case LE: return l <= r ? 1 : 0;
+                case GT: return l > r ? 1 : 0;
+                case GE: return l >= r ? 1 : 0;
+                case EQ: return l == r ? 1 : 0;
+                default: return l != r ? 1 : 0;
+            }
+        }
+    }
+
+    static final class And extends Node {
+
+        private final Node left;
+        private final Node right;
+
+        And(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        long eval(EvalContext ctx) {
+            return left.eval(ctx) != 0 && right.eval(ctx) != 0 ? 1 : 0;
+        }
+    }
+
+    static final class Or extends Node {
+
+        private final Node left;
+        private final Node right;
+
+        Or(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        long eval(EvalContext ctx) {
+            return left.eval(ctx) != 0 || right.eval(ctx) != 0 ? 1 : 0;
+        }
+    }
+
+    static final class Not extends Node {
+
+        private final Node operand;
+
+        Not(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        long eval(EvalContext ctx) {
+            return operand.eval(ctx) == 0 ? 1 : 0;
+        }
+    }
+}
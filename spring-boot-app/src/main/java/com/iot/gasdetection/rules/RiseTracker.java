@@ -0,0 +1,46 @@
+package com.iot.gasdetection.rules;
+
+import java.util.Arrays;
+
+/**
+ * Sliding-window minimum of one field of one device, kept as the per-bucket minimum of 8 buckets spanning
+ * the window (plus the bucket being filled). Fixed size; recording and querying never allocate.
+ */
+final class RiseTracker {
+
+    private static final int BUCKETS = 8;
+
+    private final long bucketMillis;
+    private final long[] bucketIds = new long[BUCKETS + 1];
+    private final int[] minimums = new int[BUCKETS + 1];
+
+    RiseTracker(long windowMillis) {
+        this.bucketMillis = Math.max(1, windowMillis / BUCKETS);
+        Arrays.fill(bucketIds, Long.MIN_VALUE);
+    }
+
+    void record(int value, long now) {
+        long bucket = now / bucketMillis;
+        int slot = (int) (bucket % bucketIds.length);
+        if (bucketIds[slot] != bucket) {
+            bucketIds[slot] = bucket;
+            minimums[slot] = value;
+        } else if (value < minimums[slot]) {
+            minimums[slot] = value;
+        }
+    }
+
+    /**
+     * Lowest value recorded within the window, or {@code fallback} if there is none.
+     */
+    int min(long now, int fallback) {
+        long bucket = now / bucketMillis;
+        int min = fallback;
+        for (int i = 0; i < bucketIds.length; i++) {
+            if (bucketIds[i] >= bucket - BUCKETS && bucketIds[i] <= bucket && minimums[i] < min) {
+                min = minimums[i];
+            }
+        }
+        return min;
+    }
+}
@@ -0,0 +1,30 @@
+package com.iot.gasdetection.rules;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+/**
+ * One rule as written in the rule file, e.g.
+ * {@code {"name":"gas-high","kind":"gas","level":"critical","when":"mq2 > threshold","for":"5s",
+ * "message":"MQ2: {mq2}"}}.
+ */
+@Data
+public class RuleDefinition {
+
+    private String name;
+
+    // "fire" or "gas": drives push notifications; other rules only produce notifications
+    private String kind;
+
+    private String level = "warning";
+
+    // Condition, see RuleParser for the grammar
+    private String when;
+
+    // Condition must hold continuously this long (e.g. "10s", "500ms", "2m") before the rule fires
+    @JsonProperty("for")
+    private String sustain;
+
+    // Notification text; {device}, {rule} and field names in braces are replaced by current values
+    private String message;
+}
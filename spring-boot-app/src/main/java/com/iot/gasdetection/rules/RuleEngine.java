@@ -0,0 +1,240 @@
+package com.iot.gasdetection.rules;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.gasdetection.config.RuleProperties;
+import com.iot.gasdetection.device.DeviceState;
+import com.iot.gasdetection.model.SensorField;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Evaluates alarm rules on the server for every ingested reading.
+ * <p>
+ * Rules are compiled once per rule-file version into expression trees over primitive longs. A reading only
+ * evaluates the rules that read its field, against a per-thread view of the device state, so the steady
+ * state allocates nothing; objects are only created when a rule changes state. Rules fire on transitions
+ * (and after their {@code for} duration), never once per reading.
+ * <p>
+ * The rule file is polled for changes and swapped atomically; a file that fails to compile is rejected and
+ * the previous rules stay in force.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RuleEngine {
+
+    private static final String BUNDLED_RULES = "rules.json";
+
+    private final RuleProperties properties;
+    private final ObjectMapper objectMapper;
+
+    private final ConcurrentHashMap<String, DeviceRuleState> states = new ConcurrentHashMap<>();
+    private final ThreadLocal<EvalContext> contexts = ThreadLocal.withInitial(EvalContext::new);
+
+    private volatile RuleSet ruleSet;
+    private volatile Consumer<RuleEvent> listener = event -> { };
+    private ScheduledExecutorService reloader;
+    private long loadedModified = Long.MIN_VALUE;
+
+    /**
+     * False with {@code rules.enabled=false}; no rule events are raised then.
+     */
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled()) {
+            log.warn("📏 Rule engine disabled, fire and gas pushes follow device notifications only");
+            return;
+        }
+        if (!reloadIfChanged()) {
+            loadBundled();
+        }
+        reloader = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rules-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reloader.scheduleWithFixedDelay(this::reloadIfChanged, properties.getReloadIntervalMs(),
+                properties.getReloadIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+        }
+    }
+
+    public void setListener(Consumer<RuleEvent> listener) {
+        this.listener = listener;
+    }
+
+    public List<String> getRuleNames() {
+        RuleSet current = ruleSet;
+        List<String> names = new ArrayList<>();
+        if (current != null) {
+            for (CompiledRule rule : current.rules) {
+                names.add(rule.name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Drops the device's rule state (sustain timers, rise windows, active rules), when another node takes
+     * the device over.
+     */
+    public void forget(String deviceId) {
+        states.remove(deviceId);
+    }
+
+    /**
+     * Evaluates the rules reading {@code field} after a new reading of it was applied to {@code device}.
+     * Must be called by the thread that ingests this device's readings.
+     */
+    public void onReading(DeviceState device, SensorField field, long now) {
+        RuleSet current = ruleSet;
+        if (current == null) {
+            return;
+        }
+        int[] ruleIds = current.rulesByField[field.ordinal()];
+        int[] riseIds = current.risesByField[field.ordinal()];
+        if (ruleIds.length == 0 && riseIds.length == 0) {
+            return;
+        }
+
+        DeviceRuleState state = states.get(device.getDeviceId());
+        if (state == null) {
+            state = states.computeIfAbsent(device.getDeviceId(), k -> new DeviceRuleState(current));
+        }
+        if (state.ruleSet != current) {
+            state = state.migrate(current);
+            states.put(device.getDeviceId(), state);
+        }
+
+        EvalContext ctx = contexts.get();
+        device.readInto(ctx.view);
+        ctx.state = state;
+        ctx.now = now;
+
+        int value = ctx.view.get(field);
+        for (int id : riseIds) {
+            state.rises[id].record(value, now);
+        }
+        for (int id : ruleIds) {
+            CompiledRule rule = current.rules[id];
+            // A rule over a reading the device never reported would only see its zero placeholder
+            boolean holds = (rule.fieldMask & ~(ctx.view.getReceivedMask() | DeviceState.DEFAULTED_MASK)) == 0
+                    && rule.condition.eval(ctx) != 0;
+            boolean active;
+            if (holds) {
+                if (state.trueSince[id] == 0) {
+                    state.trueSince[id] = now;
+                }
+                active = now - state.trueSince[id] >= rule.sustainMillis;
+            } else {
+                state.trueSince[id] = 0;
+                active = false;
+            }
+            if (active != state.active[id]) {
+                state.active[id] = active;
+                fire(device.getDeviceId(), rule, active, ctx.view, now);
+            }
+        }
+    }
+
+    private void fire(String deviceId, CompiledRule rule, boolean active, DeviceState.StateView view, long now) {
+        Integer value = rule.primaryField != null ? view.get(rule.primaryField) : null;
+        RuleEvent event = new RuleEvent(deviceId, rule.name, rule.kind, rule.level, active,
+                format(rule.message, deviceId, rule.name, view), value, now);
+        try {
+            listener.accept(event);
+        } catch (Exception e) {
+            log.error("Error handling rule event {}", event, e);
+        }
+    }
+
+    private static String format(String template, String deviceId, String rule, DeviceState.StateView view) {
+        StringBuilder out = new StringBuilder(template.length() + 16);
+        int pos = 0;
+        while (pos < template.length()) {
+            int open = template.indexOf('{', pos);
+            int close = open < 0 ? -1 : template.indexOf('}', open);
+            if (close < 0) {
+                out.append(template, pos, template.length());
+                break;
+            }
+            out.append(template, pos, open);
+            String key = template.substring(open + 1, close);
+            SensorField field = SensorField.fromJsonName(key);
+            if (field != null) {
+                out.append(view.get(field));
+            } else if (key.equals("device")) {
+                out.append(deviceId);
+            } else if (key.equals("rule")) {
+                out.append(rule);
+            } else {
+                out.append(template, open, close + 1);
+            }
+            pos = close + 1;
+        }
+        return out.toString();
+    }
+
+    /**
+     * @return true if the external rule file exists and is in force
+     */
+    private synchronized boolean reloadIfChanged() {
+        Path file = Paths.get(properties.getFile());
+        try {
+            if (!Files.exists(file)) {
+                return false;
+            }
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            if (modified == loadedModified) {
+                return true;
+            }
+            loadedModified = modified;
+            RuleSet compiled;
+            try (InputStream in = Files.newInputStream(file)) {
+                compiled = RuleSet.compile(objectMapper.readValue(in, RuleFile.class));
+            }
+            ruleSet = compiled;
+            log.info("📏 Loaded {} rules from {}", compiled.rules.length, file.toAbsolutePath());
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("❌ Rejected rule file {}: {}", file.toAbsolutePath(), e.getMessage());
+            return ruleSet != null;
+        }
+    }
+
+    private void loadBundled() {
+        try (InputStream in = new ClassPathResource(BUNDLED_RULES).getInputStream()) {
+            RuleSet compiled = RuleSet.compile(objectMapper.readValue(in, RuleFile.class));
+            ruleSet = compiled;
+            log.info("📏 Loaded {} bundled rules", compiled.rules.length);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot load bundled " + BUNDLED_RULES, e);
+        }
+    }
+}
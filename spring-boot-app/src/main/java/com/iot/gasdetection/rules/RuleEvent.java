@@ -0,0 +1,24 @@
+package com.iot.gasdetection.rules;
+
+import com.iot.gasdetection.alert.AlertKind;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A rule started ({@code active}) or stopped matching for a device.
+ */
+@Data
+@AllArgsConstructor
+public class RuleEvent {
+
+    private String deviceId;
+    private String rule;
+    private AlertKind kind;
+    private String level;
+    private boolean active;
+    private String message;
+    // Value of the first field the rule reads, null if it reads none
+    private Integer value;
+    // Receive time of the reading that started or ended the match
+    private long timestamp;
+}
@@ -0,0 +1,12 @@
+package com.iot.gasdetection.rules;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class RuleFile {
+
+    private List<RuleDefinition> rules = new ArrayList<>();
+}
@@ -0,0 +1,253 @@
+package com.iot.gasdetection.rules;
+
+import com.iot.gasdetection.model.SensorField;
+
+import java.util.List;
+
+/**
+ * Recursive-descent parser for rule conditions.
+ * <pre>
+ * expr    := and ( ('||' | 'or') and )*
+ * and     := cmp ( ('&amp;&amp;' | 'and') cmp )*
+ * cmp     := sum ( ('&lt;' | '&lt;=' | '&gt;' | '&gt;=' | '==' | '!=') sum )?
+ * sum     := product ( ('+' | '-') product )*
+ * product := unary ( ('*' | '/') unary )*
+ * unary   := ('!' | 'not' | '-') unary | primary
+ * primary := number | field | 'rise' '(' field ',' duration ')' | '(' expr ')'
+ * </pre>
+ * Fields are the JSON names of {@link SensorField} (booleans read as 1/0, mode AUTO as 1). Durations are
+ * a number with unit {@code ms}, {@code s}, {@code m} or {@code h}, e.g. {@code rise(mq2, 10s) > 500}.
+ */
+final class RuleParser {
+
+    private final String text;
+    private final List<Node.Rise> rises;
+    private int pos;
+
+    /**
+     * @param rises receives every rise() node; each gets the next tracker slot
+     */
+    RuleParser(String text, List<Node.Rise> rises) {
+        this.text = text;
+        this.rises = rises;
+    }
+
+    Node parse() {
+        Node node = parseOr();
+        skipSpaces();
+        if (pos < text.length()) {
+            throw error("Unexpected '" + text.charAt(pos) + "'");
+        }
+        return node;
+    }
+
+    private Node parseOr() {
+        Node node = parseAnd();
+        while (accept("||") || acceptWord("or")) {
+            node = new Node.Or(node, parseAnd());
+        }
+        return node;
+    }
+
+    private Node parseAnd() {
+        Node node = parseComparison();
+        while (accept("&&") || acceptWord("and")) {
+            node = new Node.And(node, parseComparison());
+        }
+        return node;
+    }
+
+    private Node parseComparison() {
+        Node left = parseSum();
+        int op;
+        if (accept("<=")) {
+            op = Node.Binary.LE;
+        } else if (accept(">=")) {
+            op = Node.Binary.GE;
+        } else if (accept("==")) {
+            op = Node.Binary.EQ;
+        } else if (accept("!=")) {
+            op = Node.Binary.NE;
+        } else if (accept("<")) {
+            op = Node.Binary.LT;
+        } else if (accept(">")) {
+            op = Node.Binary.GT;
+        } else {
+            return left;
+        }
+        return new Node.Binary(op, left, parseSum());
+    }
+
+    private Node parseSum() {
+        Node node = parseProduct();
+        while (true) {
+            if (accept("+")) {
+                node = new Node.Binary(Node.Binary.ADD, node, parseProduct());
+            } else if (accept("-")) {
+                node = new Node.Binary(Node.Binary.SUB, node, parseProduct());
+            } else {
+                return node;
+            }
+        }
+    }
+
+    private Node parseProduct() {
+        Node node = parseUnary();
+        while (true) {
+            if (accept("*")) {
+                node = new Node.Binary(Node.Binary.MUL, node, parseUnary());
+            } else if (accept("/")) {
+                node = new Node.Binary(Node.Binary.DIV, node, parseUnary());
+            } else {
+                return node;
+            }
+        }
+    }
+
+    private Node parseUnary() {
+        if (peek("!=")) {
+            throw error("Unexpected '!='");
+        }
+        if (accept("!") || acceptWord("not")) {
+            return new Node.Not(parseUnary());
+        }
+        if (accept("-")) {
+            return new Node.Binary(Node.Binary.SUB, new Node.Const(0), parseUnary());
+        }
+        return parsePrimary();
+    }
+
+    private Node parsePrimary() {
+        skipSpaces();
+        if (accept("(")) {
+            Node node = parseOr();
+            expect(")");
+            return node;
+        }
+        if (pos < text.length() && Character.isDigit(text.charAt(pos))) {
+            return new Node.Const(parseNumber());
+        }
+        String word = parseWord();
+        if (word.equals("rise")) {
+            expect("(");
+            SensorField field = parseField();
+            expect(",");
+            long window = parseDuration();
+            expect(")");
+            Node.Rise rise = new Node.Rise(field, window, rises.size());
+            rises.add(rise);
+            return rise;
+        }
+        return new Node.Field(toField(word));
+    }
+
+    private SensorField parseField() {
+        return toField(parseWord());
+    }
+
+    private SensorField toField(String word) {
+        SensorField field = SensorField.fromJsonName(word);
+        if (field == null) {
+            throw error("Unknown field '" + word + "'");
+        }
+        return field;
+    }
+
+    private long parseDuration() {
+        skipSpaces();
+        long value = parseNumber();
+        String unit = parseWord();
+        long millis = RuleParser.toMillis(value, unit);
+        if (millis <= 0) {
+            throw error("Invalid duration " + value + unit);
+        }
+        return millis;
+    }
+
+    /**
+     * Parses a standalone duration such as {@code "10s"}.
+     */
+    static long parseDuration(String text) {
+        return new RuleParser(text.trim(), null).parseStandaloneDuration();
+    }
+
+    private long parseStandaloneDuration() {
+        long millis = parseDuration();
+        if (pos < text.length()) {
+            throw error("Invalid duration");
+        }
+        return millis;
+    }
+
+    private static long toMillis(long value, String unit) {
+        switch (unit) {
+            case "ms": return value;
+            case "s": return value * 1_000;
+            case "m": return value * 60_000;
+            case "h": return value * 3_600_000;
+            default: return -1;
+        }
+    }
+
+    private long parseNumber() {
+        int start = pos;
+        while (pos < text.length() && Character.isDigit(text.charAt(pos))) {
+            pos++;
+        }
+        if (start == pos) {
+            throw error("Number expected");
+        }
+        return Long.parseLong(text.substring(start, pos));
+    }
+
+    private String parseWord() {
+        skipSpaces();
+        int start = pos;
+        while (pos < text.length() && (Character.isLetterOrDigit(text.charAt(pos)) || text.charAt(pos) == '_')) {
+            pos++;
+        }
+        if (start == pos) {
+            throw error(pos < text.length() ? "Unexpected '" + text.charAt(pos) + "'" : "Unexpected end");
+        }
+        return text.substring(start, pos);
+    }
+
+    private boolean peek(String token) {
+        skipSpaces();
+        return text.startsWith(token, pos);
+    }
+
+    private boolean accept(String token) {
+        if (peek(token)) {
+            pos += token.length();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean acceptWord(String word) {
+        skipSpaces();
+        int end = pos + word.length();
+        if (text.startsWith(word, pos) && (end == text.length() || !Character.isLetterOrDigit(text.charAt(end)))) {
+            pos = end;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String token) {
+        if (!accept(token)) {
+            throw error("Expected '" + token + "'");
+        }
+    }
+
+    private void skipSpaces() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + pos + " in \"" + text + "\"");
+    }
+}
@@ -0,0 +1,104 @@
+package com.iot.gasdetection.rules;
+
+import com.iot.gasdetection.alert.AlertKind;
+import com.iot.gasdetection.model.SensorField;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable, compiled rule file. Besides the rules it holds, per field, which rules read it and which rise
+ * trackers sample it, so a reading only touches the rules it can affect.
+ */
+final class RuleSet {
+
+    private static final Pattern FIELD_REFERENCE = Pattern.compile("[a-z][a-z0-9]*");
+
+    final CompiledRule[] rules;
+    final Node.Rise[] rises;
+    final int[][] rulesByField;
+    final int[][] risesByField;
+
+    private RuleSet(CompiledRule[] rules, Node.Rise[] rises) {
+        this.rules = rules;
+        this.rises = rises;
+        int fields = SensorField.values().length;
+        this.rulesByField = new int[fields][];
+        this.risesByField = new int[fields][];
+        for (SensorField field : SensorField.values()) {
+            List<Integer> ruleIds = new ArrayList<>();
+            for (int i = 0; i < rules.length; i++) {
+                if ((rules[i].fieldMask & field.getMask()) != 0) {
+                    ruleIds.add(i);
+                }
+            }
+            rulesByField[field.ordinal()] = ruleIds.stream().mapToInt(Integer::intValue).toArray();
+            List<Integer> riseIds = new ArrayList<>();
+            for (int i = 0; i < rises.length; i++) {
+                if (rises[i].field == field) {
+                    riseIds.add(i);
+                }
+            }
+            risesByField[field.ordinal()] = riseIds.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    static RuleSet compile(RuleFile file) {
+        List<CompiledRule> rules = new ArrayList<>();
+        List<Node.Rise> rises = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (RuleDefinition definition : file.getRules()) {
+            String name = definition.getName();
+            if (name == null || name.isBlank()) {
+                throw new IllegalArgumentException("Rule without name");
+            }
+            if (!names.add(name)) {
+                throw new IllegalArgumentException("Duplicate rule name '" + name + "'");
+            }
+            if (definition.getWhen() == null) {
+                throw new IllegalArgumentException("Rule '" + name + "' has no condition");
+            }
+            try {
+                rules.add(compile(definition, rises));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Rule '" + name + "': " + e.getMessage(), e);
+            }
+        }
+        return new RuleSet(rules.toArray(new CompiledRule[0]), rises.toArray(new Node.Rise[0]));
+    }
+
+    private static CompiledRule compile(RuleDefinition definition, List<Node.Rise> rises) {
+        Node condition = new RuleParser(definition.getWhen(), rises).parse();
+
+        int fieldMask = 0;
+        SensorField primary = null;
+        Matcher matcher = FIELD_REFERENCE.matcher(definition.getWhen());
+        while (matcher.find()) {
+            SensorField field = SensorField.fromJsonName(matcher.group());
+            if (field != null) {
+                fieldMask |= field.getMask();
+                if (primary == null) {
+                    primary = field;
+                }
+            }
+        }
+
+        AlertKind kind = null;
+        if (definition.getKind() != null) {
+            try {
+                kind = AlertKind.valueOf(definition.getKind().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown kind '" + definition.getKind() + "'");
+            }
+        }
+        long sustain = definition.getSustain() != null ? RuleParser.parseDuration(definition.getSustain()) : 0;
+        String level = definition.getLevel() != null ? definition.getLevel().toLowerCase(Locale.ROOT) : "warning";
+        String message = definition.getMessage() != null ? definition.getMessage() : definition.getName();
+        return new CompiledRule(definition.getName(), kind, level, condition, sustain, message, fieldMask, primary);
+    }
+}
@@ -1,12 +1,17 @@
 package com.iot.gasdetection.service;
 
-import com.google.firebase.messaging.*;
+import com.iot.gasdetection.config.FcmProperties;
+import com.iot.gasdetection.fcm.FcmClient;
+import com.iot.gasdetection.fcm.FcmDispatcher;
+import com.iot.gasdetection.fcm.FcmMessage;
+import com.iot.gasdetection.fcm.FcmResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class FcmService {
@@ -19,6 +24,18 @@ public class FcmService {
     // Topic name cho fire alerts
     private static final String FIRE_ALERT_TOPIC = "fire_alerts";
 
+    private static final long SEND_TIMEOUT_SECONDS = 30;
+
+    private final FcmClient fcmClient;
+    private final FcmDispatcher fcmDispatcher;
+    private final FcmProperties fcmProperties;
+
+    public FcmService(FcmClient fcmClient, FcmDispatcher fcmDispatcher, FcmProperties fcmProperties) {
+        this.fcmClient = fcmClient;
+        this.fcmDispatcher = fcmDispatcher;
+        this.fcmProperties = fcmProperties;
+    }
+
     /**
      * Đăng ký device token
      */
@@ -53,86 +70,58 @@ public class FcmService {
     }
 
     /**
-     * Gửi notification đến 1 device cụ thể
+     * Gửi notification đến 1 device cụ thể (đồng bộ, dùng cho test endpoint)
      */
     public String sendToDevice(String token, String title, String body, Map<String, String> data) {
         try {
-            Message message = Message.builder()
-                    .setToken(token)
-                    .setNotification(Notification.builder()
-                            .setTitle(title)
-                            .setBody(body)
-                            .build())
-                    .putAllData(data != null ? data : new HashMap<>())
-                    .setAndroidConfig(AndroidConfig.builder()
-                            .setPriority(AndroidConfig.Priority.HIGH)
-                            .setNotification(AndroidNotification.builder()
-                                    .setSound("default")
-                                    .setChannelId("fire_alert_channel")
-                                    .setPriority(AndroidNotification.Priority.MAX)
-                                    .build())
-                            .build())
-                    .build();
-
-            String response = FirebaseMessaging.getInstance().send(message);
-            logger.info("🔔 FCM notification sent successfully to device. Response: {}", response);
-            return response;
-        } catch (FirebaseMessagingException e) {
+            FcmResult result = fcmClient.sendMulticast(Collections.singletonList(token), new FcmMessage(title, body, data))
+                    .get(SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS).get(0);
+            if (result.getStatus() == FcmResult.Status.UNREGISTERED) {
+                pruneToken(token);
+            }
+            if (result.getStatus() != FcmResult.Status.SUCCESS) {
+                logger.error("❌ Failed to send FCM notification to device: {}", result.getStatus());
+                return null;
+            }
+            logger.info("🔔 FCM notification sent successfully to device. Response: {}", result.getMessageId());
+            return result.getMessageId();
+        } catch (Exception e) {
             logger.error("❌ Failed to send FCM notification to device: {}", e.getMessage());
             return null;
         }
     }
 
     /**
-     * Gửi notification đến tất cả devices đã đăng ký
+     * Gửi notification đến tất cả devices đã đăng ký (bất đồng bộ, theo lô 500 token)
      */
     public void sendToAllDevices(String title, String body, Map<String, String> data) {
+        sendToAllDevices(new FcmMessage(title, body, data));
+    }
+
+    private void sendToAllDevices(FcmMessage message) {
         if (deviceTokens.isEmpty()) {
             logger.warn("⚠️ No registered devices to send notification");
             return;
         }
-
-        int successCount = 0;
-        int failureCount = 0;
-
-        for (String token : deviceTokens) {
-            String result = sendToDevice(token, title, body, data);
-            if (result != null) {
-                successCount++;
-            } else {
-                failureCount++;
-            }
+        if (fcmDispatcher.submitToTokens(deviceTokens, message, this::pruneToken)) {
+            logger.info("📤 FCM notification queued for {} devices", deviceTokens.size());
         }
-
-        logger.info("📊 FCM batch notification completed. Success: {}, Failure: {}", successCount, failureCount);
     }
 
     /**
-     * Gửi notification đến topic (hiệu quả hơn cho nhiều devices)
+     * Gửi notification đến topic (đồng bộ, dùng cho test endpoint)
      */
     public String sendToTopic(String topic, String title, String body, Map<String, String> data) {
         try {
-            Message message = Message.builder()
-                    .setTopic(topic)
-                    .setNotification(Notification.builder()
-                            .setTitle(title)
-                            .setBody(body)
-                            .build())
-                    .putAllData(data != null ? data : new HashMap<>())
-                    .setAndroidConfig(AndroidConfig.builder()
-                            .setPriority(AndroidConfig.Priority.HIGH)
-                            .setNotification(AndroidNotification.builder()
-                                    .setSound("default")
-                                    .setChannelId("fire_alert_channel")
-                                    .setPriority(AndroidNotification.Priority.MAX)
-                                    .build())
-                            .build())
-                    .build();
-
-            String response = FirebaseMessaging.getInstance().send(message);
-            logger.info("🔔 FCM notification sent to topic '{}'. Response: {}", topic, response);
-            return response;
-        } catch (FirebaseMessagingException e) {
+            FcmResult result = fcmClient.sendToTopic(topic, new FcmMessage(title, body, data))
+                    .get(SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (result.getStatus() != FcmResult.Status.SUCCESS) {
+                logger.error("❌ Failed to send FCM notification to topic: {}", result.getStatus());
+                return null;
+            }
+            logger.info("🔔 FCM notification sent to topic '{}'. Response: {}", topic, result.getMessageId());
+            return result.getMessageId();
+        } catch (Exception e) {
             logger.error("❌ Failed to send FCM notification to topic: {}", e.getMessage());
             return null;
         }
@@ -142,34 +131,41 @@ public class FcmService {
      * Subscribe token vào topic
      */
     public void subscribeToTopic(String token, String topic) {
-        try {
-            TopicManagementResponse response = FirebaseMessaging.getInstance()
-                    .subscribeToTopic(Collections.singletonList(token), topic);
-            logger.info("✅ Subscribed to topic '{}'. Success: {}, Failure: {}", 
-                    topic, response.getSuccessCount(), response.getFailureCount());
-        } catch (FirebaseMessagingException e) {
-            logger.error("❌ Failed to subscribe to topic: {}", e.getMessage());
-        }
+        fcmClient.subscribe(Collections.singletonList(token), topic);
     }
 
     /**
      * Unsubscribe token khỏi topic
      */
     public void unsubscribeFromTopic(String token, String topic) {
-        try {
-            TopicManagementResponse response = FirebaseMessaging.getInstance()
-                    .unsubscribeFromTopic(Collections.singletonList(token), topic);
-            logger.info("✅ Unsubscribed from topic '{}'. Success: {}, Failure: {}", 
-                    topic, response.getSuccessCount(), response.getFailureCount());
-        } catch (FirebaseMessagingException e) {
-            logger.error("❌ Failed to unsubscribe from topic: {}", e.getMessage());
+        fcmClient.unsubscribe(Collections.singletonList(token), topic);
+    }
+
+    /**
+     * Xóa token mà FCM báo là UNREGISTERED (app đã gỡ hoặc token hết hạn)
+     */
+    private void pruneToken(String token) {
+        if (deviceTokens.remove(token)) {
+            logger.info("🧹 Pruned unregistered FCM token: {}", token.substring(0, Math.min(20, token.length())) + "...");
+        }
+    }
+
+    /**
+     * Đưa cảnh báo vào hàng đợi gửi; không bao giờ chặn luồng MQTT
+     */
+    private void dispatchAlert(String title, String message, Map<String, String> data, long originAt) {
+        FcmMessage fcmMessage = new FcmMessage(title, message, data, originAt);
+        if (fcmProperties.getAlertTarget() == FcmProperties.AlertTarget.TOKENS) {
+            sendToAllDevices(fcmMessage);
+        } else {
+            fcmDispatcher.submitToTopic(FIRE_ALERT_TOPIC, fcmMessage);
         }
     }
 
     /**
-     * Gửi Fire Alert notification (high priority)
+     * Gửi Fire Alert notification (high priority); originAt là thời điểm nhận số đo gây ra cảnh báo
      */
-    public void sendFireAlert(String message, String sensorValue) {
+    public void sendFireAlert(String message, String sensorValue, long originAt) {
         Map<String, String> data = new HashMap<>();
         data.put("type", "fire_alert");
         data.put("message", message);
@@ -177,17 +173,14 @@ public class FcmService {
         data.put("timestamp", String.valueOf(System.currentTimeMillis()));
         data.put("priority", "high");
 
-        // Gửi đến topic (recommend)
-        sendToTopic(FIRE_ALERT_TOPIC, "🔥 CẢNH BÁO CHÁY!", message, data);
-        
-        // Hoặc gửi đến tất cả devices (backup)
-        // sendToAllDevices("🔥 CẢNH BÁO CHÁY!", message, data);
+        // Gửi đến topic (mặc định) hoặc tất cả devices, theo fcm.alert-target
+        dispatchAlert("🔥 CẢNH BÁO CHÁY!", message, data, originAt);
     }
 
     /**
-     * Gửi Gas Alert notification (high priority)
+     * Gửi Gas Alert notification (high priority); originAt là thời điểm nhận số đo gây ra cảnh báo
      */
-    public void sendGasAlert(String message, String sensorValue) {
+    public void sendGasAlert(String message, String sensorValue, long originAt) {
         Map<String, String> data = new HashMap<>();
         data.put("type", "gas_alert");
         data.put("message", message);
@@ -195,6 +188,21 @@ public class FcmService {
         data.put("timestamp", String.valueOf(System.currentTimeMillis()));
         data.put("priority", "high");
 
-        sendToTopic(FIRE_ALERT_TOPIC, "⚠️ CẢNH BÁO KHÍ GAS!", message, data);
+        dispatchAlert("⚠️ CẢNH BÁO KHÍ GAS!", message, data, originAt);
+    }
+
+    /**
+     * Gửi thông báo "đã an toàn" khi cảnh báo kết thúc
+     */
+    public void sendAllClear(String deviceId, String alertType) {
+        Map<String, String> data = new HashMap<>();
+        data.put("type", alertType + "_clear");
+        data.put("device_id", deviceId);
+        data.put("timestamp", String.valueOf(System.currentTimeMillis()));
+        data.put("priority", "normal");
+
+        String message = ("fire".equals(alertType) ? "Hết phát hiện cháy" : "Nồng độ khí gas đã trở lại bình thường")
+                + " (" + deviceId + ")";
+        dispatchAlert("✅ ĐÃ AN TOÀN", message, data, 0);
     }
 }
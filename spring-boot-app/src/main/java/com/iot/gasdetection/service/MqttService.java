@@ -1,21 +1,45 @@
 package com.iot.gasdetection.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.gasdetection.alert.AlertKind;
+import com.iot.gasdetection.alert.AlertSuppressor;
+import com.iot.gasdetection.alertlog.AlertLog;
+import com.iot.gasdetection.cluster.ClusterBus;
+import com.iot.gasdetection.cluster.ClusterMembership;
+import com.iot.gasdetection.command.CommandService;
+import com.iot.gasdetection.config.IngestProperties;
 import com.iot.gasdetection.config.MqttProperties;
+import com.iot.gasdetection.device.DeviceRegistry;
+import com.iot.gasdetection.device.DeviceState;
+import com.iot.gasdetection.ingest.IngestPipeline;
+import com.iot.gasdetection.ingest.Payloads;
+import com.iot.gasdetection.ingest.TopicRouter;
 import com.iot.gasdetection.model.Notification;
 import com.iot.gasdetection.model.SensorData;
+import com.iot.gasdetection.model.SensorField;
 import com.iot.gasdetection.model.WebSocketMessage;
+import com.iot.gasdetection.mqtt.MqttConnection;
+import com.iot.gasdetection.rules.RuleEngine;
+import com.iot.gasdetection.rules.RuleEvent;
+import com.iot.gasdetection.stats.StatsService;
+import com.iot.gasdetection.timeseries.TimeSeriesStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.eclipse.paho.client.mqttv3.*;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service
@@ -27,202 +51,456 @@ public class MqttService {
     private final ObjectMapper objectMapper;
     private final FcmService fcmService;
 
-    private MqttClient mqttClient;
-    private final SensorData sensorData = new SensorData();
-    private final List<Notification> notifications = new ArrayList<>();
+    private final DeviceRegistry deviceRegistry;
+    private final SensorUpdateCoalescer coalescer;
+    private final TimeSeriesStore timeSeriesStore;
+    private final AlertLog alertLog;
+    private final AlertSuppressor alertSuppressor;
+    private final RuleEngine ruleEngine;
+    private final StatsService statsService;
+    private final IngestPipeline ingestPipeline;
+    private final IngestProperties ingestProperties;
+
+    private final MqttConnection mqttConnection;
+    private final ClusterBus clusterBus;
+    private final ClusterMembership clusterMembership;
+    private final CommandService commandService;
+    private final MeterRegistry meterRegistry;
+
     private static final int MAX_NOTIFICATIONS = 100;
+    private final NotificationRing notifications = new NotificationRing(MAX_NOTIFICATIONS);
+    // Ingest workers store notifications concurrently; seq assignment and alert log order go through this lock
+    private final Object notificationLock = new Object();
+
+    // "<kind>/<name>" suffix of a device topic -> state field
+    private static final Map<String, SensorField> TOPIC_FIELDS = Map.of(
+            "sensor/mq2", SensorField.MQ2,
+            "sensor/fire", SensorField.FIRE,
+            "status/relay1", SensorField.RELAY1,
+            "status/relay2", SensorField.RELAY2,
+            "status/window", SensorField.WINDOW,
+            "status/buzzer", SensorField.BUZZER,
+            "status/mode", SensorField.MODE,
+            "status/threshold", SensorField.THRESHOLD);
+    private static final SensorField[] FIELDS = SensorField.values();
+
+    // Meters by route + ROUTE_OFFSET, registered up front so the hot path never resolves tags
+    private static final int ROUTE_OFFSET = -TopicRouter.REMOTE_MEMBER;
+    private Counter[] messageCounters;
+    private Counter[] parseFailures;
+    private Timer[] handlerTimers;
+
+    // Receive stage state, only touched by the MQTT callback thread
+    private TopicRouter topicRouter;
+    private final TopicRouter.Match routeMatch = new TopicRouter.Match();
 
     @PostConstruct
     public void connect() {
-        try {
-            String clientId = mqttProperties.getClient().getId() + "-" + UUID.randomUUID().toString();
-            mqttClient = new MqttClient(mqttProperties.getBroker().getUrl(), clientId);
-
-            MqttConnectOptions options = new MqttConnectOptions();
-            options.setAutomaticReconnect(true);
-            options.setCleanSession(true);
-            options.setConnectionTimeout(30);
-            options.setKeepAliveInterval(60);
-
-            if (mqttProperties.getBroker().getUsername() != null && !mqttProperties.getBroker().getUsername().isEmpty()) {
-                options.setUserName(mqttProperties.getBroker().getUsername());
-                options.setPassword(mqttProperties.getBroker().getPassword().toCharArray());
+        // Continue the persisted sequence so ?since= cursors stay valid across restarts
+        notifications.restore(alertLog.recent(MAX_NOTIFICATIONS), alertLog.getLastSeq());
+        registerMeters();
+        ruleEngine.setListener(this::onRuleEvent);
+        clusterMembership.setRebalanceListener(this::onRebalance);
+        topicRouter = new TopicRouter(TOPIC_FIELDS, deviceRegistry.getDefaultDeviceId(),
+                ingestProperties.getDeviceIdCacheSize(), clusterBus.isEnabled() ? clusterBus.getTopicRoot() : null);
+        ingestPipeline.start(this::process);
+
+        // Stable per replica, so a restarted node takes over its broker session instead of adding one
+        String clientId = mqttProperties.getClient().getId() + "-" + clusterBus.getNodeId();
+        if (!mqttConnection.connect(clientId, new MqttConnection.Listener() {
+            @Override
+            public void messageArrived(String topic, byte[] payload) {
+                receive(topic, payload);
             }
 
-            mqttClient.setCallback(new MqttCallback() {
-                @Override
-                public void connectionLost(Throwable cause) {
-                    log.error("❌ MQTT Connection lost", cause);
-                    sensorData.setConnected(false);
-                }
-
-                @Override
-                public void messageArrived(String topic, MqttMessage message) {
-                    handleMessage(topic, new String(message.getPayload()));
-                }
-
-                @Override
-                public void deliveryComplete(IMqttDeliveryToken token) {
-                    // Not used
-                }
-            });
-
-            mqttClient.connect(options);
-            log.info("✅ Connected to MQTT Broker: {}", mqttProperties.getBroker().getUrl());
-            sensorData.setConnected(true);
-
-            // Subscribe to topics
-            mqttClient.subscribe(mqttProperties.getTopics().getSensor(), 1);
-            mqttClient.subscribe(mqttProperties.getTopics().getStatus(), 1);
-            mqttClient.subscribe(mqttProperties.getTopics().getNotification(), 1);
-
-            log.info("📡 Subscribed to topics: {}, {}, {}",
-                    mqttProperties.getTopics().getSensor(),
-                    mqttProperties.getTopics().getStatus(),
-                    mqttProperties.getTopics().getNotification());
+            @Override
+            public void connectionChanged(boolean connected) {
+                deviceRegistry.setBrokerConnected(connected);
+            }
+        })) {
+            return;
+        }
+        deviceRegistry.setBrokerConnected(true);
+
+        // Subscribe to legacy single-device topics and per-device topics, shared across replicas if configured
+        MqttProperties.Topics topics = mqttProperties.getTopics();
+        String sharedGroup = mqttProperties.getSharedGroup();
+        String sharePrefix = sharedGroup != null && !sharedGroup.isEmpty() ? "$share/" + sharedGroup + "/" : "";
+        for (String filter : List.of(topics.getSensor(), topics.getStatus(), topics.getNotification(),
+                topics.getDeviceSensor(), topics.getDeviceStatus(), topics.getDeviceNotification())) {
+            if (filter != null && !filter.isEmpty()) {
+                mqttConnection.subscribe(sharePrefix + filter, 1, false);
+            }
+        }
+        if (clusterBus.isEnabled()) {
+            clusterBus.subscribe();
+            clusterMembership.start();
+        }
+    }
 
-        } catch (MqttException e) {
-            log.error("❌ Failed to connect to MQTT Broker", e);
+    /**
+     * Counters per topic route (device IDs would be unbounded as tags), parse failures, and handler time
+     * histograms per kind of message.
+     */
+    private void registerMeters() {
+        int routes = FIELDS.length + ROUTE_OFFSET;
+        messageCounters = new Counter[routes];
+        parseFailures = new Counter[routes];
+        handlerTimers = new Timer[routes];
+        Map<String, Timer> timersByKind = new HashMap<>();
+        for (int route = -ROUTE_OFFSET; route < FIELDS.length; route++) {
+            String tag = routeTag(route);
+            messageCounters[route + ROUTE_OFFSET] = Counter.builder("gas.mqtt.messages")
+                    .description("MQTT messages received, by topic route")
+                    .tag("route", tag)
+                    .register(meterRegistry);
+            parseFailures[route + ROUTE_OFFSET] = Counter.builder("gas.mqtt.parse.failures")
+                    .description("MQTT payloads that could not be parsed")
+                    .tag("route", tag)
+                    .register(meterRegistry);
+            handlerTimers[route + ROUTE_OFFSET] = timersByKind.computeIfAbsent(handlerKind(route),
+                    kind -> Timer.builder("gas.mqtt.handler.duration")
+                            .description("Time to process one MQTT message on its ingestion worker")
+                            .tag("kind", kind)
+                            .publishPercentileHistogram()
+                            .minimumExpectedValue(Duration.ofNanos(1_000))
+                            .maximumExpectedValue(Duration.ofSeconds(1))
+                            .register(meterRegistry));
         }
     }
 
     @PreDestroy
     public void disconnect() {
-        try {
-            if (mqttClient != null && mqttClient.isConnected()) {
-                mqttClient.disconnect();
-                mqttClient.close();
-                log.info("🔌 Disconnected from MQTT Broker");
+        clusterMembership.leave();
+        mqttConnection.disconnect();
+    }
+
+    /**
+     * Receive stage, on the MQTT callback thread: resolve the device and hand the payload to its ingestion
+     * partition. Everything else happens in {@link #process}.
+     */
+    private void receive(String topic, byte[] payload) {
+        long receivedAt = System.currentTimeMillis();
+        if (!topicRouter.route(topic, routeMatch)) {
+            messageCounters[TopicRouter.UNKNOWN + ROUTE_OFFSET].increment();
+            log.debug("Ignoring unknown topic {}", topic);
+            return;
+        }
+        int route = routeMatch.getRoute();
+        messageCounters[route + ROUTE_OFFSET].increment();
+        if (route == TopicRouter.REMOTE_MEMBER) {
+            String nodeId = clusterBus.heartbeatSender(payload, payload.length);
+            if (nodeId != null) {
+                clusterMembership.onHeartbeat(nodeId, clusterBus.heartbeatAlive(payload, payload.length));
+            } else {
+                parseFailures[route + ROUTE_OFFSET].increment();
             }
-        } catch (MqttException e) {
-            log.error("Error disconnecting MQTT client", e);
+            return;
         }
+        ingestPipeline.publish(routeMatch.getDeviceId(), route, payload, receivedAt,
+                route == TopicRouter.NOTIFICATION || route == TopicRouter.REMOTE_NOTIFICATION);
     }
 
-    private void handleMessage(String topic, String value) {
-        log.debug("📨 [MQTT] {}: {}", topic, value);
+    /**
+     * Ingestion worker: messages of one device arrive here in order, always on the same thread.
+     */
+    private void process(String deviceId, int route, byte[] payload, int length, long receivedAt) {
+        if (log.isDebugEnabled()) {
+            log.debug("📨 [MQTT] {} {}: {}", deviceId, routeName(route),
+                    route < 0 ? length + " bytes" : new String(payload, 0, length, StandardCharsets.UTF_8));
+        }
 
+        long start = System.nanoTime();
         try {
-            if (topic.equals("gas/sensor/mq2")) {
-                sensorData.setMq2(Integer.parseInt(value));
-            } else if (topic.equals("gas/sensor/fire")) {
-                sensorData.setFire(Integer.parseInt(value));
-            } else if (topic.equals("gas/status/relay1")) {
-                sensorData.setRelay1("1".equals(value));
-            } else if (topic.equals("gas/status/relay2")) {
-                sensorData.setRelay2("1".equals(value));
-            } else if (topic.equals("gas/status/window")) {
-                sensorData.setWindow("1".equals(value));
-            } else if (topic.equals("gas/status/buzzer")) {
-                sensorData.setBuzzer("1".equals(value));
-            } else if (topic.equals("gas/status/mode")) {
-                sensorData.setMode("1".equals(value) ? "AUTO" : "MANUAL");
-            } else if (topic.equals("gas/status/threshold")) {
-                sensorData.setThreshold(Integer.parseInt(value));
-            } else if (topic.equals("gas/notification")) {
-                handleNotification(value);
+            if (route == TopicRouter.NOTIFICATION) {
+                handleNotification(deviceId, payload, length, receivedAt);
                 return; // Don't update lastUpdate for notifications
             }
+            if (route < 0) {
+                processRemote(deviceId, route, payload, length);
+                return;
+            }
 
-            sensorData.setLastUpdate(LocalDateTime.now());
-
-            // Broadcast to WebSocket clients
-            WebSocketMessage wsMessage = new WebSocketMessage("data", sensorData);
-            webSocketService.broadcast(wsMessage);
+            SensorField field = FIELDS[route];
+            int parsed = parseValue(field, payload, length);
+            // Status echoes confirm commands sent from this node, whichever node owns the device
+            commandService.onStatus(deviceId, field, parsed);
+            String owner = clusterMembership.remoteOwnerOf(deviceId);
+            if (owner != null) {
+                // Rules, stats, history and suppression of this device run on its owner
+                clusterBus.forwardReading(owner, deviceId, field, parsed, receivedAt);
+                return;
+            }
+            processReading(deviceId, field, parsed, receivedAt);
 
+        } catch (NumberFormatException e) {
+            parseFailures[route + ROUTE_OFFSET].increment();
+            log.warn("⚠️ Ignoring malformed {} value from {}: {}", routeName(route), deviceId, e.getMessage());
         } catch (Exception e) {
             log.error("Error handling MQTT message", e);
+        } finally {
+            handlerTimers[route + ROUTE_OFFSET].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
     }
 
-    private void handleNotification(String value) {
-        try {
-            Notification notification = objectMapper.readValue(value, Notification.class);
-            notification.setReceivedAt(LocalDateTime.now());
-
-            notifications.add(0, notification);
+    /**
+     * Reading of a device this node owns, received directly or forwarded by another node.
+     */
+    private void processReading(String deviceId, SensorField field, int parsed, long receivedAt) {
+        DeviceState device = deviceRegistry.getOrCreate(deviceId);
+        int alarmBefore = device.getAlarm();
+        // History and rolling stats keep every reading, including repeats that leave the live state unchanged
+        timeSeriesStore.record(deviceId, field, receivedAt, parsed);
+        statsService.record(deviceId, field, parsed, device.get(SensorField.THRESHOLD), receivedAt);
+        if (device.apply(field, parsed, receivedAt)) {
+            clusterBus.publishState(deviceId, field, parsed, receivedAt);
+            // Coalesced broadcast to WebSocket clients watching this device
+            coalescer.onUpdate(device, device.getAlarm() != alarmBefore);
+        }
+        // Rules see every reading: sustained and rate-of-rise conditions depend on time, not only on change
+        ruleEngine.onReading(device, field, receivedAt);
+    }
 
-            // Keep max notifications
-            if (notifications.size() > MAX_NOTIFICATIONS) {
-                notifications.subList(MAX_NOTIFICATIONS, notifications.size()).clear();
+    /**
+     * Cluster bus message: a reading forwarded to this node as the device's owner, or an update from the
+     * device's owner mirrored for /api/data and WebSocket clients of this node.
+     */
+    private void processRemote(String deviceId, int route, byte[] payload, int length) throws IOException {
+        if (clusterBus.isOwnOrInvalid(payload, length)) {
+            return;
+        }
+        if (route == TopicRouter.REMOTE_READING) {
+            if (!clusterBus.decodeState(payload, length, (field, value, timestamp) -> {
+                commandService.onStatus(deviceId, field, value);
+                processReading(deviceId, field, value, timestamp);
+            })) {
+                parseFailures[route + ROUTE_OFFSET].increment();
+                log.warn("⚠️ Ignoring malformed forwarded reading for {}", deviceId);
+            }
+            return;
+        }
+        if (route == TopicRouter.REMOTE_NOTIFICATION) {
+            Notification notification = clusterBus.decodeNotification(payload, length);
+            notification.setDeviceId(deviceId);
+            storeNotification(notification);
+            return;
+        }
+        DeviceState device = deviceRegistry.getOrCreate(deviceId);
+        int alarmBefore = device.getAlarm();
+        // The owner only takes retained fields it has not read itself, left by the device's previous owner
+        boolean owner = clusterMembership.isOwner(deviceId);
+        boolean valid = clusterBus.decodeState(payload, length, (field, value, timestamp) -> {
+            if (!owner) {
+                commandService.onStatus(deviceId, field, value);
             }
+            if (owner ? device.applyIfAbsent(field, value, timestamp) : device.apply(field, value, timestamp)) {
+                coalescer.onUpdate(device, device.getAlarm() != alarmBefore);
+            }
+        });
+        if (!valid) {
+            parseFailures[route + ROUTE_OFFSET].increment();
+            log.warn("⚠️ Ignoring malformed cluster state for {}", deviceId);
+        }
+    }
 
-            // Broadcast notification to WebSocket
-            WebSocketMessage wsMessage = new WebSocketMessage("notification", notification);
-            webSocketService.broadcast(wsMessage);
+    private static String routeName(int route) {
+        switch (route) {
+            case TopicRouter.NOTIFICATION:
+                return "notification";
+            case TopicRouter.REMOTE_STATE:
+                return "cluster state";
+            case TopicRouter.REMOTE_NOTIFICATION:
+                return "cluster notification";
+            case TopicRouter.REMOTE_READING:
+                return "forwarded reading";
+            default:
+                return FIELDS[route].getJsonName();
+        }
+    }
 
-            // 🔥 Send FCM push notification for critical alerts
-            sendFcmNotificationIfCritical(notification);
+    private static String routeTag(int route) {
+        switch (route) {
+            case TopicRouter.UNKNOWN:
+                return "unknown";
+            case TopicRouter.REMOTE_MEMBER:
+                return "cluster_member";
+            case TopicRouter.REMOTE_STATE:
+                return "cluster_state";
+            case TopicRouter.REMOTE_NOTIFICATION:
+                return "cluster_notification";
+            case TopicRouter.REMOTE_READING:
+                return "forwarded_reading";
+            default:
+                return routeName(route);
+        }
+    }
 
-        } catch (Exception e) {
+    private static String handlerKind(int route) {
+        if (route == TopicRouter.NOTIFICATION) {
+            return "notification";
+        }
+        if (route < 0) {
+            return "cluster";
+        }
+        return route == SensorField.MQ2.ordinal() || route == SensorField.FIRE.ordinal() ? "sensor" : "status";
+    }
+
+    private static int parseValue(SensorField field, byte[] payload, int length) {
+        switch (field) {
+            case MQ2:
+            case FIRE:
+            case THRESHOLD:
+                return Payloads.parseInt(payload, length);
+            default:
+                // relay/window/buzzer: 1 = ON, mode: 1 = AUTO
+                return Payloads.isOne(payload, length) ? 1 : 0;
+        }
+    }
+
+    private void handleNotification(String deviceId, byte[] payload, int length, long receivedAt) {
+        Notification notification;
+        try {
+            notification = objectMapper.readValue(payload, 0, length, Notification.class);
+        } catch (IOException e) {
+            parseFailures[TopicRouter.NOTIFICATION + ROUTE_OFFSET].increment();
             log.error("Error parsing notification", e);
+            return;
+        }
+        notification.setDeviceId(deviceId);
+        notification.setReceivedAt(LocalDateTime.now());
+        // Pushes come from server-side rules (onRuleEvent); device notifications are stored and shown only
+        publishNotification(notification);
+        if (!ruleEngine.isEnabled()) {
+            // Without rules nothing else raises fire or gas pushes: fall back to the firmware's own alerts
+            pushDeviceNotification(notification, receivedAt);
         }
     }
 
     /**
-     * Gửi FCM push notification nếu là cảnh báo nghiêm trọng
+     * Legacy push path for {@code rules.enabled=false}: warning/critical device notifications whose text names
+     * fire or gas go through the suppressor to FCM, as before server-side rules. The push latency starts at
+     * {@code receivedAt}, so it includes the wait in the ingest queue.
      */
-    private void sendFcmNotificationIfCritical(Notification notification) {
-        try {
-            String message = notification.getMessage();
-            String level = notification.getLevel() != null ? notification.getLevel() : "info";
-
-            // Chỉ gửi FCM cho các cảnh báo CRITICAL hoặc WARNING
-            if ("critical".equalsIgnoreCase(level) || "warning".equalsIgnoreCase(level)) {
-                
-                // Phát hiện loại cảnh báo
-                if (message.contains("Phát hiện cháy") || message.contains("fire") || message.contains("lửa")) {
-                    // Fire alert
-                    String sensorValue = extractSensorValue(message);
-                    fcmService.sendFireAlert(message, sensorValue);
-                    log.info("🔥 FCM Fire Alert sent: {}", message);
-                    
-                } else if (message.contains("Phát hiện khí gas") || message.contains("gas") || message.contains("MQ2")) {
-                    // Gas alert
-                    String sensorValue = extractSensorValue(message);
-                    fcmService.sendGasAlert(message, sensorValue);
-                    log.info("⚠️ FCM Gas Alert sent: {}", message);
-                }
+    private void pushDeviceNotification(Notification notification, long receivedAt) {
+        String level = notification.effectiveLevel();
+        String message = notification.getMessage();
+        if (message == null || !("critical".equalsIgnoreCase(level) || "warning".equalsIgnoreCase(level))) {
+            return;
+        }
+        String deviceId = notification.getDeviceId();
+        if (message.contains("Phát hiện cháy") || message.contains("fire") || message.contains("lửa")) {
+            DeviceState device = deviceRegistry.get(deviceId);
+            Integer fire = device != null ? device.get(SensorField.FIRE) : null;
+            if (alertSuppressor.shouldSend(deviceId, AlertKind.FIRE, level, fire)) {
+                fcmService.sendFireAlert(message, fire != null ? fire.toString() : "N/A", receivedAt);
+                log.info("🔥 FCM Fire Alert queued: {}", message);
+            }
+        } else if (message.contains("Phát hiện khí gas") || message.contains("gas") || message.contains("MQ2")) {
+            // Escalation compares the current MQ2 reading of the device
+            DeviceState device = deviceRegistry.get(deviceId);
+            Integer mq2 = device != null ? device.get(SensorField.MQ2) : null;
+            if (alertSuppressor.shouldSend(deviceId, AlertKind.GAS, level, mq2)) {
+                fcmService.sendGasAlert(message, mq2 != null ? mq2.toString() : "N/A", receivedAt);
+                log.info("⚠️ FCM Gas Alert queued: {}", message);
             }
-        } catch (Exception e) {
-            log.error("❌ Error sending FCM notification", e);
         }
     }
 
+    private void publishNotification(Notification notification) {
+        storeNotification(notification);
+        clusterBus.publishNotification(notification);
+    }
+
+    private void storeNotification(Notification notification) {
+        synchronized (notificationLock) {
+            notifications.add(notification);
+            alertLog.append(notification);
+        }
+
+        // Broadcast notification to WebSocket clients watching this device
+        WebSocketMessage wsMessage = new WebSocketMessage("notification", notification);
+        webSocketService.broadcastToDevice(deviceRegistry.getOrCreate(notification.getDeviceId()), wsMessage);
+    }
+
     /**
-     * Trích xuất giá trị cảm biến từ message (nếu có)
+     * Ownership moved: drop the rule, statistics and suppression state of devices now owned by other nodes.
+     * Devices that moved here start with fresh state.
      */
-    private String extractSensorValue(String message) {
-        try {
-            // Tìm số trong message (e.g., "MQ2: 850")
-            String[] parts = message.split(":");
-            if (parts.length > 1) {
-                return parts[1].trim().split(" ")[0];
+    private void onRebalance() {
+        int released = 0;
+        for (DeviceState device : deviceRegistry.getAll()) {
+            String deviceId = device.getDeviceId();
+            if (!clusterMembership.isOwner(deviceId)) {
+                ruleEngine.forget(deviceId);
+                statsService.forget(deviceId);
+                alertSuppressor.release(deviceId);
+                released++;
             }
-        } catch (Exception e) {
-            // Ignore
         }
-        return "N/A";
+        log.info("🔄 Rebalanced: {} of {} known devices owned by other nodes", released, deviceRegistry.size());
     }
 
-    public void publish(String topic, String message) {
-        try {
-            if (mqttClient != null && mqttClient.isConnected()) {
-                mqttClient.publish(topic, new MqttMessage(message.getBytes()));
-                log.debug("📤 Published to {}: {}", topic, message);
-            } else {
-                log.warn("⚠️ Cannot publish, MQTT client not connected");
-            }
-        } catch (MqttException e) {
-            log.error("Error publishing MQTT message", e);
+    /**
+     * Rule started or stopped matching: record it as a notification and push alarms through the suppressor.
+     */
+    private void onRuleEvent(RuleEvent event) {
+        // Stamped with the reading that changed the rule, the start of the reading-to-push latency
+        Notification notification = new Notification(event.isActive() ? event.getLevel() : "info",
+                event.isActive() ? event.getMessage() : "Đã hết: " + event.getMessage(), event.getTimestamp());
+        notification.setDeviceId(event.getDeviceId());
+        notification.setLevel(event.isActive() ? event.getLevel() : "info");
+        publishNotification(notification);
+
+        if (!event.isActive() || event.getKind() == null) {
+            return;
+        }
+        // 🔥 Send FCM push notification for critical alerts
+        if (!alertSuppressor.shouldSend(event.getDeviceId(), event.getKind(), event.getLevel(), event.getValue())) {
+            return;
+        }
+        String sensorValue = event.getValue() != null ? event.getValue().toString() : "N/A";
+        if (event.getKind() == AlertKind.FIRE) {
+            fcmService.sendFireAlert(event.getMessage(), sensorValue, notification.getTimestamp());
+            log.info("🔥 FCM Fire Alert queued: {}", event.getMessage());
+        } else {
+            fcmService.sendGasAlert(event.getMessage(), sensorValue, notification.getTimestamp());
+            log.info("⚠️ FCM Gas Alert queued: {}", event.getMessage());
+        }
+    }
+
+    public boolean isConnected() {
+        return deviceRegistry.isBrokerConnected();
+    }
+
+    /**
+     * Snapshot of one device; unknown devices report default values.
+     */
+    public SensorData getSensorData(String deviceId) {
+        DeviceState device = deviceRegistry.get(deviceId);
+        if (device == null) {
+            SensorData empty = new SensorData();
+            empty.setDeviceId(deviceId);
+            empty.setConnected(isConnected());
+            return empty;
         }
+        return device.toSensorData(isConnected());
     }
 
     public SensorData getSensorData() {
-        return sensorData;
+        return getSensorData(deviceRegistry.getDefaultDeviceId());
     }
 
-    public List<Notification> getNotifications() {
-        return notifications;
+    /**
+     * Newest notifications first, at most {@code limit}.
+     */
+    public List<Notification> getNotifications(int limit) {
+        return notifications.latest(limit);
+    }
+
+    /**
+     * Notifications with a sequence number greater than {@code since}, newest first, at most {@code limit}.
+     */
+    public List<Notification> getNotificationsSince(long since, int limit) {
+        return notifications.since(since, limit);
     }
 }
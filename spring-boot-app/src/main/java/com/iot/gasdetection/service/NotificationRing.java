@@ -0,0 +1,100 @@
+package com.iot.gasdetection.service;
+
+import com.iot.gasdetection.model.Notification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-capacity notification history: one writer at a time, any number of readers.
+ * <p>
+ * Each entry gets a sequence number (1, 2, ...) and lands in slot {@code seq % capacity}. The writer fills
+ * the slot first and then publishes the sequence, so readers never block and never see a half-written
+ * entry. A reader that loses a slot to the writer lapping the ring simply stops there. Reads return a
+ * copied list, newest first.
+ */
+public class NotificationRing {
+
+    private final int capacity;
+    private final AtomicReferenceArray<Entry> slots;
+    private final AtomicLong published = new AtomicLong();
+
+    public NotificationRing(int capacity) {
+        this.capacity = capacity;
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Appends a notification and stamps it with its sequence number. Concurrent writers must serialize calls
+     * (MqttService holds its notification lock across this and the alert log append).
+     */
+    public long add(Notification notification) {
+        long seq = published.get() + 1;
+        notification.setSeq(seq);
+        slots.set(index(seq), new Entry(seq, notification));
+        published.set(seq);
+        return seq;
+    }
+
+    /**
+     * Refills an empty ring with previously stored entries (newest first) and continues numbering after
+     * {@code lastSeq}. Must be called before the first {@link #add}.
+     */
+    public void restore(List<Notification> newestFirst, long lastSeq) {
+        for (int i = Math.min(newestFirst.size(), capacity) - 1; i >= 0; i--) {
+            Notification notification = newestFirst.get(i);
+            slots.set(index(notification.getSeq()), new Entry(notification.getSeq(), notification));
+        }
+        published.set(lastSeq);
+    }
+
+    /**
+     * Sequence number of the newest entry, 0 when empty.
+     */
+    public long lastSeq() {
+        return published.get();
+    }
+
+    /**
+     * Up to {@code limit} newest entries.
+     */
+    public List<Notification> latest(int limit) {
+        return since(0, limit);
+    }
+
+    /**
+     * Up to {@code limit} entries newer than {@code since}, newest first.
+     */
+    public List<Notification> since(long since, int limit) {
+        long head = published.get();
+        long oldest = Math.max(since + 1, head - capacity + 1);
+        int count = (int) Math.max(0, Math.min(limit, head - oldest + 1));
+        List<Notification> result = new ArrayList<>(count);
+        for (long seq = head; seq >= oldest && result.size() < count; seq--) {
+            Entry entry = slots.get(index(seq));
+            if (entry == null || entry.seq != seq) {
+                // Overwritten by the writer while reading; everything older is gone too
+                break;
+            }
+            result.add(entry.notification);
+        }
+        return result;
+    }
+
+    private int index(long seq) {
+        return (int) (seq % capacity);
+    }
+
+    private static final class Entry {
+
+        final long seq;
+        final Notification notification;
+
+        Entry(long seq, Notification notification) {
+            this.seq = seq;
+            this.notification = notification;
+        }
+    }
+}
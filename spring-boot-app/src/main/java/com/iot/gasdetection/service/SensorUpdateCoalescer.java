@@ -0,0 +1,108 @@
+package com.iot.gasdetection.service;
+
+import com.iot.gasdetection.config.WebSocketProperties;
+import com.iot.gasdetection.device.DeviceState;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges field updates of a device between MQTT ingestion and the WebSocket broadcast.
+ * <p>
+ * The firmware publishes 8 retained topics per tick; instead of one frame per topic, a device is
+ * marked dirty and flushed once per window (or earlier after a quiet period). Alarm changes are
+ * flushed immediately.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SensorUpdateCoalescer {
+
+    private final WebSocketProperties webSocketProperties;
+    private final WebSocketService webSocketService;
+
+    private final Queue<DeviceState> dirtyDevices = new ConcurrentLinkedQueue<>();
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void start() {
+        WebSocketProperties.Coalesce coalesce = webSocketProperties.getCoalesce();
+        if (!coalesce.isEnabled()) {
+            log.info("📦 WebSocket coalescing disabled, one frame per update");
+            return;
+        }
+        long tickMs = Math.max(5, Math.min(coalesce.getWindowMs(), coalesce.getQuietMs()) / 2);
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ws-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushDue, tickMs, tickMs, TimeUnit.MILLISECONDS);
+        log.info("📦 WebSocket coalescing: window {} ms, quiet {} ms, mode {}",
+                coalesce.getWindowMs(), coalesce.getQuietMs(), coalesce.getMode());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+    }
+
+    /**
+     * Called after a field of the device changed.
+     *
+     * @param alarmChanged true if the update changed the device's alarm level; such updates bypass the window
+     */
+    public void onUpdate(DeviceState device, boolean alarmChanged) {
+        if (flusher == null || alarmChanged) {
+            emit(device);
+            return;
+        }
+        if (device.markDirty(System.currentTimeMillis())) {
+            dirtyDevices.add(device);
+        }
+    }
+
+    private void flushDue() {
+        try {
+            WebSocketProperties.Coalesce coalesce = webSocketProperties.getCoalesce();
+            long now = System.currentTimeMillis();
+            // Only look at devices queued before this tick; re-queued ones wait for the next one
+            for (int i = dirtyDevices.size(); i > 0; i--) {
+                DeviceState device = dirtyDevices.poll();
+                if (device == null) {
+                    break;
+                }
+                if (now - device.getDirtySince() >= coalesce.getWindowMs()
+                        || now - device.getLastTouched() >= coalesce.getQuietMs()) {
+                    device.clearDirty();
+                    emit(device);
+                } else {
+                    dirtyDevices.add(device);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error flushing coalesced updates", e);
+        }
+    }
+
+    private void emit(DeviceState device) {
+        // Serialize emits of one device so an older snapshot never overtakes a newer one
+        synchronized (device) {
+            int changed = device.drainChangedMask();
+            if (changed == 0) {
+                return;
+            }
+            webSocketService.broadcastUpdate(device, changed);
+        }
+    }
+}
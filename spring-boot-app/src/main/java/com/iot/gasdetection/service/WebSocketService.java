@@ -1,5 +1,6 @@
 package com.iot.gasdetection.service;
 
+import com.iot.gasdetection.device.DeviceState;
 import com.iot.gasdetection.model.WebSocketMessage;
 import com.iot.gasdetection.websocket.SensorWebSocketHandler;
 import lombok.RequiredArgsConstructor;
@@ -15,6 +16,17 @@ public class WebSocketService {
         webSocketHandler.broadcast(message);
     }
 
+    public void broadcastToDevice(DeviceState device, WebSocketMessage message) {
+        webSocketHandler.broadcastToDevice(device.getDeviceId(), device.getGroups(), message);
+    }
+
+    /**
+     * Fans out a coalesced update of the device; {@code changedMask} holds the changed {@code SensorField} bits.
+     */
+    public void broadcastUpdate(DeviceState device, int changedMask) {
+        webSocketHandler.broadcastUpdate(device, changedMask);
+    }
+
     public int getActiveConnections() {
         return webSocketHandler.getActiveConnectionCount();
     }
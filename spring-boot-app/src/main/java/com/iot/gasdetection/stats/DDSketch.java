@@ -0,0 +1,75 @@
+package com.iot.gasdetection.stats;
+
+/**
+ * DDSketch over non-negative integer readings with a fixed bucket array: bucket {@code i} counts the values in
+ * {@code (gamma^(i-1), gamma^i]}, so any quantile is returned within the configured relative accuracy. Zero has
+ * its own counter and values above the configured maximum share the top bucket. Adding never allocates.
+ * <p>
+ * Counts are integers and {@link #decay()} halves them, which turns the sketch into an exponentially weighted
+ * one. Not thread-safe; the owning {@link FieldStats} synchronizes.
+ */
+final class DDSketch {
+
+    private final double gamma;
+    private final double logGamma;
+    private final int[] counts;
+    private int zeroCount;
+    private long total;
+
+    DDSketch(double relativeAccuracy, int maxValue) {
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.counts = new int[index(Math.max(2, maxValue)) + 1];
+    }
+
+    private int index(int value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    void add(int value) {
+        if (value <= 0) {
+            zeroCount++;
+        } else {
+            counts[Math.min(index(value), counts.length - 1)]++;
+        }
+        total++;
+    }
+
+    /**
+     * Halves every count (rounding down), so older readings weigh half as much as newer ones.
+     */
+    void decay() {
+        zeroCount >>= 1;
+        long sum = zeroCount;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] >>= 1;
+            sum += counts[i];
+        }
+        total = sum;
+    }
+
+    long getTotal() {
+        return total;
+    }
+
+    /**
+     * Estimated value at quantile {@code q} in [0, 1], or NaN while the sketch is empty.
+     */
+    double quantile(double q) {
+        if (total == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (q * (total - 1));
+        long seen = zeroCount;
+        if (rank < seen) {
+            return 0;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (rank < seen) {
+                return 2 * Math.pow(gamma, i) / (gamma + 1);
+            }
+        }
+        return 2 * Math.pow(gamma, counts.length - 1) / (gamma + 1);
+    }
+}
@@ -0,0 +1,149 @@
+package com.iot.gasdetection.stats;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Rolling statistics of one field of one device: EWMA, smoothed rate of change, min/max and the number of
+ * readings above the alarm threshold over the last 1/5/15 minutes, and a decaying {@link DDSketch} for
+ * percentiles.
+ * <p>
+ * Min/max and threshold counts are kept per 10 s bucket in a ring covering the longest window, so every structure is a fixed-size
+ * primitive array allocated with the instance; recording never allocates. Writers are the ingestion thread of
+ * the device, readers are REST/WebSocket threads; all access is synchronized on the instance.
+ */
+final class FieldStats {
+
+    private static final int[] WINDOW_MINUTES = {1, 5, 15};
+
+    private static final long BUCKET_MILLIS = 10_000;
+    private static final int BUCKETS_PER_MINUTE = (int) (60_000 / BUCKET_MILLIS);
+    private static final int SLOTS = WINDOW_MINUTES[WINDOW_MINUTES.length - 1] * BUCKETS_PER_MINUTE + 1;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+    private static final String[] QUANTILE_NAMES = {"p50", "p90", "p99"};
+
+    private final double tauMillis;
+    private final long decayMillis;
+
+    private final long[] bucketIds = new long[SLOTS];
+    private final int[] minimums = new int[SLOTS];
+    private final int[] maximums = new int[SLOTS];
+    private final int[] overThreshold = new int[SLOTS];
+    private final DDSketch sketch;
+
+    private long count;
+    private int last;
+    private long lastTs;
+    private double ewma;
+    // Units per minute
+    private double rate;
+    private long lastDecay;
+
+    FieldStats(double tauMillis, double sketchAccuracy, int sketchMaxValue, long decayMillis) {
+        this.tauMillis = tauMillis;
+        this.decayMillis = decayMillis;
+        this.sketch = new DDSketch(sketchAccuracy, sketchMaxValue);
+        Arrays.fill(bucketIds, Long.MIN_VALUE);
+    }
+
+    /**
+     * @param threshold readings above it are counted as over the threshold; {@code Integer.MAX_VALUE} for none
+     */
+    synchronized void record(int value, int threshold, long now) {
+        if (count == 0) {
+            ewma = value;
+            lastDecay = now;
+        } else {
+            // Time-based smoothing: irregular sample rates weigh readings by the time they cover
+            long dt = Math.max(1, now - lastTs);
+            double alpha = 1 - Math.exp(-dt / tauMillis);
+            double previous = ewma;
+            ewma += alpha * (value - ewma);
+            // Trend of the smoothed level (Holt), far less noisy than differencing raw readings
+            rate += alpha * ((ewma - previous) * 60_000.0 / dt - rate);
+        }
+        count++;
+        last = value;
+        lastTs = now;
+
+        long bucket = now / BUCKET_MILLIS;
+        int slot = (int) (bucket % SLOTS);
+        if (bucketIds[slot] != bucket) {
+            bucketIds[slot] = bucket;
+            minimums[slot] = value;
+            maximums[slot] = value;
+            overThreshold[slot] = 0;
+        } else if (value < minimums[slot]) {
+            minimums[slot] = value;
+        } else if (value > maximums[slot]) {
+            maximums[slot] = value;
+        }
+        if (value > threshold) {
+            overThreshold[slot]++;
+        }
+
+        if (now - lastDecay >= decayMillis) {
+            sketch.decay();
+            lastDecay = now;
+        }
+        sketch.add(value);
+    }
+
+    synchronized boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Writes the statistics as one JSON object; windows without readings are written as null.
+     */
+    synchronized void write(JsonGenerator gen, long now) throws IOException {
+        gen.writeStartObject();
+        gen.writeNumberField("count", count);
+        gen.writeNumberField("last", last);
+        gen.writeNumberField("lastUpdate", lastTs);
+        gen.writeNumberField("ewma", round(ewma));
+        gen.writeNumberField("ratePerMin", round(rate));
+
+        long current = now / BUCKET_MILLIS;
+        for (int minutes : WINDOW_MINUTES) {
+            long oldest = current - (long) minutes * BUCKETS_PER_MINUTE + 1;
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            int over = 0;
+            for (int i = 0; i < SLOTS; i++) {
+                if (bucketIds[i] >= oldest && bucketIds[i] <= current) {
+                    min = Math.min(min, minimums[i]);
+                    max = Math.max(max, maximums[i]);
+                    over += overThreshold[i];
+                }
+            }
+            writeWindow(gen, "min" + minutes + "m", min, Integer.MAX_VALUE);
+            writeWindow(gen, "max" + minutes + "m", max, Integer.MIN_VALUE);
+            writeWindow(gen, "over" + minutes + "m", min == Integer.MAX_VALUE ? -1 : over, -1);
+        }
+
+        for (int i = 0; i < QUANTILES.length; i++) {
+            double value = sketch.quantile(QUANTILES[i]);
+            if (Double.isNaN(value)) {
+                gen.writeNullField(QUANTILE_NAMES[i]);
+            } else {
+                gen.writeNumberField(QUANTILE_NAMES[i], round(value));
+            }
+        }
+        gen.writeEndObject();
+    }
+
+    private static void writeWindow(JsonGenerator gen, String name, int value, int empty) throws IOException {
+        if (value == empty) {
+            gen.writeNullField(name);
+        } else {
+            gen.writeNumberField(name, value);
+        }
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -0,0 +1,111 @@
+package com.iot.gasdetection.stats;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.iot.gasdetection.config.StatsProperties;
+import com.iot.gasdetection.model.SensorField;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Incremental rolling statistics per device for the configured sensor fields (see {@link FieldStats}).
+ * <p>
+ * The per-device arrays are allocated when a device reports its first tracked reading; after that recording
+ * is a map lookup plus a few primitive updates. Statistics are served by {@code /api/stats} and included in
+ * WebSocket v2 snapshots, so clients no longer derive them from the frames they happened to receive.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StatsService {
+
+    private final StatsProperties properties;
+
+    private final ConcurrentHashMap<String, FieldStats[]> devices = new ConcurrentHashMap<>();
+
+    // Index into the per-device array by SensorField ordinal, -1 for untracked fields
+    private final int[] slots = new int[SensorField.values().length];
+    private SensorField[] tracked = new SensorField[0];
+
+    @PostConstruct
+    public void init() {
+        Arrays.fill(slots, -1);
+        if (!properties.isEnabled()) {
+            log.info("📈 Rolling statistics disabled");
+            return;
+        }
+        tracked = properties.getFields().stream()
+                .map(name -> {
+                    SensorField field = SensorField.fromJsonName(name.trim());
+                    if (field == null) {
+                        throw new IllegalStateException("Unknown stats field: " + name);
+                    }
+                    return field;
+                })
+                .distinct()
+                .toArray(SensorField[]::new);
+        for (int i = 0; i < tracked.length; i++) {
+            slots[tracked[i].ordinal()] = i;
+        }
+        log.info("📈 Rolling statistics for {} (EWMA tau {} ms, percentiles ±{}%)", properties.getFields(),
+                properties.getEwmaTauMs(), properties.getSketchAccuracy() * 100);
+    }
+
+    public boolean isEnabled() {
+        return tracked.length > 0;
+    }
+
+    /**
+     * @param threshold the device's alarm threshold; mq2 readings above it are counted per window
+     */
+    public void record(String deviceId, SensorField field, int value, int threshold, long now) {
+        int slot = slots[field.ordinal()];
+        if (slot < 0) {
+            return;
+        }
+        FieldStats[] stats = devices.get(deviceId);
+        if (stats == null) {
+            stats = devices.computeIfAbsent(deviceId, id -> create());
+        }
+        stats[slot].record(value, field == SensorField.MQ2 ? threshold : Integer.MAX_VALUE, now);
+    }
+
+    /**
+     * Drops the device's statistics, when another node takes the device over.
+     */
+    public void forget(String deviceId) {
+        devices.remove(deviceId);
+    }
+
+    private FieldStats[] create() {
+        FieldStats[] stats = new FieldStats[tracked.length];
+        for (int i = 0; i < stats.length; i++) {
+            stats[i] = new FieldStats(properties.getEwmaTauMs(), properties.getSketchAccuracy(),
+                    properties.getSketchMaxValue(), properties.getSketchDecayMs());
+        }
+        return stats;
+    }
+
+    /**
+     * Writes {@code {"mq2":{..},"fire":{..}}} for the device; fields without readings are omitted.
+     */
+    public void write(JsonGenerator gen, String deviceId, long now) throws IOException {
+        FieldStats[] stats = devices.get(deviceId);
+        gen.writeStartObject();
+        if (stats != null) {
+            for (int i = 0; i < tracked.length; i++) {
+                if (stats[i].isEmpty()) {
+                    continue;
+                }
+                gen.writeFieldName(tracked[i].getJsonName());
+                stats[i].write(gen, now);
+            }
+        }
+        gen.writeEndObject();
+    }
+}
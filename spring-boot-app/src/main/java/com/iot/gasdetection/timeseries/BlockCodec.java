@@ -0,0 +1,182 @@
+package com.iot.gasdetection.timeseries;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Columnar block encoding.
+ * <pre>
+ * short magic, int seriesId, int count, long minTs, long maxTs, int payloadLength,
+ * payload: varint length of each column, then the columns back to back
+ * </pre>
+ * The timestamp column is delta-of-delta encoded and every value column is delta encoded, all as
+ * zig-zag varints, so regular sampling and slowly moving readings take 1-2 bytes per cell. (Gorilla's XOR
+ * scheme targets doubles; readings here are integers, where plain zig-zag deltas compress as well.)
+ */
+final class BlockCodec {
+
+    static final short MAGIC = 0x7B10;
+    static final int HEADER_BYTES = 2 + 4 + 4 + 8 + 8 + 4;
+
+    private BlockCodec() {
+    }
+
+    /**
+     * Worst-case encoded size of a block.
+     */
+    static int maxBlockBytes(int rows, int columns) {
+        return HEADER_BYTES + columns * 5 + rows * columns * 10;
+    }
+
+    /**
+     * Encodes {@code rows} rows into {@code out} starting at position 0 and returns the block length.
+     *
+     * @param timestamps row timestamps, ascending
+     * @param values     value columns, {@code values[column][row]}
+     */
+    static int encode(int seriesId, long[] timestamps, long[][] values, int rows, byte[] out) {
+        int columns = values.length + 1;
+        // Encode columns after a gap reserved for the header and column lengths
+        int lengthsAt = HEADER_BYTES;
+        int dataAt = lengthsAt + columns * 5;
+        int[] columnLengths = new int[columns];
+
+        int pos = dataAt;
+        int start = pos;
+        long prev = timestamps[0];
+        long prevDelta = 0;
+        pos = writeVarLong(out, pos, zigzag(prev));
+        for (int i = 1; i < rows; i++) {
+            long delta = timestamps[i] - prev;
+            pos = writeVarLong(out, pos, zigzag(delta - prevDelta));
+            prevDelta = delta;
+            prev = timestamps[i];
+        }
+        columnLengths[0] = pos - start;
+
+        for (int c = 0; c < values.length; c++) {
+            start = pos;
+            long[] column = values[c];
+            long previous = 0;
+            for (int i = 0; i < rows; i++) {
+                pos = writeVarLong(out, pos, zigzag(column[i] - previous));
+                previous = column[i];
+            }
+            columnLengths[c + 1] = pos - start;
+        }
+
+        // Compact: column lengths directly after the header, then the data
+        int lengthsEnd = lengthsAt;
+        for (int length : columnLengths) {
+            lengthsEnd = writeVarLong(out, lengthsEnd, length);
+        }
+        int dataLength = pos - dataAt;
+        System.arraycopy(out, dataAt, out, lengthsEnd, dataLength);
+        int end = lengthsEnd + dataLength;
+
+        ByteBuffer header = ByteBuffer.wrap(out, 0, HEADER_BYTES);
+        header.putShort(MAGIC);
+        header.putInt(seriesId);
+        header.putInt(rows);
+        header.putLong(timestamps[0]);
+        header.putLong(timestamps[rows - 1]);
+        header.putInt(end - HEADER_BYTES);
+        return end;
+    }
+
+    static boolean isBlock(ByteBuffer buffer, int offset, int limit) {
+        return offset + HEADER_BYTES <= limit && buffer.getShort(offset) == MAGIC;
+    }
+
+    static int seriesId(ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset + 2);
+    }
+
+    static long minTs(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset + 10);
+    }
+
+    static long maxTs(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset + 18);
+    }
+
+    static int blockLength(ByteBuffer buffer, int offset) {
+        return HEADER_BYTES + buffer.getInt(offset + 26);
+    }
+
+    /**
+     * Streams rows with {@code from <= ts <= to} of the block at {@code offset} to the visitor.
+     */
+    static void decode(ByteBuffer buffer, int offset, Tier tier, long from, long to, PointVisitor visitor) {
+        int rows = buffer.getInt(offset + 6);
+        int columns = tier.valueColumns() + 1;
+        int[] cursor = new int[columns];
+        int[] lengthPos = {offset + HEADER_BYTES};
+        int[] lengths = new int[columns];
+        for (int c = 0; c < columns; c++) {
+            lengths[c] = (int) readVarLong(buffer, lengthPos, 0);
+        }
+        int dataPos = lengthPos[0];
+        for (int c = 0; c < columns; c++) {
+            cursor[c] = dataPos;
+            dataPos += lengths[c];
+        }
+
+        long[] current = new long[columns];
+        long ts = 0;
+        long delta = 0;
+        for (int i = 0; i < rows; i++) {
+            if (i == 0) {
+                ts = unzigzag(readVarLong(buffer, cursor, 0));
+            } else {
+                delta += unzigzag(readVarLong(buffer, cursor, 0));
+                ts += delta;
+            }
+            for (int c = 1; c < columns; c++) {
+                current[c] += unzigzag(readVarLong(buffer, cursor, c));
+            }
+            if (ts > to) {
+                return;
+            }
+            if (ts < from) {
+                continue;
+            }
+            if (columns == 2) {
+                long value = current[1];
+                visitor.accept(ts, value, value, value, 1);
+            } else {
+                visitor.accept(ts, current[1], current[2], current[3], current[4]);
+            }
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int writeVarLong(byte[] out, int pos, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    private static long readVarLong(ByteBuffer buffer, int[] cursor, int index) {
+        int pos = cursor[index];
+        long result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(pos++);
+            result |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        cursor[index] = pos;
+        return result;
+    }
+}
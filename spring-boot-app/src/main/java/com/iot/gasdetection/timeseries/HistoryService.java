@@ -0,0 +1,83 @@
+package com.iot.gasdetection.timeseries;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.gasdetection.model.SensorField;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Chart history: reads one series from the best tier for the requested range, downsamples it to at most
+ * {@code maxPoints} rows and streams the result as JSON straight to the response.
+ * <p>
+ * Output: {@code {"success":true,"data":{"deviceId":..,"field":..,"tier":"1m","from":..,"to":..,
+ * "columns":["ts","min","max","avg"],"points":[[..],..]},"error":null}}.
+ */
+@Service
+public class HistoryService {
+
+    private final TimeSeriesStore store;
+    private final JsonFactory jsonFactory;
+
+    public HistoryService(TimeSeriesStore store, ObjectMapper objectMapper) {
+        this.store = store;
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    public boolean isAvailable(SensorField field) {
+        return store.isRecorded(field);
+    }
+
+    public void write(String deviceId, SensorField field, long from, long to, int maxPoints, OutputStream out)
+            throws IOException {
+        Tier tier = store.tierFor(from, to, maxPoints);
+        try (JsonGenerator gen = jsonFactory.createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            gen.writeStartObject();
+            gen.writeBooleanField("success", true);
+            gen.writeObjectFieldStart("data");
+            gen.writeStringField("deviceId", deviceId);
+            gen.writeStringField("field", field.getJsonName());
+            gen.writeStringField("tier", tier.getDirName());
+            gen.writeNumberField("from", from);
+            gen.writeNumberField("to", to);
+            gen.writeArrayFieldStart("columns");
+            gen.writeString("ts");
+            gen.writeString("min");
+            gen.writeString("max");
+            gen.writeString("avg");
+            gen.writeEndArray();
+            gen.writeArrayFieldStart("points");
+
+            MinMaxDownsampler downsampler = new MinMaxDownsampler(from, to, maxPoints, (ts, min, max, sum, count) -> {
+                try {
+                    gen.writeStartArray();
+                    gen.writeNumber(ts);
+                    gen.writeNumber(min);
+                    gen.writeNumber(max);
+                    gen.writeNumber(Math.round(sum * 10.0 / count) / 10.0);
+                    gen.writeEndArray();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            // Start at the tier bucket holding 'from' so the first partial bucket is not lost
+            long scanFrom = tier.isRollup() ? from - Math.floorMod(from, tier.getBucketMillis()) : from;
+            try {
+                store.query(deviceId, field, tier, scanFrom, to, downsampler);
+                downsampler.finish();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            gen.writeEndArray();
+            gen.writeEndObject();
+            gen.writeNullField("error");
+            gen.writeEndObject();
+        }
+    }
+}
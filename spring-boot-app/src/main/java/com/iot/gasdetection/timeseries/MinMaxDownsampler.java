@@ -0,0 +1,44 @@
+package com.iot.gasdetection.timeseries;
+
+/**
+ * Streaming min/max bucketing: folds rows of any tier into at most {@code maxPoints} equal-width time
+ * buckets and emits one row per non-empty bucket, timestamped at its first row. Every bucket keeps the
+ * exact min and max of its input, so short gas spikes stay visible at any zoom level. Holds O(1) state.
+ */
+final class MinMaxDownsampler implements PointVisitor {
+
+    private final long from;
+    private final long width;
+    private final PointVisitor downstream;
+
+    private final Series.Bucket bucket = new Series.Bucket();
+    private long bucketIndex = -1;
+    private long firstTs;
+
+    MinMaxDownsampler(long from, long to, int maxPoints, PointVisitor downstream) {
+        this.from = from;
+        this.width = Math.max(1, (to - from + maxPoints) / maxPoints);
+        this.downstream = downstream;
+    }
+
+    @Override
+    public void accept(long ts, long min, long max, long sum, long count) {
+        long index = Math.max(0, ts - from) / width;
+        if (index != bucketIndex) {
+            finish();
+            bucketIndex = index;
+            firstTs = Math.max(ts, from);
+        }
+        bucket.merge(index, min, max, sum, count);
+    }
+
+    /**
+     * Emits the last open bucket; call once after the input is exhausted.
+     */
+    void finish() {
+        if (bucket.count > 0) {
+            downstream.accept(firstTs, bucket.min, bucket.max, bucket.sum, bucket.count);
+            bucket.count = 0;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.iot.gasdetection.timeseries;
+
+/**
+ * Receives rows of a range query in timestamp order. Raw points arrive as
+ * {@code min == max == sum == value, count == 1}.
+ */
+@FunctionalInterface
+public interface PointVisitor {
+
+    void accept(long timestamp, long min, long max, long sum, long count);
+}
@@ -0,0 +1,119 @@
+package com.iot.gasdetection.timeseries;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One memory-mapped, append-only segment file of a tier.
+ * <p>
+ * The header stores the end of the valid data; it is advanced only after a block is fully written, so a
+ * crash mid-append leaves the previous end and the torn block is ignored on restart.
+ */
+final class Segment {
+
+    private static final int MAGIC = 0x47545331; // "GTS1"
+    static final int HEADER_BYTES = 64;
+    private static final int END_OFFSET = 8;
+
+    private final Path path;
+    private final int number;
+    private final MappedByteBuffer buffer;
+    private volatile int end;
+    private volatile long maxTs = Long.MIN_VALUE;
+    private volatile boolean deleted;
+
+    private Segment(Path path, int number, MappedByteBuffer buffer, int end) {
+        this.path = path;
+        this.number = number;
+        this.buffer = buffer;
+        this.end = end;
+    }
+
+    static Segment create(Path path, int number, int capacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, capacity);
+            buffer.putInt(END_OFFSET, HEADER_BYTES);
+            return new Segment(path, number, buffer, HEADER_BYTES);
+        }
+    }
+
+    static Segment open(Path path, int number) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a time-series segment: " + path);
+            }
+            int end = Math.min(Math.max(buffer.getInt(END_OFFSET), HEADER_BYTES), buffer.capacity());
+            return new Segment(path, number, buffer, end);
+        }
+    }
+
+    int getNumber() {
+        return number;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * Read-only view for decoding; absolute reads only.
+     */
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    int end() {
+        return end;
+    }
+
+    long maxTs() {
+        return maxTs;
+    }
+
+    void observe(long ts) {
+        if (ts > maxTs) {
+            maxTs = ts;
+        }
+    }
+
+    boolean isDeleted() {
+        return deleted;
+    }
+
+    /**
+     * Appends a block; returns its offset or -1 if the segment is full. Callers serialize appends.
+     */
+    int append(byte[] block, int length, long blockMaxTs) {
+        int offset = end;
+        if (offset + length > buffer.capacity()) {
+            return -1;
+        }
+        buffer.put(offset, block, 0, length);
+        buffer.putInt(END_OFFSET, offset + length);
+        end = offset + length;
+        observe(blockMaxTs);
+        return offset;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Removes the file; the segment counts as deleted only once that succeeded, so a failed delete is retried
+     * on the next retention pass. The mapping stays readable for queries still decoding from it.
+     */
+    void delete() throws IOException {
+        Files.deleteIfExists(path);
+        deleted = true;
+    }
+}
@@ -0,0 +1,113 @@
+package com.iot.gasdetection.timeseries;
+
+import com.iot.gasdetection.model.SensorField;
+
+import java.util.Arrays;
+
+/**
+ * Write-side state of one (device, field) series: the pending rows of every tier and the open rollup
+ * buckets. All access is synchronized on the instance.
+ */
+final class Series {
+
+    final int id;
+    final String deviceId;
+    final SensorField field;
+
+    final RowBuffer[] buffers = new RowBuffer[Tier.values().length];
+    final Bucket[] buckets = new Bucket[Tier.values().length];
+
+    Series(int id, String deviceId, SensorField field) {
+        this.id = id;
+        this.deviceId = deviceId;
+        this.field = field;
+        for (Tier tier : Tier.values()) {
+            if (tier.isRollup()) {
+                buckets[tier.ordinal()] = new Bucket();
+            }
+        }
+    }
+
+    RowBuffer buffer(Tier tier, int capacity) {
+        RowBuffer buffer = buffers[tier.ordinal()];
+        if (buffer == null) {
+            buffer = new RowBuffer(capacity, tier.valueColumns());
+            buffers[tier.ordinal()] = buffer;
+        }
+        return buffer;
+    }
+
+    /**
+     * Rows not yet written to a block. Arrays start small, grow up to the block size and are then reused,
+     * so memory follows the actual write rate of the series.
+     */
+    static final class RowBuffer {
+
+        private static final int INITIAL_CAPACITY = 8;
+
+        final int capacity;
+        long[] timestamps;
+        long[][] values;
+        int size;
+        long firstAppendAt;
+
+        RowBuffer(int capacity, int valueColumns) {
+            this.capacity = capacity;
+            int initial = Math.min(INITIAL_CAPACITY, capacity);
+            timestamps = new long[initial];
+            values = new long[valueColumns][initial];
+        }
+
+        /**
+         * @return true when the buffer holds a full block
+         */
+        boolean add(long ts, long min, long max, long sum, long count, long now) {
+            if (size == 0) {
+                firstAppendAt = now;
+            }
+            if (size == timestamps.length) {
+                int grown = Math.min(capacity, size * 2);
+                timestamps = Arrays.copyOf(timestamps, grown);
+                for (int c = 0; c < values.length; c++) {
+                    values[c] = Arrays.copyOf(values[c], grown);
+                }
+            }
+            timestamps[size] = ts;
+            values[0][size] = min;
+            if (values.length > 1) {
+                values[1][size] = max;
+                values[2][size] = sum;
+                values[3][size] = count;
+            }
+            size++;
+            return size == capacity;
+        }
+    }
+
+    /**
+     * Open aggregation bucket of a rollup tier.
+     */
+    static final class Bucket {
+
+        long start;
+        long min;
+        long max;
+        long sum;
+        long count;
+
+        void merge(long bucketStart, long rowMin, long rowMax, long rowSum, long rowCount) {
+            if (count == 0) {
+                start = bucketStart;
+                min = rowMin;
+                max = rowMax;
+                sum = rowSum;
+                count = rowCount;
+                return;
+            }
+            min = Math.min(min, rowMin);
+            max = Math.max(max, rowMax);
+            sum += rowSum;
+            count += rowCount;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.iot.gasdetection.timeseries;
+
+/**
+ * Storage tiers: raw readings plus incrementally computed rollups.
+ * Raw rows have 2 columns (ts, value); rollup rows have 5 (ts, min, max, sum, count).
+ */
+public enum Tier {
+
+    RAW("raw", 0),
+    SECOND("1s", 1_000L),
+    MINUTE("1m", 60_000L),
+    HOUR("1h", 3_600_000L);
+
+    private final String dirName;
+    private final long bucketMillis;
+
+    Tier(String dirName, long bucketMillis) {
+        this.dirName = dirName;
+        this.bucketMillis = bucketMillis;
+    }
+
+    public String getDirName() {
+        return dirName;
+    }
+
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+
+    public boolean isRollup() {
+        return this != RAW;
+    }
+
+    int valueColumns() {
+        return isRollup() ? 4 : 1;
+    }
+
+    /**
+     * The next coarser tier fed by this one, or null.
+     */
+    Tier next() {
+        return switch (this) {
+            case RAW -> SECOND;
+            case SECOND -> MINUTE;
+            case MINUTE -> HOUR;
+            case HOUR -> null;
+        };
+    }
+}
@@ -0,0 +1,236 @@
+package com.iot.gasdetection.timeseries;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Segments of one tier plus an in-memory per-series index of block positions and time bounds.
+ * The index holds only block headers, never points; it is rebuilt on startup by scanning headers.
+ */
+@Slf4j
+final class TierLog {
+
+    private final Tier tier;
+    private final Path dir;
+    private final int segmentBytes;
+    private final long retentionMillis;
+
+    // Guarded by "this"
+    private final List<Segment> segments = new ArrayList<>();
+    private final Map<Integer, BlockIndex> index = new HashMap<>();
+    private Segment active;
+
+    TierLog(Tier tier, Path dir, int segmentBytes, long retentionMillis) {
+        this.tier = tier;
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.retentionMillis = retentionMillis;
+    }
+
+    synchronized void open() throws IOException {
+        Files.createDirectories(dir);
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(p -> p.getFileName().toString().matches("seg-\\d+\\.dat")).sorted().toList();
+        }
+        int blocks = 0;
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            int number = Integer.parseInt(name.substring(4, name.length() - 4));
+            Segment segment = Segment.open(file, number);
+            blocks += scan(segment);
+            segments.add(segment);
+        }
+        if (!segments.isEmpty()) {
+            active = segments.get(segments.size() - 1);
+        }
+        log.info("📈 Time-series tier {}: {} segments, {} blocks", tier.getDirName(), segments.size(), blocks);
+    }
+
+    private int scan(Segment segment) {
+        ByteBuffer buffer = segment.buffer();
+        int offset = Segment.HEADER_BYTES;
+        int end = segment.end();
+        int blocks = 0;
+        while (BlockCodec.isBlock(buffer, offset, end)) {
+            int length = BlockCodec.blockLength(buffer, offset);
+            if (length <= BlockCodec.HEADER_BYTES || offset + length > end) {
+                break;
+            }
+            long maxTs = BlockCodec.maxTs(buffer, offset);
+            indexOf(BlockCodec.seriesId(buffer, offset))
+                    .add(segment, offset, BlockCodec.minTs(buffer, offset), maxTs);
+            segment.observe(maxTs);
+            offset += length;
+            blocks++;
+        }
+        return blocks;
+    }
+
+    private BlockIndex indexOf(int seriesId) {
+        return index.computeIfAbsent(seriesId, k -> new BlockIndex());
+    }
+
+    synchronized void append(int seriesId, byte[] block, int length, long minTs, long maxTs) throws IOException {
+        int offset = active == null ? -1 : active.append(block, length, maxTs);
+        if (offset < 0) {
+            roll(Math.max(segmentBytes, length + Segment.HEADER_BYTES));
+            offset = active.append(block, length, maxTs);
+        }
+        indexOf(seriesId).add(active, offset, minTs, maxTs);
+    }
+
+    private void roll(int capacity) throws IOException {
+        if (active != null) {
+            active.force();
+        }
+        int number = active == null ? 1 : active.getNumber() + 1;
+        active = Segment.create(dir.resolve(String.format("seg-%08d.dat", number)), number, capacity);
+        segments.add(active);
+        enforceRetention(System.currentTimeMillis());
+    }
+
+    /**
+     * Positions of the stored blocks of a series that may hold rows within {@code [from, to]}, copied under the
+     * lock. Decoding them runs outside it straight from the mapped segments.
+     */
+    synchronized Blocks find(int seriesId, long from, long to) {
+        BlockIndex blocks = index.get(seriesId);
+        if (blocks == null) {
+            return Blocks.EMPTY;
+        }
+        int first = blocks.firstEndingAtOrAfter(from);
+        int last = first;
+        while (last < blocks.size && blocks.minTs[last] <= to) {
+            last++;
+        }
+        return new Blocks(tier, Arrays.copyOfRange(blocks.segments, first, last),
+                Arrays.copyOfRange(blocks.offsets, first, last));
+    }
+
+    synchronized void force() {
+        if (active != null) {
+            active.force();
+        }
+    }
+
+    private void enforceRetention(long now) {
+        long cutoff = now - retentionMillis;
+        boolean removed = false;
+        Iterator<Segment> it = segments.iterator();
+        while (it.hasNext()) {
+            Segment segment = it.next();
+            if (segment == active || segment.maxTs() >= cutoff) {
+                break;
+            }
+            try {
+                segment.delete();
+                it.remove();
+                removed = true;
+                log.info("🧹 Deleted expired time-series segment {}", segment.getPath());
+            } catch (IOException e) {
+                // Kept and indexed; retried on the next roll, newer expired segments still go
+                log.warn("Cannot delete expired segment {}", segment.getPath(), e);
+            }
+        }
+        if (removed) {
+            index.values().forEach(BlockIndex::pruneDeleted);
+        }
+    }
+
+    /**
+     * Snapshot of block positions returned by {@link #find}.
+     */
+    static final class Blocks {
+
+        private static final Blocks EMPTY = new Blocks(null, new Segment[0], new int[0]);
+
+        private final Tier tier;
+        private final Segment[] segments;
+        private final int[] offsets;
+
+        private Blocks(Tier tier, Segment[] segments, int[] offsets) {
+            this.tier = tier;
+            this.segments = segments;
+            this.offsets = offsets;
+        }
+
+        /**
+         * Streams the rows within {@code [from, to]}; blocks of segments deleted since are skipped.
+         */
+        void decode(long from, long to, PointVisitor visitor) {
+            for (int i = 0; i < segments.length; i++) {
+                if (!segments[i].isDeleted()) {
+                    BlockCodec.decode(segments[i].buffer(), offsets[i], tier, from, to, visitor);
+                }
+            }
+        }
+    }
+
+    /**
+     * Block positions of one series, in append (time) order.
+     */
+    private static final class BlockIndex {
+
+        private Segment[] segments = new Segment[4];
+        private int[] offsets = new int[4];
+        private long[] minTs = new long[4];
+        private long[] maxTs = new long[4];
+        private int size;
+
+        void add(Segment segment, int offset, long min, long max) {
+            if (size == offsets.length) {
+                int capacity = size * 2;
+                segments = Arrays.copyOf(segments, capacity);
+                offsets = Arrays.copyOf(offsets, capacity);
+                minTs = Arrays.copyOf(minTs, capacity);
+                maxTs = Arrays.copyOf(maxTs, capacity);
+            }
+            segments[size] = segment;
+            offsets[size] = offset;
+            minTs[size] = min;
+            maxTs[size] = max;
+            size++;
+        }
+
+        int firstEndingAtOrAfter(long from) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (maxTs[mid] < from) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        void pruneDeleted() {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (!segments[i].isDeleted()) {
+                    segments[kept] = segments[i];
+                    offsets[kept] = offsets[i];
+                    minTs[kept] = minTs[i];
+                    maxTs[kept] = maxTs[i];
+                    kept++;
+                }
+            }
+            Arrays.fill(segments, kept, size, null);
+            size = kept;
+        }
+    }
+}
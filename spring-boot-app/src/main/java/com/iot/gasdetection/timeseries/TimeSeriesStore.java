@@ -0,0 +1,362 @@
+package com.iot.gasdetection.timeseries;
+
+import com.iot.gasdetection.config.TimeSeriesProperties;
+import com.iot.gasdetection.model.SensorField;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embedded, append-only time-series store for sensor readings.
+ * <p>
+ * Every reading goes to the raw tier and is folded into 1s/1m/1h rollups (min/max/sum/count) as it
+ * arrives. Rows are buffered per series and written as compressed columnar blocks (see {@link BlockCodec})
+ * into memory-mapped segment files, one set per tier. Range queries decode blocks straight from the
+ * mapped files into a {@link PointVisitor}; points are never collected on the heap.
+ * <p>
+ * Buffered rows are written once a block is full, once they are older than {@code max-buffer-age-ms}
+ * and on shutdown, so a crash loses at most that window. Open rollup buckets flushed at shutdown may
+ * reappear as a second row with the same timestamp after a restart; readers merge such rows.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TimeSeriesStore {
+
+    private static final String DICTIONARY = "series.dict";
+
+    private final TimeSeriesProperties properties;
+
+    private final Map<Tier, TierLog> logs = new EnumMap<>(Tier.class);
+    // deviceId -> series indexed by SensorField ordinal
+    private final ConcurrentHashMap<String, Series[]> series = new ConcurrentHashMap<>();
+    private final AtomicInteger nextSeriesId = new AtomicInteger(1);
+    private final ThreadLocal<byte[]> scratch = new ThreadLocal<>();
+
+    private Path root;
+    private int recordedMask;
+    private volatile boolean open;
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void open() {
+        if (!properties.isEnabled()) {
+            log.info("📈 Time-series store disabled");
+            return;
+        }
+        for (String name : properties.getFields()) {
+            SensorField field = SensorField.fromJsonName(name.trim());
+            if (field == null) {
+                throw new IllegalArgumentException("Unknown time-series field: " + name);
+            }
+            recordedMask |= field.getMask();
+        }
+        try {
+            root = Paths.get(properties.getDir());
+            Files.createDirectories(root);
+            loadDictionary();
+            for (Tier tier : Tier.values()) {
+                TierLog tierLog = new TierLog(tier, root.resolve(tier.getDirName()),
+                        properties.getSegmentBytes(), retentionMillis(tier));
+                tierLog.open();
+                logs.put(tier, tierLog);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open time-series store at " + properties.getDir(), e);
+        }
+        open = true;
+
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ts-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = properties.getFlushIntervalMs();
+        flusher.scheduleWithFixedDelay(() -> flush(false), period, period, TimeUnit.MILLISECONDS);
+        log.info("📈 Time-series store open at {} ({} series)", root.toAbsolutePath(), nextSeriesId.get() - 1);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (!open) {
+            return;
+        }
+        flusher.shutdownNow();
+        flush(true);
+        open = false;
+        log.info("📈 Time-series store closed");
+    }
+
+    private long retentionMillis(Tier tier) {
+        TimeSeriesProperties.Retention retention = properties.getRetention();
+        return switch (tier) {
+            case RAW -> TimeUnit.HOURS.toMillis(retention.getRawHours());
+            case SECOND -> TimeUnit.HOURS.toMillis(retention.getSecondHours());
+            case MINUTE -> TimeUnit.DAYS.toMillis(retention.getMinuteDays());
+            case HOUR -> TimeUnit.DAYS.toMillis(retention.getHourDays());
+        };
+    }
+
+    /**
+     * Picks the coarsest tier that still resolves {@code [from, to]} into at least {@code maxPoints}
+     * rows and whose retention reaches back to {@code from}. Rollups keep exact min/max, so charting
+     * from them loses no spikes while scanning far fewer rows.
+     */
+    public Tier tierFor(long from, long to, int maxPoints) {
+        long perPoint = Math.max(1, (to - from) / Math.max(1, maxPoints));
+        long now = System.currentTimeMillis();
+        Tier selected = Tier.RAW;
+        for (Tier tier : Tier.values()) {
+            if (tier.isRollup() && tier.getBucketMillis() <= perPoint) {
+                selected = tier;
+            }
+        }
+        while (selected.next() != null && from < now - retentionMillis(selected)) {
+            selected = selected.next();
+        }
+        return selected;
+    }
+
+    public boolean isRecorded(SensorField field) {
+        return open && (recordedMask & field.getMask()) != 0;
+    }
+
+    /**
+     * Records one reading and updates the rollups.
+     */
+    public void record(String deviceId, SensorField field, long timestamp, int value) {
+        if (!isRecorded(field)) {
+            return;
+        }
+        Series s = seriesFor(deviceId, field, true);
+        if (s == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (s) {
+            appendRow(s, Tier.RAW, timestamp, value, value, value, 1, now);
+            rollup(s, Tier.SECOND, timestamp, value, value, value, 1, now);
+        }
+    }
+
+    /**
+     * Streams rows of one series and tier within {@code [from, to]} in time order: stored blocks, then
+     * buffered rows, then (for rollup tiers) the still open bucket as a partial row.
+     */
+    public void query(String deviceId, SensorField field, Tier tier, long from, long to, PointVisitor visitor) {
+        if (!open) {
+            return;
+        }
+        Series s = seriesFor(deviceId, field, false);
+        if (s == null) {
+            return;
+        }
+        TierLog.Blocks stored;
+        long[] timestamps;
+        long[][] values;
+        int size;
+        Series.Bucket partial = null;
+        // Block positions and buffered rows are taken together: a flush moves rows from one to the other under
+        // the series lock, so reading them apart could miss or repeat those rows
+        synchronized (s) {
+            stored = logs.get(tier).find(s.id, from, to);
+            Series.RowBuffer buffer = s.buffers[tier.ordinal()];
+            size = buffer == null ? 0 : buffer.size;
+            timestamps = size == 0 ? null : Arrays.copyOf(buffer.timestamps, size);
+            values = new long[tier.valueColumns()][];
+            for (int c = 0; size > 0 && c < values.length; c++) {
+                values[c] = Arrays.copyOf(buffer.values[c], size);
+            }
+            Series.Bucket bucket = s.buckets[tier.ordinal()];
+            if (bucket != null && bucket.count > 0) {
+                partial = new Series.Bucket();
+                partial.merge(bucket.start, bucket.min, bucket.max, bucket.sum, bucket.count);
+            }
+        }
+        stored.decode(from, to, visitor);
+        for (int i = 0; i < size; i++) {
+            long ts = timestamps[i];
+            if (ts < from || ts > to) {
+                continue;
+            }
+            if (values.length == 1) {
+                visitor.accept(ts, values[0][i], values[0][i], values[0][i], 1);
+            } else {
+                visitor.accept(ts, values[0][i], values[1][i], values[2][i], values[3][i]);
+            }
+        }
+        if (partial != null && partial.start >= from && partial.start <= to) {
+            visitor.accept(partial.start, partial.min, partial.max, partial.sum, partial.count);
+        }
+    }
+
+    private void rollup(Series s, Tier tier, long ts, long min, long max, long sum, long count, long now) {
+        Series.Bucket bucket = s.buckets[tier.ordinal()];
+        long start = ts - Math.floorMod(ts, tier.getBucketMillis());
+        if (bucket.count > 0 && bucket.start != start) {
+            closeBucket(s, tier, now);
+        }
+        bucket.merge(start, min, max, sum, count);
+    }
+
+    private void closeBucket(Series s, Tier tier, long now) {
+        Series.Bucket bucket = s.buckets[tier.ordinal()];
+        appendRow(s, tier, bucket.start, bucket.min, bucket.max, bucket.sum, bucket.count, now);
+        Tier next = tier.next();
+        if (next != null) {
+            rollup(s, next, bucket.start, bucket.min, bucket.max, bucket.sum, bucket.count, now);
+        }
+        bucket.count = 0;
+    }
+
+    private void appendRow(Series s, Tier tier, long ts, long min, long max, long sum, long count, long now) {
+        Series.RowBuffer buffer = s.buffer(tier, bufferCapacity(tier));
+        if (buffer.add(ts, min, max, sum, count, now)) {
+            writeBlock(s, tier, buffer);
+        }
+    }
+
+    private int bufferCapacity(Tier tier) {
+        if (!tier.isRollup()) {
+            return properties.getBlockPoints();
+        }
+        // Coarse tiers rarely fill a block before the buffer age limit; do not reserve room they never use
+        long expected = properties.getMaxBufferAgeMs() / tier.getBucketMillis() + 1;
+        return (int) Math.max(2, Math.min(properties.getBlockPoints(), expected));
+    }
+
+    private void writeBlock(Series s, Tier tier, Series.RowBuffer buffer) {
+        int rows = buffer.size;
+        if (rows == 0) {
+            return;
+        }
+        int columns = tier.valueColumns() + 1;
+        byte[] out = scratch.get();
+        int maxBytes = BlockCodec.maxBlockBytes(Math.max(rows, properties.getBlockPoints()), columns);
+        if (out == null || out.length < maxBytes) {
+            out = new byte[maxBytes];
+            scratch.set(out);
+        }
+        int length = BlockCodec.encode(s.id, buffer.timestamps, buffer.values, rows, out);
+        try {
+            logs.get(tier).append(s.id, out, length, buffer.timestamps[0], buffer.timestamps[rows - 1]);
+        } catch (IOException e) {
+            log.error("❌ Cannot append {} rows of {}/{} to tier {}", rows, s.deviceId,
+                    s.field.getJsonName(), tier.getDirName(), e);
+        }
+        buffer.size = 0;
+    }
+
+    /**
+     * Closes expired rollup buckets and writes aged (or, with {@code force}, all) buffered rows.
+     */
+    void flush(boolean force) {
+        try {
+            long now = System.currentTimeMillis();
+            for (Series[] perDevice : series.values()) {
+                for (Series s : perDevice) {
+                    if (s == null) {
+                        continue;
+                    }
+                    synchronized (s) {
+                        for (Tier tier : Tier.values()) {
+                            Series.Bucket bucket = s.buckets[tier.ordinal()];
+                            if (bucket != null && bucket.count > 0
+                                    && (force || bucket.start + tier.getBucketMillis() <= now)) {
+                                closeBucket(s, tier, now);
+                            }
+                        }
+                        for (Tier tier : Tier.values()) {
+                            Series.RowBuffer buffer = s.buffers[tier.ordinal()];
+                            if (buffer != null && buffer.size > 0
+                                    && (force || now - buffer.firstAppendAt >= properties.getMaxBufferAgeMs())) {
+                                writeBlock(s, tier, buffer);
+                            }
+                        }
+                    }
+                }
+            }
+            logs.values().forEach(TierLog::force);
+        } catch (Exception e) {
+            log.error("Error flushing time-series store", e);
+        }
+    }
+
+    private Series seriesFor(String deviceId, SensorField field, boolean create) {
+        Series[] perDevice = series.get(deviceId);
+        if (perDevice == null) {
+            if (!create) {
+                return null;
+            }
+            perDevice = series.computeIfAbsent(deviceId, k -> new Series[SensorField.values().length]);
+        }
+        Series s = perDevice[field.ordinal()];
+        if (s != null || !create) {
+            return s;
+        }
+        synchronized (perDevice) {
+            s = perDevice[field.ordinal()];
+            if (s == null) {
+                if (deviceId.indexOf('\t') >= 0 || deviceId.indexOf('\n') >= 0) {
+                    return null;
+                }
+                s = new Series(nextSeriesId.getAndIncrement(), deviceId, field);
+                appendDictionary(s);
+                perDevice[field.ordinal()] = s;
+            }
+            return s;
+        }
+    }
+
+    private void loadDictionary() throws IOException {
+        Path file = root.resolve(DICTIONARY);
+        if (!Files.exists(file)) {
+            return;
+        }
+        int maxId = 0;
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        for (String line : lines) {
+            String[] parts = line.split("\t");
+            if (parts.length != 3) {
+                continue;
+            }
+            SensorField field = SensorField.fromJsonName(parts[2]);
+            if (field == null) {
+                continue;
+            }
+            int id = Integer.parseInt(parts[0]);
+            series.computeIfAbsent(parts[1], k -> new Series[SensorField.values().length])[field.ordinal()] =
+                    new Series(id, parts[1], field);
+            maxId = Math.max(maxId, id);
+        }
+        nextSeriesId.set(maxId + 1);
+    }
+
+    private synchronized void appendDictionary(Series s) {
+        String line = s.id + "\t" + s.deviceId + "\t" + s.field.getJsonName() + "\n";
+        try {
+            Files.writeString(root.resolve(DICTIONARY), line, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+        } catch (IOException e) {
+            log.error("❌ Cannot persist time-series dictionary entry {}", line.trim(), e);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.iot.gasdetection.websocket;
+
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.util.zip.Deflater;
+
+/**
+ * Estimates the permessage-deflate ratio of one session. The container compresses inside its frame writer and
+ * reports no sizes, so every Nth frame is deflated again here the same way: raw deflate, sync flush, and the
+ * window kept across messages. Only the sampled frames share that window, so the estimate is a little low
+ * when frames repeat each other closely.
+ * <p>
+ * Called from the session's drain task, before the send consumes a binary payload; locked only against
+ * {@link #close()} from the closing thread.
+ */
+final class CompressionProbe {
+
+    // Trailing 00 00 FF FF of a sync flush, which permessage-deflate leaves off the wire
+    private static final int FLUSH_TRAILER = 4;
+
+    private final int sampleEvery;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final byte[] output = new byte[4096];
+    private int untilSample;
+    private boolean closed;
+    private volatile long rawBytes;
+    private volatile long deflatedBytes;
+
+    CompressionProbe(int sampleEvery) {
+        this.sampleEvery = sampleEvery;
+        this.untilSample = sampleEvery;
+    }
+
+    /**
+     * Deflates the frame if it is the one to sample and returns its deflated size, else -1.
+     */
+    synchronized int sample(WebSocketMessage<?> message) {
+        if (--untilSample > 0 || closed) {
+            return -1;
+        }
+        untilSample = sampleEvery;
+        byte[] payload = SessionOutbound.payloadOf(message);
+        deflater.setInput(payload);
+        int deflated = 0;
+        int written;
+        do {
+            written = deflater.deflate(output, 0, output.length, Deflater.SYNC_FLUSH);
+            deflated += written;
+        } while (written == output.length);
+        deflated = Math.max(1, deflated - FLUSH_TRAILER);
+        rawBytes += payload.length;
+        deflatedBytes += deflated;
+        return deflated;
+    }
+
+    /**
+     * Raw over deflated bytes of the sampled frames; NaN before the first sample.
+     */
+    double getRatio() {
+        long deflated = deflatedBytes;
+        return deflated == 0 ? Double.NaN : (double) rawBytes / deflated;
+    }
+
+    synchronized void close() {
+        closed = true;
+        deflater.end();
+    }
+}
@@ -0,0 +1,39 @@
+package com.iot.gasdetection.websocket;
+
+import java.util.Arrays;
+
+/**
+ * Per-device bookkeeping for protocol v2 deltas: for each distinct field mask watched by v2 sessions,
+ * the version of the last delta that carried one of those fields.
+ * <p>
+ * A delta with {@code base = b} contains every change of the watched fields after version {@code b},
+ * so a client that knows the device at version {@code >= b} can apply it; otherwise it has missed
+ * a frame and must resync.
+ */
+final class DeltaChain {
+
+    private int[] masks = new int[2];
+    private long[] versions = new long[2];
+    private int size;
+
+    /**
+     * Records {@code version} as the latest delta for {@code fieldMask} and returns the previous one (0 if none).
+     */
+    synchronized long advance(int fieldMask, long version) {
+        for (int i = 0; i < size; i++) {
+            if (masks[i] == fieldMask) {
+                long base = versions[i];
+                versions[i] = version;
+                return base;
+            }
+        }
+        if (size == masks.length) {
+            masks = Arrays.copyOf(masks, size * 2);
+            versions = Arrays.copyOf(versions, size * 2);
+        }
+        masks[size] = fieldMask;
+        versions[size] = version;
+        size++;
+        return 0;
+    }
+}
@@ -0,0 +1,27 @@
+package com.iot.gasdetection.websocket;
+
+/**
+ * Frame encoding of a WebSocket session, chosen on connect through the {@code Sec-WebSocket-Protocol} header.
+ * Clients that offer no subprotocol get JSON.
+ */
+public enum FrameEncoding {
+
+    // Text frames, as the React app expects
+    JSON("gas.json"),
+    // Binary CBOR frames with integer field tags, see CborFrameEncoder
+    CBOR("gas.cbor");
+
+    private final String subProtocol;
+
+    FrameEncoding(String subProtocol) {
+        this.subProtocol = subProtocol;
+    }
+
+    public String getSubProtocol() {
+        return subProtocol;
+    }
+
+    public static FrameEncoding fromSubProtocol(String subProtocol) {
+        return CBOR.subProtocol.equals(subProtocol) ? CBOR : JSON;
+    }
+}
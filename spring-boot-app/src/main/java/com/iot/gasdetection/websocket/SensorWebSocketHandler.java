@@ -1,71 +1,540 @@
 package com.iot.gasdetection.websocket;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iot.gasdetection.cluster.ClusterInterest;
+import com.iot.gasdetection.config.VirtualThreads;
+import com.iot.gasdetection.config.WebSocketProperties;
+import com.iot.gasdetection.device.CborFrameEncoder;
+import com.iot.gasdetection.device.DeviceRegistry;
+import com.iot.gasdetection.device.DeviceState;
+import com.iot.gasdetection.device.SnapshotEncoder;
+import com.iot.gasdetection.model.SensorField;
 import com.iot.gasdetection.model.WebSocketMessage;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.AbstractWebSocketMessage;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
-public class SensorWebSocketHandler extends TextWebSocketHandler {
+public class SensorWebSocketHandler extends TextWebSocketHandler implements SubProtocolCapable {
+
+    public static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
+    private static final String OUTBOUND_ATTRIBUTE = "sessionOutbound";
+
+    // Devices per v2 snapshot frame
+    private static final int SNAPSHOT_CHUNK = 500;
 
     private final ObjectMapper objectMapper;
-    private final CopyOnWriteArraySet<WebSocketSession> sessions = new CopyOnWriteArraySet<>();
+    private final WebSocketProperties webSocketProperties;
+    private final DeviceRegistry deviceRegistry;
+    private final SnapshotEncoder snapshotEncoder;
+    private final CborFrameEncoder cborFrameEncoder;
+    private final ClusterInterest clusterInterest;
+    private final VirtualThreads virtualThreads;
+    private final MeterRegistry meterRegistry;
+    private final CopyOnWriteArraySet<SessionOutbound> sessions = new CopyOnWriteArraySet<>();
+
+    // Subscription indexes: sessions watching every device, one device, or one group
+    private final CopyOnWriteArraySet<SessionOutbound> allDeviceSessions = new CopyOnWriteArraySet<>();
+    private final ConcurrentHashMap<String, Set<SessionOutbound>> deviceSessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<SessionOutbound>> groupSessions = new ConcurrentHashMap<>();
+
+    // Protocol v2 delta chains, only for devices that had v2 watchers
+    private final ConcurrentHashMap<String, DeltaChain> deltaChains = new ConcurrentHashMap<>();
+
+    private Executor senderExecutor;
+    private SessionMeters.Totals meterTotals;
+
+    @PostConstruct
+    public void start() {
+        if (virtualThreads.isEnabled()) {
+            // One virtual thread per draining session: a slow client parks its own thread instead of a pool slot
+            senderExecutor = virtualThreads.executor("ws-sender-");
+        } else {
+            int threads = webSocketProperties.getOutbound().getSenderThreads();
+            AtomicInteger counter = new AtomicInteger();
+            senderExecutor = Executors.newFixedThreadPool(threads, r -> {
+                Thread thread = new Thread(r, "ws-sender-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        meterTotals = new SessionMeters.Totals(meterRegistry);
+        Gauge.builder("gas.websocket.sessions", sessions, Set::size)
+                .description("Open WebSocket sessions")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (senderExecutor instanceof ExecutorService pool) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Subprotocols offered in the handshake; the first one the client lists is accepted.
+     */
+    @Override
+    public List<String> getSubProtocols() {
+        if (!webSocketProperties.isBinaryEnabled()) {
+            return List.of(FrameEncoding.JSON.getSubProtocol());
+        }
+        return List.of(FrameEncoding.JSON.getSubProtocol(), FrameEncoding.CBOR.getSubProtocol());
+    }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) {
-        sessions.add(session);
-        log.info("🔌 New WebSocket client connected: {}", session.getId());
+        SessionFilter filter = SessionFilter.fromUri(session.getUri());
+        FrameEncoding encoding = FrameEncoding.fromSubProtocol(session.getAcceptedProtocol());
+        boolean batching = webSocketProperties.getBatch().isEnabled() && wantsBatching(session.getUri());
+        boolean compressed = session.getExtensions().stream()
+                .anyMatch(extension -> PERMESSAGE_DEFLATE.equals(extension.getName()));
+        SessionOutbound outbound = new SessionOutbound(session, filter, encoding, batching, compressed,
+                webSocketProperties, senderExecutor, meterRegistry, meterTotals);
+        session.getAttributes().put(OUTBOUND_ATTRIBUTE, outbound);
+        index(outbound);
+        sessions.add(outbound);
+        log.info("🔌 New WebSocket client connected: {} ({}{}{})", session.getId(), encoding,
+                compressed ? ", deflate" : "", batching ? ", batch" : "");
         log.info("📊 Total active connections: {}", sessions.size());
     }
 
+    /**
+     * {@code /ws?batch=true}: the client unpacks {@code batch} frames, so queued data frames may be packed together.
+     */
+    private static boolean wantsBatching(URI uri) {
+        if (uri == null || uri.getQuery() == null) {
+            return false;
+        }
+        String batch = UriComponentsBuilder.fromUri(uri).build().getQueryParams().getFirst("batch");
+        return "true".equals(batch) || "1".equals(batch);
+    }
+
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
-        sessions.remove(session);
+        SessionOutbound outbound = outboundOf(session);
+        if (outbound != null) {
+            sessions.remove(outbound);
+            unindex(outbound);
+            outbound.close();
+        }
         log.info("🔌 WebSocket client disconnected: {}", session.getId());
         log.info("📊 Total active connections: {}", sessions.size());
     }
 
+    /**
+     * Protocol v2 client messages:
+     * <pre>
+     * {"action":"subscribe","devices":["esp-01"],"groups":["building-a"],"fields":["mq2","fire"]}
+     * {"action":"resync","devices":["esp-01"]}
+     * </pre>
+     * Subscribe switches the session to v2: it gets a snapshot of every matching device, then
+     * {@code delta} frames with only the changed fields, a {@code version} and a {@code base}.
+     * A client that knows a device at a version lower than {@code base} has missed a frame and should resync.
+     * <p>
+     * Client messages and the replies to them are JSON text frames whatever the session's encoding.
+     */
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) {
-        // Handle incoming messages if needed
         log.debug("Received message from {}: {}", session.getId(), message.getPayload());
+        SessionOutbound outbound = outboundOf(session);
+        if (outbound == null) {
+            return;
+        }
+        try {
+            JsonNode request = objectMapper.readTree(message.getPayload());
+            String action = request.path("action").asText("");
+            switch (action) {
+                case "subscribe" -> subscribe(outbound, request);
+                case "resync" -> resync(outbound, request);
+                default -> replyError(outbound, "Unknown action: " + action);
+            }
+        } catch (IllegalArgumentException | JsonProcessingException e) {
+            replyError(outbound, e.getMessage());
+        }
+    }
+
+    private void subscribe(SessionOutbound outbound, JsonNode request) {
+        int fieldMask = SensorField.ALL_MASK;
+        List<String> fields = strings(request.get("fields"));
+        if (!fields.isEmpty()) {
+            fieldMask = 0;
+            for (String name : fields) {
+                SensorField field = SensorField.fromJsonName(name);
+                if (field == null) {
+                    throw new IllegalArgumentException("Unknown field: " + name);
+                }
+                fieldMask |= field.getMask();
+            }
+        }
+        SessionFilter filter = new SessionFilter(
+                new LinkedHashSet<>(strings(request.get("devices"))),
+                new LinkedHashSet<>(strings(request.get("groups"))),
+                fieldMask, true);
+
+        synchronized (outbound) {
+            unindex(outbound);
+            outbound.setFilter(filter);
+            index(outbound);
+        }
+
+        Map<String, Object> reply = new LinkedHashMap<>();
+        reply.put("type", "subscribed");
+        reply.put("protocol", 2);
+        reply.put("devices", filter.getDevices());
+        reply.put("groups", filter.getGroups());
+        reply.put("fields", fields.isEmpty() ? "*" : fields);
+        replyJson(outbound, reply);
+        sendSnapshots(outbound, filter, devicesFor(filter));
+    }
+
+    private void resync(SessionOutbound outbound, JsonNode request) {
+        SessionFilter filter = outbound.getFilter();
+        if (!filter.isDeltaProtocol()) {
+            throw new IllegalArgumentException("Subscribe before resync");
+        }
+        List<String> requested = strings(request.get("devices"));
+        if (requested.isEmpty()) {
+            sendSnapshots(outbound, filter, devicesFor(filter));
+            return;
+        }
+        List<DeviceState> devices = new ArrayList<>(requested.size());
+        for (String id : requested) {
+            DeviceState device = deviceRegistry.get(id);
+            if (device != null && matches(filter, device)) {
+                devices.add(device);
+            }
+        }
+        sendSnapshots(outbound, filter, devices);
+    }
+
+    private Collection<DeviceState> devicesFor(SessionFilter filter) {
+        if (filter.isAll()) {
+            return deviceRegistry.getAll();
+        }
+        Set<DeviceState> devices = new LinkedHashSet<>();
+        for (String id : filter.getDevices()) {
+            DeviceState device = deviceRegistry.get(id);
+            if (device != null) {
+                devices.add(device);
+            }
+        }
+        for (String group : filter.getGroups()) {
+            devices.addAll(deviceRegistry.getGroup(group));
+        }
+        return devices;
+    }
+
+    private static boolean matches(SessionFilter filter, DeviceState device) {
+        if (filter.isAll() || filter.getDevices().contains(device.getDeviceId())) {
+            return true;
+        }
+        for (String group : device.getGroups()) {
+            if (filter.getGroups().contains(group)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void sendSnapshots(SessionOutbound outbound, SessionFilter filter, Collection<DeviceState> devices) {
+        boolean connected = deviceRegistry.isBrokerConnected();
+        List<DeviceState> chunk = new ArrayList<>(Math.min(SNAPSHOT_CHUNK, devices.size()));
+        for (DeviceState device : devices) {
+            chunk.add(device);
+            if (chunk.size() == SNAPSHOT_CHUNK) {
+                outbound.enqueueReliable(snapshotFrame(outbound, chunk, filter.getFieldMask(), connected));
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty() || devices.isEmpty()) {
+            outbound.enqueueReliable(snapshotFrame(outbound, chunk, filter.getFieldMask(), connected));
+        }
+    }
+
+    private AbstractWebSocketMessage<?> snapshotFrame(SessionOutbound outbound, List<DeviceState> chunk,
+                                                      int fieldMask, boolean connected) {
+        if (outbound.getEncoding() == FrameEncoding.CBOR) {
+            return new BinaryMessage(cborFrameEncoder.snapshotFrameV2(chunk, fieldMask, connected));
+        }
+        return new TextMessage(snapshotEncoder.snapshotFrameV2(chunk, fieldMask, connected));
+    }
+
+    private static List<String> strings(JsonNode node) {
+        if (node == null || node.isNull()) {
+            return List.of();
+        }
+        if (!node.isArray()) {
+            throw new IllegalArgumentException("Expected an array");
+        }
+        List<String> values = new ArrayList<>(node.size());
+        node.forEach(item -> values.add(item.asText()));
+        return values;
     }
 
+    private void replyError(SessionOutbound outbound, String error) {
+        Map<String, Object> reply = new LinkedHashMap<>();
+        reply.put("type", "error");
+        reply.put("message", error);
+        replyJson(outbound, reply);
+    }
+
+    private void replyJson(SessionOutbound outbound, Object reply) {
+        try {
+            outbound.enqueueReliable(new TextMessage(objectMapper.writeValueAsString(reply)));
+        } catch (JsonProcessingException e) {
+            log.error("Error encoding reply for session {}", outbound.getSession().getId(), e);
+        }
+    }
+
+    private static SessionOutbound outboundOf(WebSocketSession session) {
+        return (SessionOutbound) session.getAttributes().get(OUTBOUND_ATTRIBUTE);
+    }
+
+    private void index(SessionOutbound outbound) {
+        SessionFilter filter = outbound.getFilter();
+        // Other nodes own most devices: ask their owners for updates of the devices this session watches
+        outbound.setInterest(clusterInterest.watch(filter.getDevices(), filter.getGroups()));
+        if (filter.isAll()) {
+            allDeviceSessions.add(outbound);
+            return;
+        }
+        filter.getDevices().forEach(id ->
+                deviceSessions.computeIfAbsent(id, k -> new CopyOnWriteArraySet<>()).add(outbound));
+        filter.getGroups().forEach(group ->
+                groupSessions.computeIfAbsent(group, k -> new CopyOnWriteArraySet<>()).add(outbound));
+    }
+
+    private void unindex(SessionOutbound outbound) {
+        SessionFilter filter = outbound.getFilter();
+        clusterInterest.unwatch(outbound.getInterest());
+        outbound.setInterest(null);
+        allDeviceSessions.remove(outbound);
+        filter.getDevices().forEach(id -> remove(deviceSessions, id, outbound));
+        filter.getGroups().forEach(group -> remove(groupSessions, group, outbound));
+    }
+
+    private static void remove(ConcurrentHashMap<String, Set<SessionOutbound>> index, String key,
+                               SessionOutbound outbound) {
+        index.computeIfPresent(key, (k, set) -> {
+            set.remove(outbound);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    /**
+     * Broadcasts to every connected session regardless of its device filter.
+     */
     public void broadcast(WebSocketMessage message) {
         try {
-            String json = objectMapper.writeValueAsString(message);
-            TextMessage textMessage = new TextMessage(json);
-
-            sessions.forEach(session -> {
-                if (session.isOpen()) {
-                    try {
-                        session.sendMessage(textMessage);
-                    } catch (IOException e) {
-                        log.error("Error sending message to session {}", session.getId(), e);
-                    }
-                }
-            });
+            enqueue(sessions, message);
         } catch (Exception e) {
             log.error("Error broadcasting message", e);
         }
     }
 
-    public void sendToSession(WebSocketSession session, WebSocketMessage message) {
+    /**
+     * Sends a device-scoped message only to sessions watching that device, one of its groups, or everything.
+     */
+    public void broadcastToDevice(String deviceId, List<String> groups, WebSocketMessage message) {
         try {
-            if (session.isOpen()) {
-                String json = objectMapper.writeValueAsString(message);
-                session.sendMessage(new TextMessage(json));
+            enqueue(targetsOf(deviceId, groups), message);
+        } catch (Exception e) {
+            log.error("Error broadcasting message for device {}", deviceId, e);
+        }
+    }
+
+    /**
+     * Fans out a coalesced device update. Protocol v1 sessions share one snapshot (or delta) frame; v2
+     * sessions share one delta frame per distinct field mask, and skip updates of fields they do not watch.
+     * Each frame is encoded at most once per encoding, when the first session that needs it comes up.
+     * Binary frames share the encoded bytes only: a {@link BinaryMessage} buffer is consumed as it is sent,
+     * so every session gets its own.
+     */
+    public void broadcastUpdate(DeviceState device, int changedMask) {
+        Collection<SessionOutbound> targets = targetsOf(device.getDeviceId(), device.getGroups());
+        if (targets.isEmpty()) {
+            return;
+        }
+        boolean connected = deviceRegistry.isBrokerConnected();
+        boolean v1Delta = webSocketProperties.getCoalesce().getMode() == WebSocketProperties.CoalesceMode.DELTA;
+        TextMessage v1Frame = null;
+        byte[] v1Binary = null;
+        DeviceState.StateView view = null;
+        int[] masks = null;
+        long[] bases = null;
+        TextMessage[] frames = null;
+        byte[][] binaries = null;
+        int maskCount = 0;
+
+        for (SessionOutbound outbound : targets) {
+            SessionFilter filter = outbound.getFilter();
+            boolean binary = outbound.getEncoding() == FrameEncoding.CBOR;
+            if (!filter.isDeltaProtocol()) {
+                if (binary) {
+                    if (v1Binary == null) {
+                        v1Binary = cborFrameEncoder.dataFrame(device,
+                                v1Delta ? changedMask : SensorField.ALL_MASK, connected);
+                    }
+                    outbound.enqueueData(new BinaryMessage(v1Binary));
+                } else {
+                    if (v1Frame == null) {
+                        v1Frame = new TextMessage(v1Delta
+                                ? snapshotEncoder.deltaFrame(device, changedMask, connected)
+                                : snapshotEncoder.snapshot(device, connected).getFrame());
+                    }
+                    outbound.enqueueData(v1Frame);
+                }
+                continue;
+            }
+
+            int fieldMask = filter.getFieldMask();
+            if ((fieldMask & changedMask) == 0) {
+                continue;
+            }
+            int i = 0;
+            while (i < maskCount && masks[i] != fieldMask) {
+                i++;
             }
+            if (i == maskCount) {
+                if (view == null) {
+                    view = new DeviceState.StateView();
+                    device.readInto(view);
+                    masks = new int[4];
+                    bases = new long[4];
+                    frames = new TextMessage[4];
+                    binaries = new byte[4][];
+                }
+                if (maskCount == masks.length) {
+                    masks = Arrays.copyOf(masks, maskCount * 2);
+                    bases = Arrays.copyOf(bases, maskCount * 2);
+                    frames = Arrays.copyOf(frames, maskCount * 2);
+                    binaries = Arrays.copyOf(binaries, maskCount * 2);
+                }
+                // One chain step per mask, shared by both encodings
+                masks[i] = fieldMask;
+                bases[i] = deltaChains.computeIfAbsent(device.getDeviceId(), k -> new DeltaChain())
+                        .advance(fieldMask, view.getVersion());
+                maskCount++;
+            }
+            if (binary) {
+                if (binaries[i] == null) {
+                    binaries[i] = cborFrameEncoder.deltaFrameV2(
+                            device.getDeviceId(), view, fieldMask & changedMask, bases[i], connected);
+                }
+                outbound.enqueueData(new BinaryMessage(binaries[i]));
+            } else {
+                if (frames[i] == null) {
+                    frames[i] = new TextMessage(snapshotEncoder.deltaFrameV2(
+                            device.getDeviceId(), view, fieldMask & changedMask, bases[i], connected));
+                }
+                outbound.enqueueData(frames[i]);
+            }
+        }
+    }
+
+    private static boolean isNotification(WebSocketMessage message) {
+        return "notification".equals(message.getType()) || "notifications".equals(message.getType());
+    }
+
+    private Collection<SessionOutbound> targetsOf(String deviceId, List<String> groups) {
+        Set<SessionOutbound> byDevice = deviceSessions.get(deviceId);
+        boolean anyGroup = false;
+        for (String group : groups) {
+            if (groupSessions.containsKey(group)) {
+                anyGroup = true;
+                break;
+            }
+        }
+        if (byDevice == null && !anyGroup) {
+            return allDeviceSessions;
+        }
+
+        // A session may match through several indexes, so de-duplicate
+        Set<SessionOutbound> targets = new HashSet<>(allDeviceSessions);
+        if (byDevice != null) {
+            targets.addAll(byDevice);
+        }
+        for (String group : groups) {
+            Set<SessionOutbound> byGroup = groupSessions.get(group);
+            if (byGroup != null) {
+                targets.addAll(byGroup);
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * Encodes the message once per encoding in use among the targets; see {@link #broadcastUpdate} for
+     * why binary frames are wrapped per session.
+     */
+    private void enqueue(Collection<SessionOutbound> targets, WebSocketMessage message) throws IOException {
+        boolean notification = isNotification(message);
+        TextMessage text = null;
+        byte[] binary = null;
+        for (SessionOutbound outbound : targets) {
+            AbstractWebSocketMessage<?> frame;
+            if (outbound.getEncoding() == FrameEncoding.CBOR) {
+                if (binary == null) {
+                    binary = cborFrameEncoder.message(message);
+                }
+                frame = new BinaryMessage(binary);
+            } else {
+                if (text == null) {
+                    text = new TextMessage(objectMapper.writeValueAsString(message));
+                }
+                frame = text;
+            }
+            if (notification) {
+                outbound.enqueueReliable(frame);
+            } else {
+                outbound.enqueueData(frame);
+            }
+        }
+    }
+
+    public void sendToSession(WebSocketSession session, WebSocketMessage message) {
+        SessionOutbound outbound = outboundOf(session);
+        if (outbound == null) {
+            return;
+        }
+        try {
+            enqueue(List.of(outbound), message);
         } catch (IOException e) {
             log.error("Error sending message to session {}", session.getId(), e);
         }
@@ -0,0 +1,88 @@
+package com.iot.gasdetection.websocket;
+
+import com.iot.gasdetection.model.SensorField;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Which devices a WebSocket session wants to receive. Protocol v1 sessions set it from the connect URL
+ * ({@code /ws?device=esp-01,esp-02&group=building-a}); protocol v2 sessions send a subscribe message,
+ * which may also restrict the fields. No devices and no groups means every device.
+ */
+public final class SessionFilter {
+
+    public static final SessionFilter ALL = new SessionFilter(Collections.emptySet(), Collections.emptySet());
+
+    private final Set<String> devices;
+    private final Set<String> groups;
+    private final int fieldMask;
+    private final boolean deltaProtocol;
+
+    public SessionFilter(Set<String> devices, Set<String> groups) {
+        this(devices, groups, SensorField.ALL_MASK, false);
+    }
+
+    public SessionFilter(Set<String> devices, Set<String> groups, int fieldMask, boolean deltaProtocol) {
+        this.devices = devices;
+        this.groups = groups;
+        this.fieldMask = fieldMask;
+        this.deltaProtocol = deltaProtocol;
+    }
+
+    public static SessionFilter fromUri(URI uri) {
+        if (uri == null || uri.getQuery() == null) {
+            return ALL;
+        }
+        var params = UriComponentsBuilder.fromUri(uri).build().getQueryParams();
+        Set<String> devices = split(params.get("device"));
+        Set<String> groups = split(params.get("group"));
+        if (devices.isEmpty() && groups.isEmpty()) {
+            return ALL;
+        }
+        return new SessionFilter(devices, groups);
+    }
+
+    static Set<String> split(List<String> values) {
+        if (values == null) {
+            return Collections.emptySet();
+        }
+        return values.stream()
+                .flatMap(v -> Arrays.stream(v.split(",")))
+                .map(String::trim)
+                .filter(v -> !v.isEmpty())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    public boolean isAll() {
+        return devices.isEmpty() && groups.isEmpty();
+    }
+
+    public Set<String> getDevices() {
+        return devices;
+    }
+
+    public Set<String> getGroups() {
+        return groups;
+    }
+
+    /**
+     * Fields the session wants, as {@link SensorField} bits.
+     */
+    public int getFieldMask() {
+        return fieldMask;
+    }
+
+    /**
+     * True for protocol v2 sessions (snapshot on subscribe, then versioned deltas).
+     */
+    public boolean isDeltaProtocol() {
+        return deltaProtocol;
+    }
+}
@@ -0,0 +1,162 @@
+package com.iot.gasdetection.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Frame counters of one WebSocket session: the totals over all sessions and, unless
+ * {@code websocket.outbound.per-session-metrics=false}, meters tagged with the session ID that are registered
+ * when it opens and removed when it closes. Created once per session so sends never look up meters.
+ */
+final class SessionMeters {
+
+    private final Counter framesSent;
+    private final Counter bytesSent;
+    private final Counter framesDropped;
+    private final DistributionSummary batchSize;
+    private final Counter compressionRaw;
+    private final Counter compressionDeflated;
+
+    // Null without per-session meters
+    private final Counter sessionFramesSent;
+    private final Counter sessionBytesSent;
+    private final Counter sessionFramesDropped;
+    private final DistributionSummary sessionBatchSize;
+    private final List<Meter> sessionMeters;
+
+    private SessionMeters(Totals totals, Counter sessionFramesSent, Counter sessionBytesSent,
+                          Counter sessionFramesDropped, DistributionSummary sessionBatchSize,
+                          List<Meter> sessionMeters) {
+        this.framesSent = totals.framesSent;
+        this.bytesSent = totals.bytesSent;
+        this.framesDropped = totals.framesDropped;
+        this.batchSize = totals.batchSize;
+        this.compressionRaw = totals.compressionRaw;
+        this.compressionDeflated = totals.compressionDeflated;
+        this.sessionFramesSent = sessionFramesSent;
+        this.sessionBytesSent = sessionBytesSent;
+        this.sessionFramesDropped = sessionFramesDropped;
+        this.sessionBatchSize = sessionBatchSize;
+        this.sessionMeters = sessionMeters;
+    }
+
+    static SessionMeters totalsOnly(Totals totals) {
+        return new SessionMeters(totals, null, null, null, null, List.of());
+    }
+
+    static SessionMeters register(Totals totals, MeterRegistry registry, String sessionId, SessionOutbound outbound) {
+        Counter sent = Counter.builder("gas.websocket.session.frames.sent")
+                .description("Frames sent to one WebSocket session")
+                .tag("session", sessionId)
+                .register(registry);
+        Counter bytes = Counter.builder("gas.websocket.session.bytes.sent")
+                .description("Payload bytes sent to one WebSocket session")
+                .baseUnit("bytes")
+                .tag("session", sessionId)
+                .register(registry);
+        Counter dropped = Counter.builder("gas.websocket.session.frames.dropped")
+                .description("Data frames one WebSocket session lost to its overflow policy")
+                .tag("session", sessionId)
+                .register(registry);
+        Gauge depth = Gauge.builder("gas.websocket.session.queue.depth", outbound, SessionOutbound::getQueueDepth)
+                .description("Frames queued for one WebSocket session")
+                .tag("session", sessionId)
+                .register(registry);
+        List<Meter> meters = new ArrayList<>(List.of(sent, bytes, dropped, depth));
+
+        DistributionSummary batches = null;
+        if (outbound.isBatching()) {
+            batches = DistributionSummary.builder("gas.websocket.session.batch.size")
+                    .description("Data frames packed into each batch frame of one WebSocket session")
+                    .tag("session", sessionId)
+                    .register(registry);
+            meters.add(batches);
+        }
+        if (outbound.isCompressionSampled()) {
+            meters.add(Gauge.builder("gas.websocket.session.compression.ratio", outbound,
+                            SessionOutbound::getCompressionRatio)
+                    .description("Estimated permessage-deflate ratio (raw / compressed) of one WebSocket session")
+                    .tag("session", sessionId)
+                    .register(registry));
+        }
+        return new SessionMeters(totals, sent, bytes, dropped, batches, List.copyOf(meters));
+    }
+
+    void onSent(int bytes) {
+        framesSent.increment();
+        bytesSent.increment(bytes);
+        if (sessionFramesSent != null) {
+            sessionFramesSent.increment();
+            sessionBytesSent.increment(bytes);
+        }
+    }
+
+    void onBatch(int frames) {
+        batchSize.record(frames);
+        if (sessionBatchSize != null) {
+            sessionBatchSize.record(frames);
+        }
+    }
+
+    void onCompressionSample(int rawBytes, int deflatedBytes) {
+        compressionRaw.increment(rawBytes);
+        compressionDeflated.increment(deflatedBytes);
+    }
+
+    void onDropped() {
+        framesDropped.increment();
+        if (sessionFramesDropped != null) {
+            sessionFramesDropped.increment();
+        }
+    }
+
+    void remove(MeterRegistry registry) {
+        for (Meter meter : sessionMeters) {
+            registry.remove(meter);
+        }
+    }
+
+    /**
+     * Counters over all sessions, registered once.
+     */
+    static final class Totals {
+
+        final Counter framesSent;
+        final Counter bytesSent;
+        final Counter framesDropped;
+        final DistributionSummary batchSize;
+        final Counter compressionRaw;
+        final Counter compressionDeflated;
+
+        Totals(MeterRegistry registry) {
+            framesSent = Counter.builder("gas.websocket.frames.sent")
+                    .description("Frames sent to WebSocket sessions")
+                    .register(registry);
+            bytesSent = Counter.builder("gas.websocket.bytes.sent")
+                    .description("Payload bytes sent to WebSocket sessions")
+                    .baseUnit("bytes")
+                    .register(registry);
+            framesDropped = Counter.builder("gas.websocket.frames.dropped")
+                    .description("Data frames lost to the outbound overflow policy")
+                    .register(registry);
+            batchSize = DistributionSummary.builder("gas.websocket.batch.size")
+                    .description("Data frames packed into each batch frame")
+                    .register(registry);
+            // Ratio = raw / deflated over the frames sampled by the compression probes
+            compressionRaw = Counter.builder("gas.websocket.compression.sampled.raw")
+                    .description("Payload bytes of the frames sampled for the compression estimate")
+                    .baseUnit("bytes")
+                    .register(registry);
+            compressionDeflated = Counter.builder("gas.websocket.compression.sampled.deflated")
+                    .description("The same frames after permessage-deflate, as estimated")
+                    .baseUnit("bytes")
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.iot.gasdetection.websocket;
+
+import com.iot.gasdetection.cluster.ClusterInterest;
+import com.iot.gasdetection.config.WebSocketProperties;
+import com.iot.gasdetection.device.CborFrameEncoder;
+import com.iot.gasdetection.device.SnapshotEncoder;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded outbound queue of one WebSocket session.
+ * <p>
+ * Producers (MQTT ingestion, coalescer) only enqueue. A single drain task per session runs on the
+ * shared sender executor, so sends to one session are never concurrent and a slow client only
+ * delays itself. Data frames are subject to the overflow policy; reliable frames (notifications,
+ * protocol replies and snapshots) are never dropped.
+ * <p>
+ * A batching session gets the data frames that piled up while it was being sent to as one batch frame, so a
+ * burst costs one send (and one deflate) instead of one per device update.
+ */
+@Slf4j
+public class SessionOutbound {
+
+    private final WebSocketSession session;
+    private volatile SessionFilter filter;
+    // What ClusterInterest subscribed for the current filter, released as is on re-subscribe or close
+    private volatile ClusterInterest.Watch interest;
+    private final FrameEncoding encoding;
+    private final WebSocketProperties.Outbound config;
+    private final Executor executor;
+    // Most data frames per batch frame, 0 without batching
+    private final int batchFrames;
+    // Null unless the session negotiated compression and sampling is on
+    private final CompressionProbe compressionProbe;
+
+    private final Queue<WebSocketMessage<?>> notifications = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger notificationCount = new AtomicInteger();
+    // Guarded by "this"
+    private final ArrayDeque<WebSocketMessage<?>> data = new ArrayDeque<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean closed;
+
+    private final MeterRegistry registry;
+    private final SessionMeters meters;
+
+    public SessionOutbound(WebSocketSession session, SessionFilter filter, FrameEncoding encoding, boolean batching,
+                           boolean compressed, WebSocketProperties properties, Executor executor,
+                           MeterRegistry registry, SessionMeters.Totals totals) {
+        this.session = session;
+        this.filter = filter;
+        this.encoding = encoding;
+        this.config = properties.getOutbound();
+        this.executor = executor;
+        this.batchFrames = batching ? Math.max(2, properties.getBatch().getMaxFrames()) : 0;
+        int sampleEvery = properties.getCompression().getSampleEvery();
+        this.compressionProbe = compressed && sampleEvery > 0 ? new CompressionProbe(sampleEvery) : null;
+        this.registry = registry;
+        this.meters = config.isPerSessionMetrics()
+                ? SessionMeters.register(totals, registry, session.getId(), this)
+                : SessionMeters.totalsOnly(totals);
+    }
+
+    public WebSocketSession getSession() {
+        return session;
+    }
+
+    public SessionFilter getFilter() {
+        return filter;
+    }
+
+    void setFilter(SessionFilter filter) {
+        this.filter = filter;
+    }
+
+    ClusterInterest.Watch getInterest() {
+        return interest;
+    }
+
+    void setInterest(ClusterInterest.Watch interest) {
+        this.interest = interest;
+    }
+
+    public FrameEncoding getEncoding() {
+        return encoding;
+    }
+
+    public boolean isBatching() {
+        return batchFrames > 0;
+    }
+
+    public boolean isCompressionSampled() {
+        return compressionProbe != null;
+    }
+
+    /**
+     * Estimated permessage-deflate ratio, raw over compressed bytes; NaN when not sampled (yet).
+     */
+    public double getCompressionRatio() {
+        return compressionProbe == null ? Double.NaN : compressionProbe.getRatio();
+    }
+
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public int getQueueDepth() {
+        synchronized (this) {
+            return data.size() + notificationCount.get();
+        }
+    }
+
+    /**
+     * Queues a data frame; applies the overflow policy when the queue is full.
+     */
+    public void enqueueData(WebSocketMessage<?> message) {
+        if (closed) {
+            return;
+        }
+        boolean overflow = false;
+        synchronized (this) {
+            if (data.size() >= config.getQueueCapacity()) {
+                switch (config.getOverflow()) {
+                    case DROP_OLDEST -> {
+                        data.pollFirst();
+                        data.addLast(message);
+                    }
+                    case DROP_NEWEST -> {
+                        // keep what is queued
+                    }
+                    case CLOSE -> overflow = true;
+                }
+                dropped.incrementAndGet();
+                meters.onDropped();
+            } else {
+                data.addLast(message);
+            }
+        }
+        if (overflow) {
+            closeSlow("outbound queue full");
+            return;
+        }
+        scheduleDrain();
+    }
+
+    /**
+     * Queues a frame that must not be dropped (notification, protocol reply, snapshot).
+     */
+    public void enqueueReliable(WebSocketMessage<?> message) {
+        if (closed) {
+            return;
+        }
+        notifications.add(message);
+        if (notificationCount.incrementAndGet() > config.getNotificationLimit()) {
+            closeSlow("too many pending notifications");
+            return;
+        }
+        scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RuntimeException e) {
+                draining.set(false);
+                log.error("Cannot schedule WebSocket send for session {}", session.getId(), e);
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            WebSocketMessage<?> next;
+            while (!closed && (next = poll()) != null) {
+                if (!session.isOpen()) {
+                    closed = true;
+                    break;
+                }
+                // Sending consumes a binary frame's ByteBuffer, so its length is read first
+                int length = next.getPayloadLength();
+                if (compressionProbe != null) {
+                    int deflated = compressionProbe.sample(next);
+                    if (deflated >= 0) {
+                        meters.onCompressionSample(length, deflated);
+                    }
+                }
+                session.sendMessage(next);
+                sent.incrementAndGet();
+                meters.onSent(length);
+            }
+        } catch (Exception e) {
+            log.error("Error sending message to session {}", session.getId(), e);
+            closeSlow("send failed");
+        } finally {
+            draining.set(false);
+        }
+        // A producer may have enqueued after the last poll but before draining was reset
+        if (!closed && hasPending()) {
+            scheduleDrain();
+        }
+    }
+
+    private WebSocketMessage<?> poll() {
+        WebSocketMessage<?> notification = notifications.poll();
+        if (notification != null) {
+            notificationCount.decrementAndGet();
+            return notification;
+        }
+        List<WebSocketMessage<?>> batch;
+        synchronized (this) {
+            if (batchFrames == 0 || data.size() < 2) {
+                return data.pollFirst();
+            }
+            batch = new ArrayList<>(Math.min(batchFrames, data.size()));
+            while (batch.size() < batchFrames && !data.isEmpty()) {
+                batch.add(data.pollFirst());
+            }
+        }
+        meters.onBatch(batch.size());
+        return batchOf(batch);
+    }
+
+    private WebSocketMessage<?> batchOf(List<WebSocketMessage<?>> frames) {
+        List<byte[]> payloads = new ArrayList<>(frames.size());
+        for (WebSocketMessage<?> frame : frames) {
+            payloads.add(payloadOf(frame));
+        }
+        return encoding == FrameEncoding.CBOR
+                ? new BinaryMessage(CborFrameEncoder.batchFrame(payloads))
+                : new TextMessage(SnapshotEncoder.batchFrame(payloads));
+    }
+
+    private boolean hasPending() {
+        if (!notifications.isEmpty()) {
+            return true;
+        }
+        synchronized (this) {
+            return !data.isEmpty();
+        }
+    }
+
+    private void closeSlow(String reason) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        log.warn("⚠️ Closing WebSocket session {}: {}", session.getId(), reason);
+        try {
+            session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (Exception e) {
+            log.debug("Error closing session {}", session.getId(), e);
+        }
+    }
+
+    public void close() {
+        closed = true;
+        meters.remove(registry);
+        if (compressionProbe != null) {
+            compressionProbe.close();
+        }
+        notifications.clear();
+        synchronized (this) {
+            data.clear();
+        }
+    }
+
+    /**
+     * Bytes of a queued frame. Binary payloads are read through a duplicate, as the container consumes the buffer.
+     */
+    static byte[] payloadOf(WebSocketMessage<?> message) {
+        if (message instanceof TextMessage text) {
+            return text.asBytes();
+        }
+        ByteBuffer buffer = ((BinaryMessage) message).getPayload().duplicate();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
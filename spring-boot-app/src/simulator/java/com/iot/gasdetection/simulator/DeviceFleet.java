@@ -0,0 +1,186 @@
+package com.iot.gasdetection.simulator;
+
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The virtual devices and the MQTT connections they share. Each device publishes every
+ * {@code --interval-ms}, with start times spread evenly over one interval so the load is flat.
+ * <p>
+ * A real ESP32 holds its own connection; pooling them keeps thousands of devices within one JVM's threads.
+ * The backend only sees topics, so the message load is the same.
+ */
+final class DeviceFleet {
+
+    private static final String CONTROL_FILTER = "gas/+/control/#";
+
+    private final SimulatorOptions options;
+    private final LatencyTracker latency;
+    private final List<MqttAsyncClient> clients = new ArrayList<>();
+    private final Map<String, VirtualDevice> devices = new HashMap<>();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder publishFailures = new LongAdder();
+    private final LongAdder commands = new LongAdder();
+    private ScheduledExecutorService scheduler;
+    private long startedAt;
+
+    DeviceFleet(SimulatorOptions options, LatencyTracker latency) {
+        this.options = options;
+        this.latency = latency;
+    }
+
+    void start(String brokerUrl) throws MqttException {
+        String run = UUID.randomUUID().toString().substring(0, 8);
+        for (int i = 0; i < options.connections; i++) {
+            clients.add(connect(brokerUrl, "sim-" + run + "-" + i));
+        }
+
+        int affectedEvery = options.scenario == SimulatorOptions.Scenario.NORMAL || options.scenarioShare <= 0
+                ? 0 : (int) Math.max(1, Math.round(1 / options.scenarioShare));
+        List<VirtualDevice> ordered = new ArrayList<>(options.devices);
+        for (int i = 0; i < options.devices; i++) {
+            String deviceId = String.format("%s-%05d", options.devicePrefix, i);
+            MqttAsyncClient client = clients.get(i % clients.size());
+            VirtualDevice device = new VirtualDevice(i, deviceId, (topic, payload, retained) ->
+                    publish(client, topic, payload, retained), latency, scenarioOf(i, affectedEvery));
+            devices.put(deviceId, device);
+            ordered.add(device);
+        }
+
+        // Commands for every device arrive on the first connection, which the firmware would do per device
+        clients.get(0).setCallback(new ControlCallback());
+        clients.get(0).subscribe(CONTROL_FILTER, 1).waitForCompletion(10_000);
+
+        int threads = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+        AtomicInteger count = new AtomicInteger();
+        scheduler = Executors.newScheduledThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "sim-device-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        startedAt = System.currentTimeMillis();
+        long intervalUs = TimeUnit.MILLISECONDS.toMicros(options.intervalMs);
+        for (int i = 0; i < ordered.size(); i++) {
+            VirtualDevice device = ordered.get(i);
+            boolean affected = affectedEvery > 0 && i % affectedEvery == 0;
+            scheduler.scheduleAtFixedRate(() -> device.tick(affected ? incidentProgress() : -1),
+                    intervalUs * i / ordered.size(), intervalUs, TimeUnit.MICROSECONDS);
+        }
+    }
+
+    /**
+     * Affected devices of a mixed scenario alternate between gas and fire.
+     */
+    private SimulatorOptions.Scenario scenarioOf(int index, int affectedEvery) {
+        if (options.scenario != SimulatorOptions.Scenario.MIXED || affectedEvery == 0) {
+            return options.scenario;
+        }
+        return (index / affectedEvery) % 2 == 0 ? SimulatorOptions.Scenario.GAS : SimulatorOptions.Scenario.FIRE;
+    }
+
+    private double incidentProgress() {
+        long elapsed = System.currentTimeMillis() - startedAt;
+        long start = TimeUnit.SECONDS.toMillis(options.scenarioStartS);
+        long length = Math.max(1, TimeUnit.SECONDS.toMillis(options.scenarioLengthS));
+        return elapsed < start || elapsed >= start + length ? -1 : (double) (elapsed - start) / length;
+    }
+
+    private MqttAsyncClient connect(String brokerUrl, String clientId) throws MqttException {
+        MqttAsyncClient client = new MqttAsyncClient(brokerUrl, clientId, new MemoryPersistence());
+        MqttConnectOptions connectOptions = new MqttConnectOptions();
+        connectOptions.setCleanSession(true);
+        connectOptions.setAutomaticReconnect(true);
+        connectOptions.setKeepAliveInterval(30);
+        // QoS 0 publishes also hold an in-flight slot until written
+        connectOptions.setMaxInflight(65_535);
+        client.connect(connectOptions).waitForCompletion(10_000);
+        return client;
+    }
+
+    private void publish(MqttAsyncClient client, String topic, String payload, boolean retained) {
+        try {
+            client.publish(topic, payload.getBytes(StandardCharsets.UTF_8), options.qos,
+                    retained && options.retained);
+            published.increment();
+        } catch (MqttException e) {
+            publishFailures.increment();
+        }
+    }
+
+    void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        for (MqttAsyncClient client : clients) {
+            try {
+                client.disconnect().waitForCompletion(2_000);
+                client.close();
+            } catch (MqttException e) {
+                // Shutting down anyway
+            }
+        }
+    }
+
+    long getPublished() {
+        return published.sum();
+    }
+
+    long getPublishFailures() {
+        return publishFailures.sum();
+    }
+
+    long getCommands() {
+        return commands.sum();
+    }
+
+    private final class ControlCallback implements MqttCallbackExtended {
+
+        @Override
+        public void connectComplete(boolean reconnect, String serverUri) {
+            if (reconnect) {
+                try {
+                    clients.get(0).subscribe(CONTROL_FILTER, 1);
+                } catch (MqttException e) {
+                    System.err.println("Control subscription failed: " + e.getMessage());
+                }
+            }
+        }
+
+        @Override
+        public void messageArrived(String topic, MqttMessage message) {
+            // gas/<deviceId>/control/<field>
+            String[] parts = topic.split("/");
+            VirtualDevice device = parts.length == 4 ? devices.get(parts[1]) : null;
+            if (device != null) {
+                commands.increment();
+                device.control(parts[3], new String(message.getPayload(), StandardCharsets.UTF_8));
+            }
+        }
+
+        @Override
+        public void connectionLost(Throwable cause) {
+            System.err.println("Control connection lost: " + cause.getMessage());
+        }
+
+        @Override
+        public void deliveryComplete(IMqttDeliveryToken token) {
+        }
+    }
+}
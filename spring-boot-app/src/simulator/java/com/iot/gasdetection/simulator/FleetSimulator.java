@@ -0,0 +1,176 @@
+package com.iot.gasdetection.simulator;
+
+import com.iot.gasdetection.GasDetectionApplication;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless load generator for capacity planning: N virtual ESP32s publishing the firmware's topics, M
+ * WebSocket clients on {@code /ws}, and end-to-end latency percentiles from MQ2 publish to WebSocket frame.
+ * <p>
+ * Without {@code --broker}/{@code --ws} it starts the backend in this JVM with its embedded broker (build with
+ * {@code -Pembedded-broker}) on free ports and temporary data directories. Prints a progress line every
+ * {@code --report-s} seconds and the percentiles after the warm-up at the end.
+ */
+public final class FleetSimulator {
+
+    private static final String BROKER_INITIALIZER = "com.iot.gasdetection.broker.EmbeddedBrokerInitializer";
+
+    private FleetSimulator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        SimulatorOptions options;
+        try {
+            options = SimulatorOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(SimulatorOptions.usage());
+            System.exit(2);
+            return;
+        }
+
+        ConfigurableApplicationContext backend = null;
+        Path dataDir = null;
+        String brokerUrl = options.brokerUrl;
+        String wsUrl = options.wsUrl;
+        if (options.isInProcess()) {
+            try {
+                Class.forName(BROKER_INITIALIZER);
+            } catch (ClassNotFoundException e) {
+                System.err.println("No embedded broker on the classpath: build with -Pembedded-broker,"
+                        + " or pass --broker and --ws");
+                System.exit(2);
+            }
+            dataDir = Files.createTempDirectory("gas-sim");
+            int brokerPort = freePort();
+            brokerUrl = "tcp://127.0.0.1:" + brokerPort;
+            backend = startBackend(options, dataDir, brokerPort, brokerUrl);
+            wsUrl = "ws://127.0.0.1:" + backend.getEnvironment().getProperty("local.server.port") + "/ws";
+        }
+
+        LatencyTracker latency = new LatencyTracker(options.devices);
+        WebSocketClients wsClients = new WebSocketClients(options, latency);
+        DeviceFleet fleet = new DeviceFleet(options, latency);
+        try {
+            wsClients.start(wsUrl);
+            fleet.start(brokerUrl);
+            System.out.printf("Simulating %d devices (%d msg/s) on %s, %d WebSocket clients on %s, scenario %s%n",
+                    options.devices, options.devices * 8 * 1000 / options.intervalMs, brokerUrl,
+                    options.wsClients, wsUrl, options.scenario.name().toLowerCase());
+            run(options, fleet, wsClients, latency);
+        } finally {
+            fleet.stop();
+            wsClients.stop();
+            if (backend != null) {
+                backend.close();
+            }
+            if (dataDir != null) {
+                FileSystemUtils.deleteRecursively(dataDir);
+            }
+        }
+        System.exit(0);
+    }
+
+    private static ConfigurableApplicationContext startBackend(SimulatorOptions options, Path dataDir,
+                                                               int brokerPort, String brokerUrl) {
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--mqtt.embedded-broker.enabled=true",
+                "--mqtt.embedded-broker.port=" + brokerPort,
+                "--mqtt.embedded-broker.data-dir=" + dataDir.resolve("broker"),
+                "--mqtt.broker.url=" + brokerUrl,
+                "--devices.expected-count=" + options.devices,
+                "--fcm.client=fake",
+                "--timeseries.dir=" + dataDir.resolve("timeseries"),
+                "--alert-log.dir=" + dataDir.resolve("alerts"),
+                "--commands.dir=" + dataDir.resolve("commands"),
+                "--logging.level.root=WARN",
+                "--logging.level.com.iot.gasdetection=WARN"));
+        // Spring joins repeated options into a list, so a backend argument replaces the default of the same key
+        for (String override : options.backendArgs) {
+            String key = override.split("=", 2)[0] + "=";
+            args.removeIf(arg -> arg.startsWith(key));
+            args.add(override);
+        }
+        // Devtools would restart by calling this class's main method with the backend's arguments
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        return SpringApplication.run(GasDetectionApplication.class, args.toArray(new String[0]));
+    }
+
+    private static void run(SimulatorOptions options, DeviceFleet fleet, WebSocketClients wsClients,
+                            LatencyTracker latency) throws InterruptedException {
+        long start = System.nanoTime();
+        long reportNanos = TimeUnit.SECONDS.toNanos(Math.max(1, options.reportS));
+        long end = start + TimeUnit.SECONDS.toNanos(options.durationS);
+        long lastPublished = 0;
+        long lastFrames = 0;
+        long lastAt = start;
+        for (long next = start + reportNanos; ; next += reportNanos) {
+            long until = next - end < 0 ? next : end;
+            TimeUnit.NANOSECONDS.sleep(Math.max(0, until - System.nanoTime()));
+            long now = System.nanoTime();
+            double seconds = (now - lastAt) / 1e9;
+            // An interval that began during the warm-up is left out of the totals
+            boolean warmup = lastAt - start < TimeUnit.SECONDS.toNanos(options.warmupS);
+            LatencyTracker.Interval interval = latency.interval(warmup);
+            long published = fleet.getPublished();
+            long frames = wsClients.getFrames();
+            System.out.printf("[%4ds]%s publish %,.0f msg/s (failed %d) | ws %d open, %,.0f frames/s"
+                            + " | data %s | alerts %s%n",
+                    TimeUnit.NANOSECONDS.toSeconds(now - start), warmup ? " warm-up" : "",
+                    (published - lastPublished) / seconds, fleet.getPublishFailures(), wsClients.getOpen(),
+                    (frames - lastFrames) / seconds, summary(interval.data), summary(interval.alerts));
+            lastPublished = published;
+            lastFrames = frames;
+            lastAt = now;
+            if (until == end) {
+                break;
+            }
+        }
+
+        System.out.println();
+        System.out.printf("Published %,d messages (%d failed), %,d commands echoed; %,d WebSocket frames,"
+                        + " %,d alerts%n",
+                fleet.getPublished(), fleet.getPublishFailures(), fleet.getCommands(), wsClients.getFrames(),
+                wsClients.getAlerts());
+        System.out.println("End-to-end latency after warm-up (ms):");
+        System.out.println("              count      p50      p90      p99    p99.9      max");
+        System.out.println(row("MQ2 -> ws", latency.getDataTotal()));
+        System.out.println(row("alert -> ws", latency.getAlertTotal()));
+    }
+
+    private static String summary(Histogram histogram) {
+        if (histogram.getTotalCount() == 0) {
+            return "-";
+        }
+        return String.format("p50 %.1f p99 %.1f max %.1f ms (n=%d)", millis(histogram, 50), millis(histogram, 99),
+                histogram.getMaxValue() / 1000.0, histogram.getTotalCount());
+    }
+
+    private static String row(String name, Histogram histogram) {
+        return String.format("%-12s %8d %8.1f %8.1f %8.1f %8.1f %8.1f", name, histogram.getTotalCount(),
+                millis(histogram, 50), millis(histogram, 90), millis(histogram, 99), millis(histogram, 99.9),
+                histogram.getMaxValue() / 1000.0);
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
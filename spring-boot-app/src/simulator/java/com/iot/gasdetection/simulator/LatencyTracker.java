@@ -0,0 +1,106 @@
+package com.iot.gasdetection.simulator;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * End-to-end latency, in microseconds: MQ2 publish to the WebSocket data frame carrying that value, and
+ * notification timestamp to the WebSocket notification frame.
+ * <p>
+ * Every MQ2 reading differs from the device's previous one, so a frame is matched to the last publish of its
+ * device by value. Each client counts a publish once; frames the backend coalesced away are not counted.
+ */
+final class LatencyTracker {
+
+    private static final long MAX_LATENCY_US = TimeUnit.MINUTES.toMicros(5);
+
+    private final AtomicReferenceArray<Probe> probes;
+    private final Recorder dataLatency = new Recorder(MAX_LATENCY_US, 3);
+    private final Recorder alertLatency = new Recorder(MAX_LATENCY_US, 3);
+    private final Histogram dataTotal = new Histogram(MAX_LATENCY_US, 3);
+    private final Histogram alertTotal = new Histogram(MAX_LATENCY_US, 3);
+
+    LatencyTracker(int devices) {
+        this.probes = new AtomicReferenceArray<>(devices);
+    }
+
+    /**
+     * Called just before a device publishes its MQ2 reading.
+     */
+    void published(int device, int mq2) {
+        Probe last = probes.get(device);
+        probes.set(device, new Probe(last == null ? 1 : last.seq + 1, mq2, System.nanoTime()));
+    }
+
+    /**
+     * A data frame with the device's MQ2 value reached a client.
+     *
+     * @param seen last publish this client already counted, per device
+     */
+    void dataReceived(int device, int mq2, long[] seen) {
+        Probe probe = probes.get(device);
+        if (probe != null && probe.mq2 == mq2 && probe.seq > seen[device]) {
+            seen[device] = probe.seq;
+            record(dataLatency, (System.nanoTime() - probe.sentAt) / 1000);
+        }
+    }
+
+    /**
+     * A notification frame reached a client; the timestamp is epoch milliseconds from the device or the rule.
+     */
+    void alertReceived(long timestampMs) {
+        record(alertLatency, (System.currentTimeMillis() - timestampMs) * 1000);
+    }
+
+    private static void record(Recorder recorder, long micros) {
+        recorder.recordValue(Math.max(0, Math.min(MAX_LATENCY_US, micros)));
+    }
+
+    /**
+     * Latency since the previous call; added to the totals unless still warming up.
+     */
+    Interval interval(boolean warmup) {
+        Histogram data = dataLatency.getIntervalHistogram();
+        Histogram alerts = alertLatency.getIntervalHistogram();
+        if (!warmup) {
+            dataTotal.add(data);
+            alertTotal.add(alerts);
+        }
+        return new Interval(data, alerts);
+    }
+
+    Histogram getDataTotal() {
+        return dataTotal;
+    }
+
+    Histogram getAlertTotal() {
+        return alertTotal;
+    }
+
+    static final class Interval {
+
+        final Histogram data;
+        final Histogram alerts;
+
+        Interval(Histogram data, Histogram alerts) {
+            this.data = data;
+            this.alerts = alerts;
+        }
+    }
+
+    private static final class Probe {
+
+        final long seq;
+        final int mq2;
+        final long sentAt;
+
+        Probe(long seq, int mq2, long sentAt) {
+            this.seq = seq;
+            this.mq2 = mq2;
+            this.sentAt = sentAt;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.iot.gasdetection.simulator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Command-line options of {@link FleetSimulator}. Arguments after {@code --} are passed to the in-process
+ * backend, e.g. {@code -- --websocket.coalesce.mode=DELTA}.
+ */
+final class SimulatorOptions {
+
+    enum Scenario {
+        // Background readings only
+        NORMAL,
+        // MQ2 of the affected devices ramps past their threshold, then recovers
+        GAS,
+        // Flame sensor of the affected devices goes active
+        FIRE,
+        // Half of the affected devices leak gas, the other half catch fire
+        MIXED
+    }
+
+    int devices = 1000;
+    String devicePrefix = "sim";
+    // Firmware publishMQTT() period
+    long intervalMs = 2000;
+    int connections = 16;
+    int qos = 0;
+    // publishMQTT() retains every reading; the broker then stores each one
+    boolean retained = true;
+    int wsClients = 10;
+    // WebSocket subprotocol: json (the React app's frames) or cbor
+    String wsEncoding = "json";
+    // Connect with ?batch=true; the JDK client cannot negotiate permessage-deflate
+    boolean wsBatch;
+    long durationS = 60;
+    long warmupS = 10;
+    long reportS = 5;
+    Scenario scenario = Scenario.NORMAL;
+    double scenarioShare = 0.05;
+    long scenarioStartS = 20;
+    long scenarioLengthS = 30;
+
+    // Both null: start the backend with an embedded broker in this JVM
+    String brokerUrl;
+    String wsUrl;
+    List<String> backendArgs = new ArrayList<>();
+
+    static SimulatorOptions parse(String[] args) {
+        SimulatorOptions options = new SimulatorOptions();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--")) {
+                options.backendArgs.addAll(Arrays.asList(args).subList(i + 1, args.length));
+                break;
+            }
+            if (arg.equals("--help") || arg.equals("-h")) {
+                System.out.println(usage());
+                System.exit(0);
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--devices" -> options.devices = Integer.parseInt(value);
+                case "--device-prefix" -> options.devicePrefix = value;
+                case "--interval-ms" -> options.intervalMs = Long.parseLong(value);
+                case "--connections" -> options.connections = Integer.parseInt(value);
+                case "--qos" -> options.qos = Integer.parseInt(value);
+                case "--retained" -> options.retained = Boolean.parseBoolean(value);
+                case "--ws-clients" -> options.wsClients = Integer.parseInt(value);
+                case "--ws-encoding" -> options.wsEncoding = value.toLowerCase();
+                case "--ws-batch" -> options.wsBatch = Boolean.parseBoolean(value);
+                case "--duration-s" -> options.durationS = Long.parseLong(value);
+                case "--warmup-s" -> options.warmupS = Long.parseLong(value);
+                case "--report-s" -> options.reportS = Long.parseLong(value);
+                case "--scenario" -> options.scenario = Scenario.valueOf(value.toUpperCase());
+                case "--scenario-share" -> options.scenarioShare = Double.parseDouble(value);
+                case "--scenario-start-s" -> options.scenarioStartS = Long.parseLong(value);
+                case "--scenario-length-s" -> options.scenarioLengthS = Long.parseLong(value);
+                case "--broker" -> options.brokerUrl = value;
+                case "--ws" -> options.wsUrl = value;
+                default -> throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        if (options.devices < 1 || options.connections < 1 || options.intervalMs < 1) {
+            throw new IllegalArgumentException("--devices, --connections and --interval-ms must be positive");
+        }
+        if (!options.wsEncoding.equals("json") && !options.wsEncoding.equals("cbor")) {
+            throw new IllegalArgumentException("--ws-encoding is json or cbor");
+        }
+        if ((options.brokerUrl == null) != (options.wsUrl == null)) {
+            throw new IllegalArgumentException("--broker and --ws go together");
+        }
+        options.connections = Math.min(options.connections, options.devices);
+        return options;
+    }
+
+    boolean isInProcess() {
+        return brokerUrl == null;
+    }
+
+    static String usage() {
+        return """
+                FleetSimulator [options] [-- backend options]
+                  --devices N            virtual ESP32s (1000)
+                  --device-prefix P      device IDs P-00000, P-00001, ... (sim)
+                  --interval-ms MS       publishMQTT() period per device (2000)
+                  --connections N        MQTT connections shared by the devices (16)
+                  --qos Q                QoS of device publishes, 0 like the firmware (0)
+                  --retained B           retain readings and status like the firmware (true)
+                  --ws-clients M         WebSocket clients on /ws (10)
+                  --ws-encoding E        json | cbor frames, negotiated as subprotocol gas.<E> (json)
+                  --ws-batch B           ask for batch frames with /ws?batch=true (false)
+                  --duration-s S         run time (60)
+                  --warmup-s S           first seconds left out of the final percentiles (10)
+                  --report-s S           progress line period (5)
+                  --scenario NAME        normal | gas | fire | mixed (normal)
+                  --scenario-share F     fraction of devices affected (0.05)
+                  --scenario-start-s S   scenario start (20)
+                  --scenario-length-s S  scenario length; readings recover afterwards (30)
+                  --broker URL --ws URL  use a running backend instead of starting one in-process""";
+    }
+}
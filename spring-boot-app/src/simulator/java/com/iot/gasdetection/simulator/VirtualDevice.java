@@ -0,0 +1,172 @@
+package com.iot.gasdetection.simulator;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * One simulated ESP32 running {@code parking_system.ino}: the AUTO-mode reactions of TaskMainDisplay, the
+ * one-shot warning of sendNotificationMQTT() and the eight retained topics of publishMQTT(), under its
+ * per-device prefix {@code gas/<deviceId>/}.
+ * <p>
+ * Ticks run on the fleet scheduler, control messages on the MQTT callback thread; both lock the device.
+ */
+final class VirtualDevice {
+
+    interface Publisher {
+        void publish(String topic, String payload, boolean retained);
+    }
+
+    // Flame sensor is active-low (SENSOR_FIRE_ON in the firmware)
+    private static final int FIRE_ON = 0;
+    private static final int FIRE_OFF = 1;
+
+    private final int index;
+    private final String deviceId;
+    private final String topicPrefix;
+    private final Publisher publisher;
+    private final LatencyTracker latency;
+    private final SimulatorOptions.Scenario scenario;
+
+    private int baseline;
+    private int mq2;
+    private int fire = FIRE_OFF;
+    private boolean relay1;
+    private boolean relay2;
+    private boolean window;
+    private boolean buzzer;
+    private boolean auto = true;
+    private int threshold = 4000;
+    private boolean notified;
+
+    VirtualDevice(int index, String deviceId, Publisher publisher, LatencyTracker latency,
+                  SimulatorOptions.Scenario scenario) {
+        this.index = index;
+        this.deviceId = deviceId;
+        this.topicPrefix = "gas/" + deviceId + "/";
+        this.publisher = publisher;
+        this.latency = latency;
+        this.scenario = scenario;
+        this.baseline = ThreadLocalRandom.current().nextInt(350, 700);
+        this.mq2 = baseline;
+    }
+
+    String getDeviceId() {
+        return deviceId;
+    }
+
+    /**
+     * One publishMQTT() cycle.
+     *
+     * @param incident progress of this device's scenario: negative when none, else 0..1 from its start
+     */
+    synchronized void tick(double incident) {
+        read(incident);
+        react();
+
+        latency.published(index, mq2);
+        publish("sensor/mq2", Integer.toString(mq2));
+        publish("sensor/fire", Integer.toString(fire));
+        publish("status/relay1", flag(relay1));
+        publish("status/relay2", flag(relay2));
+        publish("status/window", flag(window));
+        publish("status/buzzer", flag(buzzer));
+        publish("status/mode", flag(auto));
+        publish("status/threshold", Integer.toString(threshold));
+    }
+
+    /**
+     * A command on {@code gas/<deviceId>/control/<field>}. Like the firmware, manual control leaves AUTO
+     * mode; unlike it, the new state is reported at once instead of with the next cycle.
+     */
+    synchronized void control(String field, String payload) {
+        boolean on = payload.equals("1") || payload.equals("ON") || payload.equals("OPEN")
+                || payload.equals("AUTO");
+        switch (field) {
+            case "relay1" -> relay1 = on;
+            case "relay2" -> relay2 = on;
+            case "window" -> window = on;
+            case "buzzer" -> buzzer = on;
+            case "mode" -> auto = on;
+            case "threshold" -> {
+                try {
+                    threshold = Integer.parseInt(payload.trim());
+                } catch (NumberFormatException e) {
+                    return;
+                }
+                publish("status/threshold", Integer.toString(threshold));
+                return;
+            }
+            default -> {
+                return;
+            }
+        }
+        if (!field.equals("mode")) {
+            auto = false;
+        }
+        publish("status/" + field, flag(on));
+        if (!field.equals("mode")) {
+            publish("status/mode", flag(auto));
+        }
+    }
+
+    private void read(double incident) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        boolean gas = incident >= 0 && scenario == SimulatorOptions.Scenario.GAS;
+        boolean burning = incident >= 0 && scenario == SimulatorOptions.Scenario.FIRE;
+        if (gas) {
+            // Ramp to well past the threshold over the first third, then hold
+            int peak = threshold + 1500;
+            baseline = (int) (mq2 + (peak - mq2) * Math.min(1, incident * 3));
+        } else if (baseline > 900) {
+            // Ventilated: decay back to background levels
+            baseline = Math.max(random.nextInt(350, 700), baseline / 2);
+        }
+        fire = burning ? FIRE_ON : FIRE_OFF;
+
+        // Readings always move, so each one can be matched to the frame that carries it
+        int next = Math.max(0, Math.min(10_000, baseline + random.nextInt(-40, 41)));
+        mq2 = next == mq2 ? next + 1 : next;
+    }
+
+    private void react() {
+        boolean gas = mq2 > threshold;
+        boolean burning = fire == FIRE_ON;
+        if (auto) {
+            if (gas) {
+                buzzer = true;
+                relay1 = true;
+                relay2 = false;
+                window = true;
+            } else if (burning) {
+                buzzer = true;
+                relay1 = false;
+                relay2 = true;
+            } else if (mq2 < threshold - 100) {
+                buzzer = false;
+                relay1 = false;
+                relay2 = false;
+                window = false;
+            }
+        }
+
+        String warning = gas && burning ? "NGUY HIỂM: Phát hiện lửa và khí gas!"
+                : gas ? "CẢNH BÁO: Nồng độ khí gas vượt ngưỡng cho phép!"
+                : burning ? "NGUY HIỂM: Phát hiện lửa!"
+                : null;
+        if (warning == null) {
+            notified = false;
+        } else if (!notified) {
+            notified = true;
+            // The firmware sends millis(); epoch milliseconds let clients measure the alert's latency
+            publisher.publish(topicPrefix + "notification", "{\"type\":\"warning\",\"message\":\"" + warning
+                    + "\",\"timestamp\":" + System.currentTimeMillis() + "}", false);
+        }
+    }
+
+    private void publish(String suffix, String payload) {
+        publisher.publish(topicPrefix + suffix, payload, true);
+    }
+
+    private static String flag(boolean on) {
+        return on ? "1" : "0";
+    }
+}
@@ -0,0 +1,270 @@
+package com.iot.gasdetection.simulator;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Browser stand-ins on {@code /ws}, watching every device. JSON frames are scanned for the few fields the
+ * latency probe needs instead of being parsed, so the clients stay cheap next to the backend they measure;
+ * CBOR frames ({@code --ws-encoding cbor}) are walked with a streaming parser.
+ */
+final class WebSocketClients {
+
+    private static final String DATA_FRAME = "{\"type\":\"data\"";
+    private static final String NOTIFICATION_FRAME = "{\"type\":\"notification\"";
+    private static final String BATCH_FRAME = "{\"type\":\"batch\"";
+    private static final String FRAME_START = "{\"type\":";
+
+    // CborFrameEncoder tags; integer keys read back as their decimal names
+    private static final String CBOR_TYPE = "0";
+    private static final String CBOR_DATA = "1";
+    private static final String CBOR_FRAMES = "7";
+    private static final String CBOR_MQ2 = "0";
+    private static final String CBOR_DEVICE_ID = "16";
+
+    private final CBORFactory cborFactory = new CBORFactory();
+
+    private final SimulatorOptions options;
+    private final LatencyTracker latency;
+    private final String devicePrefix;
+    private final List<WebSocket> sockets = new ArrayList<>();
+    private final AtomicInteger open = new AtomicInteger();
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder alerts = new LongAdder();
+    private ExecutorService executor;
+
+    WebSocketClients(SimulatorOptions options, LatencyTracker latency) {
+        this.options = options;
+        this.latency = latency;
+        this.devicePrefix = options.devicePrefix + "-";
+    }
+
+    void start(String url) {
+        AtomicInteger count = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors() / 2), r -> {
+            Thread thread = new Thread(r, "sim-ws-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        HttpClient http = HttpClient.newBuilder()
+                .executor(executor)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        URI uri = URI.create(options.wsBatch ? url + "?batch=true" : url);
+        for (int i = 0; i < options.wsClients; i++) {
+            sockets.add(http.newWebSocketBuilder()
+                    .subprotocols("gas." + options.wsEncoding)
+                    .buildAsync(uri, new Client(options.devices))
+                    .join());
+        }
+    }
+
+    void stop() {
+        for (WebSocket socket : sockets) {
+            socket.sendClose(WebSocket.NORMAL_CLOSURE, "done");
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(2, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    int getOpen() {
+        return open.get();
+    }
+
+    long getFrames() {
+        return frames.sum();
+    }
+
+    long getAlerts() {
+        return alerts.sum();
+    }
+
+    private void onFrame(CharSequence frame, long[] seen) {
+        frames.increment();
+        String text = frame.toString();
+        if (!text.startsWith(BATCH_FRAME)) {
+            onMessage(text, 0, text.length(), seen);
+            return;
+        }
+        // {"type":"batch","frames":[{"type":..},{"type":..}]}: every frame starts with its type
+        int from = text.indexOf(FRAME_START, BATCH_FRAME.length());
+        while (from >= 0) {
+            int next = text.indexOf(FRAME_START, from + FRAME_START.length());
+            onMessage(text, from, next < 0 ? text.length() : next, seen);
+            from = next;
+        }
+    }
+
+    private void onMessage(String text, int from, int to, long[] seen) {
+        String message = text.substring(from, to);
+        if (message.startsWith(DATA_FRAME)) {
+            int device = deviceIndex(message);
+            int mq2 = (int) numberAfter(message, "\"mq2\":");
+            if (device >= 0 && device < options.devices && mq2 >= 0) {
+                latency.dataReceived(device, mq2, seen);
+            }
+        } else if (message.startsWith(NOTIFICATION_FRAME) && deviceIndex(message) >= 0) {
+            long timestamp = numberAfter(message, "\"timestamp\":");
+            if (timestamp > 0) {
+                alerts.increment();
+                latency.alertReceived(timestamp);
+            }
+        }
+    }
+
+    private void onBinaryFrame(byte[] frame, long[] seen) {
+        frames.increment();
+        try (JsonParser parser = cborFactory.createParser(frame)) {
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                onBinaryMessage(parser, seen);
+            }
+        } catch (IOException e) {
+            System.err.println("Unreadable CBOR frame: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads one CBOR frame map, the parser being on its start; a batch recurses into its frames.
+     */
+    private void onBinaryMessage(JsonParser parser, long[] seen) throws IOException {
+        String type = null;
+        String deviceId = null;
+        long mq2 = -1;
+        long timestamp = -1;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String key = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (key.equals(CBOR_TYPE)) {
+                type = parser.getText();
+            } else if (key.equals(CBOR_FRAMES) && value == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    onBinaryMessage(parser, seen);
+                }
+            } else if (key.equals(CBOR_DATA) && value == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    JsonToken fieldValue = parser.nextToken();
+                    if (field.equals(CBOR_DEVICE_ID) || field.equals("deviceId")) {
+                        deviceId = parser.getText();
+                    } else if (field.equals(CBOR_MQ2) && fieldValue == JsonToken.VALUE_NUMBER_INT) {
+                        mq2 = parser.getLongValue();
+                    } else if (field.equals("timestamp") && fieldValue == JsonToken.VALUE_NUMBER_INT) {
+                        timestamp = parser.getLongValue();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        int device = deviceId != null && deviceId.startsWith(devicePrefix)
+                ? (int) numberAt(deviceId, devicePrefix.length()) : -1;
+        if ("data".equals(type) && device >= 0 && device < options.devices && mq2 >= 0) {
+            latency.dataReceived(device, (int) mq2, seen);
+        } else if ("notification".equals(type) && device >= 0 && timestamp > 0) {
+            alerts.increment();
+            latency.alertReceived(timestamp);
+        }
+    }
+
+    private int deviceIndex(String text) {
+        int at = text.indexOf("\"deviceId\":\"" + devicePrefix);
+        return at < 0 ? -1 : (int) numberAt(text, at + 12 + devicePrefix.length());
+    }
+
+    private static long numberAfter(String text, String key) {
+        int at = text.indexOf(key);
+        return at < 0 ? -1 : numberAt(text, at + key.length());
+    }
+
+    private static long numberAt(String text, int from) {
+        long value = 0;
+        int i = from;
+        for (; i < text.length() && Character.isDigit(text.charAt(i)); i++) {
+            value = value * 10 + (text.charAt(i) - '0');
+        }
+        return i == from ? -1 : value;
+    }
+
+    private final class Client implements WebSocket.Listener {
+
+        // Last publish counted, per device
+        private final long[] seen;
+        private final StringBuilder partial = new StringBuilder();
+        private final ByteArrayOutputStream partialBinary = new ByteArrayOutputStream();
+
+        Client(int devices) {
+            this.seen = new long[devices];
+        }
+
+        @Override
+        public void onOpen(WebSocket webSocket) {
+            open.incrementAndGet();
+            webSocket.request(1);
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            if (last && partial.length() == 0) {
+                onFrame(data, seen);
+            } else {
+                partial.append(data);
+                if (last) {
+                    onFrame(partial, seen);
+                    partial.setLength(0);
+                }
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+            byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            partialBinary.write(bytes, 0, bytes.length);
+            if (last) {
+                onBinaryFrame(partialBinary.toByteArray(), seen);
+                partialBinary.reset();
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            open.decrementAndGet();
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            open.decrementAndGet();
+            System.err.println("WebSocket client failed: " + error);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.iot.gasdetection.alert;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HashedTimingWheelTest {
+
+    private static final long TICK_MS = 10;
+
+    private HashedTimingWheel wheel;
+
+    @AfterEach
+    void tearDown() {
+        if (wheel != null) {
+            wheel.stop();
+        }
+    }
+
+    @Test
+    void taskRunsOnceNotBeforeItsDelay() throws InterruptedException {
+        wheel = new HashedTimingWheel("test-wheel", TICK_MS, 64);
+        CountDownLatch ran = new CountDownLatch(1);
+        AtomicLong ranAt = new AtomicLong();
+        AtomicInteger runs = new AtomicInteger();
+        long start = System.nanoTime();
+
+        wheel.schedule(() -> {
+            ranAt.set(System.nanoTime());
+            runs.incrementAndGet();
+            ran.countDown();
+        }, 100, TimeUnit.MILLISECONDS);
+
+        assertThat(ran.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(ranAt.get() - start)).isGreaterThanOrEqualTo(100);
+        Thread.sleep(5 * TICK_MS);
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void delayLongerThanOneRevolutionWaitsForItsRound() throws InterruptedException {
+        // 4 slots of 10 ms: 150 ms is more than three full revolutions
+        wheel = new HashedTimingWheel("test-wheel", TICK_MS, 4);
+        CountDownLatch ran = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        wheel.schedule(ran::countDown, 150, TimeUnit.MILLISECONDS);
+
+        assertThat(ran.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(150);
+    }
+
+    @Test
+    void cancelledTaskNeverRuns() throws InterruptedException {
+        wheel = new HashedTimingWheel("test-wheel", TICK_MS, 64);
+        AtomicBoolean cancelledRan = new AtomicBoolean();
+        CountDownLatch later = new CountDownLatch(1);
+
+        HashedTimingWheel.Timeout timeout = wheel.schedule(() -> cancelledRan.set(true), 50, TimeUnit.MILLISECONDS);
+        wheel.schedule(later::countDown, 150, TimeUnit.MILLISECONDS);
+        timeout.cancel();
+        // Cancelling twice is harmless
+        timeout.cancel();
+
+        assertThat(later.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(cancelledRan).isFalse();
+    }
+
+    @Test
+    void cancelAfterSchedulingReachedTheWheelStillWins() throws InterruptedException {
+        wheel = new HashedTimingWheel("test-wheel", TICK_MS, 64);
+        AtomicBoolean cancelledRan = new AtomicBoolean();
+        CountDownLatch later = new CountDownLatch(1);
+
+        HashedTimingWheel.Timeout timeout = wheel.schedule(() -> cancelledRan.set(true), 200, TimeUnit.MILLISECONDS);
+        wheel.schedule(later::countDown, 300, TimeUnit.MILLISECONDS);
+        // Several ticks pass, so the timeout already sits in its slot
+        Thread.sleep(5 * TICK_MS);
+        timeout.cancel();
+
+        assertThat(later.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(cancelledRan).isFalse();
+    }
+
+    @Test
+    void failingTaskDoesNotStopTheWheel() throws InterruptedException {
+        wheel = new HashedTimingWheel("test-wheel", TICK_MS, 64);
+        CountDownLatch ran = new CountDownLatch(1);
+
+        wheel.schedule(() -> {
+            throw new IllegalStateException("boom");
+        }, 0, TimeUnit.MILLISECONDS);
+        wheel.schedule(ran::countDown, 50, TimeUnit.MILLISECONDS);
+
+        assertThat(ran.await(2, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void tasksInTheSameSlotRunInDeadlineOrder() throws InterruptedException {
+        wheel = new HashedTimingWheel("test-wheel", TICK_MS, 8);
+        CountDownLatch done = new CountDownLatch(2);
+        StringBuffer order = new StringBuffer();
+
+        // 80 ms later is one full revolution of 8 slots: same slot, next round
+        wheel.schedule(() -> {
+            order.append('b');
+            done.countDown();
+        }, 120, TimeUnit.MILLISECONDS);
+        wheel.schedule(() -> {
+            order.append('a');
+            done.countDown();
+        }, 40, TimeUnit.MILLISECONDS);
+
+        assertThat(done.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(order.toString()).isEqualTo("ab");
+    }
+}
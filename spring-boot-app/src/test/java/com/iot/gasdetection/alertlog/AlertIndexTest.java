@@ -0,0 +1,130 @@
+package com.iot.gasdetection.alertlog;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AlertIndexTest {
+
+    private AlertIndex index;
+
+    /**
+     * Seq 1..10 at receivedAt 1000, 2000, ...; odd seqs from esp-1, even from esp-2; every third is critical.
+     */
+    @BeforeEach
+    void setUp() {
+        index = new AlertIndex();
+        for (int seq = 1; seq <= 10; seq++) {
+            index.add(seq, seq * 100L, 100, seq * 1_000L, seq % 2 == 1 ? "esp-1" : "esp-2",
+                    seq % 3 == 0 ? "critical" : "warning");
+        }
+    }
+
+    @Test
+    void unfilteredQueryReturnsNewestFirst() {
+        assertThat(seqs(new AlertQuery())).containsExactly(10, 9, 8, 7, 6, 5, 4, 3, 2, 1);
+        assertThat(index.size()).isEqualTo(10);
+        assertThat(index.lastSeq()).isEqualTo(10);
+    }
+
+    @Test
+    void sinceReturnsOnlyNewerEntries() {
+        AlertQuery query = new AlertQuery();
+        query.setSince(7L);
+        assertThat(seqs(query)).containsExactly(10, 9, 8);
+
+        query.setSince(10L);
+        assertThat(seqs(query)).isEmpty();
+    }
+
+    @Test
+    void beforePagesBackwards() {
+        AlertQuery query = new AlertQuery();
+        query.setLimit(3);
+        assertThat(seqs(query)).containsExactly(10, 9, 8);
+
+        query.setBefore(8L);
+        assertThat(seqs(query)).containsExactly(7, 6, 5);
+
+        query.setBefore(2L);
+        assertThat(seqs(query)).containsExactly(1);
+
+        query.setBefore(1L);
+        assertThat(seqs(query)).isEmpty();
+    }
+
+    @Test
+    void sinceAndBeforeTogetherBoundBothEnds() {
+        AlertQuery query = new AlertQuery();
+        query.setSince(3L);
+        query.setBefore(7L);
+        assertThat(seqs(query)).containsExactly(6, 5, 4);
+    }
+
+    @Test
+    void filtersByDeviceLevelAndBoth() {
+        AlertQuery query = new AlertQuery();
+        query.setDeviceId("esp-1");
+        assertThat(seqs(query)).containsExactly(9, 7, 5, 3, 1);
+
+        query.setDeviceId(null);
+        query.setLevel("critical");
+        assertThat(seqs(query)).containsExactly(9, 6, 3);
+
+        query.setDeviceId("esp-2");
+        assertThat(seqs(query)).containsExactly(6);
+
+        query.setDeviceId("esp-9");
+        assertThat(seqs(query)).isEmpty();
+    }
+
+    @Test
+    void filteredPagesUseTheCursor() {
+        AlertQuery query = new AlertQuery();
+        query.setDeviceId("esp-2");
+        query.setLimit(2);
+        assertThat(seqs(query)).containsExactly(10, 8);
+
+        query.setBefore(8L);
+        assertThat(seqs(query)).containsExactly(6, 4);
+
+        query.setBefore(null);
+        query.setSince(6L);
+        assertThat(seqs(query)).containsExactly(10, 8);
+    }
+
+    @Test
+    void timeRangeIsInclusive() {
+        AlertQuery query = new AlertQuery();
+        query.setFrom(3_000L);
+        query.setTo(5_000L);
+        assertThat(seqs(query)).containsExactly(5, 4, 3);
+    }
+
+    @Test
+    void clockSteppingBackKeepsTimesOrdered() {
+        index.add(11, 1_100, 100, 500, "esp-1", "warning");
+
+        AlertQuery query = new AlertQuery();
+        query.setFrom(10_000L);
+        assertThat(seqs(query)).containsExactly(11, 10);
+    }
+
+    @Test
+    void zeroLimitReturnsNothing() {
+        AlertQuery query = new AlertQuery();
+        query.setLimit(0);
+        assertThat(seqs(query)).isEmpty();
+    }
+
+    private int[] seqs(AlertQuery query) {
+        int[] positions = index.select(query);
+        int[] seqs = new int[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            // Offsets were stored as seq * 100
+            seqs[i] = (int) (index.offset(positions[i]) / 100);
+        }
+        return seqs;
+    }
+}
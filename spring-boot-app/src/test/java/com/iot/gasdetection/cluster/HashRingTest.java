@@ -0,0 +1,98 @@
+package com.iot.gasdetection.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HashRingTest {
+
+    private static final int VIRTUAL_NODES = 128;
+    private static final int DEVICES = 20_000;
+
+    @Test
+    void emptyRingOwnsNothing() {
+        HashRing ring = new HashRing(List.of(), VIRTUAL_NODES);
+
+        assertThat(ring.ownerOf("esp-0001")).isNull();
+        assertThat(ring.getPointCount()).isZero();
+    }
+
+    @Test
+    void ownershipDoesNotDependOnMemberOrder() {
+        HashRing ring = new HashRing(List.of("node-a", "node-b", "node-c"), VIRTUAL_NODES);
+        HashRing shuffled = new HashRing(List.of("node-c", "node-a", "node-b"), VIRTUAL_NODES);
+
+        assertThat(shuffled.getMembers()).containsExactly("node-a", "node-b", "node-c");
+        assertThat(shuffled.getPointCount()).isEqualTo(3 * VIRTUAL_NODES);
+        for (int i = 0; i < DEVICES; i++) {
+            String device = device(i);
+            assertThat(shuffled.ownerOf(device)).isEqualTo(ring.ownerOf(device));
+        }
+    }
+
+    @Test
+    void devicesSpreadEvenlyAcrossNodes() {
+        HashRing ring = new HashRing(List.of("node-a", "node-b", "node-c", "node-d"), VIRTUAL_NODES);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < DEVICES; i++) {
+            counts.merge(ring.ownerOf(device(i)), 1, Integer::sum);
+        }
+        assertThat(counts).hasSize(4);
+        // 128 points per node keep every share within about 25% of the mean
+        counts.values().forEach(count -> assertThat(count).isBetween(DEVICES / 4 * 3 / 4, DEVICES / 4 * 5 / 4));
+    }
+
+    @Test
+    void joiningNodeTakesDevicesOnlyForItself() {
+        HashRing before = new HashRing(List.of("node-a", "node-b", "node-c"), VIRTUAL_NODES);
+        HashRing after = new HashRing(List.of("node-a", "node-b", "node-c", "node-d"), VIRTUAL_NODES);
+
+        int moved = 0;
+        for (int i = 0; i < DEVICES; i++) {
+            String device = device(i);
+            String owner = after.ownerOf(device);
+            if (!owner.equals(before.ownerOf(device))) {
+                // Nothing moves between the existing nodes
+                assertThat(owner).isEqualTo("node-d");
+                moved++;
+            }
+        }
+        // About a quarter of the fleet
+        assertThat(moved).isBetween(DEVICES / 8, DEVICES * 3 / 8);
+    }
+
+    @Test
+    void leavingNodeHandsOnlyItsOwnDevicesOver() {
+        HashRing before = new HashRing(List.of("node-a", "node-b", "node-c"), VIRTUAL_NODES);
+        HashRing after = new HashRing(List.of("node-a", "node-c"), VIRTUAL_NODES);
+
+        for (int i = 0; i < DEVICES; i++) {
+            String device = device(i);
+            String owner = before.ownerOf(device);
+            if (!owner.equals("node-b")) {
+                assertThat(after.ownerOf(device)).isEqualTo(owner);
+            } else {
+                assertThat(after.ownerOf(device)).isIn("node-a", "node-c");
+            }
+        }
+    }
+
+    @Test
+    void hashSeparatesSimilarIds() {
+        long a = HashRing.hash("esp-0001");
+        long b = HashRing.hash("esp-0002");
+
+        assertThat(a).isNotEqualTo(b);
+        assertThat(Long.bitCount(a ^ b)).isGreaterThan(16);
+        assertThat(HashRing.hash("esp-0001")).isEqualTo(a);
+    }
+
+    private static String device(int i) {
+        return String.format("esp-%05d", i);
+    }
+}
@@ -0,0 +1,129 @@
+package com.iot.gasdetection.command;
+
+import com.iot.gasdetection.model.SensorField;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CommandJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replayReturnsAcceptedCommandsWithoutAFinishedRecord() throws IOException {
+        Command first = command(1, "esp-1", SensorField.RELAY1, 1);
+        Command second = command(2, "esp-2", SensorField.THRESHOLD, 700);
+        Command third = command(3, "esp-1", SensorField.BUZZER, 0);
+        CommandJournal journal = open();
+        journal.append(List.of(CommandJournal.accepted(first), CommandJournal.accepted(second)));
+        journal.append(List.of(CommandJournal.finished(first, CommandStatus.CONFIRMED),
+                CommandJournal.accepted(third)));
+        journal.close();
+
+        CommandJournal reopened = open();
+        assertThat(reopened.getLastId()).isEqualTo(3);
+        assertThat(reopened.getUnfinished()).extracting(Command::getId).containsExactly(2L, 3L);
+        Command replayed = reopened.getUnfinished().get(0);
+        assertThat(replayed.getDeviceId()).isEqualTo("esp-2");
+        assertThat(replayed.getField()).isEqualTo(SensorField.THRESHOLD);
+        assertThat(replayed.getValue()).isEqualTo(700);
+        assertThat(replayed.getCreatedAt()).isEqualTo(second.getCreatedAt());
+    }
+
+    @Test
+    void tornTailIsTruncatedAndOverwritten() throws IOException {
+        Command first = command(1, "esp-1", SensorField.RELAY1, 1);
+        Command second = command(2, "esp-1", SensorField.RELAY2, 1);
+        CommandJournal journal = open();
+        journal.append(List.of(CommandJournal.accepted(first)));
+        long intact = journal.size();
+        journal.close();
+
+        // A crash halfway through the next record
+        byte[] record = CommandJournal.accepted(second);
+        Files.write(file(), Arrays.copyOf(record, record.length / 2), StandardOpenOption.APPEND);
+
+        CommandJournal reopened = open();
+        assertThat(reopened.getUnfinished()).extracting(Command::getId).containsExactly(1L);
+        assertThat(reopened.size()).isEqualTo(intact);
+        assertThat(Files.size(file())).isEqualTo(intact);
+
+        reopened.append(List.of(CommandJournal.accepted(second)));
+        reopened.close();
+        assertThat(open().getUnfinished()).extracting(Command::getId).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void replayStopsAtACorruptRecord() throws IOException {
+        CommandJournal journal = open();
+        journal.append(List.of(CommandJournal.accepted(command(1, "esp-1", SensorField.RELAY1, 1))));
+        long intact = journal.size();
+        journal.append(List.of(CommandJournal.accepted(command(2, "esp-1", SensorField.RELAY2, 1)),
+                CommandJournal.accepted(command(3, "esp-1", SensorField.WINDOW, 1))));
+        journal.close();
+
+        // Flip one body byte of record 2: its CRC no longer matches
+        byte[] bytes = Files.readAllBytes(file());
+        bytes[(int) intact + 12] ^= 0x55;
+        Files.write(file(), bytes);
+
+        CommandJournal reopened = open();
+        assertThat(reopened.getUnfinished()).extracting(Command::getId).containsExactly(1L);
+        assertThat(Files.size(file())).isEqualTo(intact);
+    }
+
+    @Test
+    void compactionKeepsOpenCommandsAndTheLastIssuedId() throws IOException {
+        Command open = command(5, "esp-1", SensorField.RELAY1, 1);
+        CommandJournal journal = open();
+        for (int id = 1; id <= 4; id++) {
+            Command done = command(id, "esp-2", SensorField.BUZZER, id & 1);
+            journal.append(List.of(CommandJournal.accepted(done),
+                    CommandJournal.finished(done, CommandStatus.EXPIRED)));
+        }
+        journal.append(List.of(CommandJournal.accepted(open)));
+        long before = journal.size();
+
+        journal.compact(List.of(open), 9);
+        assertThat(journal.size()).isLessThan(before);
+        journal.append(List.of(CommandJournal.finished(open, CommandStatus.CONFIRMED)));
+        journal.close();
+
+        CommandJournal reopened = open();
+        assertThat(reopened.getUnfinished()).isEmpty();
+        assertThat(reopened.getLastId()).isEqualTo(9);
+    }
+
+    @Test
+    void foreignFileIsRejected() throws IOException {
+        Files.write(file(), "not a journal".getBytes());
+
+        assertThatThrownBy(this::open)
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Not a command journal");
+    }
+
+    private CommandJournal open() throws IOException {
+        CommandJournal journal = new CommandJournal(dir);
+        journal.open();
+        return journal;
+    }
+
+    private Path file() {
+        return dir.resolve("commands.log");
+    }
+
+    private static Command command(long id, String deviceId, SensorField field, int value) {
+        return new Command(id, deviceId, field, value, 1_700_000_000_000L + id);
+    }
+}
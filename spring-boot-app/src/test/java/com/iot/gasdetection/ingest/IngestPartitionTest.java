@@ -0,0 +1,146 @@
+package com.iot.gasdetection.ingest;
+
+import com.iot.gasdetection.config.IngestProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IngestPartitionTest {
+
+    private static final String[] DEVICES = {"esp-1", "esp-2", "esp-3"};
+
+    private final List<String> handled = new CopyOnWriteArrayList<>();
+    private final CountDownLatch gate = new CountDownLatch(1);
+    private IngestPartition partition;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        gate.countDown();
+        if (partition != null) {
+            partition.stop(1_000);
+        }
+    }
+
+    @Test
+    void everyMessageArrivesInOrder() throws InterruptedException {
+        partition = new IngestPartition(0, 8, this::record, IngestProperties.Overflow.BLOCK);
+        partition.start();
+        gate.countDown();
+
+        for (int i = 0; i < 1_000; i++) {
+            publish(DEVICES[i % DEVICES.length], i, false);
+        }
+        partition.stop(5_000);
+
+        assertThat(handled).hasSize(1_000);
+        assertPerDeviceOrder(1_000);
+        assertThat(partition.getProcessed()).isEqualTo(1_000);
+        assertThat(partition.getDepth()).isZero();
+    }
+
+    @Test
+    void spilledReliableMessagesKeepPerDeviceOrder() throws InterruptedException {
+        partition = new IngestPartition(0, 4, this::record, IngestProperties.Overflow.DROP);
+        partition.start();
+
+        // The worker holds the first message, so the ring fills up and reliable messages spill to the side queue
+        int reliable = 0;
+        for (int i = 0; i < 40; i++) {
+            if (publish(DEVICES[i % DEVICES.length], i, true)) {
+                reliable++;
+            }
+        }
+        assertThat(reliable).isEqualTo(40);
+        assertThat(partition.getOverflowed()).isPositive();
+
+        gate.countDown();
+        partition.stop(5_000);
+
+        assertThat(handled).hasSize(40);
+        assertPerDeviceOrder(40);
+    }
+
+    @Test
+    void ringSlotsFreedAfterASpillAreHandledAfterIt() throws InterruptedException {
+        partition = new IngestPartition(0, 2, this::record, IngestProperties.Overflow.DROP);
+        partition.start();
+
+        publish("esp-1", 0, true);
+        publish("esp-1", 1, true);
+        // Ring of 2 is full: spilled
+        publish("esp-1", 2, true);
+        gate.countDown();
+        awaitHandled(3);
+        // Later messages go through the ring again and must not overtake anything
+        publish("esp-1", 3, false);
+        publish("esp-1", 4, true);
+        partition.stop(5_000);
+
+        assertThat(handled).containsExactly("esp-1:0", "esp-1:1", "esp-1:2", "esp-1:3", "esp-1:4");
+    }
+
+    @Test
+    void dropPolicyDiscardsReadingsWhenFull() throws InterruptedException {
+        partition = new IngestPartition(0, 2, this::record, IngestProperties.Overflow.DROP);
+        partition.start();
+
+        int accepted = 0;
+        for (int i = 0; i < 10; i++) {
+            if (publish("esp-1", i, false)) {
+                accepted++;
+            }
+        }
+        gate.countDown();
+        partition.stop(5_000);
+
+        assertThat(partition.getDropped()).isEqualTo(10 - accepted);
+        assertThat(handled).hasSize(accepted);
+        assertPerDeviceOrder(accepted);
+    }
+
+    private boolean publish(String deviceId, int n, boolean reliable) {
+        byte[] payload = Integer.toString(n).getBytes(StandardCharsets.UTF_8);
+        return partition.publish(deviceId, 0, payload, System.currentTimeMillis(), reliable);
+    }
+
+    private void record(String deviceId, int route, byte[] payload, int length, long receivedAt) {
+        try {
+            gate.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        handled.add(deviceId + ":" + new String(payload, 0, length, StandardCharsets.UTF_8));
+    }
+
+    private void awaitHandled(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (handled.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(handled).hasSize(count);
+    }
+
+    private void assertPerDeviceOrder(int expected) {
+        Map<String, List<Integer>> perDevice = new HashMap<>();
+        for (String entry : handled) {
+            String[] parts = entry.split(":");
+            perDevice.computeIfAbsent(parts[0], k -> new ArrayList<>()).add(Integer.parseInt(parts[1]));
+        }
+        int total = 0;
+        for (List<Integer> sequence : perDevice.values()) {
+            assertThat(sequence).isSorted().doesNotHaveDuplicates();
+            total += sequence.size();
+        }
+        assertThat(total).isEqualTo(expected);
+    }
+}
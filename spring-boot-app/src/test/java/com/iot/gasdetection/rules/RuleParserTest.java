@@ -0,0 +1,127 @@
+package com.iot.gasdetection.rules;
+
+import com.iot.gasdetection.config.DeviceProperties;
+import com.iot.gasdetection.device.DeviceRegistry;
+import com.iot.gasdetection.device.DeviceState;
+import com.iot.gasdetection.model.SensorField;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RuleParserTest {
+
+    private final EvalContext ctx = new EvalContext();
+
+    @BeforeEach
+    void setUp() {
+        DeviceState device = new DeviceRegistry(new DeviceProperties()).getOrCreate("esp-test");
+        device.apply(SensorField.MQ2, 850, 1_000);
+        device.apply(SensorField.FIRE, 1, 1_000);
+        device.apply(SensorField.THRESHOLD, 600, 1_000);
+        device.readInto(ctx.view);
+    }
+
+    @Test
+    void arithmeticFollowsPrecedence() {
+        assertThat(eval("1 + 2 * 3")).isEqualTo(7);
+        assertThat(eval("(1 + 2) * 3")).isEqualTo(9);
+        assertThat(eval("10 - 4 - 3")).isEqualTo(3);
+        assertThat(eval("20 / 2 / 5")).isEqualTo(2);
+        assertThat(eval("-3 + 5")).isEqualTo(2);
+        assertThat(eval("7 / 0")).isZero();
+    }
+
+    @Test
+    void comparisonsYieldOneOrZero() {
+        assertThat(eval("mq2 > threshold")).isEqualTo(1);
+        assertThat(eval("mq2 < threshold")).isZero();
+        assertThat(eval("mq2 >= 850")).isEqualTo(1);
+        assertThat(eval("mq2 <= 849")).isZero();
+        assertThat(eval("fire == 1")).isEqualTo(1);
+        assertThat(eval("fire != 1")).isZero();
+        assertThat(eval("mq2 - threshold > 200")).isEqualTo(1);
+    }
+
+    @Test
+    void logicalOperatorsHaveSymbolAndWordForms() {
+        assertThat(eval("fire == 1 && mq2 > 600")).isEqualTo(1);
+        assertThat(eval("fire == 1 and mq2 > 900")).isZero();
+        assertThat(eval("fire == 0 || mq2 > 600")).isEqualTo(1);
+        assertThat(eval("fire == 0 or mq2 > 900")).isZero();
+        assertThat(eval("!fire")).isZero();
+        assertThat(eval("not (mq2 > 900)")).isEqualTo(1);
+        // && binds tighter than ||
+        assertThat(eval("1 || 0 && 0")).isEqualTo(1);
+    }
+
+    @Test
+    void keywordsNeedAWordBoundary() {
+        // "order" is not "or" followed by "der"
+        assertThatThrownBy(() -> parse("fire order")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void riseNodesGetConsecutiveTrackerSlots() {
+        List<Node.Rise> rises = new ArrayList<>();
+        Node node = new RuleParser("rise(mq2, 10s) > 500 || rise(mq2, 2m) > 800", rises).parse();
+
+        assertThat(node).isInstanceOf(Node.Or.class);
+        assertThat(rises).hasSize(2);
+        assertThat(rises.get(0).field).isEqualTo(SensorField.MQ2);
+        assertThat(rises.get(0).windowMillis).isEqualTo(10_000);
+        assertThat(rises.get(0).slot).isZero();
+        assertThat(rises.get(1).windowMillis).isEqualTo(120_000);
+        assertThat(rises.get(1).slot).isEqualTo(1);
+    }
+
+    @Test
+    void standaloneDurationsAcceptEveryUnit() {
+        assertThat(RuleParser.parseDuration("250ms")).isEqualTo(250);
+        assertThat(RuleParser.parseDuration(" 10s ")).isEqualTo(10_000);
+        assertThat(RuleParser.parseDuration("5 m")).isEqualTo(300_000);
+        assertThat(RuleParser.parseDuration("1h")).isEqualTo(3_600_000);
+    }
+
+    @Test
+    void errorsNameTheProblemAndPosition() {
+        assertThatThrownBy(() -> parse("mq3 > 1"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Unknown field 'mq3'");
+        assertThatThrownBy(() -> parse("mq2 > 1 )"))
+                .hasMessageContaining("Unexpected ')'")
+                .hasMessageContaining("position 8");
+        assertThatThrownBy(() -> parse("(mq2 > 1"))
+                .hasMessageContaining("Expected ')'");
+        assertThatThrownBy(() -> parse("mq2 >"))
+                .hasMessageContaining("Unexpected end");
+        assertThatThrownBy(() -> parse("!= 1"))
+                .hasMessageContaining("Unexpected '!='");
+        assertThatThrownBy(() -> parse("rise(mq2 10s) > 1"))
+                .hasMessageContaining("Expected ','");
+    }
+
+    @Test
+    void invalidDurationsAreRejected() {
+        assertThatThrownBy(() -> parse("rise(mq2, 10d) > 1"))
+                .hasMessageContaining("Invalid duration 10d");
+        assertThatThrownBy(() -> parse("rise(mq2, 0s) > 1"))
+                .hasMessageContaining("Invalid duration 0s");
+        assertThatThrownBy(() -> RuleParser.parseDuration("10s later"))
+                .hasMessageContaining("Invalid duration");
+        assertThatThrownBy(() -> RuleParser.parseDuration("s"))
+                .hasMessageContaining("Number expected");
+    }
+
+    private static Node parse(String text) {
+        return new RuleParser(text, new ArrayList<>()).parse();
+    }
+
+    private long eval(String text) {
+        return parse(text).eval(ctx);
+    }
+}
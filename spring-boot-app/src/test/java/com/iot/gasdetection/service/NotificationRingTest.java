@@ -0,0 +1,87 @@
+package com.iot.gasdetection.service;
+
+import com.iot.gasdetection.model.Notification;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NotificationRingTest {
+
+    @Test
+    void emptyRingHasNothing() {
+        NotificationRing ring = new NotificationRing(4);
+
+        assertThat(ring.lastSeq()).isZero();
+        assertThat(ring.latest(10)).isEmpty();
+        assertThat(ring.since(0, 10)).isEmpty();
+    }
+
+    @Test
+    void addStampsSequenceNumbers() {
+        NotificationRing ring = new NotificationRing(4);
+        Notification first = notification("a");
+        Notification second = notification("b");
+
+        assertThat(ring.add(first)).isEqualTo(1);
+        assertThat(ring.add(second)).isEqualTo(2);
+        assertThat(first.getSeq()).isEqualTo(1);
+        assertThat(second.getSeq()).isEqualTo(2);
+        assertThat(ring.lastSeq()).isEqualTo(2);
+    }
+
+    @Test
+    void wraparoundKeepsTheNewestCapacityEntries() {
+        NotificationRing ring = new NotificationRing(4);
+        for (int i = 1; i <= 10; i++) {
+            ring.add(notification("n" + i));
+        }
+
+        assertThat(messages(ring.latest(100))).containsExactly("n10", "n9", "n8", "n7");
+        assertThat(messages(ring.latest(2))).containsExactly("n10", "n9");
+        assertThat(ring.lastSeq()).isEqualTo(10);
+    }
+
+    @Test
+    void sinceReturnsOnlyNewerEntries() {
+        NotificationRing ring = new NotificationRing(4);
+        for (int i = 1; i <= 6; i++) {
+            ring.add(notification("n" + i));
+        }
+
+        assertThat(messages(ring.since(4, 10))).containsExactly("n6", "n5");
+        assertThat(messages(ring.since(6, 10))).isEmpty();
+        // A cursor older than the ring gets what is left
+        assertThat(messages(ring.since(1, 10))).containsExactly("n6", "n5", "n4", "n3");
+        assertThat(messages(ring.since(1, 1))).containsExactly("n6");
+    }
+
+    @Test
+    void restoreContinuesNumberingAfterTheStoredEntries() {
+        List<Notification> stored = new ArrayList<>();
+        for (int seq = 41; seq >= 38; seq--) {
+            Notification notification = notification("s" + seq);
+            notification.setSeq(seq);
+            stored.add(notification);
+        }
+        NotificationRing ring = new NotificationRing(3);
+        ring.restore(stored, 41);
+
+        assertThat(ring.lastSeq()).isEqualTo(41);
+        assertThat(messages(ring.latest(10))).containsExactly("s41", "s40", "s39");
+
+        Notification next = notification("new");
+        assertThat(ring.add(next)).isEqualTo(42);
+        assertThat(messages(ring.since(40, 10))).containsExactly("new", "s41");
+    }
+
+    private static Notification notification(String message) {
+        return new Notification("warning", message, System.currentTimeMillis());
+    }
+
+    private static List<String> messages(List<Notification> notifications) {
+        return notifications.stream().map(Notification::getMessage).toList();
+    }
+}
@@ -0,0 +1,105 @@
+package com.iot.gasdetection.timeseries;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BlockCodecTest {
+
+    @Test
+    void rawBlockRoundTrips() {
+        long[] timestamps = {1_700_000_000_000L, 1_700_000_000_500L, 1_700_000_001_000L, 1_700_000_004_000L};
+        long[][] values = {{420, 418, 2_000, -5}};
+        ByteBuffer block = encode(7, timestamps, values);
+
+        assertThat(BlockCodec.isBlock(block, 0, block.limit())).isTrue();
+        assertThat(BlockCodec.seriesId(block, 0)).isEqualTo(7);
+        assertThat(BlockCodec.minTs(block, 0)).isEqualTo(timestamps[0]);
+        assertThat(BlockCodec.maxTs(block, 0)).isEqualTo(timestamps[3]);
+        assertThat(BlockCodec.blockLength(block, 0)).isEqualTo(block.limit());
+
+        List<long[]> rows = decode(block, Tier.RAW, Long.MIN_VALUE, Long.MAX_VALUE);
+        assertThat(rows).hasSize(4);
+        for (int i = 0; i < rows.size(); i++) {
+            long value = values[0][i];
+            assertThat(rows.get(i)).containsExactly(timestamps[i], value, value, value, 1);
+        }
+    }
+
+    @Test
+    void rollupBlockRoundTrips() {
+        long[] timestamps = {60_000, 120_000, 180_000};
+        long[][] values = {{10, 12, 9}, {30, 31, 45}, {800, 1_200, 1_000}, {40, 60, 50}};
+        ByteBuffer block = encode(3, timestamps, values);
+
+        List<long[]> rows = decode(block, Tier.MINUTE, Long.MIN_VALUE, Long.MAX_VALUE);
+        assertThat(rows).hasSize(3);
+        for (int i = 0; i < rows.size(); i++) {
+            assertThat(rows.get(i))
+                    .containsExactly(timestamps[i], values[0][i], values[1][i], values[2][i], values[3][i]);
+        }
+    }
+
+    @Test
+    void decodeKeepsOnlyTheRequestedRange() {
+        long[] timestamps = {1_000, 2_000, 3_000, 4_000, 5_000};
+        long[][] values = {{1, 2, 3, 4, 5}};
+        ByteBuffer block = encode(1, timestamps, values);
+
+        List<long[]> rows = decode(block, Tier.RAW, 2_000, 4_000);
+        assertThat(rows).extracting(row -> row[0]).containsExactly(2_000L, 3_000L, 4_000L);
+        assertThat(rows).extracting(row -> row[1]).containsExactly(2L, 3L, 4L);
+    }
+
+    @Test
+    void blockAtAnOffsetDecodesInPlace() {
+        long[] timestamps = {10, 20};
+        long[][] values = {{Long.MAX_VALUE, Long.MIN_VALUE}};
+        byte[] out = new byte[BlockCodec.maxBlockBytes(2, 2)];
+        int length = BlockCodec.encode(9, timestamps, values, 2, out);
+        ByteBuffer buffer = ByteBuffer.allocate(64 + length);
+        buffer.put(64, out, 0, length);
+
+        assertThat(BlockCodec.isBlock(buffer, 0, buffer.limit())).isFalse();
+        assertThat(BlockCodec.isBlock(buffer, 64, buffer.limit())).isTrue();
+        assertThat(BlockCodec.isBlock(buffer, 64, 64 + BlockCodec.HEADER_BYTES - 1)).isFalse();
+        List<long[]> rows = decode(buffer, 64, Tier.RAW, Long.MIN_VALUE, Long.MAX_VALUE);
+        assertThat(rows).extracting(row -> row[1]).containsExactly(Long.MAX_VALUE, Long.MIN_VALUE);
+    }
+
+    @Test
+    void regularSamplingTakesAboutTwoBytesPerRow() {
+        int rows = 1_000;
+        long[] timestamps = new long[rows];
+        long[][] values = new long[1][rows];
+        for (int i = 0; i < rows; i++) {
+            timestamps[i] = 1_700_000_000_000L + i * 1_000L;
+            values[0][i] = 400 + (i % 3);
+        }
+        ByteBuffer block = encode(1, timestamps, values);
+
+        assertThat(block.limit()).isLessThan(BlockCodec.HEADER_BYTES + 16 + rows * 2);
+        assertThat(decode(block, Tier.RAW, Long.MIN_VALUE, Long.MAX_VALUE)).hasSize(rows);
+    }
+
+    private static ByteBuffer encode(int seriesId, long[] timestamps, long[][] values) {
+        byte[] out = new byte[BlockCodec.maxBlockBytes(timestamps.length, values.length + 1)];
+        int length = BlockCodec.encode(seriesId, timestamps, values, timestamps.length, out);
+        return ByteBuffer.wrap(out, 0, length).slice();
+    }
+
+    private static List<long[]> decode(ByteBuffer buffer, Tier tier, long from, long to) {
+        return decode(buffer, 0, tier, from, to);
+    }
+
+    private static List<long[]> decode(ByteBuffer buffer, int offset, Tier tier, long from, long to) {
+        List<long[]> rows = new ArrayList<>();
+        BlockCodec.decode(buffer, offset, tier, from, to,
+                (ts, min, max, sum, count) -> rows.add(new long[]{ts, min, max, sum, count}));
+        return rows;
+    }
+}